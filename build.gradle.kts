@@ -29,6 +29,11 @@ repositories {
 dependencies {
     //cache
     implementation("org.springframework.boot:spring-boot-starter-cache")
+    implementation("com.github.ben-manes.caffeine:caffeine")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-smile")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
+    // métricas (aciertos y fallos de caché por nivel)
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
     // http
     implementation("org.springframework.boot:spring-boot-starter-web")
     // lombok
@@ -123,6 +128,26 @@ tasks.withType<Test> {
     finalizedBy(tasks.named("jacocoTestReport"))
 }
 
+// Los benchmarks (@Tag("benchmark")) quedan fuera de `test`; se lanzan con `./gradlew benchmark`
+tasks.test {
+    useJUnitPlatform {
+        excludeTags("benchmark")
+    }
+}
+
+tasks.register<Test>("benchmark") {
+    description = "Ejecuta los tests de rendimiento etiquetados con @Tag(\"benchmark\")."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags("benchmark")
+    }
+    setFinalizedBy(emptyList<Any>())
+    testLogging.showStandardStreams = true
+    shouldRunAfter(tasks.test)
+}
+
 tasks.named<JacocoReport>("jacocoTestReport") {
     dependsOn(tasks.test)
 
@@ -1,8 +1,11 @@
+DROP TABLE IF EXISTS price_drop CASCADE;
+DROP TABLE IF EXISTS product_favorite_count CASCADE;
+DROP TABLE IF EXISTS product_stock_shard CASCADE;
 DROP TABLE IF EXISTS product_comments CASCADE;
 DROP TABLE IF EXISTS product_images CASCADE;
 DROP TABLE IF EXISTS product CASCADE;
 DROP TABLE IF EXISTS category CASCADE;
-DROP TABLE IF EXISTS user_favs CASCADE;
+DROP TABLE IF EXISTS user_favorites CASCADE;
 DROP TABLE IF EXISTS user_roles CASCADE;
 DROP TABLE IF EXISTS users CASCADE;
 
@@ -46,14 +49,23 @@ CREATE TABLE user_roles
     FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
 );
 
--- Tabla de favoritos de usuarios
-CREATE TABLE user_favs
+-- Tabla de favoritos de usuarios: un par (usuario, producto) por fila, en orden de ID
+CREATE TABLE user_favorites
 (
-    user_id BIGINT NOT NULL,
-    favs    VARCHAR(255),
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id    BIGINT       NOT NULL,
+    product_id VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP    NOT NULL DEFAULT NOW(),
+    CONSTRAINT uk_user_favorites_user_product UNIQUE (user_id, product_id),
     FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
 );
 
+-- Favoritos de un usuario, en el orden en que los añadió
+CREATE INDEX idx_user_favorites_user_id ON user_favorites (user_id, id);
+
+-- Usuarios que tienen un producto en favoritos, en orden de ID (avisos de bajada de precio)
+CREATE INDEX idx_user_favorites_product_id ON user_favorites (product_id, id);
+
 -- Tabla de productos
 CREATE TABLE product
 (
@@ -83,6 +95,7 @@ CREATE TABLE product_images
 -- Tabla de comentarios de productos
 CREATE TABLE product_comments
 (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     product_id  VARCHAR(255) NOT NULL,
     user_id     BIGINT       NOT NULL,
     content     TEXT         NOT NULL,
@@ -92,6 +105,44 @@ CREATE TABLE product_comments
     FOREIGN KEY (product_id) REFERENCES product (id) ON DELETE CASCADE
 );
 
+-- Páginas de comentarios de un producto, en orden de creación
+CREATE INDEX idx_product_comments_product_created ON product_comments (product_id, created_at, id);
+
+-- Tabla de subcontadores de stock de productos calientes
+CREATE TABLE product_stock_shard
+(
+    product_id  VARCHAR(255) NOT NULL,
+    shard_index INT          NOT NULL,
+    stock       INT          NOT NULL CHECK (stock >= 0),
+    PRIMARY KEY (product_id, shard_index),
+    FOREIGN KEY (product_id) REFERENCES product (id) ON DELETE CASCADE
+);
+
+-- Tabla de contadores de favoritos por producto
+CREATE TABLE product_favorite_count
+(
+    product_id VARCHAR(255) PRIMARY KEY,
+    favorites  BIGINT NOT NULL
+);
+
+-- Tabla de bajadas de precio pendientes de avisar
+CREATE TABLE price_drop
+(
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    product_id       VARCHAR(255)     NOT NULL,
+    product_name     VARCHAR(255)     NOT NULL,
+    old_price        DOUBLE PRECISION NOT NULL,
+    new_price        DOUBLE PRECISION NOT NULL,
+    last_favorite_id BIGINT           NOT NULL DEFAULT 0,
+    notified         BIGINT           NOT NULL DEFAULT 0,
+    created_at       TIMESTAMP        NOT NULL DEFAULT NOW(),
+    finished_at      TIMESTAMP,
+    version          BIGINT           NOT NULL DEFAULT 0
+);
+
+-- Bajadas pendientes, en orden de ID
+CREATE INDEX idx_price_drop_pending ON price_drop (finished_at, id);
+
 -- INSERCIÓN DE DATOS
 
 -- Insertar categorías (IDs generados con formato del IdGenerator)
@@ -251,7 +302,7 @@ VALUES ('Hx9Lp2Ks4TnB', 3, 'Excelente portátil, muy rápido y ligero. Lo recomi
         NOW() - INTERVAL '18 days');
 
 -- Insertar favoritos de usuarios (solo los usuarios normales tienen favoritos)
-INSERT INTO user_favs (user_id, favs)
+INSERT INTO user_favorites (user_id, product_id)
 VALUES (3, 'Hx9Lp2Ks4TnB'),
        (3, 'Yw3Zq7Vm1RfG'),
        (3, 'Dk5Mn8Pj2WcX'),
@@ -264,4 +315,9 @@ VALUES (3, 'Hx9Lp2Ks4TnB'),
        (6, 'Jt3Lw6Fh9CmY'),
        (6, 'Vb4Gx9Hs6MqK'),
        (7, 'Tx5Wr9Km2NhP'),
-       (7, 'Gn7Qs4Lv8BxZ');
\ No newline at end of file
+       (7, 'Gn7Qs4Lv8BxZ');
+-- Contadores de favoritos a partir de los favoritos insertados
+INSERT INTO product_favorite_count (product_id, favorites)
+SELECT product_id, COUNT(*)
+FROM user_favorites
+GROUP BY product_id;
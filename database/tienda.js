@@ -371,10 +371,13 @@ db.cart.insertOne({
 });
 
 // Crear índices para mejorar el rendimiento
-db.cart.createIndex({"userId": 1});
-db.cart.createIndex({"purchased": 1});
-db.cart.createIndex({"createdAt": -1});
+// (mismo conjunto que crea MongoIndexManager al arrancar la aplicación)
 db.cart.createIndex({"userId": 1, "purchased": 1});
+db.cart.createIndex({"purchased": 1, "createdAt": -1});
+db.cart.createIndex({"checkoutInProgress": 1, "purchased": 1, "checkoutStartedAt": 1});
+db.sale_lines.createIndex({"managerId": 1, "createdAt": -1, "_id": -1});
+db.sale_lines.createIndex({"createdAt": -1, "_id": -1});
+db.sale_lines.createIndex({"saleId": 1});
 
 // Validación y estadísticas
 print("\nColección 'cart' creada e inicializada correctamente");
@@ -1,6 +1,7 @@
 package dev.luisvives.dawazon.cart.controller;
 
 import dev.luisvives.dawazon.cart.dto.LineRequestDto;
+import dev.luisvives.dawazon.cart.exceptions.CartException;
 import dev.luisvives.dawazon.cart.service.CartServiceImpl;
 import jakarta.validation.Valid;
 import lombok.val;
@@ -69,6 +70,22 @@ public class AdminPurchasedController {
         return "web/cart/ventas";
     }
 
+    /**
+     * Recalcula los acumulados de ganancias a partir de las ventas.
+     *
+     * @param isAdmin Si el usuario es administrador
+     * @return Redirección al listado de ventas
+     * @throws CartException.UnauthorizedException Si el usuario no es administrador
+     */
+    @PostMapping("/ventas/ganancias/recalcular")
+    public String rebuildEarnings(@ModelAttribute("isAdmin") boolean isAdmin) {
+        if (!isAdmin) {
+            throw new CartException.UnauthorizedException("No tienes permisos para recalcular las ganancias");
+        }
+        cartService.rebuildEarnings();
+        return "redirect:/admin/ventas";
+    }
+
     /**
      * Muestra el detalle de una venta específica.
      *
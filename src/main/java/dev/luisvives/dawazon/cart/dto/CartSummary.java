@@ -0,0 +1,90 @@
+package dev.luisvives.dawazon.cart.dto;
+
+import dev.luisvives.dawazon.cart.models.Cart;
+import dev.luisvives.dawazon.cart.models.CartLine;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Resumen del carrito que se guarda en la sesión HTTP.
+ * <p>
+ * Contiene solo lo que necesitan todas las páginas (contador de líneas y si un
+ * producto está en el carrito), en lugar del carrito completo con su cliente y
+ * dirección. El carrito completo solo se carga en las páginas de carrito y
+ * pago.
+ * </p>
+ *
+ * <b>Campos:</b>
+ * <ul>
+ * <li><b>cartId</b> (<code>String</code>): ID del carrito.</li>
+ * <li><b>itemCount</b> (<code>int</code>): Número de líneas.</li>
+ * <li><b>productIds</b> (<code>String[]</code>): IDs de los productos,
+ * ordenados.</li>
+ * <li><b>version</b> (<code>long</code>): Última modificación del carrito, en
+ * epoch ms.</li>
+ * </ul>
+ */
+@Getter
+@AllArgsConstructor
+public class CartSummary implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * ID del carrito.
+     */
+    private final String cartId;
+    /**
+     * Número de líneas del carrito.
+     */
+    private final int itemCount;
+    /**
+     * IDs de los productos del carrito, ordenados para buscar con
+     * {@link Arrays#binarySearch(Object[], Object)}.
+     */
+    private final String[] productIds;
+    /**
+     * Última modificación del carrito, en epoch ms.
+     */
+    private final long version;
+
+    /**
+     * Crea el resumen de un carrito.
+     *
+     * @param cart Carrito
+     * @return Resumen
+     */
+    public static CartSummary of(Cart cart) {
+        String[] productIds = cart.getCartLines() == null
+                ? new String[0]
+                : cart.getCartLines().stream().map(CartLine::getProductId).sorted().toArray(String[]::new);
+        long version = cart.getUpdatedAt() == null ? 0 : cart.getUpdatedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+        return new CartSummary(cart.getId(), productIds.length, productIds, version);
+    }
+
+    /**
+     * Indica si un producto está en el carrito.
+     *
+     * @param productId ID del producto
+     * @return {@code true} si está
+     */
+    public boolean contains(String productId) {
+        return Arrays.binarySearch(productIds, productId) >= 0;
+    }
+
+    /**
+     * Indica si este resumen debe sustituir a otro: es de otro carrito o no es
+     * más antiguo.
+     *
+     * @param other Resumen actual, o {@code null}
+     * @return {@code true} si lo sustituye
+     */
+    public boolean supersedes(CartSummary other) {
+        return other == null || !other.cartId.equals(cartId) || version >= other.version;
+    }
+}
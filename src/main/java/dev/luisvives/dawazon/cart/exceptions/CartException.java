@@ -9,6 +9,7 @@ package dev.luisvives.dawazon.cart.exceptions;
  * @see AttemptAmountExceededException
  * @see UnauthorizedException
  * @see InsufficientStockException
+ * @see CheckoutInProgressException
  */
 public abstract class CartException extends RuntimeException {
     /**
@@ -74,4 +75,18 @@ public abstract class CartException extends RuntimeException {
             super(message);
         }
     }
+
+    /**
+     * Excepción lanzada al intentar modificar un carrito con el pago en curso.
+     */
+    public static class CheckoutInProgressException extends CartException {
+        /**
+         * Constructor que acepta el ID del carrito.
+         *
+         * @param id ID del carrito
+         */
+        public CheckoutInProgressException(String id) {
+            super("El carrito " + id + " tiene un pago en curso y no se puede modificar");
+        }
+    }
 }
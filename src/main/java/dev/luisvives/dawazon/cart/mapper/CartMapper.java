@@ -3,7 +3,9 @@ package dev.luisvives.dawazon.cart.mapper;
 import dev.luisvives.dawazon.cart.dto.SaleLineDto;
 import dev.luisvives.dawazon.cart.models.Cart;
 import dev.luisvives.dawazon.cart.models.CartLine;
+import dev.luisvives.dawazon.cart.models.SaleLine;
 import dev.luisvives.dawazon.products.models.Product;
+import dev.luisvives.dawazon.products.repository.ProductRepository;
 import dev.luisvives.dawazon.users.models.User;
 import org.springframework.stereotype.Component;
 
@@ -44,4 +46,62 @@ public class CartMapper {
                 .updatedAt(cart.getUpdatedAt())
                 .build();
     };
+
+    /**
+     * Construye la línea de venta desnormalizada de una línea de carrito.
+     *
+     * @param cart        Carrito comprado al que pertenece la línea
+     * @param line        Línea de carrito
+     * @param product     Nombre y creador del producto
+     * @param managerName Nombre del vendedor
+     * @return Línea de venta para la colección {@code sale_lines}
+     *
+     * @see SaleLine
+     */
+    public SaleLine cartLineToSaleLine(Cart cart, CartLine line, ProductRepository.ProductCreator product,
+            String managerName) {
+        return SaleLine.builder()
+                .id(SaleLine.key(cart.getId(), line.getProductId()))
+                .saleId(cart.getId())
+                .productId(line.getProductId())
+                .productName(product.getName())
+                .quantity(line.getQuantity())
+                .productPrice(line.getProductPrice())
+                .totalPrice(line.getTotalPrice())
+                .status(line.getStatus())
+                .managerId(product.getCreatorId())
+                .managerName(managerName)
+                .client(cart.getClient())
+                .userId(cart.getUserId())
+                .createdAt(cart.getCreatedAt())
+                .updatedAt(cart.getUpdatedAt())
+                .build();
+    }
+
+    /**
+     * Convierte una línea de venta desnormalizada a DTO.
+     *
+     * @param line Línea de venta
+     * @return DTO de línea de venta
+     *
+     * @see SaleLine
+     * @see SaleLineDto
+     */
+    public SaleLineDto saleLineToSaleLineDto(SaleLine line) {
+        return SaleLineDto.builder()
+                .saleId(line.getSaleId())
+                .productId(line.getProductId())
+                .productName(line.getProductName())
+                .quantity(line.getQuantity())
+                .productPrice(line.getProductPrice())
+                .totalPrice(line.getTotalPrice())
+                .status(line.getStatus())
+                .managerId(line.getManagerId())
+                .managerName(line.getManagerName())
+                .client(line.getClient())
+                .userId(line.getUserId())
+                .createdAt(line.getCreatedAt())
+                .updatedAt(line.getUpdatedAt())
+                .build();
+    }
 }
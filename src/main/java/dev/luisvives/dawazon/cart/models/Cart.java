@@ -13,7 +13,9 @@ import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.annotation.TypeAlias;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -38,6 +40,8 @@ import java.util.List;
  * está en curso.</li>
  * <li><b>checkoutStartedAt</b> ({@link LocalDateTime}): Fecha de inicio del
  * checkout.</li>
+ * <li><b>stockShortages</b> ({@link List}<<code>String</code>>): Productos
+ * vendidos sin stock suficiente, pendientes de compensar.</li>
  * </ul>
  *
  * @see CartLine
@@ -122,6 +126,58 @@ public class Cart {
         this.total = cartLines == null ? 0.0 : cartLines.stream().mapToDouble(CartLine::getTotalPrice).sum();
     }
 
+    /**
+     * Añade una línea al carrito. Si ya hay una del mismo producto, le suma la
+     * cantidad y el importe en lugar de crear otra.
+     *
+     * @param line Línea a añadir
+     */
+    public void addLine(CartLine line) {
+        List<CartLine> lines = cartLines == null ? new ArrayList<>() : new ArrayList<>(cartLines);
+        lines.stream()
+                .filter(it -> it.getProductId().equals(line.getProductId()))
+                .findFirst()
+                .ifPresentOrElse(it -> it.setQuantity(it.getQuantity() + line.getQuantity()),
+                        () -> lines.add(line));
+        setOrderLines(lines);
+    }
+
+    /**
+     * Quita la línea de un producto y recalcula los totales.
+     *
+     * @param productId ID del producto
+     */
+    public void removeLine(String productId) {
+        List<CartLine> lines = cartLines == null ? new ArrayList<>() : new ArrayList<>(cartLines);
+        lines.removeIf(it -> it.getProductId().equals(productId));
+        setOrderLines(lines);
+    }
+
+    /**
+     * Cambia la cantidad de la línea de un producto y recalcula los totales. No
+     * hace nada si el producto no está en el carrito.
+     *
+     * @param productId ID del producto
+     * @param quantity  Nueva cantidad
+     */
+    public void updateLineQuantity(String productId, int quantity) {
+        List<CartLine> lines = cartLines == null ? new ArrayList<>() : new ArrayList<>(cartLines);
+        lines.stream()
+                .filter(it -> it.getProductId().equals(productId))
+                .forEach(it -> it.setQuantity(quantity));
+        setOrderLines(lines);
+    }
+
+    /**
+     * Fusiona las líneas repetidas de un mismo producto, como hace
+     * {@link #addLine(CartLine)}, y recalcula los totales.
+     */
+    public void mergeDuplicateLines() {
+        List<CartLine> lines = cartLines == null ? List.of() : cartLines;
+        setOrderLines(new ArrayList<>());
+        lines.forEach(this::addLine);
+    }
+
     /**
      * Indica si el proceso de checkout está en curso.
      */
@@ -133,22 +189,30 @@ public class Cart {
      */
     private LocalDateTime checkoutStartedAt;
 
+    /**
+     * IDs de los productos que se vendieron sin stock suficiente (la retención
+     * caducó durante el pago y otro carrito se quedó las unidades). El pedido
+     * queda marcado para compensarlo; nulo o vacío si no falta nada.
+     */
+    private List<String> stockShortages;
+
     public long getMinutesSinceCheckoutStarted() {
         if (checkoutStartedAt == null) {
             return 0;
         }
-        return java.time.Duration.between(checkoutStartedAt, LocalDateTime.now())
+        return Duration.between(checkoutStartedAt, LocalDateTime.now())
                 .toMinutes();
     }
 
     /**
-     * Verifica si el proceso de checkout ha expirado (más de 5 minutos).
+     * Verifica si el proceso de checkout ha expirado.
      *
+     * @param expiry Tiempo que tiene el usuario para completar el pago.
      * @return {@code true} si el checkout ha expirado.
      */
-    public boolean isCheckoutExpired() {
+    public boolean isCheckoutExpired(Duration expiry) {
         return checkoutInProgress &&
                 checkoutStartedAt != null &&
-                getMinutesSinceCheckoutStarted() > 5;
+                checkoutStartedAt.plus(expiry).isBefore(LocalDateTime.now());
     }
 }
@@ -0,0 +1,79 @@
+package dev.luisvives.dawazon.cart.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.TypeAlias;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Acumulado de ganancias mantenido de forma incremental.
+ * <p>
+ * Existe un documento global ({@link #GLOBAL_ID}) con las ganancias de toda la
+ * tienda y uno por cada vendedor ({@link #managerKey(Long)}) con las de sus
+ * productos. Se actualizan con {@code $inc} al comprar o cancelar líneas, por lo
+ * que leer el total es una única búsqueda por clave.
+ * </p>
+ *
+ * <b>Campos:</b>
+ * <ul>
+ * <li><b>id</b> (<code>String</code>): Clave del acumulado.</li>
+ * <li><b>managerId</b> (<code>Long</code>): ID del vendedor (nulo en el
+ * global).</li>
+ * <li><b>total</b> (<code>Double</code>): Ganancias acumuladas.</li>
+ * <li><b>updatedAt</b> ({@link LocalDateTime}): Fecha de la última
+ * actualización.</li>
+ * <li><b>version</b> (<code>Long</code>): Número de escrituras, para que el
+ * recálculo no pise un {@code $inc} concurrente.</li>
+ * </ul>
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Document("earnings_ledger")
+@TypeAlias("EarningsLedger")
+public class EarningsLedger {
+    /**
+     * Clave del acumulado global.
+     */
+    public static final String GLOBAL_ID = "global";
+
+    /**
+     * Clave del acumulado.
+     */
+    @Id
+    private String id;
+    /**
+     * ID del vendedor, nulo en el acumulado global.
+     */
+    private Long managerId;
+    /**
+     * Ganancias acumuladas.
+     */
+    @Builder.Default
+    private Double total = 0.0;
+    /**
+     * Fecha de la última actualización.
+     */
+    private LocalDateTime updatedAt;
+    /**
+     * Se incrementa en cada escritura. Nulo en los acumulados anteriores a este
+     * campo.
+     */
+    private Long version;
+
+    /**
+     * Obtiene la clave del acumulado de un vendedor.
+     *
+     * @param managerId ID del vendedor
+     * @return Clave del documento
+     */
+    public static String managerKey(Long managerId) {
+        return "manager:" + managerId;
+    }
+}
@@ -0,0 +1,119 @@
+package dev.luisvives.dawazon.cart.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.TypeAlias;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Línea de venta desnormalizada para las vistas de ventas.
+ * <p>
+ * Se escribe un documento por cada producto de un pedido al finalizarlo (las
+ * {@link CartLine} repetidas de un producto se suman en uno), guardando una
+ * copia del nombre del producto y del vendedor. Así el listado, el detalle y
+ * el filtrado por vendedor se resuelven con una única consulta sobre la
+ * colección {@code sale_lines}, sin cruzar datos con PostgreSQL.
+ * </p>
+ *
+ * <b>Campos:</b>
+ * <ul>
+ * <li><b>id</b> (<code>String</code>): Clave compuesta venta/producto.</li>
+ * <li><b>saleId</b> (<code>String</code>): ID del carrito/venta.</li>
+ * <li><b>productId</b> (<code>String</code>): ID del producto.</li>
+ * <li><b>productName</b> (<code>String</code>): Nombre del producto al comprarlo.</li>
+ * <li><b>quantity</b> (<code>Integer</code>): Cantidad.</li>
+ * <li><b>productPrice</b> (<code>Double</code>): Precio unitario.</li>
+ * <li><b>totalPrice</b> (<code>Double</code>): Precio total.</li>
+ * <li><b>status</b> ({@link Status}): Estado de la línea.</li>
+ * <li><b>managerId</b> (<code>Long</code>): ID del vendedor.</li>
+ * <li><b>managerName</b> (<code>String</code>): Nombre del vendedor al comprarlo.</li>
+ * <li><b>client</b> ({@link Client}): Información del cliente.</li>
+ * <li><b>userId</b> (<code>Long</code>): ID del comprador.</li>
+ * <li><b>createdAt</b> ({@link LocalDateTime}): Fecha de creación de la venta.</li>
+ * <li><b>updatedAt</b> ({@link LocalDateTime}): Fecha de la última actualización.</li>
+ * </ul>
+ *
+ * @see Cart
+ * @see CartLine
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Document("sale_lines")
+@TypeAlias("SaleLine")
+public class SaleLine {
+    /**
+     * Clave compuesta {@code saleId:productId}.
+     */
+    @Id
+    private String id;
+    /**
+     * ID del carrito/venta.
+     */
+    private String saleId;
+    /**
+     * ID del producto.
+     */
+    private String productId;
+    /**
+     * Nombre del producto en el momento de la compra.
+     */
+    private String productName;
+    /**
+     * Cantidad comprada.
+     */
+    private Integer quantity;
+    /**
+     * Precio unitario.
+     */
+    private Double productPrice;
+    /**
+     * Precio total de la línea.
+     */
+    private Double totalPrice;
+    /**
+     * Estado de la línea.
+     */
+    private Status status;
+    /**
+     * ID del vendedor del producto.
+     */
+    private Long managerId;
+    /**
+     * Nombre del vendedor en el momento de la compra.
+     */
+    private String managerName;
+    /**
+     * Información del cliente.
+     */
+    private Client client;
+    /**
+     * ID del comprador.
+     */
+    private Long userId;
+    /**
+     * Fecha de creación de la venta.
+     */
+    private LocalDateTime createdAt;
+    /**
+     * Fecha de la última actualización.
+     */
+    private LocalDateTime updatedAt;
+
+    /**
+     * Obtiene la clave de una línea de venta.
+     *
+     * @param saleId    ID del carrito/venta
+     * @param productId ID del producto
+     * @return Clave del documento
+     */
+    public static String key(String saleId, String productId) {
+        return saleId + ":" + productId;
+    }
+}
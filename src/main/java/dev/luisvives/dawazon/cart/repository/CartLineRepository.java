@@ -0,0 +1,36 @@
+package dev.luisvives.dawazon.cart.repository;
+
+import org.bson.types.ObjectId;
+
+import java.util.List;
+
+/**
+ * Mantenimiento de las líneas de los carritos.
+ * <p>
+ * Fragmento de {@link CartRepository}. Las líneas de los carritos abiertos se
+ * modifican en el almacén de carritos activos
+ * ({@link dev.luisvives.dawazon.cart.service.ActiveCartStore}) y se vuelcan a
+ * MongoDB por lotes; aquí solo queda la compactación de los datos antiguos.
+ * </p>
+ * <p>
+ * Un carrito tiene como mucho una línea por producto, y las líneas se
+ * identifican por {@code productId}.
+ * </p>
+ */
+public interface CartLineRepository {
+    /**
+     * Busca los carritos sin comprar con líneas repetidas de un mismo producto.
+     *
+     * @return IDs de los carritos
+     */
+    List<ObjectId> findCartIdsWithDuplicateLines();
+
+    /**
+     * Fusiona las líneas repetidas de un mismo producto en los carritos sin
+     * comprar, de cuando añadir un producto creaba una línea nueva cada vez.
+     * Los carritos comprados no se tocan.
+     *
+     * @return Número de carritos compactados
+     */
+    long compactDuplicateLines();
+}
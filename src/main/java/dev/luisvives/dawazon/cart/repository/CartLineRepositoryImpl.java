@@ -0,0 +1,96 @@
+package dev.luisvives.dawazon.cart.repository;
+
+import dev.luisvives.dawazon.cart.models.Cart;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+/**
+ * Implementación de {@link CartLineRepository} con {@link MongoTemplate}.
+ * <p>
+ * La compactación es una actualización con pipeline: una primera etapa
+ * fusiona {@code cartLines} y una segunda recalcula los totales a partir del
+ * propio array, todo en la misma operación atómica.
+ * </p>
+ */
+public class CartLineRepositoryImpl implements CartLineRepository {
+    /**
+     * Líneas del carrito, o un array vacío si el carrito no tiene.
+     */
+    private static final Document LINES = new Document("$ifNull", List.of("$cartLines", List.of()));
+
+    /**
+     * Recalcula {@code totalItems} y {@code total} a partir de las líneas.
+     */
+    private static final Document RECALCULATE_TOTALS = new Document("$set", new Document()
+            .append("totalItems", new Document("$size", "$cartLines"))
+            .append("total", new Document("$sum", "$cartLines.totalPrice")));
+
+    /**
+     * Template de MongoDB.
+     */
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param mongoTemplate Template de MongoDB
+     */
+    @Autowired
+    public CartLineRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<ObjectId> findCartIdsWithDuplicateLines() {
+        Query duplicated = duplicated();
+        duplicated.fields().include("_id");
+        return mongoTemplate.find(duplicated, Document.class, mongoTemplate.getCollectionName(Cart.class)).stream()
+                .map(cart -> cart.getObjectId("_id"))
+                .toList();
+    }
+
+    @Override
+    public long compactDuplicateLines() {
+        Document mergeLines = new Document("$set", new Document("cartLines", new Document("$map",
+                new Document("input", new Document("$setUnion", List.of("$cartLines.productId", List.of())))
+                        .append("as", "productId")
+                        .append("in", new Document("$let", new Document()
+                                .append("vars", new Document("lines", new Document("$filter",
+                                        new Document("input", "$cartLines")
+                                                .append("as", "line")
+                                                .append("cond", new Document("$eq",
+                                                        List.of("$$line.productId", "$$productId"))))))
+                                .append("in", new Document("$mergeObjects", List.of(
+                                        new Document("$arrayElemAt", List.of("$$lines", 0)),
+                                        new Document()
+                                                .append("quantity", new Document("$sum", "$$lines.quantity"))
+                                                .append("totalPrice",
+                                                        new Document("$sum", "$$lines.totalPrice"))))))))));
+        AggregationUpdate update = AggregationUpdate.from(List.of(stage(mergeLines), stage(RECALCULATE_TOTALS)));
+        return mongoTemplate.updateMulti(duplicated(), update, Cart.class).getModifiedCount();
+    }
+
+    /**
+     * Carritos sin comprar con menos productos distintos que líneas.
+     */
+    private static Query duplicated() {
+        return new BasicQuery(new Document("purchased", false)
+                .append("$expr", new Document("$ne", List.of(
+                        new Document("$size", LINES),
+                        new Document("$size", new Document("$setUnion", List.of(
+                                new Document("$ifNull", List.of("$cartLines.productId", List.of())),
+                                List.of())))))));
+    }
+
+    private static AggregationOperation stage(Document document) {
+        return context -> document;
+    }
+}
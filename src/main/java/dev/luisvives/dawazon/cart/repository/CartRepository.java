@@ -1,7 +1,6 @@
 package dev.luisvives.dawazon.cart.repository;
 
 import dev.luisvives.dawazon.cart.models.Cart;
-import dev.luisvives.dawazon.cart.models.CartLine;
 import dev.luisvives.dawazon.cart.models.Status;
 import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
@@ -17,7 +16,7 @@ import java.util.Optional;
  * Repositorio para operaciones con carritos en MongoDB.
  */
 @Repository
-public interface CartRepository extends MongoRepository<Cart, ObjectId> {
+public interface CartRepository extends MongoRepository<Cart, ObjectId>, CartLineRepository {
     /**
      * Actualiza el estado de una línea específica del carrito.
      *
@@ -39,28 +38,6 @@ public interface CartRepository extends MongoRepository<Cart, ObjectId> {
      */
     Page<Cart> findByUserId(Long id, Pageable pageable);
 
-    /**
-     * Añade una nueva línea al carrito.
-     *
-     * @param cartId  ID del carrito
-     * @param newLine Nueva línea a añadir
-     * @return Número de documentos modificados
-     */
-    @Query("{ '_id' : ?0 }")
-    @Update("{ '$push' : { 'cartLines' : ?1 } }")
-    long addCartLine(ObjectId cartId, CartLine newLine);
-
-    /**
-     * Elimina una línea del carrito.
-     *
-     * @param cartId       ID del carrito
-     * @param lineToRemove Línea a eliminar
-     * @return Número de documentos modificados
-     */
-    @Query("{ '_id' : ?0 }")
-    @Update("{ '$pull' : { 'cartLines' : ?1 } }")
-    long removeCartLine(ObjectId cartId, CartLine lineToRemove);
-
     /**
      * Busca un carrito por usuario y estado de compra.
      *
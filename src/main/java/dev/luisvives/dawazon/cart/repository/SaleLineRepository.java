@@ -0,0 +1,22 @@
+package dev.luisvives.dawazon.cart.repository;
+
+import dev.luisvives.dawazon.cart.models.SaleLine;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repositorio de la proyección de líneas de venta en MongoDB.
+ */
+@Repository
+public interface SaleLineRepository extends MongoRepository<SaleLine, String> {
+    /**
+     * Obtiene las líneas de venta de un vendedor.
+     *
+     * @param managerId ID del vendedor
+     * @param pageable  Parámetros de paginación
+     * @return Página de líneas de venta
+     */
+    Page<SaleLine> findAllByManagerId(Long managerId, Pageable pageable);
+}
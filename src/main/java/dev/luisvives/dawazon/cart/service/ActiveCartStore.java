@@ -0,0 +1,80 @@
+package dev.luisvives.dawazon.cart.service;
+
+import dev.luisvives.dawazon.cart.models.Cart;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Almacén de los carritos activos (sin comprar).
+ * <p>
+ * Mientras un carrito está en el almacén, es la versión vigente: las
+ * modificaciones se aplican aquí y el carrito queda marcado como pendiente de
+ * guardar. Los pendientes se vuelcan a MongoDB de forma periódica, de modo que
+ * varias modificaciones seguidas del mismo carrito acaban en una sola
+ * escritura. Al iniciar el pago el carrito sale del almacén y MongoDB vuelve a
+ * ser la referencia.
+ * </p>
+ */
+public interface ActiveCartStore {
+    /**
+     * Obtiene un carrito del almacén.
+     *
+     * @param cartId ID del carrito
+     * @return Carrito, o vacío si no está en el almacén
+     */
+    Optional<Cart> find(String cartId);
+
+    /**
+     * Obtiene el ID del carrito activo de un usuario.
+     *
+     * @param userId ID del usuario
+     * @return ID del carrito, o vacío si no está en el almacén
+     */
+    Optional<String> findCartId(Long userId);
+
+    /**
+     * Guarda en el almacén un carrito recién leído de MongoDB, salvo que ya
+     * estuviera (otra petición puede haberlo cargado y modificado entretanto).
+     *
+     * @param cart Carrito
+     * @return Versión del carrito que queda en el almacén
+     */
+    Cart putIfAbsent(Cart cart);
+
+    /**
+     * Modifica de forma atómica un carrito del almacén y lo marca como
+     * pendiente de guardar.
+     *
+     * @param cartId   ID del carrito
+     * @param mutation Modificación a aplicar
+     * @return Carrito modificado, o {@code null} si no está en el almacén
+     */
+    Cart update(String cartId, Consumer<Cart> mutation);
+
+    /**
+     * Saca del almacén hasta {@code max} carritos pendientes de guardar y los
+     * marca como guardados.
+     *
+     * @param max Máximo de carritos
+     * @return Última versión de cada carrito
+     */
+    List<Cart> drainDirty(int max);
+
+    /**
+     * Vuelve a marcar un carrito como pendiente, por ejemplo si no se ha podido
+     * guardar.
+     *
+     * @param cartId ID del carrito
+     */
+    void markDirty(String cartId);
+
+    /**
+     * Saca un carrito del almacén.
+     *
+     * @param cartId ID del carrito
+     * @return Última versión del carrito si tenía cambios sin guardar, o vacío
+     */
+    Optional<Cart> detach(String cartId);
+}
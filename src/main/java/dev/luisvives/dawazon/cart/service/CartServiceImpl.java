@@ -7,15 +7,16 @@ import dev.luisvives.dawazon.cart.exceptions.CartException;
 import dev.luisvives.dawazon.cart.mapper.CartMapper;
 import dev.luisvives.dawazon.cart.models.Cart;
 import dev.luisvives.dawazon.cart.models.CartLine;
+import dev.luisvives.dawazon.cart.models.SaleLine;
 import dev.luisvives.dawazon.cart.models.Status;
 import dev.luisvives.dawazon.cart.repository.CartRepository;
 import dev.luisvives.dawazon.common.email.OrderEmailService;
 import dev.luisvives.dawazon.products.exception.ProductException;
 import dev.luisvives.dawazon.products.models.Product;
 import dev.luisvives.dawazon.products.repository.ProductRepository;
+import dev.luisvives.dawazon.products.service.StockReservationService;
 import dev.luisvives.dawazon.stripe.service.StripeService;
 import dev.luisvives.dawazon.users.exceptions.UserException;
-import dev.luisvives.dawazon.users.models.User;
 import dev.luisvives.dawazon.users.repository.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
@@ -24,16 +25,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
-import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * Implementación del servicio de gestión de carritos.
@@ -41,10 +44,34 @@ import java.util.stream.Collectors;
  * Maneja la lógica completa del carrito: añadir/eliminar productos,
  * checkout con Stripe, gestión de stock y procesamiento de ventas.
  * </p>
+ * <p>
+ * Los carritos sin comprar se modifican en el {@link ActiveCartStore} y se
+ * vuelcan a MongoDB con {@link #flushActiveCarts()}. Al iniciar el pago, al
+ * comprar o al liberar un checkout el carrito sale del almacén y se guarda en
+ * el momento. Mientras el pago está en curso el carrito no vuelve al almacén y
+ * no admite modificaciones.
+ * </p>
  */
 @Service
 @Slf4j
 public class CartServiceImpl implements CartService {
+    /**
+     * Máximo de carritos expirados que se limpian en cada ejecución de
+     * {@link #cleanupExpiredCheckouts()}.
+     */
+    static final int CLEANUP_BATCH_SIZE = 500;
+
+    /**
+     * Campo del carrito con el token de la última limpieza que lo desmarcó, para
+     * saber qué carritos ha desmarcado cada {@code updateMulti}.
+     */
+    static final String RELEASE_CLAIM_FIELD = "checkoutReleaseClaim";
+
+    /**
+     * Máximo de carritos que se vuelcan a MongoDB en una sola escritura.
+     */
+    static final int FLUSH_BATCH_SIZE = 500;
+
     /**
      * Repositorio de productos.
      */
@@ -80,6 +107,36 @@ public class CartServiceImpl implements CartService {
      */
     private final OrderEmailService mailService;
 
+    /**
+     * Servicio de acumulados de ganancias.
+     */
+    private final EarningsLedgerService earningsLedger;
+
+    /**
+     * Proyección de líneas de venta.
+     */
+    private final SaleLineProjectionService saleLines;
+
+    /**
+     * Reservas temporales de stock.
+     */
+    private final StockReservationService reservations;
+
+    /**
+     * Cola de vencimientos de los checkouts en curso.
+     */
+    private final CheckoutExpiryQueue expiryQueue;
+
+    /**
+     * Almacén de carritos activos.
+     */
+    private final ActiveCartStore activeCarts;
+
+    /**
+     * Resumen del carrito en la sesión HTTP.
+     */
+    private final CartSummarySession cartSummary;
+
     /**
      * Constructor con inyección de dependencias.
      *
@@ -90,11 +147,19 @@ public class CartServiceImpl implements CartService {
      * @param mongoTemplate     Template de MongoDB
      * @param cartMapper        Mapper de carritos
      * @param emailService       Servicio de emails
+     * @param earningsLedger    Servicio de acumulados de ganancias
+     * @param saleLines         Proyección de líneas de venta
+     * @param reservations      Reservas temporales de stock
+     * @param expiryQueue       Cola de vencimientos de checkouts
+     * @param activeCarts       Almacén de carritos activos
+     * @param cartSummary       Resumen del carrito en la sesión HTTP
      */
     @Autowired
     public CartServiceImpl(ProductRepository productRepository, CartRepository cartRepository,
             UserRepository userRepository, StripeService stripeService, MongoTemplate mongoTemplate,
-            CartMapper cartMapper, OrderEmailService emailService) {
+            CartMapper cartMapper, OrderEmailService emailService, EarningsLedgerService earningsLedger,
+            SaleLineProjectionService saleLines, StockReservationService reservations,
+            CheckoutExpiryQueue expiryQueue, ActiveCartStore activeCarts, CartSummarySession cartSummary) {
         this.productRepository = productRepository;
         this.cartRepository = cartRepository;
         this.userRepository = userRepository;
@@ -102,12 +167,19 @@ public class CartServiceImpl implements CartService {
         this.mongoTemplate = mongoTemplate;
         this.mapper = cartMapper;
         this.mailService = emailService;
+        this.earningsLedger = earningsLedger;
+        this.saleLines = saleLines;
+        this.reservations = reservations;
+        this.expiryQueue = expiryQueue;
+        this.activeCarts = activeCarts;
+        this.cartSummary = cartSummary;
     }
 
     /**
      * Obtiene todas las ventas como líneas individuales para administración.
      * <p>
-     * Filtra por manager y permisos de admin. Pagina manualmente los resultados.
+     * Las líneas se leen de la proyección {@code sale_lines}, que ya contiene el
+     * nombre del producto y del vendedor, con una única consulta paginada.
      * </p>
      *
      * @param managerId ID del vendedor (opcional)
@@ -123,90 +195,36 @@ public class CartServiceImpl implements CartService {
         log.info("Buscando ventas - Manager: {},  isAdmin: {}",
                 managerId.orElse(null), isAdmin);
 
-        // Obtenemos los carritos comprados
-        Query query = new Query();
-        query.addCriteria(Criteria.where("purchased").is(true));
-
-        List<Cart> purchasedCarts = mongoTemplate.find(query, Cart.class);
-        log.info("Carritos comprados encontrados: {}", purchasedCarts.size());
-
-        // Convertimos cada CartLine a SaleLineDto, añadiendo datos extra para la vista
-        List<SaleLineDto> allSaleLines = new ArrayList<>();
-
-        for (Cart cart : purchasedCarts) {
-            for (CartLine line : cart.getCartLines()) {
-                try {
-                    // obtenemos los productos
-                    Product product = productRepository.findById(line.getProductId()).get();
-
-                    // Obtener información del manager
-                    User manager = userRepository.findById(product.getCreatorId()).get();
-
-                    // Crear el DTO
-                    SaleLineDto saleLineDto = mapper.cartlineToSaleLineDto(cart, product, line, manager);
-
-                    allSaleLines.add(saleLineDto);
-
-                } catch (Exception e) {
-                    log.error("Error procesando línea de venta: {}", e.getMessage());
-                }
-            }
-        }
-
-        // Filtramos según permisos y parámetros
-        List<SaleLineDto> filteredLines = allSaleLines.stream()
-                .filter(sale -> {
-                    // Si no es admin, solo ve sus propias ventas
-                    if (!isAdmin && managerId.isPresent()) {
-                        return sale.getManagerId().equals(managerId.get());
-                    }
-                    return true;
-                }).collect(Collectors.toList());
-
-        log.info("Ventas filtradas: {}", filteredLines.size());
-
-        // Ordenamos y paginamos manualmente
-        filteredLines.sort(Comparator.comparing(SaleLineDto::getCreatedAt).reversed());
-        // Obtenemos el desfase y lo usamos como primer elemento
-        int start = (int) pageable.getOffset();
-        // Obtenemos el número del último elemento de la página
-        int end = Math.min(start + pageable.getPageSize(), filteredLines.size());
-        // creamos la lista y verificamos que exista es decir que si falla el filtro, ya
-        // que en el índice
-        // inicial y en el índice final no hay líneas de pedido devuelve una lista vacía
-        List<SaleLineDto> paginatedLines = start < filteredLines.size()
-                ? filteredLines.subList(start, end)
-                : Collections.emptyList();
-
-        return new PageImpl<>(paginatedLines, pageable, filteredLines.size());
+        // Si no es admin, solo ve las líneas de sus propios productos
+        Optional<Long> managerFilter = isAdmin ? Optional.empty() : managerId;
+        return saleLines.findAll(managerFilter, pageable).map(mapper::saleLineToSaleLineDto);
     }
 
     /**
      * Calcula las ganancias totales de ventas.
+     * <p>
+     * Las ganancias se leen del acumulado mantenido por
+     * {@link EarningsLedgerService}, sin recorrer los carritos comprados.
+     * </p>
      *
      * @param managerId ID del vendedor (opcional)
      * @param isAdmin   Si el usuario es administrador
      * @return Total de ganancias
      */
     public Double calculateTotalEarnings(Optional<Long> managerId, boolean isAdmin) {
-        Query query = new Query();
-        query.addCriteria(Criteria.where("purchased").is(true));
-
-        List<Cart> purchasedCarts = mongoTemplate.find(query, Cart.class);
-
-        return purchasedCarts.stream()
-                .flatMap(cart -> cart.getCartLines().stream())
-                .filter(line -> {
-                    if (isAdmin && managerId.isEmpty())
-                        return true;
-                    if (managerId.isEmpty())
-                        return false;
+        if (managerId.isEmpty()) {
+            return isAdmin ? earningsLedger.getGlobalTotal() : 0.0;
+        }
+        return earningsLedger.getManagerTotal(managerId.get());
+    }
 
-                    Product product = productRepository.findById(line.getProductId()).orElse(null);
-                    return product != null && product.getCreatorId().equals(managerId.get());
-                })
-                .mapToDouble(CartLine::getTotalPrice)
-                .sum();
+    /**
+     * Recalcula los acumulados de ganancias a partir de los carritos comprados.
+     *
+     * @see EarningsLedgerService#rebuild()
+     */
+    public void rebuildEarnings() {
+        earningsLedger.rebuild();
     }
 
     /**
@@ -273,22 +291,8 @@ public class CartServiceImpl implements CartService {
                 .status(Status.EN_CARRITO)
                 .totalPrice(1 * product.getPrice())
                 .build();
-        cartRepository.addCartLine(id, line);
-
-        // Recuperar carrito y recalcular totales
-        Cart cart = cartRepository.findById(id).orElseThrow(() -> {
-            log.warn("Cart no encontrado con id: " + id);
-            return new CartException.NotFoundException("Cart no encontrado con id: " + id);
-        });
-
-        // Recalcular totalItems y total
-        cart.setTotalItems(cart.getCartLines().size());
-        cart.setTotal(cart.getCartLines().stream()
-                .mapToDouble(CartLine::getTotalPrice)
-                .sum());
-
-        // Guardar el carrito con los totales actualizados
-        return cartRepository.save(cart);
+        // Añade la línea (o suma a la existente) y actualiza los totales
+        return updateActiveCart(id, cart -> cart.addLine(line));
     }
 
     /**
@@ -303,29 +307,15 @@ public class CartServiceImpl implements CartService {
      * @throws CartException.UnauthorizedException Si no tiene permisos.
      */
     public SaleLineDto getSaleLineByIds(String cartId, String productId, Long managerId, boolean isAdmin) {
-        ObjectId objectId = new ObjectId(cartId);
-        Cart cart = cartRepository.findById(objectId)
-                .orElseThrow(() -> new CartException.NotFoundException("Carrito no encontrado"));
-
-        CartLine line = cart.getCartLines().stream()
-                .filter(l -> l.getProductId().equals(productId))
-                .findFirst()
+        SaleLine line = saleLines.findById(cartId, productId)
                 .orElseThrow(() -> new CartException.NotFoundException("Línea de venta no encontrada"));
 
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ProductException.NotFoundException(productId));
-
         // Verificar permisos
-        if (!isAdmin && !product.getCreatorId().equals(managerId)) {
+        if (!isAdmin && !line.getManagerId().equals(managerId)) {
             throw new CartException.UnauthorizedException("No tienes permisos para ver esta venta");
         }
 
-        User manager = userRepository.findById(product.getCreatorId()).orElseThrow(() -> {
-            log.warn("User no encontrado con id: " + product.getCreatorId());
-            return new UserException.UserNotFoundException("User no encontrado con id: " + product.getCreatorId());
-        });
-
-        return mapper.cartlineToSaleLineDto(cart, product, line, manager);
+        return mapper.saleLineToSaleLineDto(line);
     }
 
     /**
@@ -340,35 +330,11 @@ public class CartServiceImpl implements CartService {
     @Transactional
     public Cart removeProduct(ObjectId id, String productId) {
         log.info("Eliminando producto del carrito, con ID: " + productId);
-        val cartLine = cartRepository.findById(id).orElseThrow(() -> {
-            log.warn("Cart no encontrado con id: " + id);
-            return new CartException.NotFoundException("Cart no encontrado con id: " + id);
-        }).getCartLines().stream().filter((it) -> it.getProductId().equals(productId)).findFirst().get();
-        val line = CartLine.builder()
-                .quantity(cartLine.getQuantity())
-                .productPrice(cartLine.getProductPrice())
-                .productId(productId)
-                .status(Status.EN_CARRITO)
-                .totalPrice(cartLine.getQuantity() * cartLine.getProductPrice())
-                .build();
-        cartRepository.removeCartLine(id, line);
-
-        // Recuperar carrito y recalcular totales
-        Cart cart = cartRepository.findById(id).orElseThrow(() -> {
-            log.warn("Cart no encontrado con id: " + id);
-            return new CartException.NotFoundException("Cart no encontrado con id: " + id);
-        });
-
-        // Recalcular totalItems y total
-        cart.setTotalItems(cart.getCartLines().size());
-        cart.setTotal(cart.getCartLines().stream()
-                .mapToDouble(CartLine::getTotalPrice)
-                .sum());
-
-        // Guardar el carrito con los totales actualizados
-        return cartRepository.save(cart);
+        // Quita la línea y recalcula los totales
+        return updateActiveCart(id, cart -> cart.removeLine(productId));
     }
 
+
     /**
      * Obtiene un carrito por su ID.
      *
@@ -378,6 +344,10 @@ public class CartServiceImpl implements CartService {
      */
     @Override
     public Cart getById(ObjectId id) {
+        Optional<Cart> active = activeCarts.find(id.toHexString());
+        if (active.isPresent()) {
+            return active.get();
+        }
         return cartRepository.findById(id).orElseThrow(() -> {
             log.warn("Cart no encontrado con id: " + id);
             return new CartException.NotFoundException("Cart no encontrado con id: " + id);
@@ -386,17 +356,33 @@ public class CartServiceImpl implements CartService {
 
     /**
      * Guarda un carrito como pedido completado y crea uno nuevo para el usuario.
+     * <p>
+     * La primera vez que se compra el carrito se confirma su reserva de stock y
+     * se descuentan las cantidades de la base de datos.
+     * </p>
      *
      * @param entity Carrito a guardar como pedido.
      * @return Carrito guardado con purchased=true.
      */
     @Override
+    @Transactional
     public Cart save(Cart entity) {
+        boolean alreadyPurchased = entity.isPurchased();
+        if (!alreadyPurchased) {
+            activeCarts.detach(entity.getId());
+            expiryQueue.cancel(entity.getId());
+            commitStock(entity);
+        }
         entity.getCartLines().forEach((it) -> it.setStatus(Status.PREPARADO));
         entity.setPurchased(true);
         entity.setCheckoutInProgress(false);
         entity.setCheckoutStartedAt(null);
         val savedCart = cartRepository.save(entity);
+        // Solo se registra la venta la primera vez que se compra el carrito
+        if (!alreadyPurchased) {
+            saleLines.project(savedCart);
+            earningsLedger.recordPurchase(savedCart);
+        }
         createNewCart(entity.getUserId());
         return savedCart;
     }
@@ -444,19 +430,15 @@ public class CartServiceImpl implements CartService {
      */
     @Override
     public Cart updateStock(CartStockRequestDto entity) {
-        val cart = cartRepository.findById(entity.getCartId()).orElseThrow(
-                () -> new CartException.NotFoundException("Cart no encontrado con id: " + entity.getCartId()));
-        cart.getCartLines().stream().filter((it) -> it.getProductId().equals(entity.getProductId())).findFirst().get()
-                .setQuantity(entity.getQuantity());
-        cartRepository.save(cart);
-        return cart;
+        return updateActiveCart(entity.getCartId(),
+                cart -> cart.updateLineQuantity(entity.getProductId(), entity.getQuantity()));
     }
 
     /**
      * Actualiza la cantidad de un producto en el carrito con validaciones.
      * <p>
-     * Valida que la cantidad sea al menos 1 y que haya stock suficiente.
-     * Recalcula los totales del carrito automáticamente.
+     * Valida que la cantidad sea al menos 1 y que haya stock disponible
+     * suficiente según {@link StockReservationService}. Recalcula los totales del carrito automáticamente.
      * </p>
      *
      * @param entity DTO con datos de actualización de stock.
@@ -467,42 +449,154 @@ public class CartServiceImpl implements CartService {
      */
     @Transactional
     public Cart updateStockWithValidation(CartStockRequestDto entity) {
-        // Buscamos el carrito
-        Cart cart = cartRepository.findById(entity.getCartId())
-                .orElseThrow(() -> new CartException.NotFoundException(
-                        "Cart no encontrado con id: " + entity.getCartId()));
-
         // Validamos la cantidad mínima
         if (entity.getQuantity() < 1) {
             throw new IllegalArgumentException("La cantidad mínima es 1");
         }
 
-        // Buscamos el producto para verificar stock
-        Product product = productRepository.findById(entity.getProductId())
-                .orElseThrow(() -> new ProductException.NotFoundException(entity.getProductId()));
-
-        // Verificamos el stock disponible
-        if (product.getStock() < entity.getQuantity()) {
+        // Verificamos el stock disponible (descontando las reservas activas)
+        Integer available = reservations.getAvailableStock(List.of(entity.getProductId()))
+                .get(entity.getProductId());
+        if (available == null) {
+            throw new ProductException.NotFoundException(entity.getProductId());
+        }
+        if (available < entity.getQuantity()) {
             throw new CartException.InsufficientStockException(
-                    "Stock insuficiente. Solo hay " + product.getStock() + " unidades disponibles.");
+                    "Stock insuficiente. Solo hay " + available + " unidades disponibles.");
         }
 
-        // Buscamos y actualizamos la línea del carrito
-        cart.getCartLines().stream()
-                .filter(line -> line.getProductId().equals(entity.getProductId()))
-                .findFirst()
-                .ifPresent(line -> {
-                    line.setQuantity(entity.getQuantity());
-                });
+        // Actualizamos la línea y los totales
+        return updateActiveCart(entity.getCartId(),
+                cart -> cart.updateLineQuantity(entity.getProductId(), entity.getQuantity()));
+    }
 
-        // Recalculamos los totales del carrito
-        cart.setTotalItems(cart.getCartLines().size());
-        cart.setTotal(cart.getCartLines().stream()
-                .mapToDouble(CartLine::getTotalPrice)
-                .sum());
+    /**
+     * Modifica un carrito sin comprar en el almacén de carritos activos,
+     * cargándolo antes de MongoDB si no estaba, y actualiza el resumen de la
+     * sesión. Un carrito con el pago en curso no se carga en el almacén ni se
+     * puede modificar.
+     *
+     * @param id       ID del carrito
+     * @param mutation Modificación a aplicar
+     * @return Carrito modificado
+     * @throws CartException.NotFoundException           Si el carrito no existe o ya está comprado.
+     * @throws CartException.CheckoutInProgressException Si el carrito tiene el pago en curso.
+     */
+    private Cart updateActiveCart(ObjectId id, Consumer<Cart> mutation) {
+        Consumer<Cart> touched = ((Consumer<Cart>) CartServiceImpl::requireNoCheckout)
+                .andThen(mutation)
+                .andThen(cart -> cart.setUpdatedAt(LocalDateTime.now()));
+        Cart cart = activeCarts.update(id.toHexString(), touched);
+        if (cart == null) {
+            Cart stored = cartRepository.findById(id)
+                    .filter(it -> !it.isPurchased())
+                    .orElseThrow(() -> {
+                        log.warn("Cart no encontrado con id: " + id);
+                        return new CartException.NotFoundException("Cart no encontrado con id: " + id);
+                    });
+            requireNoCheckout(stored);
+            activeCarts.putIfAbsent(stored);
+            cart = activeCarts.update(id.toHexString(), touched);
+        }
+        if (cart == null) {
+            throw new CartException.NotFoundException("Cart no encontrado con id: " + id);
+        }
+        cartSummary.refresh(cart);
+        return cart;
+    }
 
-        // Guardamos el carrito
-        return cartRepository.save(cart);
+    /**
+     * Comprueba que un carrito no tiene el pago en curso.
+     *
+     * @param cart Carrito
+     * @throws CartException.CheckoutInProgressException Si lo tiene.
+     */
+    private static void requireNoCheckout(Cart cart) {
+        if (cart.isCheckoutInProgress()) {
+            log.warn("Modificación rechazada del carrito {} con el pago en curso", cart.getId());
+            throw new CartException.CheckoutInProgressException(cart.getId());
+        }
+    }
+
+    /**
+     * Vuelca a MongoDB los carritos activos con cambios pendientes.
+     * <p>
+     * Cada carrito se escribe una sola vez con su última versión, aunque se
+     * haya modificado varias veces desde el volcado anterior, y los de cada
+     * lote van en una única escritura. Solo se tocan las líneas y los totales
+     * de carritos que sigan sin comprar. Si la escritura falla, los carritos
+     * vuelven a quedar pendientes.
+     * </p>
+     *
+     * @return Número de carritos volcados
+     */
+    public int flushActiveCarts() {
+        int flushed = 0;
+        List<Cart> dirty;
+        while (!(dirty = activeCarts.drainDirty(FLUSH_BATCH_SIZE)).isEmpty()) {
+            try {
+                persistLines(dirty);
+            } catch (RuntimeException e) {
+                log.error("Error volcando {} carritos activos: {}", dirty.size(), e.getMessage(), e);
+                dirty.forEach(cart -> activeCarts.markDirty(cart.getId()));
+                break;
+            }
+            flushed += dirty.size();
+        }
+        return flushed;
+    }
+
+    /**
+     * Saca un carrito del almacén de carritos activos y guarda en MongoDB los
+     * cambios que tuviera pendientes.
+     *
+     * @param cartId ID del carrito
+     */
+    private void detachActiveCart(String cartId) {
+        activeCarts.detach(cartId).ifPresent(cart -> persistLines(List.of(cart)));
+    }
+
+    /**
+     * Fusiona las líneas repetidas de los carritos sin comprar.
+     * <p>
+     * Primero vuelca los carritos activos, para que la compactación en MongoDB
+     * parta de su última versión. Después fusiona también las copias que sigan
+     * en el almacén, de modo que un volcado posterior no vuelva a escribir las
+     * líneas repetidas.
+     * </p>
+     *
+     * @return Número de carritos compactados en MongoDB
+     * @see CartRepository#compactDuplicateLines()
+     */
+    public long compactDuplicateLines() {
+        flushActiveCarts();
+        List<ObjectId> duplicated = cartRepository.findCartIdsWithDuplicateLines();
+        if (duplicated.isEmpty()) {
+            return 0;
+        }
+        long compacted = cartRepository.compactDuplicateLines();
+        duplicated.forEach(id -> activeCarts.update(id.toHexString(), Cart::mergeDuplicateLines));
+        return compacted;
+    }
+
+    /**
+     * Escribe las líneas y totales de varios carritos sin comprar en una única
+     * operación {@code bulkWrite}.
+     *
+     * @param carts Carritos
+     */
+    private void persistLines(List<Cart> carts) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Cart.class);
+        carts.forEach(cart -> bulk.updateOne(
+                new Query(Criteria.where("_id").is(new ObjectId(cart.getId()))
+                        .and("purchased").is(false)
+                        .and("checkoutInProgress").ne(true)),
+                new Update()
+                        .set("cartLines", cart.getCartLines())
+                        .set("totalItems", cart.getTotalItems())
+                        .set("total", cart.getTotal())
+                        .set("updatedAt", cart.getUpdatedAt())));
+        bulk.execute();
     }
 
     /**
@@ -519,11 +613,21 @@ public class CartServiceImpl implements CartService {
                 .client(user.getClient())
                 .cartLines(List.of())
                 .build();
-        return cartRepository.save(cart);
+        Cart created = activeCarts.putIfAbsent(cartRepository.save(cart));
+        cartSummary.refresh(created);
+        return created;
     }
 
     /**
      * Actualiza el estado de una línea de carrito.
+     * <p>
+     * La actualización devuelve el documento anterior, de modo que si la línea
+     * entra o sale del estado {@link Status#CANCELADO} se ajusta el acumulado de
+     * ganancias con el estado real que tenía. La línea de venta proyectada se
+     * actualiza con el mismo estado. Si un carrito antiguo tiene el producto
+     * repetido en varias líneas, cambian todas, igual que la línea de venta que
+     * las suma.
+     * </p>
      *
      * @param line DTO con datos de la línea a actualizar.
      * @return Carrito actualizado.
@@ -531,30 +635,55 @@ public class CartServiceImpl implements CartService {
      */
     @Transactional
     public Cart update(LineRequestDto line) {
-        cartRepository.updateCartLineStatus(line.getCartId(), line.getProductId(), line.getStatus());
-        return cartRepository.findById(line.getCartId()).orElseThrow(() -> {
+        Query query = Query.query(Criteria.where("_id").is(line.getCartId())
+                .and("cartLines.productId").is(line.getProductId()));
+        Update update = new Update().set("cartLines.$[line].status", line.getStatus())
+                .filterArray(Criteria.where("line.productId").is(line.getProductId()));
+        Cart cart = mongoTemplate.findAndModify(query, update, Cart.class);
+        if (cart == null) {
             log.warn("Cart no encontrado con id: " + line.getCartId());
-            return new CartException.NotFoundException("Cart no encontrado con id: " + line.getCartId());
-        });
+            throw new CartException.NotFoundException("Cart no encontrado con id: " + line.getCartId());
+        }
+
+        List<CartLine> lines = cart.getCartLines().stream()
+                .filter(it -> it.getProductId().equals(line.getProductId()))
+                .toList();
+        if (lines.isEmpty()) {
+            return cart;
+        }
+        Status previous = lines.get(0).getStatus();
+        lines.forEach(it -> it.setStatus(line.getStatus()));
+        if (!cart.isPurchased()) {
+            return cart;
+        }
+        boolean wasCanceled = previous == Status.CANCELADO;
+        boolean isCanceled = line.getStatus() == Status.CANCELADO;
+        double total = lines.stream().mapToDouble(CartLine::getTotalPrice).sum();
+        saleLines.updateStatus(cart.getId(), line.getProductId(), line.getStatus())
+                .filter(saleLine -> wasCanceled != isCanceled)
+                .ifPresent(saleLine -> earningsLedger.adjust(saleLine.getManagerId(), isCanceled ? -total : total));
+        return cart;
     }
 
     /**
      * Procesa el checkout del carrito.
      * <p>
-     * Marca el checkout como en progreso, descuenta el stock con reintentos
-     * en caso de conflictos de concurrencia, y crea la sesión de pago en Stripe.
+     * Reserva el stock de todas las líneas durante el tiempo de pago, marca el
+     * checkout como en progreso y crea la sesión de pago en Stripe. El stock no
+     * se descuenta de la base de datos hasta que se confirma la compra en
+     * {@link #save(Cart)}; si el pago se abandona la reserva simplemente caduca.
      * </p>
      *
      * @param id     ID del carrito.
      * @param entity Carrito a procesar.
      * @return URL de pago de Stripe.
-     * @throws ProductException.NotFoundException             Si un producto no existe
      * @throws CartException.ProductQuantityExceededException Si no hay stock suficiente
-     * @throws CartException.AttemptAmountExceededException   Si se superan los reintentos
      * @see Cart
      */
     @Transactional
     public String checkout(ObjectId id, Cart entity) {
+        // Desde aquí MongoDB vuelve a ser la referencia del carrito
+        detachActiveCart(entity.getId());
         entity.setCheckoutInProgress(true);
         entity.setCheckoutStartedAt(LocalDateTime.now());
         val user=userRepository.findById(entity.getUserId()).orElseThrow(()->{
@@ -564,67 +693,85 @@ public class CartServiceImpl implements CartService {
         });
         val cart=entity;
         cart.setClient(user.getClient());
-        cartRepository.save(entity);
-        // Procesamos el stock de cada línea
-        entity.getCartLines().forEach((it) -> {
-            int intentos = 0;
-            boolean success = false;
-
-            while (!success) {
-                try {
-                    Product product = productRepository.findById(it.getProductId())
-                            .orElseThrow(() -> {
-                                log.warn("Product no encontrado con id: " + it.getProductId());
-                                return new ProductException.NotFoundException(it.getProductId());
-                            });
-                    if (product.getStock() < it.getQuantity()) {
-                        log.warn("Producto stock negativo " + it.getQuantity());
-                        throw new CartException.ProductQuantityExceededException();
-                    }
-                    product.setStock(product.getStock() - it.getQuantity());
-                    productRepository.save(product);
-                    success = true;
-                } catch (ObjectOptimisticLockingFailureException e) {
-                    intentos++;
-                    if (intentos >= 3) {
-                        log.warn("demasiados intentos" + it.getProductId());
-                        throw new CartException.AttemptAmountExceededException();
-                    }
-                }
-            }
-        });
-        // Se crea la sesion de pago y se devuelve
-        String paymentUrl = stripeService.createCheckoutSession(entity);
-        return paymentUrl;
+        if (!reservations.reserve(entity.getId(), quantitiesByProduct(entity))) {
+            log.warn("Stock insuficiente para el carrito " + entity.getId());
+            throw new CartException.ProductQuantityExceededException();
+        }
+        try {
+            cartRepository.save(entity);
+            expiryQueue.schedule(entity.getId(), entity.getCheckoutStartedAt());
+            // Se crea la sesion de pago y se devuelve
+            return stripeService.createCheckoutSession(entity);
+        } catch (RuntimeException e) {
+            expiryQueue.cancel(entity.getId());
+            reservations.release(entity.getId());
+            throw e;
+        }
+    }
+
+    /**
+     * Confirma la reserva de stock de un carrito comprado y descuenta las
+     * cantidades de la base de datos en un único lote.
+     * <p>
+     * El pago ya está hecho, así que la venta sigue adelante aunque falte stock:
+     * porque la retención caducó durante el pago y otro carrito se quedó las
+     * unidades, o porque el producto se editó entretanto. En ese caso los
+     * productos afectados se guardan en {@link Cart#getStockShortages()} para
+     * compensar el pedido, y el stock conocido de esos productos se vuelve a
+     * leer de la base de datos.
+     * </p>
+     *
+     * @param cart Carrito comprado
+     */
+    private void commitStock(Cart cart) {
+        SortedMap<String, Integer> quantities = quantitiesByProduct(cart);
+        Set<String> shortages = new TreeSet<>(reservations.commit(cart.getId(), quantities));
+        shortages.addAll(productRepository.decrementStock(quantities));
+        if (shortages.isEmpty()) {
+            return;
+        }
+        log.error("Venta {} confirmada sin stock suficiente para {}, queda pendiente de compensar",
+                cart.getId(), shortages);
+        cart.setStockShortages(new ArrayList<>(shortages));
+        productRepository.findStockByIdIn(shortages)
+                .forEach(stock -> reservations.setStock(stock.getId(), stock.getStock()));
+    }
+
+    /**
+     * Agrupa las cantidades de un carrito por producto, en orden de ID.
+     *
+     * @param cart Carrito
+     * @return Cantidad por ID de producto
+     */
+    private SortedMap<String, Integer> quantitiesByProduct(Cart cart) {
+        SortedMap<String, Integer> quantities = new TreeMap<>();
+        cart.getCartLines().forEach(it -> quantities.merge(it.getProductId(), it.getQuantity(), Integer::sum));
+        return quantities;
     }
 
     /**
-     * Restaura el stock de productos de un carrito no comprado.
+     * Libera la reserva de stock de un carrito no comprado.
      * <p>
-     * Solo restaura si el carrito NO ha sido marcado como comprado.
+     * Solo libera si el carrito NO ha sido marcado como comprado. El stock de la
+     * base de datos no se toca, ya que no se descontó al iniciar el pago.
      * </p>
      *
      * @param cartId ID del carrito
      * @see Cart
      */
-    @Transactional
-    public void restoreStock(ObjectId cartId) {
+    public void releaseReservation(ObjectId cartId) {
+        detachActiveCart(cartId.toHexString());
         Cart cart = cartRepository.findById(cartId)
                 .orElseThrow(() -> new RuntimeException("Carrito no encontrado"));
 
-        // Solo se devuelve stock si no se ha marcado como comprado todavía
+        // Solo se libera la reserva si no se ha marcado como comprado todavía
         if (!cart.isPurchased()) {
-            cart.getCartLines().forEach(line -> {
-                productRepository.findById(line.getProductId()).ifPresent(product -> {
-                    // SUMAMOS en lugar de restar
-                    product.setStock(product.getStock() + line.getQuantity());
-                    productRepository.save(product);
-                });
-            });
+            expiryQueue.cancel(cart.getId());
+            reservations.release(cart.getId());
             cart.setCheckoutInProgress(false);
             cart.setCheckoutStartedAt(null);
             cartRepository.save(cart);
-            log.info("Stock restaurado para el carrito: " + cartId);
+            log.info("Reserva de stock liberada para el carrito: " + cartId);
         }
     }
 
@@ -638,12 +785,7 @@ public class CartServiceImpl implements CartService {
     @Override
     @Transactional
     public void deleteById(ObjectId id) {
-        var cartToEmpty = cartRepository.findById(id).orElseThrow(() -> {
-            log.warn("Carrito no encontrado con id: " + id);
-            return new CartException.NotFoundException("Carrito no encontrado con id: " + id);
-        });
-        cartToEmpty.setCartLines(List.of());
-        cartRepository.save(cartToEmpty);
+        updateActiveCart(id, cart -> cart.setOrderLines(List.of()));
     }
 
     /**
@@ -676,11 +818,26 @@ public class CartServiceImpl implements CartService {
      */
     @Override
     public Cart getCartByUserId(Long userId) {
-        return cartRepository.findByUserIdAndPurchased(userId, false)
-                .orElseThrow(() -> {
-                    log.warn("Carrito no encontrado para userId: " + userId);
-                    return new CartException.NotFoundException("Carrito no encontrado para userId: " + userId);
-                });
+        Cart cart = activeCarts.findCartId(userId).flatMap(activeCarts::find)
+                .orElseGet(() -> attachUnlessCheckingOut(cartRepository.findByUserIdAndPurchased(userId, false)
+                        .orElseThrow(() -> {
+                            log.warn("Carrito no encontrado para userId: " + userId);
+                            return new CartException.NotFoundException("Carrito no encontrado para userId: " + userId);
+                        })));
+        cartSummary.refresh(cart);
+        return cart;
+    }
+
+    /**
+     * Guarda en el almacén de carritos activos un carrito leído de MongoDB,
+     * salvo que tenga el pago en curso: ese carrito ya salió del almacén y
+     * MongoDB es la referencia hasta que se compre o se libere.
+     *
+     * @param cart Carrito leído de MongoDB
+     * @return Versión del carrito que hay que usar
+     */
+    private Cart attachUnlessCheckingOut(Cart cart) {
+        return cart.isCheckoutInProgress() ? cart : activeCarts.putIfAbsent(cart);
     }
 
     /**
@@ -704,10 +861,12 @@ public class CartServiceImpl implements CartService {
         Cart cart = cartRepository.findById(cartObjectId)
                 .orElseThrow(() -> new CartException.NotFoundException("Venta no encontrada"));
 
-        CartLine line = cart.getCartLines().stream()
+        List<CartLine> lines = cart.getCartLines().stream()
                 .filter(l -> l.getProductId().equals(productId))
-                .findFirst()
-                .orElseThrow(() -> new CartException.NotFoundException("Producto no encontrado en esta venta"));
+                .toList();
+        if (lines.isEmpty()) {
+            throw new CartException.NotFoundException("Producto no encontrado en esta venta");
+        }
 
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ProductException.NotFoundException(productId));
@@ -716,67 +875,136 @@ public class CartServiceImpl implements CartService {
             throw new CartException.UnauthorizedException("No tienes permisos para cancelar esta venta");
         }
 
-        if (line.getStatus() != Status.CANCELADO) {
-            line.setStatus(Status.CANCELADO);
+        // Un carrito antiguo puede tener el producto repetido en varias líneas
+        List<CartLine> active = lines.stream()
+                .filter(l -> l.getStatus() != Status.CANCELADO)
+                .toList();
+        if (!active.isEmpty()) {
+            int quantity = active.stream().mapToInt(CartLine::getQuantity).sum();
+            double total = active.stream().mapToDouble(CartLine::getTotalPrice).sum();
+            active.forEach(l -> l.setStatus(Status.CANCELADO));
 
-            product.setStock(product.getStock() + line.getQuantity());
-            productRepository.save(product);
+            // Con subcontadores el stock de la fila del producto se sobrescribe al consolidar
+            productRepository.incrementStock(productId, quantity);
+            productRepository.findStockByIdIn(List.of(productId))
+                    .forEach(stock -> reservations.setStock(productId, stock.getStock()));
 
             cartRepository.save(cart);
+            if (cart.isPurchased()) {
+                saleLines.updateStatus(ventaId, productId, Status.CANCELADO);
+                earningsLedger.adjust(product.getCreatorId(), -total);
+            }
             log.info("Venta cancelada: Cart {} Product {}", ventaId, productId);
         }
     }
 
     /**
-     * Limpia carritos con checkout expirado (más de 5 minutos).
-     * <p>
-     * Tarea programada que restaura el stock de carritos abandonados
-     * durante el proceso de pago.
-     * </p>
+     * Comprueba si el checkout de un carrito ha superado el tiempo de pago.
      *
-     * @return Número de carritos limpiados exitosamente.
+     * @param cart Carrito
+     * @return {@code true} si el checkout ha expirado
+     * @see Cart#isCheckoutExpired
      */
-    @Transactional
-    public int cleanupExpiredCheckouts() {
-        LocalDateTime expirationTime = LocalDateTime.now().minusMinutes(5);
+    public boolean isCheckoutExpired(Cart cart) {
+        return cart.isCheckoutExpired(expiryQueue.getExpiry());
+    }
 
-        Query query = new Query();
-        query.addCriteria(Criteria.where("checkoutInProgress").is(true)
+    /**
+     * Encola el vencimiento de todos los checkouts en curso guardados en
+     * MongoDB. Se usa al arrancar para reconstruir la cola; los ya vencidos
+     * salen de ella de inmediato.
+     *
+     * @return Número de checkouts encolados
+     */
+    public int schedulePendingCheckouts() {
+        Query query = new Query(Criteria.where("checkoutInProgress").is(true)
                 .and("purchased").is(false)
-                .and("checkoutStartedAt").lt(expirationTime));
+                .and("checkoutStartedAt").ne(null));
+        query.fields().include("_id", "checkoutStartedAt");
+        List<Cart> pending = mongoTemplate.find(query, Cart.class);
+        pending.forEach(cart -> expiryQueue.schedule(cart.getId(), cart.getCheckoutStartedAt()));
+        log.info("Encolados {} checkouts en curso", pending.size());
+        return pending.size();
+    }
 
-        List<Cart> expiredCarts = mongoTemplate.find(query, Cart.class);
+    /**
+     * Limpia los carritos con checkout expirado que no estén en la cola de
+     * vencimientos (por ejemplo, los iniciados en otra instancia).
+     * <p>
+     * Cada ejecución trata como mucho {@link #CLEANUP_BATCH_SIZE} carritos, los
+     * más antiguos primero. El resto queda para las siguientes ejecuciones.
+     * </p>
+     *
+     * @return Número de carritos limpiados.
+     */
+    public int cleanupExpiredCheckouts() {
+        Query query = new Query(expiredCheckouts())
+                .with(Sort.by("checkoutStartedAt"))
+                .limit(CLEANUP_BATCH_SIZE);
+        query.fields().include("_id");
+        List<String> cartIds = mongoTemplate.find(query, Cart.class).stream().map(Cart::getId).toList();
 
-        if (expiredCarts.isEmpty()) {
+        if (cartIds.isEmpty()) {
             log.debug("No hay carritos expirados para limpiar");
             return 0;
         }
+        return releaseExpiredCheckouts(cartIds);
+    }
 
-        log.info("Limpiando {} carritos expirados", expiredCarts.size());
-
-        int cleanedCount = 0;
+    /**
+     * Libera los checkouts expirados de varios carritos.
+     * <p>
+     * Los carritos se desmarcan con un único {@code updateMulti} que vuelve a
+     * comprobar que siguen sin comprar y con el checkout vencido, y que deja en
+     * {@link #RELEASE_CLAIM_FIELD} un token propio de esta llamada. Después se
+     * leen, por ID, los carritos que tienen el token: son los que ha desmarcado
+     * esta llamada y solo de ellos se liberan las reservas de stock, en un
+     * único lote. Un carrito pagado o que ha reiniciado el checkout entre la
+     * lectura y la actualización conserva su reserva.
+     * </p>
+     *
+     * @param cartIds IDs de los carritos
+     * @return Número de carritos limpiados.
+     */
+    public int releaseExpiredCheckouts(Collection<String> cartIds) {
+        log.info("Limpiando {} carritos expirados", cartIds.size());
+        List<ObjectId> ids = cartIds.stream().map(ObjectId::new).toList();
+        String claim = new ObjectId().toHexString();
+        Update clearCheckout = new Update()
+                .set("checkoutInProgress", false)
+                .unset("checkoutStartedAt")
+                .set(RELEASE_CLAIM_FIELD, claim);
+        List<String> cleared = List.of();
+        try {
+            mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ids).andOperator(expiredCheckouts())),
+                    clearCheckout, Cart.class);
+            Query claimed = new Query(Criteria.where("_id").in(ids).and(RELEASE_CLAIM_FIELD).is(claim));
+            claimed.fields().include("_id");
+            cleared = mongoTemplate.find(claimed, Cart.class).stream().map(Cart::getId).toList();
+        } catch (Exception e) {
+            log.error("Error limpiando {} carritos expirados: {}", cartIds.size(), e.getMessage(), e);
+        }
 
-        for (Cart cart : expiredCarts) {
+        if (!cleared.isEmpty()) {
             try {
-                log.warn("Carrito {} expirado ({} minutos). Restaurando stock...",
-                        cart.getId(), cart.getMinutesSinceCheckoutStarted());
-
-                // Restaurar stock
-                restoreStock(new ObjectId(cart.getId()));
-
-                cleanedCount++;
-
-                log.info("Carrito {} limpiado exitosamente", cart.getId());
-
+                cleared.forEach(this::detachActiveCart);
+                reservations.releaseAll(cleared);
             } catch (Exception e) {
-                log.error("Error restaurando stock del carrito {}: {}",
-                        cart.getId(), e.getMessage(), e);
+                log.error("Error liberando las reservas de {} carritos expirados: {}",
+                        cleared.size(), e.getMessage(), e);
             }
         }
+        log.info("Limpieza completada: {}/{} carritos procesados", cleared.size(), cartIds.size());
+        return cleared.size();
+    }
 
-        log.info("Limpieza completada:  {}/{} carritos procesados",
-                cleanedCount, expiredCarts.size());
-
-        return cleanedCount;
+    /**
+     * Criterio de carrito sin comprar con el checkout vencido. Incluye los que
+     * vencen justo ahora, que es cuando los entrega la cola de vencimientos.
+     */
+    private Criteria expiredCheckouts() {
+        return Criteria.where("checkoutInProgress").is(true)
+                .and("purchased").is(false)
+                .and("checkoutStartedAt").lte(LocalDateTime.now().minus(expiryQueue.getExpiry()));
     }
 }
\ No newline at end of file
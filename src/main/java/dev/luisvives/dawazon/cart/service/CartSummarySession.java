@@ -0,0 +1,54 @@
+package dev.luisvives.dawazon.cart.service;
+
+import dev.luisvives.dawazon.cart.dto.CartSummary;
+import dev.luisvives.dawazon.cart.models.Cart;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Optional;
+
+/**
+ * Acceso al {@link CartSummary} de la sesión HTTP de la petición en curso.
+ * <p>
+ * Fuera de una petición (tareas programadas, hilos propios) no hace nada.
+ * </p>
+ */
+@Component
+public class CartSummarySession {
+    /**
+     * Atributo de sesión con el resumen.
+     */
+    static final String ATTRIBUTE = "cartSummary";
+
+    /**
+     * Obtiene el resumen de la sesión.
+     *
+     * @return Resumen, o vacío si no hay petición o aún no se ha calculado
+     */
+    public Optional<CartSummary> get() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable((CartSummary) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_SESSION));
+    }
+
+    /**
+     * Actualiza el resumen de la sesión con un carrito, salvo que la sesión ya
+     * tenga uno más reciente del mismo carrito.
+     *
+     * @param cart Carrito
+     */
+    public void refresh(Cart cart) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null || cart.isPurchased()) {
+            return;
+        }
+        CartSummary summary = CartSummary.of(cart);
+        CartSummary current = (CartSummary) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_SESSION);
+        if (summary.supersedes(current)) {
+            attributes.setAttribute(ATTRIBUTE, summary, RequestAttributes.SCOPE_SESSION);
+        }
+    }
+}
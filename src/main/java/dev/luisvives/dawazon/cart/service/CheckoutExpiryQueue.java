@@ -0,0 +1,138 @@
+package dev.luisvives.dawazon.cart.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cola de vencimientos de los checkouts en curso.
+ * <p>
+ * Cada checkout iniciado se encola con su fecha límite y se desencola justo al
+ * vencer, sin consultar la base de datos mientras no haya nada pendiente.
+ * Cancelar un vencimiento no lo saca de la cola: se olvida su fecha límite y
+ * la entrada se descarta al vencer.
+ * </p>
+ */
+@Component
+public class CheckoutExpiryQueue {
+    /**
+     * Tiempo que tiene un usuario para completar el pago.
+     */
+    @Getter
+    private final Duration expiry;
+
+    /**
+     * Vencimientos pendientes, ordenados por fecha límite.
+     */
+    private final DelayQueue<Deadline> queue = new DelayQueue<>();
+
+    /**
+     * Fecha límite vigente (epoch ms) por ID de carrito.
+     */
+    private final Map<String, Long> deadlines = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param expiry Tiempo que tiene un usuario para completar el pago
+     */
+    @Autowired
+    public CheckoutExpiryQueue(@Value("${checkout.expiry.timeout:5m}") Duration expiry) {
+        this.expiry = expiry;
+    }
+
+    /**
+     * Programa el vencimiento del checkout de un carrito. Si ya tenía uno, se
+     * sustituye.
+     *
+     * @param cartId    ID del carrito
+     * @param startedAt Inicio del checkout
+     */
+    public void schedule(String cartId, LocalDateTime startedAt) {
+        long at = startedAt.atZone(ZoneId.systemDefault()).toInstant().plus(expiry).toEpochMilli();
+        deadlines.put(cartId, at);
+        queue.put(new Deadline(cartId, at));
+    }
+
+    /**
+     * Cancela el vencimiento del checkout de un carrito.
+     *
+     * @param cartId ID del carrito
+     */
+    public void cancel(String cartId) {
+        deadlines.remove(cartId);
+    }
+
+    /**
+     * Espera a que venza al menos un checkout y devuelve los vencidos.
+     * <p>
+     * Puede devolver una lista vacía si todo lo vencido estaba cancelado.
+     * </p>
+     *
+     * @param max Máximo de carritos a devolver
+     * @return IDs de los carritos vencidos
+     * @throws InterruptedException Si se interrumpe la espera
+     */
+    public List<String> awaitExpired(int max) throws InterruptedException {
+        List<Deadline> due = new ArrayList<>();
+        due.add(queue.take());
+        queue.drainTo(due, max - 1);
+
+        List<String> expired = new ArrayList<>(due.size());
+        for (Deadline deadline : due) {
+            if (deadlines.remove(deadline.getCartId(), deadline.getAt())) {
+                expired.add(deadline.getCartId());
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Número de checkouts pendientes de vencer.
+     *
+     * @return Checkouts pendientes
+     */
+    public int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * Entrada de la cola: un carrito y su fecha límite.
+     */
+    @Getter
+    @AllArgsConstructor
+    static class Deadline implements Delayed {
+        /**
+         * ID del carrito.
+         */
+        private final String cartId;
+
+        /**
+         * Fecha límite en epoch ms.
+         */
+        private final long at;
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(at - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+}
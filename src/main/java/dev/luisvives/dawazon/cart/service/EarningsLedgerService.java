@@ -0,0 +1,43 @@
+package dev.luisvives.dawazon.cart.service;
+
+import dev.luisvives.dawazon.cart.models.Cart;
+
+/**
+ * Servicio que mantiene los acumulados de ganancias globales y por vendedor.
+ */
+public interface EarningsLedgerService {
+    /**
+     * Obtiene las ganancias acumuladas de toda la tienda.
+     *
+     * @return Total de ganancias
+     */
+    double getGlobalTotal();
+
+    /**
+     * Obtiene las ganancias acumuladas de un vendedor.
+     *
+     * @param managerId ID del vendedor
+     * @return Total de ganancias del vendedor
+     */
+    double getManagerTotal(Long managerId);
+
+    /**
+     * Suma al acumulado las líneas no canceladas de un carrito recién comprado.
+     *
+     * @param cart Carrito comprado
+     */
+    void recordPurchase(Cart cart);
+
+    /**
+     * Ajusta el acumulado global y el de un vendedor.
+     *
+     * @param managerId ID del vendedor
+     * @param amount    Importe a sumar (negativo para restar)
+     */
+    void adjust(Long managerId, double amount);
+
+    /**
+     * Recalcula todos los acumulados a partir de los carritos comprados.
+     */
+    void rebuild();
+}
@@ -0,0 +1,295 @@
+package dev.luisvives.dawazon.cart.service;
+
+import dev.luisvives.dawazon.cart.models.Cart;
+import dev.luisvives.dawazon.cart.models.CartLine;
+import dev.luisvives.dawazon.cart.models.EarningsLedger;
+import dev.luisvives.dawazon.cart.models.Status;
+import dev.luisvives.dawazon.products.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Implementación del servicio de acumulados de ganancias.
+ * <p>
+ * Los acumulados se guardan en la colección {@code earnings_ledger} y se
+ * actualizan con {@code $inc} en una única operación bulk, de modo que leer las
+ * ganancias no requiere recorrer los carritos comprados.
+ * </p>
+ */
+@Service
+@Slf4j
+public class EarningsLedgerServiceImpl implements EarningsLedgerService {
+    /**
+     * Veces que se repite el recálculo si un acumulado cambia mientras tanto.
+     */
+    private static final int REBUILD_ATTEMPTS = 3;
+
+    /**
+     * Template de MongoDB.
+     */
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Repositorio de productos.
+     */
+    private final ProductRepository productRepository;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param mongoTemplate     Template de MongoDB
+     * @param productRepository Repositorio de productos
+     */
+    @Autowired
+    public EarningsLedgerServiceImpl(MongoTemplate mongoTemplate, ProductRepository productRepository) {
+        this.mongoTemplate = mongoTemplate;
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * Obtiene las ganancias acumuladas de toda la tienda.
+     *
+     * @return Total de ganancias, 0 si aún no hay acumulado
+     */
+    @Override
+    public double getGlobalTotal() {
+        return totalOf(EarningsLedger.GLOBAL_ID);
+    }
+
+    /**
+     * Obtiene las ganancias acumuladas de un vendedor.
+     *
+     * @param managerId ID del vendedor
+     * @return Total de ganancias del vendedor, 0 si no tiene ventas
+     */
+    @Override
+    public double getManagerTotal(Long managerId) {
+        return totalOf(EarningsLedger.managerKey(managerId));
+    }
+
+    /**
+     * Suma al acumulado las líneas no canceladas de un carrito recién comprado.
+     * <p>
+     * Los vendedores de todas las líneas se resuelven en una sola consulta.
+     * </p>
+     *
+     * @param cart Carrito comprado
+     */
+    @Override
+    public void recordPurchase(Cart cart) {
+        Map<String, Double> byProduct = cart.getCartLines().stream()
+                .filter(line -> line.getStatus() != Status.CANCELADO)
+                .collect(Collectors.groupingBy(CartLine::getProductId,
+                        Collectors.summingDouble(CartLine::getTotalPrice)));
+        if (byProduct.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Double> byManager = new HashMap<>();
+        productRepository.findCreatorsByIdIn(byProduct.keySet()).forEach(creator ->
+                byManager.merge(creator.getCreatorId(), byProduct.get(creator.getId()), Double::sum));
+        double total = byProduct.values().stream().mapToDouble(Double::doubleValue).sum();
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EarningsLedger.class);
+        bulk.upsert(byKey(EarningsLedger.GLOBAL_ID), increment(null, total));
+        byManager.forEach((managerId, amount) ->
+                bulk.upsert(byKey(EarningsLedger.managerKey(managerId)), increment(managerId, amount)));
+        bulk.execute();
+        log.info("Ganancias registradas para el carrito {}: {}", cart.getId(), total);
+    }
+
+    /**
+     * Ajusta el acumulado global y el de un vendedor.
+     *
+     * @param managerId ID del vendedor
+     * @param amount    Importe a sumar (negativo para restar)
+     */
+    @Override
+    public void adjust(Long managerId, double amount) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EarningsLedger.class);
+        bulk.upsert(byKey(EarningsLedger.GLOBAL_ID), increment(null, amount));
+        bulk.upsert(byKey(EarningsLedger.managerKey(managerId)), increment(managerId, amount));
+        bulk.execute();
+    }
+
+    /**
+     * Recalcula todos los acumulados a partir de los carritos comprados.
+     * <p>
+     * Agrupa en MongoDB las líneas no canceladas por producto y resuelve los
+     * vendedores en una sola consulta. Cada acumulado se sobrescribe con
+     * {@code $set} solo si su versión no ha cambiado desde antes de leer los
+     * carritos: si entretanto un {@code $inc} lo ha tocado, ese acumulado no se
+     * pisa y el recálculo se repite. Después se borran los vendedores que ya no
+     * tienen ventas, con la misma condición. La colección nunca se queda vacía.
+     * </p>
+     */
+    @Override
+    public void rebuild() {
+        log.info("Recalculando acumulados de ganancias");
+        for (int attempt = 1; attempt <= REBUILD_ATTEMPTS; attempt++) {
+            Map<String, Long> versions = new HashMap<>();
+            Query snapshot = new Query();
+            snapshot.fields().include("version");
+            mongoTemplate.find(snapshot, EarningsLedger.class)
+                    .forEach(ledger -> versions.put(ledger.getId(), ledger.getVersion()));
+
+            List<EarningsLedger> entries = computeEntries();
+            int conflicts = replace(entries, versions);
+            if (conflicts == 0) {
+                log.info("Acumulados de ganancias recalculados: {} vendedores", entries.size() - 1);
+                return;
+            }
+            log.info("{} acumulados cambiaron durante el recálculo (intento {})", conflicts, attempt);
+        }
+        log.warn("No se pudo recalcular el acumulado de ganancias sin conflictos tras {} intentos",
+                REBUILD_ATTEMPTS);
+    }
+
+    /**
+     * Calcula los acumulados a partir de los carritos comprados. El global va
+     * siempre el primero.
+     */
+    private List<EarningsLedger> computeEntries() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("purchased").is(true)),
+                Aggregation.unwind("cartLines"),
+                Aggregation.match(Criteria.where("cartLines.status").ne(Status.CANCELADO.name())),
+                Aggregation.group("cartLines.productId").sum("cartLines.totalPrice").as("total"));
+        Map<String, Double> byProduct = new HashMap<>();
+        mongoTemplate.aggregate(aggregation, Cart.class, Document.class).getMappedResults()
+                .forEach(doc -> byProduct.put(doc.getString("_id"), ((Number) doc.get("total")).doubleValue()));
+
+        Map<Long, Double> byManager = new HashMap<>();
+        if (!byProduct.isEmpty()) {
+            productRepository.findCreatorsByIdIn(byProduct.keySet()).forEach(creator ->
+                    byManager.merge(creator.getCreatorId(), byProduct.get(creator.getId()), Double::sum));
+        }
+
+        List<EarningsLedger> entries = new ArrayList<>();
+        entries.add(EarningsLedger.builder()
+                .id(EarningsLedger.GLOBAL_ID)
+                .total(byProduct.values().stream().mapToDouble(Double::doubleValue).sum())
+                .build());
+        byManager.forEach((managerId, amount) -> entries.add(EarningsLedger.builder()
+                .id(EarningsLedger.managerKey(managerId))
+                .managerId(managerId)
+                .total(amount)
+                .build()));
+        return entries;
+    }
+
+    /**
+     * Sustituye los acumulados por los recalculados y borra los que sobran,
+     * siempre que su versión siga siendo la de {@code versions}.
+     *
+     * @param entries  Acumulados recalculados
+     * @param versions Versión de cada acumulado existente antes de recalcular
+     * @return Número de acumulados que no se han tocado porque cambiaron
+     */
+    private int replace(List<EarningsLedger> entries, Map<String, Long> versions) {
+        LocalDateTime now = LocalDateTime.now();
+        int conflicts = 0;
+
+        BulkOperations updates = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EarningsLedger.class);
+        List<EarningsLedger> inserts = new ArrayList<>();
+        int expected = 0;
+        for (EarningsLedger entry : entries) {
+            if (!versions.containsKey(entry.getId())) {
+                entry.setUpdatedAt(now);
+                entry.setVersion(1L);
+                inserts.add(entry);
+                continue;
+            }
+            updates.updateOne(byVersion(entry.getId(), versions.get(entry.getId())), new Update()
+                    .set("total", entry.getTotal())
+                    .set("managerId", entry.getManagerId())
+                    .set("updatedAt", now)
+                    .inc("version", 1));
+            expected++;
+        }
+        if (expected > 0) {
+            conflicts += expected - updates.execute().getMatchedCount();
+        }
+
+        if (!inserts.isEmpty()) {
+            // Un $inc concurrente puede haber creado el acumulado después de leer las versiones
+            BulkOperations insertions = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                    EarningsLedger.class);
+            insertions.insert(inserts);
+            try {
+                insertions.execute();
+            } catch (BulkOperationException e) {
+                conflicts += e.getErrors().size();
+            }
+        }
+
+        Set<String> current = entries.stream().map(EarningsLedger::getId).collect(Collectors.toSet());
+        List<Query> stale = versions.entrySet().stream()
+                .filter(version -> !current.contains(version.getKey()))
+                .map(version -> byVersion(version.getKey(), version.getValue()))
+                .toList();
+        if (!stale.isEmpty()) {
+            BulkOperations removals = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EarningsLedger.class);
+            stale.forEach(removals::remove);
+            conflicts += stale.size() - removals.execute().getDeletedCount();
+        }
+        return conflicts;
+    }
+
+    /**
+     * Construye el acumulado al arrancar si todavía no existe.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        try {
+            if (!mongoTemplate.exists(byKey(EarningsLedger.GLOBAL_ID), EarningsLedger.class)) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            log.warn("No se pudo inicializar el acumulado de ganancias: {}", e.getMessage());
+        }
+    }
+
+    private double totalOf(String key) {
+        EarningsLedger ledger = mongoTemplate.findById(key, EarningsLedger.class);
+        return ledger == null || ledger.getTotal() == null ? 0.0 : ledger.getTotal();
+    }
+
+    private Query byKey(String key) {
+        return Query.query(Criteria.where("_id").is(key));
+    }
+
+    private Query byVersion(String key, Long version) {
+        return Query.query(Criteria.where("_id").is(key).and("version").is(version));
+    }
+
+    private Update increment(Long managerId, double amount) {
+        Update update = new Update()
+                .inc("total", amount)
+                .inc("version", 1)
+                .set("updatedAt", LocalDateTime.now());
+        if (managerId != null) {
+            update.setOnInsert("managerId", managerId);
+        }
+        return update;
+    }
+}
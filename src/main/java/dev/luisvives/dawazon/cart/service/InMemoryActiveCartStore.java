@@ -0,0 +1,128 @@
+package dev.luisvives.dawazon.cart.service;
+
+import dev.luisvives.dawazon.cart.models.Cart;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Implementación en memoria de {@link ActiveCartStore}.
+ * <p>
+ * Pensada para tests y desarrollo con una única instancia; se activa con
+ * {@code cart.store=memory}. Los carritos se guardan como documentos BSON para
+ * que quien los lee no pueda modificar la copia del almacén. Todas las
+ * operaciones se sincronizan sobre la propia instancia.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(name = "cart.store", havingValue = "memory")
+public class InMemoryActiveCartStore implements ActiveCartStore {
+    /**
+     * Conversor de MongoDB, para pasar de carrito a documento y viceversa.
+     */
+    private final MongoConverter converter;
+
+    /**
+     * Carritos por ID.
+     */
+    private final Map<String, Document> carts = new HashMap<>();
+
+    /**
+     * ID del carrito activo por ID de usuario.
+     */
+    private final Map<Long, String> cartIds = new HashMap<>();
+
+    /**
+     * Carritos pendientes de guardar, por orden de modificación.
+     */
+    private final Set<String> dirty = new LinkedHashSet<>();
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param converter Conversor de MongoDB
+     */
+    @Autowired
+    public InMemoryActiveCartStore(MongoConverter converter) {
+        this.converter = converter;
+    }
+
+    @Override
+    public synchronized Optional<Cart> find(String cartId) {
+        return Optional.ofNullable(carts.get(cartId)).map(this::read);
+    }
+
+    @Override
+    public synchronized Optional<String> findCartId(Long userId) {
+        return Optional.ofNullable(cartIds.get(userId));
+    }
+
+    @Override
+    public synchronized Cart putIfAbsent(Cart cart) {
+        cartIds.put(cart.getUserId(), cart.getId());
+        return read(carts.computeIfAbsent(cart.getId(), id -> write(cart)));
+    }
+
+    @Override
+    public synchronized Cart update(String cartId, Consumer<Cart> mutation) {
+        Document current = carts.get(cartId);
+        if (current == null) {
+            return null;
+        }
+        Cart cart = read(current);
+        mutation.accept(cart);
+        carts.put(cartId, write(cart));
+        dirty.add(cartId);
+        return cart;
+    }
+
+    @Override
+    public synchronized List<Cart> drainDirty(int max) {
+        List<Cart> drained = new ArrayList<>();
+        Iterator<String> it = dirty.iterator();
+        while (it.hasNext() && drained.size() < max) {
+            Document cart = carts.get(it.next());
+            it.remove();
+            if (cart != null) {
+                drained.add(read(cart));
+            }
+        }
+        return drained;
+    }
+
+    @Override
+    public synchronized void markDirty(String cartId) {
+        if (carts.containsKey(cartId)) {
+            dirty.add(cartId);
+        }
+    }
+
+    @Override
+    public synchronized Optional<Cart> detach(String cartId) {
+        cartIds.values().remove(cartId);
+        Document cart = carts.remove(cartId);
+        return dirty.remove(cartId) && cart != null ? Optional.of(read(cart)) : Optional.empty();
+    }
+
+    private Document write(Cart cart) {
+        Document document = new Document();
+        converter.write(cart, document);
+        return document;
+    }
+
+    private Cart read(Document document) {
+        return converter.read(Cart.class, document);
+    }
+}
@@ -0,0 +1,247 @@
+package dev.luisvives.dawazon.cart.service;
+
+import dev.luisvives.dawazon.cart.models.Cart;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Implementación de {@link ActiveCartStore} sobre Redis, compartida por todas
+ * las instancias de la aplicación.
+ * <p>
+ * Los carritos se reparten en {@link #SHARDS} grupos según su ID, y cada grupo
+ * tiene su propio conjunto de pendientes. Las claves de un grupo llevan su
+ * número como etiqueta ({@code {n}}), así que los scripts, que tocan el
+ * carrito y el conjunto de su grupo, funcionan también con Redis Cluster. Se
+ * usan las claves:
+ * </p>
+ * <ul>
+ * <li>{@code cart:active:{n}:<cartId>}: el carrito en JSON extendido de
+ * MongoDB.</li>
+ * <li>{@code cart:active:{n}:dirty}: conjunto de carritos del grupo pendientes
+ * de guardar.</li>
+ * <li>{@code cart:active:user:<userId>}: ID del carrito activo del usuario.
+ * Se escribe fuera de los scripts porque cae en otro slot.</li>
+ * </ul>
+ * <p>
+ * El carrito y el ID del usuario caducan si no se tocan en
+ * {@code cart.store.ttl}; un carrito caducado se vuelve a leer de MongoDB, y si
+ * caduca antes el ID del usuario, al buscarlo se vuelve a cargar el carrito y
+ * se conserva la versión del almacén. Las modificaciones se aplican en Java y
+ * se escriben con un script de comparar y sustituir, que se reintenta si otra
+ * petición ha modificado el carrito entretanto.
+ * </p>
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "cart.store", havingValue = "redis", matchIfMissing = true)
+public class RedisActiveCartStore implements ActiveCartStore {
+    /**
+     * Grupos en los que se reparten los carritos y sus pendientes.
+     */
+    static final int SHARDS = 16;
+
+    /**
+     * Intentos de una modificación antes de desistir.
+     */
+    private static final int MAX_ATTEMPTS = 20;
+
+    /**
+     * Formato JSON que conserva los tipos BSON (ObjectId, fechas, enteros).
+     */
+    private static final JsonWriterSettings JSON = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+
+    /**
+     * KEYS: carrito. ARGV: JSON, caducidad (ms). Devuelve el JSON que queda
+     * guardado.
+     */
+    private static final RedisScript<String> PUT_IF_ABSENT = new DefaultRedisScript<>("""
+            redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2])
+            return redis.call('GET', KEYS[1])
+            """, String.class);
+
+    /**
+     * KEYS: carrito, pendientes del grupo. ARGV: JSON leído, JSON nuevo,
+     * caducidad (ms), ID del carrito. Devuelve 1 si se ha sustituido.
+     */
+    private static final RedisScript<Long> COMPARE_AND_SET = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) ~= ARGV[1] then
+              return 0
+            end
+            redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+            redis.call('SADD', KEYS[2], ARGV[4])
+            return 1
+            """, Long.class);
+
+    /**
+     * KEYS: carrito, pendientes del grupo. ARGV: ID del carrito. Devuelve el
+     * JSON si estaba pendiente de guardar. El ID del usuario se deja: si apunta
+     * a un carrito que ya no está, se vuelve a buscar en MongoDB.
+     */
+    private static final RedisScript<String> DETACH = new DefaultRedisScript<>("""
+            local dirty = redis.call('SREM', KEYS[2], ARGV[1])
+            local cart = redis.call('GET', KEYS[1])
+            redis.call('DEL', KEYS[1])
+            if dirty == 1 and cart then
+              return cart
+            end
+            return false
+            """, String.class);
+
+    /**
+     * Grupo por el que empieza el siguiente {@link #drainDirty(int)}.
+     */
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    /**
+     * Template de Redis.
+     */
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * Conversor de MongoDB, para pasar de carrito a documento y viceversa.
+     */
+    private final MongoConverter converter;
+
+    /**
+     * Tiempo que se conserva un carrito que no se toca.
+     */
+    private final Duration ttl;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param redisTemplate Template de Redis
+     * @param converter     Conversor de MongoDB
+     * @param ttl           Tiempo que se conserva un carrito que no se toca
+     */
+    @Autowired
+    public RedisActiveCartStore(StringRedisTemplate redisTemplate, MongoConverter converter,
+            @Value("${cart.store.ttl:1h}") Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.converter = converter;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public Optional<Cart> find(String cartId) {
+        return Optional.ofNullable(redisTemplate.opsForValue().get(cartKey(cartId))).map(this::read);
+    }
+
+    @Override
+    public Optional<String> findCartId(Long userId) {
+        return Optional.ofNullable(redisTemplate.opsForValue().get(userKey(userId)));
+    }
+
+    @Override
+    public Cart putIfAbsent(Cart cart) {
+        String json = redisTemplate.execute(PUT_IF_ABSENT, List.of(cartKey(cart.getId())),
+                write(cart), String.valueOf(ttl.toMillis()));
+        redisTemplate.opsForValue().set(userKey(cart.getUserId()), cart.getId(), ttl);
+        return read(json);
+    }
+
+    @Override
+    public Cart update(String cartId, Consumer<Cart> mutation) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            String current = redisTemplate.opsForValue().get(cartKey(cartId));
+            if (current == null) {
+                return null;
+            }
+            Cart cart = read(current);
+            mutation.accept(cart);
+            Long replaced = redisTemplate.execute(COMPARE_AND_SET, List.of(cartKey(cartId), dirtyKey(cartId)),
+                    current, write(cart), String.valueOf(ttl.toMillis()), cartId);
+            if (Long.valueOf(1).equals(replaced)) {
+                return cart;
+            }
+            log.debug("Carrito {} modificado por otra petición, reintentando", cartId);
+        }
+        throw new IllegalStateException("No se ha podido modificar el carrito " + cartId);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Recorre los grupos empezando por uno distinto en cada llamada, para que
+     * con {@code max} pequeño no se quede ninguno sin vaciar. Cada grupo se lee
+     * con un único {@code MGET}, porque todas sus claves están en el mismo slot.
+     * </p>
+     */
+    @Override
+    public List<Cart> drainDirty(int max) {
+        List<Cart> drained = new ArrayList<>();
+        int first = Math.floorMod(nextShard.getAndIncrement(), SHARDS);
+        for (int i = 0; i < SHARDS && drained.size() < max; i++) {
+            int shard = (first + i) % SHARDS;
+            List<String> cartIds = redisTemplate.opsForSet().pop(shardDirtyKey(shard), max - drained.size());
+            if (cartIds == null || cartIds.isEmpty()) {
+                continue;
+            }
+            List<String> carts = redisTemplate.opsForValue()
+                    .multiGet(cartIds.stream().map(RedisActiveCartStore::cartKey).toList());
+            if (carts != null) {
+                carts.stream().filter(Objects::nonNull).map(this::read).forEach(drained::add);
+            }
+        }
+        return drained;
+    }
+
+    @Override
+    public void markDirty(String cartId) {
+        redisTemplate.opsForSet().add(dirtyKey(cartId), cartId);
+    }
+
+    @Override
+    public Optional<Cart> detach(String cartId) {
+        String json = redisTemplate.execute(DETACH, List.of(cartKey(cartId), dirtyKey(cartId)), cartId);
+        return Optional.ofNullable(json).map(this::read);
+    }
+
+    private String write(Cart cart) {
+        Document document = new Document();
+        converter.write(cart, document);
+        return document.toJson(JSON);
+    }
+
+    private Cart read(String json) {
+        return converter.read(Cart.class, Document.parse(json));
+    }
+
+    static int shard(String cartId) {
+        return Math.floorMod(cartId.hashCode(), SHARDS);
+    }
+
+    static String cartKey(String cartId) {
+        return "cart:active:{" + shard(cartId) + "}:" + cartId;
+    }
+
+    static String dirtyKey(String cartId) {
+        return shardDirtyKey(shard(cartId));
+    }
+
+    static String shardDirtyKey(int shard) {
+        return "cart:active:{" + shard + "}:dirty";
+    }
+
+    static String userKey(Long userId) {
+        return "cart:active:user:" + userId;
+    }
+}
@@ -0,0 +1,54 @@
+package dev.luisvives.dawazon.cart.service;
+
+import dev.luisvives.dawazon.cart.models.Cart;
+import dev.luisvives.dawazon.cart.models.SaleLine;
+import dev.luisvives.dawazon.cart.models.Status;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Optional;
+
+/**
+ * Servicio que mantiene la proyección de líneas de venta ({@code sale_lines}).
+ */
+public interface SaleLineProjectionService {
+    /**
+     * Escribe una línea de venta por cada línea de un carrito comprado.
+     *
+     * @param cart Carrito comprado
+     */
+    void project(Cart cart);
+
+    /**
+     * Actualiza el estado de una línea de venta.
+     *
+     * @param saleId    ID del carrito/venta
+     * @param productId ID del producto
+     * @param status    Nuevo estado
+     * @return Línea de venta actualizada, vacío si no existe
+     */
+    Optional<SaleLine> updateStatus(String saleId, String productId, Status status);
+
+    /**
+     * Obtiene las líneas de venta, opcionalmente de un solo vendedor.
+     *
+     * @param managerId ID del vendedor (opcional)
+     * @param pageable  Parámetros de paginación
+     * @return Página de líneas de venta
+     */
+    Page<SaleLine> findAll(Optional<Long> managerId, Pageable pageable);
+
+    /**
+     * Busca una línea de venta.
+     *
+     * @param saleId    ID del carrito/venta
+     * @param productId ID del producto
+     * @return Línea de venta si existe
+     */
+    Optional<SaleLine> findById(String saleId, String productId);
+
+    /**
+     * Regenera la proyección completa a partir de los carritos comprados.
+     */
+    void rebuild();
+}
@@ -0,0 +1,284 @@
+package dev.luisvives.dawazon.cart.service;
+
+import dev.luisvives.dawazon.cart.mapper.CartMapper;
+import dev.luisvives.dawazon.cart.models.Cart;
+import dev.luisvives.dawazon.cart.models.CartLine;
+import dev.luisvives.dawazon.cart.models.SaleLine;
+import dev.luisvives.dawazon.cart.models.Status;
+import dev.luisvives.dawazon.cart.repository.SaleLineRepository;
+import dev.luisvives.dawazon.products.repository.ProductRepository;
+import dev.luisvives.dawazon.users.models.User;
+import dev.luisvives.dawazon.users.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implementación de la proyección de líneas de venta.
+ * <p>
+ * Las líneas se escriben al finalizar el pedido con el nombre del producto y
+ * del vendedor ya resueltos, de modo que las vistas de ventas leen una única
+ * colección indexada por vendedor y fecha.
+ * </p>
+ */
+@Service
+@Slf4j
+public class SaleLineProjectionServiceImpl implements SaleLineProjectionService {
+    /**
+     * Número de carritos que se proyectan por lote al regenerar.
+     */
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    /**
+     * Orden de las ventas: las más recientes primero.
+     */
+    private static final Sort SALES_ORDER = Sort.by(Sort.Direction.DESC, "createdAt", "id");
+
+    /**
+     * Repositorio de líneas de venta.
+     */
+    private final SaleLineRepository saleLineRepository;
+
+    /**
+     * Repositorio de productos.
+     */
+    private final ProductRepository productRepository;
+
+    /**
+     * Repositorio de usuarios.
+     */
+    private final UserRepository userRepository;
+
+    /**
+     * Template de MongoDB.
+     */
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Mapper de carritos.
+     */
+    private final CartMapper mapper;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param saleLineRepository Repositorio de líneas de venta
+     * @param productRepository  Repositorio de productos
+     * @param userRepository     Repositorio de usuarios
+     * @param mongoTemplate      Template de MongoDB
+     * @param cartMapper         Mapper de carritos
+     */
+    @Autowired
+    public SaleLineProjectionServiceImpl(SaleLineRepository saleLineRepository, ProductRepository productRepository,
+            UserRepository userRepository, MongoTemplate mongoTemplate, CartMapper cartMapper) {
+        this.saleLineRepository = saleLineRepository;
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.mapper = cartMapper;
+    }
+
+    /**
+     * Escribe una línea de venta por cada línea de un carrito comprado.
+     * <p>
+     * Los productos y vendedores se resuelven con una consulta cada uno y las
+     * líneas se escriben en una sola operación bulk. La clave de cada línea es
+     * {@code saleId:productId}, por lo que volver a proyectar un carrito
+     * sustituye sus líneas en lugar de duplicarlas. Las líneas repetidas de un
+     * mismo producto, que pueden tener los carritos comprados antes de fusionarlas
+     * al añadir, se proyectan como una sola con la cantidad y el total sumados.
+     * </p>
+     *
+     * @param cart Carrito comprado
+     */
+    @Override
+    public void project(Cart cart) {
+        projectAll(List.of(cart));
+    }
+
+    /**
+     * Actualiza el estado de una línea de venta.
+     *
+     * @param saleId    ID del carrito/venta
+     * @param productId ID del producto
+     * @param status    Nuevo estado
+     * @return Línea de venta actualizada, vacío si no existe
+     */
+    @Override
+    public Optional<SaleLine> updateStatus(String saleId, String productId, Status status) {
+        Query query = Query.query(Criteria.where("_id").is(SaleLine.key(saleId, productId)));
+        Update update = new Update()
+                .set("status", status)
+                .set("updatedAt", LocalDateTime.now());
+        SaleLine line = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), SaleLine.class);
+        if (line == null) {
+            log.warn("Línea de venta no encontrada en la proyección: {} {}", saleId, productId);
+        }
+        return Optional.ofNullable(line);
+    }
+
+    /**
+     * Obtiene las líneas de venta, opcionalmente de un solo vendedor.
+     * <p>
+     * Se ordenan siempre por fecha descendente, que es el orden de los índices
+     * de la colección.
+     * </p>
+     *
+     * @param managerId ID del vendedor (opcional)
+     * @param pageable  Parámetros de paginación
+     * @return Página de líneas de venta
+     */
+    @Override
+    public Page<SaleLine> findAll(Optional<Long> managerId, Pageable pageable) {
+        Pageable page = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), SALES_ORDER);
+        return managerId
+                .map(id -> saleLineRepository.findAllByManagerId(id, page))
+                .orElseGet(() -> saleLineRepository.findAll(page));
+    }
+
+    /**
+     * Busca una línea de venta.
+     *
+     * @param saleId    ID del carrito/venta
+     * @param productId ID del producto
+     * @return Línea de venta si existe
+     */
+    @Override
+    public Optional<SaleLine> findById(String saleId, String productId) {
+        return saleLineRepository.findById(SaleLine.key(saleId, productId));
+    }
+
+    /**
+     * Regenera la proyección completa a partir de los carritos comprados.
+     * <p>
+     * Recorre los carritos en lotes para no cargarlos todos en memoria.
+     * </p>
+     */
+    @Override
+    public void rebuild() {
+        log.info("Regenerando la proyección de líneas de venta");
+        Query query = Query.query(Criteria.where("purchased").is(true));
+        List<Cart> batch = new ArrayList<>(REBUILD_BATCH_SIZE);
+        int total = 0;
+        try (Stream<Cart> carts = mongoTemplate.stream(query, Cart.class)) {
+            for (Cart cart : (Iterable<Cart>) carts::iterator) {
+                batch.add(cart);
+                if (batch.size() == REBUILD_BATCH_SIZE) {
+                    projectAll(batch);
+                    total += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            projectAll(batch);
+            total += batch.size();
+        }
+        log.info("Proyección de líneas de venta regenerada: {} ventas", total);
+    }
+
+    /**
+     * Regenera la proyección al arrancar si está vacía.
+     * <p>
+     * Los índices de la colección los gestiona
+     * {@link dev.luisvives.dawazon.common.indexes.MongoIndexManager}.
+     * </p>
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            if (!mongoTemplate.exists(new Query(), SaleLine.class)
+                    && mongoTemplate.exists(Query.query(Criteria.where("purchased").is(true)), Cart.class)) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            log.warn("No se pudo inicializar la proyección de líneas de venta: {}", e.getMessage());
+        }
+    }
+
+    private void projectAll(List<Cart> carts) {
+        Set<String> productIds = carts.stream()
+                .flatMap(cart -> cart.getCartLines().stream())
+                .map(CartLine::getProductId)
+                .collect(Collectors.toSet());
+        if (productIds.isEmpty()) {
+            return;
+        }
+        Map<String, ProductRepository.ProductCreator> products = productRepository.findCreatorsByIdIn(productIds)
+                .stream()
+                .collect(Collectors.toMap(ProductRepository.ProductCreator::getId, product -> product));
+        Set<Long> managerIds = products.values().stream()
+                .map(ProductRepository.ProductCreator::getCreatorId)
+                .collect(Collectors.toSet());
+        Map<Long, String> managerNames = userRepository.findAllById(managerIds).stream()
+                .collect(Collectors.toMap(User::getId, User::getUsername));
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SaleLine.class);
+        int lines = 0;
+        for (Cart cart : carts) {
+            for (CartLine line : mergeByProduct(cart.getCartLines())) {
+                ProductRepository.ProductCreator product = products.get(line.getProductId());
+                if (product == null) {
+                    log.error("No se puede proyectar la línea de venta: producto {} no encontrado",
+                            line.getProductId());
+                    continue;
+                }
+                SaleLine saleLine = mapper.cartLineToSaleLine(cart, line, product,
+                        managerNames.get(product.getCreatorId()));
+                bulk.replaceOne(Query.query(Criteria.where("_id").is(saleLine.getId())), saleLine,
+                        FindAndReplaceOptions.options().upsert());
+                lines++;
+            }
+        }
+        if (lines > 0) {
+            bulk.execute();
+        }
+    }
+
+    /**
+     * Suma las líneas repetidas de cada producto en una sola, en el orden en que
+     * aparece cada producto. El estado es el de la primera línea, que es la que
+     * buscan los cambios de estado; desde que estos cambian todas las líneas del
+     * producto, las repetidas tienen el mismo estado.
+     *
+     * @param lines Líneas del carrito
+     * @return Una línea por producto
+     */
+    static List<CartLine> mergeByProduct(List<CartLine> lines) {
+        Map<String, CartLine> merged = new LinkedHashMap<>();
+        for (CartLine line : lines) {
+            merged.merge(line.getProductId(), line, (first, repeated) -> CartLine.builder()
+                    .productId(first.getProductId())
+                    .productPrice(first.getProductPrice())
+                    .status(first.getStatus())
+                    .quantity(first.getQuantity() + repeated.getQuantity())
+                    .totalPrice(first.getTotalPrice() + repeated.getTotalPrice())
+                    .build());
+        }
+        return List.copyOf(merged.values());
+    }
+}
@@ -0,0 +1,169 @@
+package dev.luisvives.dawazon.common.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
+
+/**
+ * Caché de dos niveles: una caché local en memoria (L1) delante de la caché
+ * de Redis (L2).
+ * <p>
+ * Las lecturas buscan primero en L1 y, si no está, en L2, copiando a L1 lo que
+ * encuentran. Las escrituras van a los dos niveles. Al eliminar una entrada se
+ * elimina de los dos y se avisa al resto de réplicas con {@code onEvict} para
+ * que la eliminen de su L1. Las claves de L1 son las de L2 como texto, igual
+ * que en Redis.
+ * </p>
+ * <p>
+ * Cuenta aciertos y fallos de cada nivel en {@code cache.level.gets}, con las
+ * etiquetas {@code cache}, {@code level} ({@code l1} o {@code l2}) y
+ * {@code result} ({@code hit} o {@code miss}).
+ * </p>
+ */
+public class TwoLevelCache implements Cache {
+    /**
+     * Caché local.
+     */
+    private final com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> local;
+
+    /**
+     * Caché de Redis.
+     */
+    private final Cache remote;
+
+    /**
+     * Aviso al resto de réplicas: nombre de la caché y clave (null para
+     * vaciarla).
+     */
+    private final BiConsumer<String, String> onEvict;
+
+    private final Counter l1Hits;
+    private final Counter l1Misses;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+
+    /**
+     * Constructor.
+     *
+     * @param local    Caché local.
+     * @param remote   Caché de Redis.
+     * @param onEvict  Aviso al resto de réplicas de una eliminación.
+     * @param registry Registro de métricas.
+     */
+    public TwoLevelCache(com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> local, Cache remote,
+            BiConsumer<String, String> onEvict, MeterRegistry registry) {
+        this.local = local;
+        this.remote = remote;
+        this.onEvict = onEvict;
+        this.l1Hits = counter(registry, "l1", "hit");
+        this.l1Misses = counter(registry, "l1", "miss");
+        this.l2Hits = counter(registry, "l2", "hit");
+        this.l2Misses = counter(registry, "l2", "miss");
+    }
+
+    @Override
+    public String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        ValueWrapper value = local.getIfPresent(localKey);
+        if (value != null) {
+            l1Hits.increment();
+            return value;
+        }
+        l1Misses.increment();
+        value = remote.get(key);
+        if (value == null) {
+            l2Misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        local.put(localKey, value);
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        Object stored = value == null ? null : value.get();
+        if (stored != null && type != null && !type.isInstance(stored)) {
+            throw new IllegalStateException("El valor en caché no es de tipo " + type.getName() + ": " + stored);
+        }
+        return (T) stored;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper value = get(key);
+        if (value != null) {
+            return (T) value.get();
+        }
+        T loaded = remote.get(key, valueLoader);
+        local.put(localKey(key), new SimpleValueWrapper(loaded));
+        return loaded;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        local.put(localKey(key), new SimpleValueWrapper(value));
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        evictLocal(localKey(key));
+        onEvict.accept(getName(), localKey(key));
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        clearLocal();
+        onEvict.accept(getName(), null);
+    }
+
+    /**
+     * Elimina una entrada solo de la caché local, al recibir el aviso de otra
+     * réplica.
+     *
+     * @param key Clave como texto.
+     */
+    public void evictLocal(String key) {
+        local.invalidate(key);
+    }
+
+    /**
+     * Vacía solo la caché local, al recibir el aviso de otra réplica.
+     */
+    public void clearLocal() {
+        local.invalidateAll();
+    }
+
+    private static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    private Counter counter(MeterRegistry registry, String level, String result) {
+        return Counter.builder("cache.level.gets")
+                .description("Lecturas de la caché por nivel")
+                .tag("cache", getName())
+                .tag("level", level)
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,162 @@
+package dev.luisvives.dawazon.common.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gestor de cachés que pone una caché local ({@link TwoLevelCache}) delante de
+ * las cachés de Redis indicadas en {@code cache.local.names}. El resto se
+ * sirven solo desde Redis.
+ * <p>
+ * Las eliminaciones se publican en el canal {@link #CHANNEL} de Redis y cada
+ * réplica, al recibirlas de otra, las aplica a su caché local. Si se pierde un
+ * aviso, la entrada local caduca igualmente tras {@code cache.local.ttl}.
+ * </p>
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+    /**
+     * Canal de Redis de los avisos de eliminación.
+     */
+    public static final String CHANNEL = "cache:invalidation";
+
+    /**
+     * Separador de los campos del aviso: réplica, caché y clave.
+     */
+    private static final String SEPARATOR = "\n";
+
+    /**
+     * Gestor de las cachés de Redis.
+     */
+    private final CacheManager remote;
+
+    /**
+     * Template de Redis para publicar los avisos.
+     */
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * Registro de métricas.
+     */
+    private final MeterRegistry registry;
+
+    /**
+     * Cachés con caché local.
+     */
+    private final Set<String> localNames;
+
+    /**
+     * Máximo de entradas de cada caché local.
+     */
+    private final long maxSize;
+
+    /**
+     * Tiempo de vida de las entradas locales.
+     */
+    private final Duration ttl;
+
+    /**
+     * ID de esta réplica, para no aplicar sus propios avisos.
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * Cachés de dos niveles creadas, por nombre.
+     */
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param remote        Gestor de las cachés de Redis.
+     * @param redisTemplate Template de Redis para publicar los avisos.
+     * @param registry      Registro de métricas.
+     * @param localNames    Cachés con caché local.
+     * @param maxSize       Máximo de entradas de cada caché local.
+     * @param ttl           Tiempo de vida de las entradas locales.
+     */
+    public TwoLevelCacheManager(CacheManager remote, StringRedisTemplate redisTemplate, MeterRegistry registry,
+            Set<String> localNames, long maxSize, Duration ttl) {
+        this.remote = remote;
+        this.redisTemplate = redisTemplate;
+        this.registry = registry;
+        this.localNames = localNames;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        if (!localNames.contains(name)) {
+            return remote.getCache(name);
+        }
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remote.getCacheNames();
+    }
+
+    /**
+     * Aplica a la caché local un aviso de eliminación de otra réplica.
+     *
+     * @param message Aviso: réplica, caché y, si no se vacía entera, clave.
+     * @param pattern Patrón del canal (no se usa).
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(SEPARATOR, 3);
+        if (parts.length < 2 || instanceId.equals(parts[0])) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+        if (parts.length == 3) {
+            cache.evictLocal(parts[2]);
+        } else {
+            cache.clearLocal();
+        }
+    }
+
+    private TwoLevelCache createCache(String name) {
+        Cache redisCache = remote.getCache(name);
+        return new TwoLevelCache(Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build(), redisCache, this::publish, registry);
+    }
+
+    /**
+     * Publica una eliminación para el resto de réplicas. Si Redis no está
+     * disponible, lo registra y sigue: las demás réplicas la verán al caducar
+     * su entrada local.
+     *
+     * @param cacheName Nombre de la caché.
+     * @param key       Clave, o null si se vacía entera.
+     */
+    private void publish(String cacheName, String key) {
+        String message = instanceId + SEPARATOR + cacheName + (key == null ? "" : SEPARATOR + key);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, message);
+        } catch (RuntimeException e) {
+            log.warn("No se pudo publicar la eliminación de {} en la caché {}: {}", key, cacheName, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package dev.luisvives.dawazon.common.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Serializador de los valores de las cachés de Redis con formato configurable:
+ * JSON (el de siempre), Smile o CBOR.
+ * <p>
+ * Los formatos binarios se escriben con un byte de cabecera que indica formato
+ * y versión. El JSON se escribe sin cabecera, igual que
+ * {@link GenericJackson2JsonRedisSerializer}, para que lo sigan leyendo las
+ * réplicas anteriores. Al leer se reconoce cualquiera de los formatos, sea cual
+ * sea el configurado para escribir, así que el cambio de formato es seguro en
+ * un despliegue escalonado: primero se despliega esta versión con
+ * {@code json} y, cuando todas las réplicas la tienen, se cambia el formato.
+ * </p>
+ * <p>
+ * Los nulos que guarda la caché ({@link NullValue}) se leen siempre como
+ * {@link NullValue#INSTANCE}, en cualquier formato.
+ * </p>
+ * <p>
+ * Un valor que no se puede leer (cabecera de una versión posterior, clase que
+ * ya no existe...) se trata como un fallo de caché: se devuelve null, se
+ * vuelve a cargar y se sobrescribe.
+ * </p>
+ */
+@Slf4j
+public class VersionedRedisSerializer implements RedisSerializer<Object> {
+
+    /**
+     * Formato de escritura de los valores.
+     */
+    public enum Format {
+        /**
+         * JSON con el nombre de la clase. Se escribe sin cabecera.
+         */
+        JSON((byte) 0),
+        /**
+         * Smile (JSON binario), versión 1.
+         */
+        SMILE((byte) 1),
+        /**
+         * CBOR, versión 1.
+         */
+        CBOR((byte) 2);
+
+        /**
+         * Byte de cabecera. Un JSON nunca empieza por un byte de control, así
+         * que no se confunden.
+         */
+        private final byte header;
+
+        Format(byte header) {
+            this.header = header;
+        }
+
+        /**
+         * Obtiene el formato a partir de su nombre, sin distinguir mayúsculas.
+         *
+         * @param name Nombre del formato (json, smile o cbor).
+         * @return Formato.
+         * @throws IllegalArgumentException Si el formato no existe.
+         */
+        public static Format of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Formato de escritura.
+     */
+    private final Format format;
+
+    /**
+     * Serializador JSON de siempre, para escribir y leer los valores sin
+     * cabecera.
+     */
+    private final GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+
+    private final ObjectMapper smile = configure(new SmileMapper());
+    private final ObjectMapper cbor = configure(new CBORMapper());
+
+    /**
+     * Constructor.
+     *
+     * @param format Formato de escritura.
+     */
+    public VersionedRedisSerializer(Format format) {
+        this.format = format;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (format == Format.JSON) {
+            return json.serialize(value);
+        }
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            byte[] body = mapper(format).writeValueAsBytes(value);
+            byte[] bytes = new byte[body.length + 1];
+            bytes[0] = format.header;
+            System.arraycopy(body, 0, bytes, 1, body.length);
+            return bytes;
+        } catch (IOException e) {
+            throw new SerializationException("No se pudo serializar el valor en " + format, e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            byte header = bytes[0];
+            if (header == Format.SMILE.header) {
+                return resolve(smile.readValue(bytes, 1, bytes.length - 1, Object.class));
+            }
+            if (header == Format.CBOR.header) {
+                return resolve(cbor.readValue(bytes, 1, bytes.length - 1, Object.class));
+            }
+            if (header >= ' ' || Character.isWhitespace(header)) {
+                return resolve(json.deserialize(bytes));
+            }
+            log.warn("Valor de caché con cabecera desconocida {}, se descarta", header);
+            return null;
+        } catch (IOException | SerializationException e) {
+            log.warn("No se pudo leer un valor de caché, se descarta: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private ObjectMapper mapper(Format format) {
+        return format == Format.SMILE ? smile : cbor;
+    }
+
+    /**
+     * Jackson crea una instancia nueva de {@link NullValue} al leerla; la caché
+     * la reconoce por identidad, así que se cambia por la única instancia.
+     */
+    private static Object resolve(Object value) {
+        return value instanceof NullValue ? NullValue.INSTANCE : value;
+    }
+
+    /**
+     * Configura un mapper binario como el de
+     * {@link GenericJackson2JsonRedisSerializer}: con el tipo de todos los
+     * valores, también los de clases finales como los records y los escalares,
+     * en la propiedad {@code @class}; con el serializador de {@link NullValue};
+     * y tolerando propiedades que no conoce para poder leer lo que escribe una
+     * versión posterior de la clase.
+     */
+    @SuppressWarnings("deprecation")
+    private static ObjectMapper configure(ObjectMapper mapper) {
+        mapper.findAndRegisterModules();
+        mapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
+                ObjectMapper.DefaultTyping.EVERYTHING, JsonTypeInfo.As.PROPERTY);
+        GenericJackson2JsonRedisSerializer.registerNullValueSerializer(mapper, "@class");
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        return mapper;
+    }
+}
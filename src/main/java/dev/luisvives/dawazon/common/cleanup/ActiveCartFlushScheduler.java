@@ -0,0 +1,56 @@
+package dev.luisvives.dawazon.common.cleanup;
+
+import dev.luisvives.dawazon.cart.service.CartServiceImpl;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduler que vuelca a MongoDB los carritos activos modificados.
+ * <p>
+ * Se ejecuta en todas las réplicas: cada volcado saca del almacén los
+ * carritos que escribe, así que dos réplicas no escriben el mismo cambio. Al
+ * parar la aplicación se vuelca lo que quede pendiente.
+ * </p>
+ */
+@Component
+@Slf4j
+public class ActiveCartFlushScheduler {
+
+    /**
+     * Servicio de carritos.
+     */
+    private final CartServiceImpl cartService;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param cartService Servicio de carritos
+     */
+    @Autowired
+    public ActiveCartFlushScheduler(CartServiceImpl cartService) {
+        this.cartService = cartService;
+    }
+
+    /**
+     * Vuelca los carritos pendientes cada {@code cart.store.flush-interval} ms
+     * (2 segundos por defecto).
+     */
+    @Scheduled(fixedDelayString = "${cart.store.flush-interval:2000}")
+    public void flush() {
+        int flushed = cartService.flushActiveCarts();
+        if (flushed > 0) {
+            log.debug("Volcados {} carritos activos", flushed);
+        }
+    }
+
+    /**
+     * Vuelca lo pendiente antes de parar.
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Volcados {} carritos activos antes de parar", cartService.flushActiveCarts());
+    }
+}
@@ -2,6 +2,7 @@ package dev.luisvives.dawazon.common.cleanup;
 
 import dev.luisvives.dawazon.cart.service.CartService;
 import dev.luisvives.dawazon.cart.service.CartServiceImpl;
+import dev.luisvives.dawazon.common.leader.LeaderElection;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -10,8 +11,10 @@ import org.springframework.stereotype.Component;
 /**
  * Scheduler para limpiar carritos abandonados durante el checkout.
  * <p>
- * Se ejecuta cada 2 minutos para verificar y limpiar carritos con
- * sesiones de pago expiradas (más de 5 minutos sin completar).
+ * Los checkouts de esta instancia los libera {@link CheckoutExpiryWorker} en
+ * cuanto vencen; este barrido, mucho menos frecuente, recoge los que no estén
+ * en su cola, como los iniciados en otra instancia que se haya caído. Con
+ * varias réplicas solo barre la líder.
  * </p>
  */
 @Component
@@ -23,24 +26,35 @@ public class CartCleanupScheduler {
      */
     private final CartServiceImpl cartService;
 
+    /**
+     * Elección de líder entre réplicas.
+     */
+    private final LeaderElection leaderElection;
+
     /**
      * Constructor con inyección de dependencias.
      *
-     * @param cartService Servicio de carritos
+     * @param cartService    Servicio de carritos
+     * @param leaderElection Elección de líder entre réplicas
      */
     @Autowired
-    public CartCleanupScheduler(CartServiceImpl cartService) {
+    public CartCleanupScheduler(CartServiceImpl cartService, LeaderElection leaderElection) {
         this.cartService = cartService;
+        this.leaderElection = leaderElection;
     }
 
     /**
      * Tarea programada que limpia carritos con checkout expirado.
      * <p>
-     * Se ejecuta cada 2 minutos para restaurar stock de carritos abandonados.
+     * Se ejecuta cada {@code checkout.expiry.sweep-interval} ms (10 minutos por
+     * defecto).
      * </p>
      */
-    @Scheduled(fixedRate = 120000) // 120000ms = 2 minutos
+    @Scheduled(fixedRateString = "${checkout.expiry.sweep-interval:600000}")
     public void cleanupExpiredCheckoutsAlternative() {
+        if (!leaderElection.isLeader()) {
+            return;
+        }
         log.debug("🔍 Ejecutando limpieza de carritos expirados...");
         cartService.cleanupExpiredCheckouts();
     }
@@ -0,0 +1,94 @@
+package dev.luisvives.dawazon.common.cleanup;
+
+import dev.luisvives.dawazon.cart.service.CartServiceImpl;
+import dev.luisvives.dawazon.common.leader.LeaderElection;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+
+/**
+ * Fusiona una sola vez las líneas repetidas de los carritos abiertos.
+ * <p>
+ * Antes, añadir un producto que ya estaba en el carrito creaba otra línea. La
+ * compactación recorre toda la colección de carritos, así que solo la lanza la
+ * réplica líder y, al terminar, deja el documento {@link #MARKER_ID} en la
+ * colección {@link #MIGRATIONS}. Mientras no exista se reintenta cada
+ * {@code cart.compaction.retry-interval} ms (1 minuto por defecto), por
+ * ejemplo si al arrancar todavía no hay líder o la compactación ha fallado.
+ * </p>
+ */
+@Component
+@Slf4j
+public class CartLineCompaction {
+
+    /**
+     * Colección con las migraciones de datos ya aplicadas.
+     */
+    static final String MIGRATIONS = "migrations";
+
+    /**
+     * ID del documento que marca la compactación como hecha.
+     */
+    static final String MARKER_ID = "cart-line-compaction";
+
+    /**
+     * Servicio de carritos.
+     */
+    private final CartServiceImpl cartService;
+
+    /**
+     * Template de MongoDB.
+     */
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Elección de líder entre réplicas.
+     */
+    private final LeaderElection leaderElection;
+
+    /**
+     * Si ya se sabe que la compactación está hecha, para no volver a consultar
+     * la marca.
+     */
+    private volatile boolean done;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param cartService    Servicio de carritos
+     * @param mongoTemplate  Template de MongoDB
+     * @param leaderElection Elección de líder entre réplicas
+     */
+    @Autowired
+    public CartLineCompaction(CartServiceImpl cartService, MongoTemplate mongoTemplate,
+            LeaderElection leaderElection) {
+        this.cartService = cartService;
+        this.mongoTemplate = mongoTemplate;
+        this.leaderElection = leaderElection;
+    }
+
+    /**
+     * Compacta los carritos con líneas repetidas si no se ha hecho ya.
+     */
+    @Scheduled(fixedDelayString = "${cart.compaction.retry-interval:60000}")
+    public void compact() {
+        if (done || !leaderElection.isLeader()) {
+            return;
+        }
+        if (mongoTemplate.exists(Query.query(Criteria.where("_id").is(MARKER_ID)), MIGRATIONS)) {
+            done = true;
+            return;
+        }
+        long compacted = cartService.compactDuplicateLines();
+        mongoTemplate.save(new Document("_id", MARKER_ID).append("completedAt", new Date()), MIGRATIONS);
+        done = true;
+        log.info("Compactadas las líneas repetidas de {} carritos", compacted);
+    }
+}
@@ -0,0 +1,103 @@
+package dev.luisvives.dawazon.common.cleanup;
+
+import dev.luisvives.dawazon.cart.service.CartServiceImpl;
+import dev.luisvives.dawazon.cart.service.CheckoutExpiryQueue;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Hilo que libera los checkouts en cuanto vencen.
+ * <p>
+ * Al arrancar la aplicación reconstruye la {@link CheckoutExpiryQueue} con los
+ * checkouts en curso guardados en MongoDB y después espera en ella: cada
+ * carrito se libera en el momento en que vence, agrupando los que venzan a la
+ * vez.
+ * </p>
+ */
+@Component
+@Slf4j
+public class CheckoutExpiryWorker {
+
+    /**
+     * Máximo de carritos liberados de una vez.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Servicio de carritos.
+     */
+    private final CartServiceImpl cartService;
+
+    /**
+     * Cola de vencimientos de checkouts.
+     */
+    private final CheckoutExpiryQueue expiryQueue;
+
+    /**
+     * Hilo de espera, o {@code null} si no se ha arrancado.
+     */
+    private Thread worker;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param cartService Servicio de carritos
+     * @param expiryQueue Cola de vencimientos de checkouts
+     */
+    @Autowired
+    public CheckoutExpiryWorker(CartServiceImpl cartService, CheckoutExpiryQueue expiryQueue) {
+        this.cartService = cartService;
+        this.expiryQueue = expiryQueue;
+    }
+
+    /**
+     * Reconstruye la cola y arranca el hilo de espera.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        cartService.schedulePendingCheckouts();
+        worker = new Thread(this::run, "checkout-expiry");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Detiene el hilo de espera.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    /**
+     * Bucle del hilo: espera vencimientos y libera sus carritos hasta que se
+     * interrumpe.
+     */
+    void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<String> expired = expiryQueue.awaitExpired(BATCH_SIZE);
+                if (!expired.isEmpty()) {
+                    cartService.releaseExpiredCheckouts(expired);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Error liberando checkouts vencidos: {}", e.getMessage(), e);
+            }
+        }
+        log.debug("Hilo de vencimientos de checkout detenido");
+    }
+}
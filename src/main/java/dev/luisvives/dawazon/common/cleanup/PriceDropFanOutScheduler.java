@@ -0,0 +1,63 @@
+package dev.luisvives.dawazon.common.cleanup;
+
+import dev.luisvives.dawazon.common.leader.LeaderElection;
+import dev.luisvives.dawazon.users.service.PriceDropFanOut;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduler que envía los avisos de bajada de precio pendientes.
+ * <p>
+ * Con varias réplicas solo avisa la líder. Cada ejecución envía como mucho un
+ * lote, para no ocupar el hilo del scheduler más que lo que tarda ese lote; si
+ * la líder cambia a mitad, la versión de la bajada impide que las dos réplicas
+ * envíen el mismo lote.
+ * </p>
+ */
+@Component
+@Slf4j
+public class PriceDropFanOutScheduler {
+
+    /**
+     * Avisos de bajada de precio por lotes.
+     */
+    private final PriceDropFanOut fanOut;
+
+    /**
+     * Elección de líder entre réplicas.
+     */
+    private final LeaderElection leaderElection;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param fanOut         Avisos de bajada de precio por lotes
+     * @param leaderElection Elección de líder entre réplicas
+     */
+    @Autowired
+    public PriceDropFanOutScheduler(PriceDropFanOut fanOut, LeaderElection leaderElection) {
+        this.fanOut = fanOut;
+        this.leaderElection = leaderElection;
+    }
+
+    /**
+     * Tarea programada que avisa al siguiente lote de la bajada pendiente más
+     * antigua. Si falla, la bajada continúa desde su cursor en la siguiente
+     * ejecución.
+     */
+    @Scheduled(fixedDelayString = "${favorites.price-drop.interval:1000}")
+    public void fanOut() {
+        if (!leaderElection.isLeader()) {
+            return;
+        }
+        fanOut.findNextPending().ifPresent(drop -> {
+            try {
+                fanOut.notifyNextBatch(drop);
+            } catch (RuntimeException e) {
+                log.error("Error avisando la bajada de precio del producto {}", drop.getProductId(), e);
+            }
+        });
+    }
+}
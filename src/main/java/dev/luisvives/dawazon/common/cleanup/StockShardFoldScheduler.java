@@ -0,0 +1,62 @@
+package dev.luisvives.dawazon.common.cleanup;
+
+import dev.luisvives.dawazon.common.leader.LeaderElection;
+import dev.luisvives.dawazon.products.service.ProductStockShardService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduler que consolida los subcontadores de los productos calientes.
+ * <p>
+ * Mantiene {@code Product.stock} al día con la suma de sus subcontadores y los
+ * reequilibra para que las compras sigan encontrando uno con stock suficiente.
+ * Con varias réplicas solo consolida la líder.
+ * </p>
+ */
+@Component
+@Slf4j
+public class StockShardFoldScheduler {
+
+    /**
+     * Servicio de subcontadores de stock.
+     */
+    private final ProductStockShardService shardService;
+
+    /**
+     * Elección de líder entre réplicas.
+     */
+    private final LeaderElection leaderElection;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param shardService   Servicio de subcontadores de stock
+     * @param leaderElection Elección de líder entre réplicas
+     */
+    @Autowired
+    public StockShardFoldScheduler(ProductStockShardService shardService, LeaderElection leaderElection) {
+        this.shardService = shardService;
+        this.leaderElection = leaderElection;
+    }
+
+    /**
+     * Tarea programada que consolida cada producto caliente en su propia
+     * transacción. Un fallo en uno no impide consolidar el resto.
+     */
+    @Scheduled(fixedRateString = "${stock.shards.fold-interval:30000}")
+    public void foldShards() {
+        if (!leaderElection.isLeader()) {
+            return;
+        }
+        for (String productId : shardService.findShardedProductIds()) {
+            try {
+                int stock = shardService.fold(productId);
+                log.debug("Subcontadores del producto {} consolidados: {} unidades", productId, stock);
+            } catch (RuntimeException e) {
+                log.error("Error consolidando los subcontadores del producto {}", productId, e);
+            }
+        }
+    }
+}
@@ -1,30 +1,93 @@
 package dev.luisvives.dawazon.common.config;
 
+import dev.luisvives.dawazon.common.cache.TwoLevelCacheManager;
+import dev.luisvives.dawazon.common.cache.VersionedRedisSerializer;
+import dev.luisvives.dawazon.users.service.UserNameResolver;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 
+import java.time.Duration;
+import java.util.Set;
+
 /**
  * Configuración de caché con Redis.
  * <p>
- * Define la configuración de serialización JSON para el almacenamiento en
- * caché.
+ * Define la serialización de los valores en caché (JSON, Smile o CBOR, según
+ * {@code cache.redis.format}) y el gestor de cachés, que pone una caché local delante de Redis en
+ * las cachés indicadas en {@code cache.local.names}.
  * </p>
  */
 @Configuration
 public class RedisConfig {
 
         /**
-         * Configura la serialización de caché para Redis.
+         * Configura la serialización de caché para Redis. Se leen todos los
+         * formatos y se escribe en el configurado.
          *
-         * @return Configuración de caché con serialización JSON
+         * @param format Formato de escritura de los valores (json, smile o cbor)
+         * @return Configuración de caché con el serializador versionado
+         * @see VersionedRedisSerializer
          */
         @Bean
-        public RedisCacheConfiguration cacheConfiguration() {
+        public RedisCacheConfiguration cacheConfiguration(@Value("${cache.redis.format:json}") String format) {
                 return RedisCacheConfiguration.defaultCacheConfig()
                         .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
-                                new GenericJackson2JsonRedisSerializer()));
+                                new VersionedRedisSerializer(VersionedRedisSerializer.Format.of(format))));
+        }
+
+        /**
+         * Gestor de cachés: caché local (L1) delante de Redis (L2).
+         *
+         * @param connectionFactory  Conexión a Redis
+         * @param cacheConfiguration Configuración de las cachés de Redis
+         * @param redisTemplate      Template de Redis para los avisos de eliminación
+         * @param registry           Registro de métricas
+         * @param localNames         Cachés con caché local
+         * @param maxSize            Máximo de entradas de cada caché local
+         * @param ttl                Tiempo de vida de las entradas locales
+         * @return Gestor de cachés
+         */
+        @Bean
+        public TwoLevelCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                        RedisCacheConfiguration cacheConfiguration,
+                        StringRedisTemplate redisTemplate,
+                        MeterRegistry registry,
+                        @Value("${cache.local.names:productos}") Set<String> localNames,
+                        @Value("${cache.local.max-size:10000}") long maxSize,
+                        @Value("${cache.local.ttl:60s}") Duration ttl) {
+                RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                        .cacheDefaults(cacheConfiguration)
+                        .build();
+                redisCacheManager.afterPropertiesSet();
+                return new TwoLevelCacheManager(redisCacheManager, redisTemplate, registry, localNames, maxSize, ttl);
+        }
+
+        /**
+         * Suscribe el gestor de cachés y la caché de nombres de usuario a los
+         * avisos de eliminación del resto de réplicas.
+         *
+         * @param connectionFactory Conexión a Redis
+         * @param cacheManager      Gestor de cachés
+         * @param userNames         Caché de nombres de usuario
+         * @return Contenedor de suscripciones de Redis
+         */
+        @Bean
+        public RedisMessageListenerContainer cacheInvalidationListener(RedisConnectionFactory connectionFactory,
+                        TwoLevelCacheManager cacheManager, UserNameResolver userNames) {
+                ChannelTopic channel = new ChannelTopic(TwoLevelCacheManager.CHANNEL);
+                RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+                container.setConnectionFactory(connectionFactory);
+                container.addMessageListener(cacheManager, channel);
+                container.addMessageListener(userNames, channel);
+                return container;
         }
-}
\ No newline at end of file
+}
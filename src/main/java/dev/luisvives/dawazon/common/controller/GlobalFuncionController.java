@@ -1,191 +1,116 @@
 package dev.luisvives.dawazon.common.controller;
 
-import dev.luisvives.dawazon.cart.models.Cart;
-import dev.luisvives.dawazon.cart.repository.CartRepository;
-import dev.luisvives.dawazon.cart.service.CartService;
-import dev.luisvives.dawazon.products.service.ProductService;
 import dev.luisvives.dawazon.users.models.Role;
 import dev.luisvives.dawazon.users.models.User;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
-import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
 import org.springframework.security.web.csrf.CsrfToken;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ModelAttribute;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Controller Advice global que proporciona atributos de modelo comunes a todas
  * las vistas.
  * <p>
  * Centraliza la lógica para exponer información del usuario autenticado,
- * carrito,
- * categorías, tokens CSRF y utilidades de fecha/hora a todas las plantillas
- * Thymeleaf.
+ * tokens CSRF y utilidades de fecha/hora a todas las plantillas. Lo que
+ * requiere consultar la base de datos (categorías, carrito, propietario del
+ * producto) no se calcula aquí: las plantillas lo piden a
+ * {@link RequestViewContext} a través del atributo {@code view}, solo cuando
+ * lo muestran.
  * </p>
  */
-@Slf4j
 @ControllerAdvice
 public class GlobalFuncionController {
     /**
-     * Servicio de productos.
-     */
-    private final ProductService productService;
-
-    /**
-     * Servicio de carritos.
+     * Datos comunes de las vistas de la petición en curso.
      */
-    private final CartService cartService;
-
-    /**
-     * Repositorio de carritos.
-     */
-    private final CartRepository cartRepository;
+    private final RequestViewContext view;
 
     /**
      * Constructor con inyección de dependencias.
      *
-     * @param productService Servicio de productos.
-     * @param cartService    Servicio de carritos.
-     * @param cartRepository Repositorio de carritos.
+     * @param view Datos comunes de las vistas de la petición en curso.
      */
     @Autowired
-    public GlobalFuncionController(ProductService productService, CartService cartService,
-            CartRepository cartRepository) {
-        this.productService = productService;
-        this.cartService = cartService;
-        this.cartRepository = cartRepository;
+    public GlobalFuncionController(RequestViewContext view) {
+        this.view = view;
     }
 
     /**
-     * Proporciona la lista de categorías disponibles.
+     * Proporciona los datos comunes de las vistas de la petición en curso, que
+     * se calculan al usarlos (por ejemplo {@code view.categorias},
+     * {@code view.cartItemCount}, {@code view.isCart}, {@code view.isFav} o
+     * {@code view.isMine}).
      *
-     * @return Lista de nombres de categorías.
+     * @return Contexto de la petición.
      */
-    @ModelAttribute("categorias")
-    public List<String> categorias() {
-        return productService.getAllCategorias();
+    @ModelAttribute("view")
+    public RequestViewContext getView() {
+        return view;
     }
 
     /**
      * Proporciona el usuario actualmente autenticado.
      *
-     * @param authentication Información de autenticación.
      * @return Usuario autenticado o null si no hay sesión.
      */
     @ModelAttribute("currentUser")
-    public User getCurrentUser(Authentication authentication) {
-        log.info("GlobalFuncionController.getCurrentUser()");
-        log.info("Authentication: " + (authentication != null ? authentication.getClass().getName() : "NULL"));
-        log.info("isAuthenticated: " + (authentication != null ? authentication.isAuthenticated() : "No"));
-        log.info("tipo principal: " + (authentication != null && authentication.getPrincipal() != null
-                ? authentication.getPrincipal().getClass().getName()
-                : "NULL"));
-
-        if (authentication != null && authentication.isAuthenticated()
-                && !(authentication.getPrincipal() instanceof String)) {
-            User user = (User) authentication.getPrincipal();
-            log.info("devolviendo user: ID=" + user.getId() + ", Username=" + user.getUsername());
-            return user;
-        }
-        log.info("devolviendo null");
-        return null;
+    public User getCurrentUser() {
+        return view.getCurrentUser();
     }
 
     /**
      * Indica si existe un usuario autenticado.
      *
-     * @param authentication Información de autenticación.
      * @return true si hay usuario autenticado.
      */
     @ModelAttribute("isAuthenticated")
-    public boolean isAuthenticated(Authentication authentication) {
-        return authentication != null && authentication.isAuthenticated()
-                && !(authentication.getPrincipal() instanceof String);
+    public boolean isAuthenticated() {
+        return view.getCurrentUser() != null;
     }
 
     /**
      * Verifica si el usuario actual tiene rol de admin.
      *
-     * @param authentication Información de autenticación.
      * @return true si el usuario es admin.
      */
     @ModelAttribute("isAdmin")
-    public Boolean isAdmin(Authentication authentication) {
-        log.info("isAdmin() LLAMADO");
-        if (authentication != null && authentication.isAuthenticated()
-                && !(authentication.getPrincipal() instanceof String)) {
-            User user = (User) authentication.getPrincipal();
-            boolean result = user.getRoles() != null && user.getRoles().contains(Role.ADMIN);
-            log.info(
-                    "es administrador el User: " + user.getUsername() + ", Roles: " + user.getRoles() + ", Result: " + result);
-            return result;
-        }
-        log.info("admin no autorizado, devolviendo false");
-        return false;
+    public Boolean isAdmin() {
+        return view.hasRole(Role.ADMIN);
     }
 
     /**
      * Verifica si el usuario actual tiene rol de manager.
      *
-     * @param authentication Información de autenticación.
      * @return true si el usuario es manager.
      */
     @ModelAttribute("isManager")
-    public Boolean isManager(Authentication authentication) {
-        log.info("isManager() llamado");
-        if (authentication != null && authentication.isAuthenticated()
-                && !(authentication.getPrincipal() instanceof String)) {
-            User user = (User) authentication.getPrincipal();
-            boolean result = user.getRoles() != null && user.getRoles().contains(Role.MANAGER);
-            log.info(
-                    "es manager el User: " + user.getUsername() + ", Roles: " + user.getRoles() + ", Result: " + result);
-            return result;
-        }
-        log.info("manager no autorizado, devolviendo false");
-        return false;
+    public Boolean isManager() {
+        return view.hasRole(Role.MANAGER);
     }
 
     /**
      * Verifica si el usuario actual tiene rol de usuario regular.
      *
-     * @param authentication Información de autenticación.
      * @return true si el usuario tiene rol USER.
      */
     @ModelAttribute("isUser")
-    public Boolean isUser(Authentication authentication) {
-        log.info("isUser() llamado");
-        if (authentication != null && authentication.isAuthenticated()
-                && !(authentication.getPrincipal() instanceof String)) {
-            User user = (User) authentication.getPrincipal();
-            boolean result = user.getRoles() != null && user.getRoles().contains(Role.USER);
-            log.info(
-                    "es usuario normal el User: " + user.getUsername() + ", Roles: " + user.getRoles() + ", Result: " + result);
-            return result;
-        }
-        log.info("user no autorizado, devolviendo false");
-        return false;
+    public Boolean isUser() {
+        return view.hasRole(Role.USER);
     }
 
     /**
      * Proporciona el nombre de usuario del usuario autenticado.
      *
-     * @param authentication Información de autenticación.
      * @return Nombre de usuario o null.
      */
     @ModelAttribute("username")
-    public String getUsername(Authentication authentication) {
-        if (authentication != null && authentication.isAuthenticated()
-                && !(authentication.getPrincipal() instanceof String)) {
-            User user = (User) authentication.getPrincipal();
-            return user.getUsername();
-        }
-        return null;
+    public String getUsername() {
+        User user = view.getCurrentUser();
+        return user != null ? user.getUsername() : null;
     }
 
     /**
@@ -227,133 +152,12 @@ public class GlobalFuncionController {
     /**
      * Proporciona el ID del usuario autenticado.
      *
-     * @param authentication Información de autenticación.
      * @return ID del usuario o null.
      */
     @ModelAttribute("currentUserId")
-    public Long getCurrentUserId(Authentication authentication) {
-        if (authentication != null && authentication.isAuthenticated()
-                && !(authentication.getPrincipal() instanceof String)) {
-            User user = (User) authentication.getPrincipal();
-            return user.getId();
-        }
-        return null;
-    }
-
-    /**
-     * Proporciona el número de ítems en el carrito.
-     *
-     * @param request Petición HTTP.
-     * @return Número de productos en el carrito.
-     */
-    @ModelAttribute("cartItemCount")
-    public int getCartItemCount(HttpServletRequest request) {
-        HttpSession session = request.getSession(false);
-        if (session == null) {
-            return 0;
-        }
-
-        Cart cart = (Cart) session.getAttribute("cart");
-
-        if (cart == null || cart.getCartLines() == null) {
-            return 0;
-        }
-
-        return cart.getCartLines().size();
-    }
-
-    /**
-     * Indica si el carrito tiene ítems.
-     *
-     * @param request Petición HTTP.
-     * @return true si hay ítems en el carrito.
-     */
-    @ModelAttribute("hasCartItems")
-    public boolean hasCartItems(HttpServletRequest request) {
-        return getCartItemCount(request) > 0;
-    }
-
-    /**
-     * Proporciona el carrito del usuario actual.
-     * <p>
-     * Busca primero en sesión, luego en base de datos, y crea uno nuevo si no
-     * existe.
-     * </p>
-     *
-     * @param request        Petición HTTP.
-     * @param authentication Información de autenticación.
-     * @return Carrito del usuario o carrito vacío.
-     */
-    @ModelAttribute("carrito")
-    public Cart getCarrito(HttpServletRequest request, Authentication authentication) {
-        HttpSession session = request.getSession(false);
-
-        // Si no hay usuario autenticado, devolver carrito vacío
-        if (authentication == null || !authentication.isAuthenticated()
-                || authentication.getPrincipal() instanceof String) {
-            Cart emptyCart = new Cart();
-            emptyCart.setCartLines(new ArrayList<>());
-            return emptyCart;
-        }
-
-        // Sí hay sesión, buscar en la sesión primero
-        if (session != null) {
-            Cart sessionCart = (Cart) session.getAttribute("cart");
-            if (sessionCart != null) {
-                return sessionCart;
-            }
-        }
-
-        // Si no hay carrito en sesión, obtenerlo o crearlo para el usuario autenticado
-        User user = (User) authentication.getPrincipal();
-        Cart cart;
-
-        try {
-            // Intentar obtener el carrito existente
-            cart = cartService.getCartByUserId(user.getId());
-        } catch (Exception e) {
-            // Si no existe, crear uno nuevo y guardarlo en MongoDB
-            cart = Cart.builder()
-                    .userId(user.getId())
-                    .cartLines(new ArrayList<>())
-                    .build();
-            cart = cartRepository.save(cart);
-        }
-
-        // Guardar en sesión para futuras peticiones.
-        if (session != null) {
-            session.setAttribute("cart", cart);
-        } else {
-            // Crear sesión si no existe.
-            HttpSession newSession = request.getSession(true);
-            newSession.setAttribute("cart", cart);
-        }
-
-        return cart;
-    }
-
-    /**
-     * Alias de getCarrito para consistencia.
-     *
-     * @param request        Petición HTTP.
-     * @param authentication Información de autenticación.
-     * @return Carrito del usuario.
-     */
-    @ModelAttribute("cart")
-    public Cart getCart(HttpServletRequest request, Authentication authentication) {
-        return getCarrito(request, authentication);
-    }
-
-    /**
-     * Proporciona el número de ítems del carrito como String.
-     *
-     * @param request Petición HTTP.
-     * @return Número de ítems como String, o cadena vacía si es 0.
-     */
-    @ModelAttribute("items_carrito")
-    public String itemsCarrito(HttpServletRequest request) {
-        int count = getCartItemCount(request);
-        return count > 0 ? Integer.toString(count) : "";
+    public Long getCurrentUserId() {
+        User user = view.getCurrentUser();
+        return user != null ? user.getId() : null;
     }
 
     /**
@@ -420,130 +224,4 @@ public class GlobalFuncionController {
         }
         return null;
     }
-
-    /**
-     * Verifica si el producto actual está en el carrito del usuario.
-     *
-     * @param request Petición HTTP.
-     * @return true si el producto está en el carrito.
-     */
-    @ModelAttribute("isCart")
-    public boolean isCart(HttpServletRequest request, Authentication authentication) {
-        // Solo aplicable si el usuario tiene rol USER.
-        if (!isUser(authentication)) {
-            return false;
-        }
-
-        String productId = extractProductIdFromPath(request);
-        if (productId == null) {
-            return false;
-        }
-
-        Cart cart = getCarrito(request, authentication);
-        if (cart == null || cart.getCartLines() == null) {
-            return false;
-        }
-
-        return cart.getCartLines().stream()
-                .anyMatch(line -> line.getProductId().equals(productId));
-    }
-
-    /**
-     * Verifica si el producto actual está en los favoritos del usuario.
-     *
-     * @param request        Petición HTTP.
-     * @param authentication Información de autenticación.
-     * @return true si el producto está en favoritos.
-     */
-    @ModelAttribute("isFav")
-    public boolean isFav(HttpServletRequest request, Authentication authentication) {
-        String productId = extractProductIdFromPath(request);
-        if (productId == null) {
-            return false;
-        }
-
-        User user = getCurrentUser(authentication);
-        if (user == null || user.getFavs() == null) {
-            return false;
-        }
-
-        return user.getFavs().contains(productId);
-    }
-
-    /**
-     * Verifica si el producto actual pertenece al manager autenticado.
-     *
-     * @param request        Petición HTTP.
-     * @param authentication Información de autenticación.
-     * @return true si el manager autenticado es el creador del producto.
-     */
-    @ModelAttribute("isMine")
-    public boolean isMine(HttpServletRequest request, Authentication authentication) {
-        log.info("isMine() LLAMADO");
-
-        // Solo aplicable si el usuario es manager
-        if (!isManager(authentication)) {
-            log.info("isMine - User is not a manager, returning false");
-            return false;
-        }
-
-        String productId = extractProductIdFromPath(request);
-        log.info("isMine ID de producto extraído: {}", productId);
-        if (productId == null) {
-            log.info("isMine ID de producto es null, devolviendo false");
-            return false;
-        }
-
-        User user = getCurrentUser(authentication);
-        if (user == null) {
-            log.info("isMine El usuario es nulo, devolviendo false");
-            return false;
-        }
-        log.info("isMine ID: {}", user.getId());
-
-        try {
-            Long productCreatorId = productService.getUserProductId(productId);
-            log.info("isMine ID del creador del producto: {}", productCreatorId);
-            boolean result = productCreatorId != null && productCreatorId.equals(user.getId());
-            log.info("isMine Result: {}", result);
-            return result;
-        } catch (Exception e) {
-            log.error("Error al verificar propietario del producto: " + e.getMessage());
-            return false;
-        }
-    }
-
-    /**
-     * Extrae el ID del producto de la ruta de la petición.
-     * Soporta rutas como /products/{id} y /auth/me/products/edit/{id}
-     *
-     * @param request Petición HTTP.
-     * @return ID del producto o null si no se encuentra.
-     */
-    private String extractProductIdFromPath(HttpServletRequest request) {
-        String path = request.getRequestURI();
-        log.info("extractProductIdFromPath - Request URI: {}", path);
-
-        // regex para /products/{id} - ahora soporta guiones y guiones bajos en el ID
-        // Excluye rutas reservadas como /products/save, /products/create, etc.
-        if (path.matches(".*/products/(?!save$)[a-zA-Z0-9\\-_]+$")) {
-            String[] parts = path.split("/");
-            String productId = parts[parts.length - 1];
-            log.info("extractProductIdFromPath Coincide /products/{id}, ID extraído: {}", productId);
-            return productId;
-        }
-
-        // regex para /auth/me/products/edit/{id} o /auth/me/products/delete/{id}
-        if (path.matches(".*/auth/me/products/(edit|delete)/[a-zA-Z0-9\\-_]+$")) {
-            String[] parts = path.split("/");
-            String productId = parts[parts.length - 1];
-            log.info("extractProductIdFromPath Coincide /auth/me/products/(edit|delete)/{id}, ID extraído: {}",
-                    productId);
-            return productId;
-        }
-
-        log.info("extractProductIdFromPath Sin coincidencias, devolviendo null");
-        return null;
-    }
-
 }
@@ -0,0 +1,301 @@
+package dev.luisvives.dawazon.common.controller;
+
+import dev.luisvives.dawazon.cart.dto.CartSummary;
+import dev.luisvives.dawazon.cart.exceptions.CartException;
+import dev.luisvives.dawazon.cart.models.Cart;
+import dev.luisvives.dawazon.cart.repository.CartRepository;
+import dev.luisvives.dawazon.cart.service.CartService;
+import dev.luisvives.dawazon.cart.service.CartSummarySession;
+import dev.luisvives.dawazon.products.service.ProductService;
+import dev.luisvives.dawazon.users.models.Role;
+import dev.luisvives.dawazon.users.models.User;
+import dev.luisvives.dawazon.users.service.FavService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.util.Lazy;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Datos comunes de las vistas para la petición en curso.
+ * <p>
+ * Se crea uno por petición y cada dato se calcula la primera vez que se pide
+ * (desde una plantilla, como {@code view.categorias}, o desde
+ * {@link GlobalFuncionController}) y se reutiliza el resto de la petición. Así
+ * las páginas que no muestran categorías o no son de un producto no consultan
+ * la base de datos para ello.
+ * </p>
+ */
+@Slf4j
+@Component
+@RequestScope
+public class RequestViewContext {
+    /**
+     * Rutas con el ID de un producto al final: {@code /products/{id}} (salvo
+     * {@code /products/save}) y {@code /auth/me/products/(edit|delete)/{id}}.
+     */
+    private static final Pattern PRODUCT_PATH = Pattern.compile(
+            ".*/(?:auth/me/products/(?:edit|delete)/|products/(?!save$))([a-zA-Z0-9\\-_]+)$");
+
+    /**
+     * Servicio de productos.
+     */
+    private final ProductService productService;
+
+    /**
+     * Servicio de carritos.
+     */
+    private final CartService cartService;
+
+    /**
+     * Repositorio de carritos.
+     */
+    private final CartRepository cartRepository;
+
+    /**
+     * Resumen del carrito en la sesión HTTP.
+     */
+    private final CartSummarySession cartSummarySession;
+
+    /**
+     * Servicio de favoritos.
+     */
+    private final FavService favService;
+
+    /**
+     * Petición HTTP en curso.
+     */
+    private final HttpServletRequest request;
+
+    /**
+     * Usuario autenticado.
+     */
+    private final Lazy<User> currentUser = Lazy.of(this::resolveCurrentUser);
+
+    /**
+     * Categorías disponibles.
+     */
+    private final Lazy<List<String>> categorias = Lazy.of(this::resolveCategorias);
+
+    /**
+     * Resumen del carrito del usuario.
+     */
+    private final Lazy<CartSummary> cartSummary = Lazy.of(this::resolveCartSummary);
+
+    /**
+     * ID del producto de la ruta.
+     */
+    private final Lazy<String> productId = Lazy.of(this::resolveProductId);
+
+    /**
+     * Si el producto de la ruta es del manager autenticado.
+     */
+    private final Lazy<Boolean> mine = Lazy.of(this::resolveMine);
+
+    /**
+     * Si el producto de la ruta está en los favoritos del usuario.
+     */
+    private final Lazy<Boolean> fav = Lazy.of(this::resolveFav);
+
+    /**
+     * Usuarios que tienen en favoritos el producto de la ruta.
+     */
+    private final Lazy<Long> favCount = Lazy.of(this::resolveFavCount);
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param productService     Servicio de productos.
+     * @param cartService        Servicio de carritos.
+     * @param cartRepository     Repositorio de carritos.
+     * @param cartSummarySession Resumen del carrito en la sesión HTTP.
+     * @param favService         Servicio de favoritos.
+     * @param request            Petición HTTP en curso.
+     */
+    @Autowired
+    public RequestViewContext(ProductService productService, CartService cartService, CartRepository cartRepository,
+            CartSummarySession cartSummarySession, FavService favService, HttpServletRequest request) {
+        this.productService = productService;
+        this.cartService = cartService;
+        this.cartRepository = cartRepository;
+        this.cartSummarySession = cartSummarySession;
+        this.favService = favService;
+        this.request = request;
+    }
+
+    /**
+     * Obtiene el usuario autenticado.
+     *
+     * @return Usuario o null si no hay sesión.
+     */
+    public User getCurrentUser() {
+        return currentUser.getNullable();
+    }
+
+    /**
+     * Indica si el usuario autenticado tiene un rol.
+     *
+     * @param role Rol.
+     * @return true si hay usuario y tiene el rol.
+     */
+    public boolean hasRole(Role role) {
+        User user = getCurrentUser();
+        return user != null && user.getRoles() != null && user.getRoles().contains(role);
+    }
+
+    /**
+     * Obtiene la lista de categorías disponibles.
+     *
+     * @return Lista de nombres de categorías.
+     */
+    public List<String> getCategorias() {
+        return categorias.getNullable();
+    }
+
+    /**
+     * Obtiene el resumen del carrito del usuario autenticado.
+     * <p>
+     * Se lee de la sesión; si aún no está, se carga el carrito una vez (o se
+     * crea si el usuario no tiene) y el servicio de carritos guarda su resumen.
+     * </p>
+     *
+     * @return Resumen del carrito o null si no hay usuario autenticado.
+     */
+    public CartSummary getCartSummary() {
+        return cartSummary.getNullable();
+    }
+
+    /**
+     * Obtiene el número de líneas del carrito.
+     *
+     * @return Número de productos en el carrito.
+     */
+    public int getCartItemCount() {
+        CartSummary summary = getCartSummary();
+        return summary == null ? 0 : summary.getItemCount();
+    }
+
+    /**
+     * Obtiene el ID del producto de la ruta de la petición.
+     *
+     * @return ID del producto o null si la ruta no es de un producto.
+     */
+    public String getProductId() {
+        return productId.getNullable();
+    }
+
+    /**
+     * Indica si el producto de la ruta está en el carrito del usuario (solo
+     * USER).
+     *
+     * @return true si el producto está en el carrito.
+     */
+    public boolean isCart() {
+        if (!hasRole(Role.USER) || getProductId() == null) {
+            return false;
+        }
+        CartSummary summary = getCartSummary();
+        return summary != null && summary.contains(getProductId());
+    }
+
+    /**
+     * Indica si el producto de la ruta está en los favoritos del usuario.
+     * <p>
+     * Se consulta en la base de datos, no en el usuario de la sesión, que no se
+     * actualiza al añadir o quitar favoritos.
+     * </p>
+     *
+     * @return true si el producto está en favoritos.
+     */
+    public boolean isFav() {
+        return fav.get();
+    }
+
+    /**
+     * Obtiene el número de usuarios que tienen en favoritos el producto de la
+     * ruta.
+     *
+     * @return Número de usuarios, 0 si la ruta no es de un producto.
+     */
+    public long getFavCount() {
+        return favCount.get();
+    }
+
+    /**
+     * Indica si el producto de la ruta pertenece al manager autenticado.
+     *
+     * @return true si el manager autenticado es el creador del producto.
+     */
+    public boolean isMine() {
+        return mine.get();
+    }
+
+    private User resolveCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && authentication.getPrincipal() instanceof User user) {
+            return user;
+        }
+        return null;
+    }
+
+    private List<String> resolveCategorias() {
+        return productService.getAllCategorias();
+    }
+
+    private CartSummary resolveCartSummary() {
+        User user = getCurrentUser();
+        if (user == null) {
+            return null;
+        }
+        return cartSummarySession.get().orElseGet(() -> CartSummary.of(loadCart(user)));
+    }
+
+    private Cart loadCart(User user) {
+        try {
+            return cartService.getCartByUserId(user.getId());
+        } catch (CartException.NotFoundException e) {
+            // Si no existe, crear uno nuevo y guardarlo en MongoDB
+            cartRepository.save(Cart.builder()
+                    .userId(user.getId())
+                    .cartLines(new ArrayList<>())
+                    .build());
+            return cartService.getCartByUserId(user.getId());
+        }
+    }
+
+    private String resolveProductId() {
+        Matcher matcher = PRODUCT_PATH.matcher(request.getRequestURI());
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    private Boolean resolveFav() {
+        User user = getCurrentUser();
+        return getProductId() != null && user != null && favService.isFav(getProductId(), user.getId());
+    }
+
+    private Long resolveFavCount() {
+        return getProductId() == null ? 0L : favService.getFavCount(getProductId());
+    }
+
+    private Boolean resolveMine() {
+        if (!hasRole(Role.MANAGER) || getProductId() == null) {
+            return false;
+        }
+        try {
+            Long productCreatorId = productService.getUserProductId(getProductId());
+            return productCreatorId != null && productCreatorId.equals(getCurrentUser().getId());
+        } catch (Exception e) {
+            log.error("Error al verificar propietario del producto: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package dev.luisvives.dawazon.common.email;
+
+import dev.luisvives.dawazon.products.models.PriceDrop;
+
+/**
+ * Servicio para el envío de avisos de bajada de precio.
+ * <p>
+ * Avisa a los usuarios que tienen en favoritos un producto cuyo precio ha
+ * bajado.
+ * </p>
+ */
+public interface PriceDropEmailService {
+
+    /**
+     * Envía el aviso de una bajada de precio a un usuario.
+     *
+     * @param bajada   Bajada de precio.
+     * @param email    Email del usuario.
+     * @param userName Nombre del usuario.
+     */
+    void enviarBajadaPrecio(PriceDrop bajada, String email, String userName);
+}
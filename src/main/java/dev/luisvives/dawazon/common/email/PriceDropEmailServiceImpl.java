@@ -0,0 +1,109 @@
+package dev.luisvives.dawazon.common.email;
+
+import dev.luisvives.dawazon.products.models.PriceDrop;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * Servicio encargado de enviar los avisos de bajada de precio de productos
+ * favoritos.
+ * <p>
+ * Utiliza {@link EmailService} para el envío real de los correos. Un fallo al
+ * enviar a un usuario se registra y no impide avisar al resto.
+ * </p>
+ */
+@Service
+public class PriceDropEmailServiceImpl implements PriceDropEmailService {
+
+    /**
+     * Logger para registrar errores en el envío de avisos.
+     */
+    private final Logger logger = LoggerFactory.getLogger(PriceDropEmailServiceImpl.class);
+
+    /**
+     * Servicio utilizado para el envío de correos electrónicos.
+     */
+    private final EmailService emailService;
+
+    /**
+     * URL pública de la tienda, para enlazar el producto.
+     */
+    private final String serverUrl;
+
+    /**
+     * Constructor de la clase.
+     *
+     * @param emailService servicio encargado de enviar correos electrónicos
+     * @param serverUrl    URL pública de la tienda (propiedad {@code server.url})
+     */
+    public PriceDropEmailServiceImpl(EmailService emailService,
+                                     @Value("${server.url:http://localhost:3000}") String serverUrl) {
+        this.emailService = emailService;
+        this.serverUrl = serverUrl;
+    }
+
+    /**
+     * Envía el aviso de una bajada de precio a un usuario en formato HTML.
+     *
+     * @param bajada   Bajada de precio.
+     * @param email    Email del usuario.
+     * @param userName Nombre del usuario.
+     */
+    @Override
+    public void enviarBajadaPrecio(PriceDrop bajada, String email, String userName) {
+        try {
+            String subject = "¡" + bajada.getProductName() + " ha bajado de precio!";
+            emailService.sendHtmlEmail(email, subject, crearCuerpoEmail(bajada, userName));
+        } catch (Exception e) {
+            logger.error("Error enviando aviso de bajada de precio del producto {} a {}: {}",
+                    bajada.getProductId(), email, e.getMessage());
+        }
+    }
+
+    /**
+     * Crea el cuerpo del aviso con el precio anterior, el nuevo y un enlace al
+     * producto.
+     *
+     * @param bajada   Bajada de precio.
+     * @param userName Nombre del usuario.
+     * @return Cuerpo del correo en formato HTML.
+     */
+    private String crearCuerpoEmail(PriceDrop bajada, String userName) {
+        NumberFormat currencyFormatter = NumberFormat.getCurrencyInstance(new Locale("es", "ES"));
+        return String.format("""
+                <!DOCTYPE html>
+                <html lang="es">
+                <head>
+                    <meta charset="UTF-8">
+                    <title>Bajada de precio</title>
+                </head>
+                <body style="font-family: Arial, sans-serif; line-height: 1.6; color: #333; margin: 0; padding: 20px;">
+                    <div style="max-width: 600px; margin: 0 auto;">
+                        <p><strong>¡Hola %s!</strong></p>
+                        <p>Un producto que tienes en favoritos ha bajado de precio:</p>
+                        <h2 style="color: #4CAF50;">%s</h2>
+                        <p>
+                            <span style="text-decoration: line-through; color: #999;">%s</span>
+                            <strong style="color: #4CAF50; font-size: 20px;">%s</strong>
+                        </p>
+                        <p><a href="%s/products/%s">Ver producto</a></p>
+                        <p style="text-align: center; font-size: 12px; color: #666;">
+                            Este es un email automático, por favor no respondas a este mensaje.
+                        </p>
+                    </div>
+                </body>
+                </html>
+                """,
+                userName,
+                bajada.getProductName(),
+                currencyFormatter.format(bajada.getOldPrice()),
+                currencyFormatter.format(bajada.getNewPrice()),
+                serverUrl,
+                bajada.getProductId());
+    }
+}
@@ -78,6 +78,21 @@ public class GlobalExceptionHandler {
         return "blocked";
     }
 
+    /**
+     * Maneja los intentos de modificar un carrito con el pago en curso.
+     *
+     * @param ex    Excepción lanzada.
+     * @param model Modelo para la vista.
+     * @return Vista de error "blocked".
+     */
+    @ExceptionHandler(CartException.CheckoutInProgressException.class)
+    public String handleCheckoutInProgress(CartException ex, Model model) {
+        model.addAttribute("status", "409");
+        model.addAttribute("message", ex.getMessage());
+        model.addAttribute("title", "Pago en curso");
+        return "blocked";
+    }
+
     /**
      * Maneja excepciones de cantidad de intentos excedida.
      *
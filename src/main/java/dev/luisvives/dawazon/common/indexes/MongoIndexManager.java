@@ -0,0 +1,226 @@
+package dev.luisvives.dawazon.common.indexes;
+
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.MongoException;
+import dev.luisvives.dawazon.cart.models.Cart;
+import dev.luisvives.dawazon.cart.models.SaleLine;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Gestión de los índices de MongoDB.
+ * <p>
+ * Define el conjunto de índices que necesitan las consultas frecuentes sobre
+ * carritos y líneas de venta, los crea al arrancar la aplicación y comprueba con
+ * {@code explain} que ninguna de esas consultas recorre la colección completa
+ * ({@code COLLSCAN}). Si la propiedad
+ * {@code mongo.indexes.fail-on-collscan} está activa, el arranque falla en ese
+ * caso; si no, solo se registra un error.
+ * </p>
+ */
+@Component
+@Slf4j
+public class MongoIndexManager {
+    /**
+     * Template de MongoDB.
+     */
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Si se debe fallar cuando una consulta frecuente hace un {@code COLLSCAN}.
+     */
+    private final boolean failOnCollectionScan;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param mongoTemplate        Template de MongoDB
+     * @param failOnCollectionScan Si se debe fallar ante un {@code COLLSCAN}
+     */
+    @Autowired
+    public MongoIndexManager(MongoTemplate mongoTemplate,
+            @Value("${mongo.indexes.fail-on-collscan:false}") boolean failOnCollectionScan) {
+        this.mongoTemplate = mongoTemplate;
+        this.failOnCollectionScan = failOnCollectionScan;
+    }
+
+    /**
+     * Crea los índices gestionados y verifica las consultas frecuentes.
+     * <p>
+     * Se ejecuta antes que el resto de tareas de arranque para que las
+     * reconstrucciones de proyecciones ya dispongan de los índices.
+     * </p>
+     *
+     * @throws IllegalStateException Si una consulta hace {@code COLLSCAN} y está
+     *                               activado el fallo
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onApplicationReady() {
+        try {
+            ensureIndexes();
+        } catch (DataAccessException | MongoException e) {
+            log.warn("No se pudieron crear los índices de MongoDB: {}", e.getMessage());
+            return;
+        }
+        verifyHotQueries();
+    }
+
+    /**
+     * Crea (si no existen) todos los índices gestionados.
+     */
+    public void ensureIndexes() {
+        for (ManagedIndex managed : managedIndexes()) {
+            mongoTemplate.indexOps(managed.getEntity()).ensureIndex(managed.getIndex());
+        }
+        log.info("Índices de MongoDB verificados: {}", managedIndexes().size());
+    }
+
+    /**
+     * Ejecuta {@code explain} sobre cada consulta frecuente y detecta las que
+     * recorren la colección completa.
+     *
+     * @return Nombres de las consultas que hacen {@code COLLSCAN}
+     * @throws IllegalStateException Si hay alguna y está activado el fallo
+     */
+    public List<String> verifyHotQueries() {
+        List<String> collectionScans = new ArrayList<>();
+        for (HotQuery query : hotQueries()) {
+            Document explain = mongoTemplate.getCollection(mongoTemplate.getCollectionName(query.getEntity()))
+                    .find(query.getFilter())
+                    .sort(query.getSort())
+                    .explain(ExplainVerbosity.QUERY_PLANNER);
+            Document queryPlanner = explain.get("queryPlanner", Document.class);
+            if (queryPlanner != null && usesCollectionScan(queryPlanner.get("winningPlan", Document.class))) {
+                log.error("La consulta {} recorre la colección completa (COLLSCAN)", query.getName());
+                collectionScans.add(query.getName());
+            }
+        }
+        if (!collectionScans.isEmpty() && failOnCollectionScan) {
+            throw new IllegalStateException("Consultas sin índice: " + collectionScans);
+        }
+        return collectionScans;
+    }
+
+    /**
+     * Comprueba si un plan de ejecución contiene una etapa {@code COLLSCAN}.
+     *
+     * @param plan Plan ganador de {@code explain}
+     * @return {@code true} si alguna etapa recorre la colección completa
+     */
+    static boolean usesCollectionScan(Document plan) {
+        if (plan == null) {
+            return false;
+        }
+        if ("COLLSCAN".equals(plan.getString("stage"))) {
+            return true;
+        }
+        // Según la versión del servidor el plan anida las etapas de distinta forma
+        for (String child : List.of("inputStage", "queryPlan", "outerStage", "innerStage")) {
+            if (usesCollectionScan(plan.get(child, Document.class))) {
+                return true;
+            }
+        }
+        List<Document> inputStages = plan.getList("inputStages", Document.class);
+        return inputStages != null && inputStages.stream().anyMatch(MongoIndexManager::usesCollectionScan);
+    }
+
+    /**
+     * Conjunto de índices gestionados.
+     *
+     * @return Índices con la colección a la que pertenecen
+     */
+    static List<ManagedIndex> managedIndexes() {
+        return List.of(
+                // findByUserIdAndPurchased y findAll(userId, purchased)
+                new ManagedIndex(Cart.class, new Index()
+                        .on("userId", Sort.Direction.ASC)
+                        .on("purchased", Sort.Direction.ASC)),
+                // findAll(purchased) ordenado por fecha y reconstrucciones de ventas
+                new ManagedIndex(Cart.class, new Index()
+                        .on("purchased", Sort.Direction.ASC)
+                        .on("createdAt", Sort.Direction.DESC)),
+                // cleanupExpiredCheckouts
+                new ManagedIndex(Cart.class, new Index()
+                        .on("checkoutInProgress", Sort.Direction.ASC)
+                        .on("purchased", Sort.Direction.ASC)
+                        .on("checkoutStartedAt", Sort.Direction.ASC)),
+                // Listado de ventas por vendedor
+                new ManagedIndex(SaleLine.class, new Index()
+                        .on("managerId", Sort.Direction.ASC)
+                        .on("createdAt", Sort.Direction.DESC)
+                        .on("_id", Sort.Direction.DESC)),
+                // Listado de todas las ventas
+                new ManagedIndex(SaleLine.class, new Index()
+                        .on("createdAt", Sort.Direction.DESC)
+                        .on("_id", Sort.Direction.DESC)),
+                new ManagedIndex(SaleLine.class, new Index()
+                        .on("saleId", Sort.Direction.ASC)));
+    }
+
+    /**
+     * Formas de las consultas frecuentes que deben usar un índice.
+     *
+     * @return Consultas a verificar con {@code explain}
+     */
+    static List<HotQuery> hotQueries() {
+        return List.of(
+                new HotQuery("cart.findByUserIdAndPurchased", Cart.class,
+                        new Document("userId", 0L).append("purchased", false),
+                        new Document()),
+                new HotQuery("cart.findAllByUserId", Cart.class,
+                        new Document("userId", 0L),
+                        new Document()),
+                new HotQuery("cart.findAllByPurchased", Cart.class,
+                        new Document("purchased", true),
+                        new Document("createdAt", -1)),
+                new HotQuery("cart.cleanupExpiredCheckouts", Cart.class,
+                        new Document("checkoutInProgress", true)
+                                .append("purchased", false)
+                                .append("checkoutStartedAt", new Document("$lte", new Date())),
+                        new Document()),
+                new HotQuery("sale_lines.findAllByManagerId", SaleLine.class,
+                        new Document("managerId", 0L),
+                        new Document("createdAt", -1).append("_id", -1)));
+    }
+
+    /**
+     * Índice gestionado junto con la entidad de su colección.
+     */
+    @Data
+    @AllArgsConstructor
+    static class ManagedIndex {
+        private Class<?> entity;
+        private Index index;
+    }
+
+    /**
+     * Forma de una consulta frecuente: filtro y orden tal y como llegan a
+     * MongoDB.
+     */
+    @Data
+    @AllArgsConstructor
+    static class HotQuery {
+        private String name;
+        private Class<?> entity;
+        private Document filter;
+        private Document sort;
+    }
+}
@@ -0,0 +1,18 @@
+package dev.luisvives.dawazon.common.leader;
+
+/**
+ * Elección de líder entre las réplicas de la aplicación.
+ * <p>
+ * Las tareas programadas que no deben ejecutarse en paralelo en varias
+ * réplicas comprueban {@link #isLeader()} al empezar cada ciclo y no hacen
+ * nada si esta réplica no es la líder.
+ * </p>
+ */
+public interface LeaderElection {
+    /**
+     * Comprueba si esta réplica tiene ahora mismo el liderazgo.
+     *
+     * @return {@code true} si es la líder
+     */
+    boolean isLeader();
+}
@@ -0,0 +1,16 @@
+package dev.luisvives.dawazon.common.leader;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Elección de líder para una única réplica: siempre es la líder.
+ */
+@Component
+@ConditionalOnProperty(name = "scheduling.leader.store", havingValue = "local")
+public class LocalLeaderElection implements LeaderElection {
+    @Override
+    public boolean isLeader() {
+        return true;
+    }
+}
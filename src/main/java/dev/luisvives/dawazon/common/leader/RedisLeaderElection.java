@@ -0,0 +1,156 @@
+package dev.luisvives.dawazon.common.leader;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Elección de líder con un arrendamiento en Redis.
+ * <p>
+ * La clave {@code scheduling:leader} guarda el ID de la réplica líder y caduca
+ * tras {@code scheduling.leader.lease}. Cada réplica intenta cada
+ * {@code scheduling.leader.heartbeat} ms quedarse con la clave o, si ya es
+ * suya, renovarla. Si la líder se cae, la clave caduca y otra réplica la toma
+ * en su siguiente latido, así que el relevo tarda como mucho un arrendamiento
+ * más un latido.
+ * </p>
+ * <p>
+ * Localmente, el liderazgo se da por perdido al vencer el arrendamiento
+ * contado desde <i>antes</i> de pedirlo, de modo que una réplica que ha
+ * dejado de renovar deja de considerarse líder antes de que otra pueda serlo.
+ * </p>
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "scheduling.leader.store", havingValue = "redis", matchIfMissing = true)
+public class RedisLeaderElection implements LeaderElection {
+    /**
+     * Clave del arrendamiento.
+     */
+    static final String LEADER_KEY = "scheduling:leader";
+
+    /**
+     * KEYS: arrendamiento. ARGV: réplica, duración en ms. Devuelve 1 si la
+     * réplica tiene el arrendamiento.
+     */
+    private static final RedisScript<Long> ACQUIRE = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              redis.call('PEXPIRE', KEYS[1], ARGV[2])
+              return 1
+            end
+            if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then
+              return 1
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * KEYS: arrendamiento. ARGV: réplica. Solo borra la clave si es suya.
+     */
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * Template de Redis.
+     */
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * Duración del arrendamiento.
+     */
+    private final Duration lease;
+
+    /**
+     * Reloj para contar el arrendamiento.
+     */
+    private final Clock clock;
+
+    /**
+     * ID de esta réplica.
+     */
+    @Getter
+    private final String nodeId;
+
+    /**
+     * Instante (epoch ms) hasta el que esta réplica es líder.
+     */
+    private volatile long leaderUntil;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param redisTemplate Template de Redis
+     * @param lease         Duración del arrendamiento
+     */
+    @Autowired
+    public RedisLeaderElection(StringRedisTemplate redisTemplate,
+            @Value("${scheduling.leader.lease:15s}") Duration lease) {
+        this(redisTemplate, lease, Clock.systemUTC(), UUID.randomUUID().toString());
+    }
+
+    RedisLeaderElection(StringRedisTemplate redisTemplate, Duration lease, Clock clock, String nodeId) {
+        this.redisTemplate = redisTemplate;
+        this.lease = lease;
+        this.clock = clock;
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * Intenta tomar o renovar el arrendamiento.
+     */
+    @Scheduled(fixedRateString = "${scheduling.leader.heartbeat:5000}")
+    public void heartbeat() {
+        long requestedAt = clock.millis();
+        boolean wasLeader = isLeader();
+        try {
+            Long acquired = redisTemplate.execute(ACQUIRE, List.of(LEADER_KEY), nodeId,
+                    String.valueOf(lease.toMillis()));
+            leaderUntil = Long.valueOf(1).equals(acquired) ? requestedAt + lease.toMillis() : 0;
+        } catch (RuntimeException e) {
+            log.warn("No se pudo renovar el liderazgo: {}", e.getMessage());
+            leaderUntil = 0;
+        }
+        if (wasLeader != isLeader()) {
+            log.info("Réplica {} {} el liderazgo", nodeId, isLeader() ? "obtiene" : "pierde");
+        }
+    }
+
+    @Override
+    public boolean isLeader() {
+        return clock.millis() < leaderUntil;
+    }
+
+    /**
+     * Cede el liderazgo al detener la réplica para que otra lo tome sin esperar
+     * a que caduque.
+     */
+    @PreDestroy
+    public void release() {
+        if (leaderUntil == 0) {
+            return;
+        }
+        leaderUntil = 0;
+        try {
+            redisTemplate.execute(RELEASE, List.of(LEADER_KEY), nodeId);
+        } catch (RuntimeException e) {
+            log.warn("No se pudo ceder el liderazgo: {}", e.getMessage());
+        }
+    }
+}
@@ -101,6 +101,7 @@ public class SecurityConfig {
                         .requestMatchers("/files/**").permitAll()
                         .requestMatchers("/", "/products", "/products/**", "/productos", "/productos/**").permitAll()
                         .requestMatchers("/auth/signin", "/auth/signup", "/auth/signin-post").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
 
                         .anyRequest().authenticated())
                 .formLogin(form -> form
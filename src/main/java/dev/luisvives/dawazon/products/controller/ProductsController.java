@@ -1,9 +1,13 @@
 package dev.luisvives.dawazon.products.controller;
 
+import dev.luisvives.dawazon.common.dto.PageResponseDTO;
+import dev.luisvives.dawazon.products.dto.CommentDto;
 import dev.luisvives.dawazon.products.dto.PostProductRequestDto;
 import dev.luisvives.dawazon.products.models.Comment;
 import dev.luisvives.dawazon.products.mapper.ProductMapper;
+import dev.luisvives.dawazon.products.repository.ProductRepository.ProductListing;
 import dev.luisvives.dawazon.products.service.ProductService;
+import dev.luisvives.dawazon.products.service.ProductStockShardService;
 import dev.luisvives.dawazon.users.models.User;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
@@ -49,6 +53,11 @@ import java.util.Optional;
 @Controller
 @Slf4j
 public class ProductsController {
+    /**
+     * Máximo de comentarios por página en {@link #getComments}.
+     */
+    static final int MAX_COMMENTS_PAGE_SIZE = 50;
+
     /**
      * Servicio de productos para lógica de negocio.
      */
@@ -59,16 +68,24 @@ public class ProductsController {
      */
     ProductMapper mapper;
 
+    /**
+     * Servicio de subcontadores de stock de productos calientes.
+     */
+    ProductStockShardService shardService;
+
     /**
      * Constructor con inyección de dependencias.
      *
      * @param productService Servicio de productos.
      * @param mapper         Mapper de productos.
+     * @param shardService   Servicio de subcontadores de stock.
      */
     @Autowired
-    public ProductsController(ProductService productService, ProductMapper mapper) {
+    public ProductsController(ProductService productService, ProductMapper mapper,
+            ProductStockShardService shardService) {
         this.productService = productService;
         this.mapper = mapper;
+        this.shardService = shardService;
     }
 
     /**
@@ -102,9 +119,12 @@ public class ProductsController {
                 : Sort.by(sortBy).descending();
         // Creamos cómo va a ser la paginación
         Pageable pageable = PageRequest.of(page, size, sort);
-        val products = mapper.pageToDTO(productService.findAll(name, category, Optional.empty(), pageable), sortBy,
-                direction);
+        val page = productService.findListing(name, category, Optional.empty(), pageable);
+        val products = mapper.pageToDTO(page, sortBy, direction);
         model.addAttribute("productos", products);
+        // El stock mostrado descuenta las reservas de los pagos en curso
+        model.addAttribute("stockDisponible",
+                productService.getAvailableStock(page.map(ProductListing::getId).getContent()));
         return "web/productos/lista";
     }
 
@@ -120,6 +140,8 @@ public class ProductsController {
         log.info("Buscando productos por id: " + id);
         val product = productService.getById(id);
         model.addAttribute("producto", product);
+        model.addAttribute("stockDisponible",
+                productService.getAvailableStock(List.of(id)).getOrDefault(id, 0));
         return "web/productos/producto";
     }
 
@@ -166,6 +188,29 @@ public class ProductsController {
         return "redirect:/products/" + productoEdit.getId();
     }
 
+    /**
+     * Obtiene una página de los comentarios de un producto.
+     * <p>
+     * Endpoint REST que retorna JSON. La ficha del producto solo trae la primera
+     * página; el resto se pide desde ella con este endpoint.
+     * </p>
+     *
+     * @param id   ID del producto.
+     * @param page Número de página (por defecto 0; si es negativo, 0).
+     * @param size Tamaño de página (por defecto 10, entre 1 y
+     *             {@link #MAX_COMMENTS_PAGE_SIZE}).
+     * @return Página de comentarios ordenados por fecha.
+     */
+    @GetMapping("/products/{id}/comentarios")
+    @ResponseBody
+    public PageResponseDTO<CommentDto> getComments(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.clamp(size, 1, MAX_COMMENTS_PAGE_SIZE));
+        return mapper.commentPageToDTO(productService.getComments(id, pageable));
+    }
+
     /**
      * Publica un comentario en un producto.
      * <p>
@@ -235,4 +280,26 @@ public class ProductsController {
         return "redirect:/products";
     }
 
+    /**
+     * Activa, cambia o desactiva el modo "producto caliente" de un producto.
+     * <p>
+     * Solo usuarios admins. Con {@code count} mayor que 0 el stock se reparte
+     * entre ese número de subcontadores; con 0 vuelve a la fila del producto.
+     * </p>
+     *
+     * @param id    ID del producto.
+     * @param count Número de subcontadores (0 para desactivar).
+     * @return Redirección al detalle del producto.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/products/{id}/shards")
+    public String setStockShards(@PathVariable String id, @RequestParam int count) {
+        if (count > 0) {
+            shardService.enable(id, count);
+        } else {
+            shardService.disable(id);
+        }
+        return "redirect:/products/" + id;
+    }
+
 }
@@ -21,6 +21,8 @@ import java.util.List;
  *   <li><b>price</b> (<code>Double</code>): Precio del producto.</li>
  *   <li><b>category</b> (<code>String</code>): Nombre de la categoría asociada.</li>
  *   <li><b>descripcion</b> (<code>String</code>): Descripción del producto o entidad.</li>
+ *   <li><b>comments</b> (<code>List&lt;CommentDto&gt;</code>): Primera página de comentarios.</li>
+ *   <li><b>commentCount</b> (<code>long</code>): Número total de comentarios.</li>
  *   <li><b>image</b> (<code>String</code>): Nombre o ruta de la imagen asociada.</li>
  * </ul>
  */
@@ -59,8 +61,17 @@ public class GenericProductResponseDto {
      * Descripción del producto o entidad.
      */
     private String description;
+
+    /**
+     * Primera página de comentarios del producto. El resto se pide por páginas.
+     */
     private List<CommentDto> comments;
 
+    /**
+     * Número total de comentarios del producto.
+     */
+    private long commentCount;
+
     /**
      * Nombre o ruta de la imagen asociada.
      */
@@ -72,6 +72,20 @@ public class ProductMapper {
                 .description(productoFound.getDescription()).build();
     }
 
+    /**
+     * Convierte un modelo {@link Product} a un DTO de respuesta genérica con la
+     * primera página de sus comentarios y el total de comentarios.
+     *
+     * @param productoFound Producto a convertir.
+     * @param firstPage     Primera página de comentarios ya transformados a DTO.
+     * @return DTO con la información del producto.
+     */
+    public GenericProductResponseDto modelToGenericResponseDTO(Product productoFound, Page<CommentDto> firstPage) {
+        GenericProductResponseDto dto = modelToGenericResponseDTO(productoFound, firstPage.getContent());
+        dto.setCommentCount(firstPage.getTotalElements());
+        return dto;
+    }
+
     /**
      * Convierte un DTO de POST/PUT a un modelo {@link Product}.
      * <p>
@@ -90,7 +104,6 @@ public class ProductMapper {
                 .description(productoDto.getDescription())
                 .creatorId(productoDto.getCreatorId())
                 .images(new java.util.ArrayList<>())
-                .comments(new java.util.ArrayList<>())
                 .build();
     }
 
@@ -115,7 +128,8 @@ public class ProductMapper {
     }
 
     /**
-     * Convierte una {@link Page} de productos a un {@link PageResponseDTO}.
+     * Convierte una {@link Page} de productos (entidades o proyecciones de
+     * listado) a un {@link PageResponseDTO}.
      * <p>
      * Incluye metadatos de paginación como número de página, tamaño, total de
      * elementos,
@@ -127,7 +141,7 @@ public class ProductMapper {
      * @param direction Dirección de ordenamiento (asc/desc).
      * @return DTO de respuesta paginada.
      */
-    public PageResponseDTO<Product> pageToDTO(Page<Product> page, String sortBy, String direction) {
+    public <T> PageResponseDTO<T> pageToDTO(Page<T> page, String sortBy, String direction) {
         return new PageResponseDTO<>(
                 page.getContent()
                         .stream()
@@ -143,4 +157,26 @@ public class ProductMapper {
                 sortBy,
                 direction);
     }
+
+    /**
+     * Convierte una {@link Page} de comentarios a un {@link PageResponseDTO}.
+     * Los comentarios siempre se ordenan por fecha ascendente.
+     *
+     * @param page Página de comentarios.
+     * @return DTO de respuesta paginada.
+     */
+    public PageResponseDTO<CommentDto> commentPageToDTO(Page<CommentDto> page) {
+        return new PageResponseDTO<>(
+                page.getContent(),
+                page.getTotalPages(),
+                page.getTotalElements(),
+                page.getSize(),
+                page.getNumber(),
+                page.getNumberOfElements(),
+                page.isEmpty(),
+                page.isFirst(),
+                page.isLast(),
+                "createdAt",
+                "asc");
+    }
 }
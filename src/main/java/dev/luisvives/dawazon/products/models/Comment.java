@@ -10,18 +10,21 @@ import org.springframework.data.annotation.CreatedDate;
 import java.time.LocalDateTime;
 
 /**
- * Clase embebible que representa un comentario de un usuario sobre un producto.
+ * Entidad que representa un comentario de un usuario sobre un producto.
  * <p>
  * Los comentarios permiten a los usuarios compartir sus opiniones y
  * experiencias
- * sobre los productos que han adquirido o revisado. Esta clase se embebe dentro
- * de {@link Product} y se almacena en una tabla separada.
+ * sobre los productos que han adquirido o revisado. Se guardan en la tabla
+ * {@code product_comments} y se consultan por páginas con
+ * {@link dev.luisvives.dawazon.products.repository.CommentRepository}: cargar un
+ * {@link Product} no carga sus comentarios.
  * </p>
  *
  * <p>
  * Características:
  * <ul>
- * <li>Identificación del usuario que realizó el comentario</li>
+ * <li>Producto comentado e identificación del usuario que realizó el
+ * comentario</li>
  * <li>Contenido textual del comentario</li>
  * <li>Indicador de si el comentario está verificado</li>
  * <li>Indicador de si el usuario recomienda el producto</li>
@@ -35,8 +38,25 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
-@Embeddable
+@Entity
+@Table(name = "product_comments", indexes = {
+        @Index(name = "idx_product_comments_product_created", columnList = "product_id, created_at, id")
+})
 public class Comment {
+    /**
+     * Identificador del comentario. Desempata los comentarios creados en el
+     * mismo instante al ordenar.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * ID del producto comentado.
+     */
+    @Column(name = "product_id", nullable = false)
+    private String productId;
+
     /**
      * ID del usuario que realizó el comentario.
      */
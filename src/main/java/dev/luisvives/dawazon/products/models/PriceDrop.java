@@ -0,0 +1,106 @@
+package dev.luisvives.dawazon.products.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bajada de precio de un producto pendiente de avisar a quienes lo tienen en
+ * favoritos.
+ * <p>
+ * Se guarda en la misma transacción que el cambio de precio y se procesa en
+ * segundo plano por lotes. {@code lastFavoriteId} es el cursor: el ID del
+ * último favorito avisado, de modo que el aviso continúa donde se quedó si se
+ * interrumpe.
+ * </p>
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "price_drop", indexes = {
+        @Index(name = "idx_price_drop_pending", columnList = "finished_at, id")
+})
+public class PriceDrop {
+    /**
+     * Identificador de la bajada.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * ID del producto.
+     */
+    @Column(name = "product_id", nullable = false)
+    private String productId;
+
+    /**
+     * Nombre del producto al bajar el precio.
+     */
+    @Column(nullable = false)
+    private String productName;
+
+    /**
+     * Precio anterior.
+     */
+    @Column(nullable = false)
+    private Double oldPrice;
+
+    /**
+     * Precio nuevo.
+     */
+    @Column(nullable = false)
+    private Double newPrice;
+
+    /**
+     * ID del último favorito avisado (0 si no se ha empezado).
+     */
+    @Column(nullable = false)
+    @Builder.Default
+    private Long lastFavoriteId = 0L;
+
+    /**
+     * Usuarios avisados hasta ahora.
+     */
+    @Column(nullable = false)
+    @Builder.Default
+    private Long notified = 0L;
+
+    /**
+     * Fecha de la bajada.
+     */
+    @Column(nullable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    /**
+     * Fecha en que se terminó de avisar, o null si está pendiente.
+     */
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    /**
+     * Versión para control de concurrencia optimista. Cada lote se reserva
+     * avanzando el cursor antes de enviar los avisos; si otra réplica lo ha
+     * avanzado antes, el guardado falla y el lote no se envía dos veces.
+     */
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private Long version = 0L;
+}
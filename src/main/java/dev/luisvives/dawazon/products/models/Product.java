@@ -30,7 +30,8 @@ import java.util.List;
  * <li>Relación {@link ManyToOne} con {@link Category} para clasificación de
  * productos</li>
  * <li>Colección de imágenes asociadas al producto</li>
- * <li>Sistema de comentarios embebidos mediante {@link Comment}</li>
+ * <li>Comentarios en su propia tabla ({@link Comment}), que se consultan por
+ * páginas y no se cargan con el producto</li>
  * <li>Soft delete mediante el campo {@code isDeleted}</li>
  * <li>Auditoría automática con fechas de creación y actualización</li>
  * <li>Control de concurrencia optimista mediante {@code @Version}</li>
@@ -112,20 +113,6 @@ public class Product {
         @ManyToOne(fetch = FetchType.EAGER)
         private Category category;
 
-        /**
-         * Lista de comentarios asociados al producto.
-         * <p>
-         * Los comentarios son objetos embebibles ({@link Comment}) almacenados en una
-         * tabla
-         * separada {@code product_comments} mediante {@link CollectionTable}.
-         * Se cargan de forma EAGER para mostrarlos junto con el producto.
-         * </p>
-         */
-        @ElementCollection(fetch = FetchType.EAGER)
-        @CollectionTable(name = "product_comments", joinColumns = @JoinColumn(name = "product_id"))
-        @Builder.Default
-        private List<Comment> comments = new java.util.ArrayList<>();
-
         /**
          * Indica si el producto ha sido eliminado lógicamente.
          * <p>
@@ -0,0 +1,65 @@
+package dev.luisvives.dawazon.products.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Subcontador de stock de un producto en modo "producto caliente".
+ * <p>
+ * Cuando un producto tiene subcontadores, su stock vendible se reparte entre
+ * ellos y cada compra descuenta de uno solo, de modo que las compras
+ * concurrentes no se bloquean sobre la misma fila de {@link Product}. En ese
+ * modo {@code Product.stock} es la suma de los subcontadores en la última
+ * consolidación.
+ * </p>
+ *
+ * @see Product
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "product_stock_shard")
+@IdClass(ProductStockShard.Key.class)
+public class ProductStockShard {
+    /**
+     * ID del producto.
+     */
+    @Id
+    @Column(name = "product_id")
+    private String productId;
+
+    /**
+     * Índice del subcontador (de 0 a N-1).
+     */
+    @Id
+    @Column(name = "shard_index")
+    private Integer shardIndex;
+
+    /**
+     * Stock asignado a este subcontador.
+     */
+    @Column(nullable = false)
+    private Integer stock;
+
+    /**
+     * Clave compuesta de un subcontador.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String productId;
+        private Integer shardIndex;
+    }
+}
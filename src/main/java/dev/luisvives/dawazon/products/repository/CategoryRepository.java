@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,4 +32,27 @@ public interface CategoryRepository extends JpaRepository<Category, String> {
      * @return Optional con la categoría si se encuentra, vacío si no.
      */
     Optional<Category> findByNameIgnoreCase(String name);
+
+    /**
+     * Obtiene la versión de la tabla de categorías: número de categorías y
+     * última modificación. Cambia al crear, borrar o modificar una categoría.
+     * @return Versión de las categorías.
+     */
+    @Query("SELECT COUNT(c) AS count, MAX(c.updatedAt) AS lastUpdate FROM Category c")
+    CategoryVersion getVersion();
+
+    /**
+     * Versión de la tabla de categorías.
+     */
+    interface CategoryVersion {
+        /**
+         * @return Número de categorías.
+         */
+        long getCount();
+
+        /**
+         * @return Última modificación, o null si no hay categorías.
+         */
+        LocalDateTime getLastUpdate();
+    }
 }
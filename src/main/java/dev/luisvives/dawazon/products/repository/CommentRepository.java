@@ -0,0 +1,36 @@
+package dev.luisvives.dawazon.products.repository;
+
+import dev.luisvives.dawazon.products.models.Comment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repositorio para los comentarios de los productos.
+ * <p>
+ * Los comentarios se leen siempre por páginas y en un orden estable (ver
+ * {@link #ORDER}), de modo que pasar de página no repite ni salta
+ * comentarios.
+ * </p>
+ *
+ * @see Comment
+ */
+@Repository
+public interface CommentRepository extends JpaRepository<Comment, Long> {
+    /**
+     * Orden de los comentarios: del más antiguo al más reciente y, a igual
+     * fecha, por ID.
+     */
+    Sort ORDER = Sort.by(Sort.Order.asc("createdAt"), Sort.Order.asc("id"));
+
+    /**
+     * Obtiene una página de los comentarios de un producto.
+     *
+     * @param productId ID del producto.
+     * @param pageable  Página a obtener; se ordena con {@link #ORDER}.
+     * @return Página de comentarios con el total.
+     */
+    Page<Comment> findByProductId(String productId, Pageable pageable);
+}
@@ -0,0 +1,23 @@
+package dev.luisvives.dawazon.products.repository;
+
+import dev.luisvives.dawazon.products.models.PriceDrop;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repositorio de las bajadas de precio pendientes de avisar.
+ *
+ * @see PriceDrop
+ */
+@Repository
+public interface PriceDropRepository extends JpaRepository<PriceDrop, Long> {
+    /**
+     * Obtiene la bajada de precio más antigua que aún no se ha terminado de
+     * avisar.
+     *
+     * @return Bajada pendiente, o vacío si no hay ninguna.
+     */
+    Optional<PriceDrop> findFirstByFinishedAtIsNullOrderById();
+}
@@ -10,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -18,12 +19,14 @@ import java.util.List;
  * Extiende {@link JpaRepository} para proporcionar métodos estándar de acceso a
  * datos
  * y define consultas personalizadas para operaciones específicas de productos.
+ * Las operaciones de stock por lotes se implementan en
+ * {@link ProductStockRepository}.
  * </p>
  *
  * @see Product
  */
 @Repository
-public interface ProductRepository extends JpaRepository<Product, String> {
+public interface ProductRepository extends JpaRepository<Product, String>, ProductStockRepository {
     /**
      * Busca productos aplicando especificaciones (filtros) y paginación.
      *
@@ -71,6 +74,155 @@ public interface ProductRepository extends JpaRepository<Product, String> {
      */
     Page<Product> findAllByCreatorId(Long userId, Pageable pageable);
 
+    /**
+     * Obtiene el nombre y el creador de cada uno de los productos indicados.
+     * <p>
+     * Resuelve en una sola consulta a qué vendedor pertenece cada producto sin
+     * cargar las entidades completas.
+     * </p>
+     *
+     * @param ids IDs de los productos.
+     * @return ID, nombre e ID del creador de cada producto.
+     */
+    @Query("SELECT p.id AS id, p.name AS name, p.creatorId AS creatorId FROM Product p WHERE p.id IN :ids")
+    List<ProductCreator> findCreatorsByIdIn(Collection<String> ids);
+
+    /**
+     * Proyección con el ID y nombre de un producto y el ID de su creador.
+     */
+    interface ProductCreator {
+        /**
+         * @return ID del producto.
+         */
+        String getId();
+
+        /**
+         * @return Nombre del producto.
+         */
+        String getName();
+
+        /**
+         * @return ID del usuario creador.
+         */
+        Long getCreatorId();
+    }
+
+    /**
+     * Columnas de {@link ProductListing}: una sola unión con la categoría y la
+     * primera imagen con una subconsulta. Las imágenes se guardan con la fecha de
+     * subida delante del nombre, así que la menor es la primera que se subió.
+     */
+    String LISTING_SELECT = "SELECT p.id AS id, p.name AS name, p.price AS price, p.stock AS stock, "
+            + "c.name AS category, (SELECT MIN(i) FROM Product pi JOIN pi.images i WHERE pi.id = p.id) AS image "
+            + "FROM Product p JOIN p.category c ";
+
+    /**
+     * Busca los datos de listado de los productos no eliminados que cumplen los
+     * filtros.
+     * <p>
+     * Solo lee lo que muestra la rejilla del catálogo; no carga imágenes,
+     * comentarios ni la entidad de la categoría.
+     * </p>
+     *
+     * @param name      Texto que debe contener el nombre, en minúsculas ("" para
+     *                  no filtrar).
+     * @param category  Nombre de la categoría, o null para no filtrar.
+     * @param creatorId ID del creador, o null para no filtrar.
+     * @param pageable  Configuración de paginación y ordenamiento.
+     * @return Página de productos.
+     */
+    @Query(value = LISTING_SELECT + "WHERE p.isDeleted = false AND LOWER(p.name) LIKE CONCAT('%', :name, '%') "
+            + "AND (:category IS NULL OR c.name = :category) AND (:creatorId IS NULL OR p.creatorId = :creatorId)",
+            countQuery = "SELECT COUNT(p) FROM Product p JOIN p.category c "
+                    + "WHERE p.isDeleted = false AND LOWER(p.name) LIKE CONCAT('%', :name, '%') "
+                    + "AND (:category IS NULL OR c.name = :category) AND (:creatorId IS NULL OR p.creatorId = :creatorId)")
+    Page<ProductListing> findListing(String name, String category, Long creatorId, Pageable pageable);
+
+    /**
+     * Busca los datos de listado de los productos indicados, en una sola
+     * consulta y sin orden.
+     *
+     * @param ids IDs de los productos.
+     * @return Productos encontrados.
+     */
+    @Query(LISTING_SELECT + "WHERE p.id IN :ids")
+    List<ProductListing> findListingByIdIn(Collection<String> ids);
+
+    /**
+     * Proyección con los datos de un producto que muestran los listados.
+     */
+    interface ProductListing {
+        /**
+         * @return ID del producto.
+         */
+        String getId();
+
+        /**
+         * @return Nombre del producto.
+         */
+        String getName();
+
+        /**
+         * @return Precio del producto.
+         */
+        Double getPrice();
+
+        /**
+         * @return Stock consolidado del producto.
+         */
+        Integer getStock();
+
+        /**
+         * @return Nombre de la categoría.
+         */
+        String getCategory();
+
+        /**
+         * @return Primera imagen del producto, o null si no tiene.
+         */
+        String getImage();
+    }
+
+    /**
+     * Obtiene el stock de varios productos no eliminados.
+     * <p>
+     * Para los productos con subcontadores se devuelve la suma actual de los
+     * subcontadores en lugar del último valor consolidado.
+     * </p>
+     *
+     * @param ids IDs de los productos.
+     * @return Proyecciones con el ID y el stock de cada producto encontrado.
+     */
+    @Query("SELECT p.id AS id, CAST(COALESCE((SELECT SUM(s.stock) FROM ProductStockShard s "
+            + "WHERE s.productId = p.id), p.stock) AS Integer) AS stock "
+            + "FROM Product p WHERE p.id IN :ids AND p.isDeleted = false")
+    List<ProductStock> findStockByIdIn(Collection<String> ids);
+
+    /**
+     * Proyección con el stock de un producto.
+     */
+    interface ProductStock {
+        /**
+         * @return ID del producto.
+         */
+        String getId();
+
+        /**
+         * @return Stock del producto.
+         */
+        Integer getStock();
+    }
+
+    /**
+     * Fija el stock consolidado de un producto sin cargar la entidad.
+     *
+     * @param id    ID del producto.
+     * @param stock Nuevo stock.
+     */
+    @Modifying
+    @Query("UPDATE Product p SET p.stock = :stock WHERE p.id = :id")
+    void updateStock(String id, int stock);
+
     /**
      * Elimina lógicamente un producto.
      * <p>
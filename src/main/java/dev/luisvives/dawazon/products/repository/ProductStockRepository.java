@@ -0,0 +1,46 @@
+package dev.luisvives.dawazon.products.repository;
+
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * Operaciones de stock de productos ejecutadas directamente con JDBC.
+ * <p>
+ * Fragmento de {@link ProductRepository} para modificar el stock sin cargar
+ * las entidades {@link dev.luisvives.dawazon.products.models.Product}.
+ * </p>
+ */
+public interface ProductStockRepository {
+    /**
+     * Resta stock de varios productos en un único lote de sentencias.
+     * <p>
+     * Cada producto se actualiza con un {@code UPDATE} condicional que solo se
+     * aplica si hay stock suficiente y el producto no está eliminado. Las
+     * sentencias se ejecutan en el orden de las claves para que transacciones
+     * concurrentes bloqueen las filas siempre en el mismo orden.
+     * </p>
+     * <p>
+     * Los productos con subcontadores
+     * ({@link dev.luisvives.dawazon.products.models.ProductStockShard}) no tocan
+     * la fila del producto: se descuenta de un subcontador elegido al azar y,
+     * si ninguno tiene stock suficiente por sí solo, se reparte el descuento
+     * entre todos.
+     * </p>
+     *
+     * @param quantities Cantidad a restar por ID de producto.
+     * @return IDs de los productos que no se han podido actualizar (vacía si
+     *         todos tenían stock).
+     */
+    List<String> decrementStock(SortedMap<String, Integer> quantities);
+
+    /**
+     * Devuelve stock a un producto.
+     * <p>
+     * En los productos con subcontadores la cantidad se suma a uno de ellos.
+     * </p>
+     *
+     * @param productId ID del producto.
+     * @param quantity  Cantidad a sumar.
+     */
+    void incrementStock(String productId, int quantity);
+}
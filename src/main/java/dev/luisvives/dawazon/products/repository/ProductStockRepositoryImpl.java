@@ -0,0 +1,165 @@
+package dev.luisvives.dawazon.products.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Implementación JDBC de {@link ProductStockRepository}.
+ * <p>
+ * Todas las sentencias se envían al servidor en una sola llamada
+ * {@code batchUpdate}. También incrementan {@code version} para que las
+ * entidades cargadas antes del descuento detecten el cambio al guardarse.
+ * </p>
+ */
+public class ProductStockRepositoryImpl implements ProductStockRepository {
+    /**
+     * Sentencia de descuento condicional de stock. Los productos con
+     * subcontadores se excluyen y se descuentan aparte.
+     */
+    private static final String DECREMENT_STOCK_SQL = "UPDATE product SET stock = stock - ?, "
+            + "version = COALESCE(version, 0) + 1 "
+            + "WHERE id = ? AND stock >= ? AND is_deleted = false "
+            + "AND NOT EXISTS (SELECT 1 FROM product_stock_shard s WHERE s.product_id = product.id)";
+
+    /**
+     * Sentencia de devolución de stock a un producto sin subcontadores.
+     */
+    private static final String INCREMENT_STOCK_SQL = "UPDATE product SET stock = stock + ?, "
+            + "version = COALESCE(version, 0) + 1 "
+            + "WHERE id = ? "
+            + "AND NOT EXISTS (SELECT 1 FROM product_stock_shard s WHERE s.product_id = product.id)";
+
+    /**
+     * Subcontadores con stock suficiente para una línea.
+     */
+    private static final String SHARD_CANDIDATES_SQL = "SELECT shard_index FROM product_stock_shard "
+            + "WHERE product_id = ? AND stock >= ?";
+
+    /**
+     * Descuento condicional de un subcontador.
+     */
+    private static final String DECREMENT_SHARD_SQL = "UPDATE product_stock_shard SET stock = stock - ? "
+            + "WHERE product_id = ? AND shard_index = ? AND stock >= ?";
+
+    /**
+     * Bloqueo de todos los subcontadores de un producto, en orden.
+     */
+    private static final String LOCK_SHARDS_SQL = "SELECT shard_index, stock FROM product_stock_shard "
+            + "WHERE product_id = ? ORDER BY shard_index FOR UPDATE";
+
+    /**
+     * Suma de stock a un subcontador.
+     */
+    private static final String ADD_TO_SHARD_SQL = "UPDATE product_stock_shard SET stock = stock + ? "
+            + "WHERE product_id = ? AND shard_index = ?";
+
+    /**
+     * Plantilla JDBC.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param jdbcTemplate Plantilla JDBC
+     */
+    @Autowired
+    public ProductStockRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Resta stock de varios productos en un único lote de sentencias.
+     * <p>
+     * Los productos rechazados por el lote se intentan descontar de sus
+     * subcontadores; solo se devuelven los que tampoco lo consiguen.
+     * </p>
+     *
+     * @param quantities Cantidad a restar por ID de producto.
+     * @return IDs de los productos sin stock suficiente.
+     */
+    @Override
+    public List<String> decrementStock(SortedMap<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return List.of();
+        }
+        List<Map.Entry<String, Integer>> lines = new ArrayList<>(quantities.entrySet());
+        int[] updated = jdbcTemplate.batchUpdate(DECREMENT_STOCK_SQL, lines.stream()
+                .map(line -> new Object[] { line.getValue(), line.getKey(), line.getValue() })
+                .toList());
+
+        List<String> rejected = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            Map.Entry<String, Integer> line = lines.get(i);
+            if (updated[i] == 0 && !decrementShards(line.getKey(), line.getValue())) {
+                rejected.add(line.getKey());
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Devuelve stock a un producto, o a uno de sus subcontadores si los tiene.
+     *
+     * @param productId ID del producto.
+     * @param quantity  Cantidad a sumar.
+     */
+    @Override
+    public void incrementStock(String productId, int quantity) {
+        if (jdbcTemplate.update(INCREMENT_STOCK_SQL, quantity, productId) == 0) {
+            List<Integer> shards = jdbcTemplate.queryForList(SHARD_CANDIDATES_SQL, Integer.class, productId, 0);
+            if (!shards.isEmpty()) {
+                int shard = shards.get(ThreadLocalRandom.current().nextInt(shards.size()));
+                jdbcTemplate.update(ADD_TO_SHARD_SQL, quantity, productId, shard);
+            }
+        }
+    }
+
+    /**
+     * Descuenta una línea de los subcontadores de un producto.
+     * <p>
+     * Se prueba primero con los subcontadores que tienen stock suficiente,
+     * empezando por uno al azar para repartir la contención. Si ninguno basta
+     * por sí solo se bloquean todos y se descuenta repartido.
+     * </p>
+     *
+     * @param productId ID del producto
+     * @param quantity  Cantidad a restar
+     * @return {@code true} si se ha descontado
+     */
+    private boolean decrementShards(String productId, int quantity) {
+        List<Integer> candidates = jdbcTemplate.queryForList(SHARD_CANDIDATES_SQL, Integer.class,
+                productId, quantity);
+        int start = candidates.isEmpty() ? 0 : ThreadLocalRandom.current().nextInt(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            int shard = candidates.get((start + i) % candidates.size());
+            if (jdbcTemplate.update(DECREMENT_SHARD_SQL, quantity, productId, shard, quantity) == 1) {
+                return true;
+            }
+        }
+        return decrementAcrossShards(productId, quantity);
+    }
+
+    private boolean decrementAcrossShards(String productId, int quantity) {
+        List<int[]> shards = jdbcTemplate.query(LOCK_SHARDS_SQL,
+                (rs, rowNum) -> new int[] { rs.getInt("shard_index"), rs.getInt("stock") }, productId);
+        if (shards.stream().mapToInt(shard -> shard[1]).sum() < quantity) {
+            return false;
+        }
+        int remaining = quantity;
+        for (int[] shard : shards) {
+            int taken = Math.min(shard[1], remaining);
+            if (taken > 0) {
+                jdbcTemplate.update(ADD_TO_SHARD_SQL, -taken, productId, shard[0]);
+                remaining -= taken;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,55 @@
+package dev.luisvives.dawazon.products.repository;
+
+import dev.luisvives.dawazon.products.models.ProductStockShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repositorio de los subcontadores de stock de productos calientes.
+ *
+ * @see ProductStockShard
+ */
+@Repository
+public interface ProductStockShardRepository extends JpaRepository<ProductStockShard, ProductStockShard.Key> {
+    /**
+     * Bloquea y devuelve los subcontadores de un producto, siempre en el mismo
+     * orden para evitar interbloqueos.
+     *
+     * @param productId ID del producto.
+     * @return Subcontadores ordenados por índice.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ProductStockShard s WHERE s.productId = :productId ORDER BY s.shardIndex")
+    List<ProductStockShard> lockByProductId(String productId);
+
+    /**
+     * Obtiene los IDs de los productos con subcontadores.
+     *
+     * @return IDs de los productos calientes.
+     */
+    @Query("SELECT DISTINCT s.productId FROM ProductStockShard s")
+    List<String> findShardedProductIds();
+
+    /**
+     * Comprueba si un producto tiene subcontadores.
+     *
+     * @param productId ID del producto.
+     * @return {@code true} si el producto está en modo caliente.
+     */
+    boolean existsByProductId(String productId);
+
+    /**
+     * Elimina los subcontadores de un producto.
+     *
+     * @param productId ID del producto.
+     */
+    @Modifying
+    @Query("DELETE FROM ProductStockShard s WHERE s.productId = :productId")
+    void deleteByProductId(String productId);
+}
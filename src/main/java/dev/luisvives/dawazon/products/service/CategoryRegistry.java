@@ -0,0 +1,158 @@
+package dev.luisvives.dawazon.products.service;
+
+import dev.luisvives.dawazon.products.models.Category;
+import dev.luisvives.dawazon.products.repository.CategoryRepository;
+import dev.luisvives.dawazon.products.repository.CategoryRepository.CategoryVersion;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registro en memoria de las categorías de productos.
+ * <p>
+ * Las categorías casi nunca cambian, así que se guarda una copia inmutable
+ * (nombre → categoría) que se sustituye entera cuando cambian, sin bloquear a
+ * quien la está leyendo. Cada instancia de la aplicación comprueba cada
+ * {@code categories.refresh-interval} ms la versión de la tabla (número de
+ * categorías y última modificación, ver
+ * {@link CategoryRepository#getVersion()}) y la vuelve a cargar si no coincide
+ * con la de su copia; así un cambio hecho en otra instancia o directamente en la
+ * base de datos se ve en todas.
+ * </p>
+ */
+@Component
+@Slf4j
+public class CategoryRegistry {
+    /**
+     * Repositorio de categorías.
+     */
+    private final CategoryRepository categoryRepository;
+
+    /**
+     * Copia vigente, o null si aún no se ha cargado.
+     */
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param categoryRepository Repositorio de categorías
+     */
+    @Autowired
+    public CategoryRegistry(CategoryRepository categoryRepository) {
+        this.categoryRepository = categoryRepository;
+    }
+
+    /**
+     * Obtiene los nombres de todas las categorías.
+     *
+     * @return Lista inmutable de nombres
+     */
+    public List<String> getNames() {
+        return current().getNames();
+    }
+
+    /**
+     * Busca una categoría por nombre ignorando mayúsculas/minúsculas.
+     *
+     * @param name Nombre de la categoría
+     * @return Categoría, o vacío si no existe
+     */
+    public Optional<Category> findByName(String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(current().getByName().get(key(name)));
+    }
+
+    /**
+     * Vuelve a cargar las categorías si la versión de la tabla no coincide con
+     * la de la copia.
+     */
+    @Scheduled(fixedDelayString = "${categories.refresh-interval:30000}")
+    public void refreshIfChanged() {
+        Snapshot loaded = snapshot.get();
+        if (loaded == null) {
+            return;
+        }
+        CategoryVersion version = categoryRepository.getVersion();
+        if (!loaded.matches(version)) {
+            log.info("Categorías modificadas, recargando");
+            reload();
+        }
+    }
+
+    /**
+     * Carga las categorías y sustituye la copia. Quien modifique una categoría
+     * puede llamarlo para no esperar a la siguiente comprobación.
+     */
+    public void reload() {
+        CategoryVersion version = categoryRepository.getVersion();
+        Map<String, Category> byName = new LinkedHashMap<>();
+        for (Category category : categoryRepository.findAll()) {
+            byName.putIfAbsent(key(category.getName()), category);
+        }
+        List<String> names = byName.values().stream().map(Category::getName).toList();
+        snapshot.set(new Snapshot(Map.copyOf(byName), names,
+                version == null ? byName.size() : version.getCount(),
+                version == null ? null : version.getLastUpdate()));
+    }
+
+    private Snapshot current() {
+        Snapshot loaded = snapshot.get();
+        if (loaded == null) {
+            synchronized (this) {
+                if (snapshot.get() == null) {
+                    reload();
+                }
+                loaded = snapshot.get();
+            }
+        }
+        return loaded;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Copia inmutable de las categorías y la versión con la que se cargó.
+     */
+    @Getter
+    @AllArgsConstructor
+    private static final class Snapshot {
+        /**
+         * Categorías por nombre en minúsculas.
+         */
+        private final Map<String, Category> byName;
+        /**
+         * Nombres en el orden de la base de datos.
+         */
+        private final List<String> names;
+        /**
+         * Número de categorías al cargar.
+         */
+        private final long count;
+        /**
+         * Última modificación al cargar.
+         */
+        private final LocalDateTime lastUpdate;
+
+        boolean matches(CategoryVersion version) {
+            return version != null && version.getCount() == count
+                    && Objects.equals(version.getLastUpdate(), lastUpdate);
+        }
+    }
+}
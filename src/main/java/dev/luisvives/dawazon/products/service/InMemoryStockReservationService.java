@@ -0,0 +1,162 @@
+package dev.luisvives.dawazon.products.service;
+
+import dev.luisvives.dawazon.products.repository.ProductRepository;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implementación en memoria de {@link StockReservationService}.
+ * <p>
+ * Pensada para tests y desarrollo con una única instancia; se activa con
+ * {@code stock.reservations.store=memory}. Todas las operaciones se sincronizan
+ * sobre la propia instancia.
+ * </p>
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "stock.reservations.store", havingValue = "memory")
+public class InMemoryStockReservationService implements StockReservationService {
+    /**
+     * Repositorio de productos, solo para cargar el stock de productos nuevos.
+     */
+    private final ProductRepository productRepository;
+
+    /**
+     * Duración de las reservas.
+     */
+    private final Duration ttl;
+
+    /**
+     * Reloj para calcular las caducidades.
+     */
+    private final Clock clock;
+
+    /**
+     * Stock conocido por ID de producto.
+     */
+    private final Map<String, Integer> stock = new HashMap<>();
+
+    /**
+     * Reservas por ID de carrito.
+     */
+    private final Map<String, Reservation> reservations = new HashMap<>();
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param productRepository Repositorio de productos
+     * @param ttl               Duración de las reservas
+     */
+    @Autowired
+    public InMemoryStockReservationService(ProductRepository productRepository,
+            @Value("${stock.reservations.ttl:5m}") Duration ttl) {
+        this(productRepository, ttl, Clock.systemUTC());
+    }
+
+    InMemoryStockReservationService(ProductRepository productRepository, Duration ttl, Clock clock) {
+        this.productRepository = productRepository;
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized boolean reserve(String cartId, Map<String, Integer> quantities) {
+        reservations.remove(cartId);
+        Map<String, Integer> available = getAvailableStock(quantities.keySet());
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            if (available.getOrDefault(line.getKey(), 0) < line.getValue()) {
+                log.info("Reserva rechazada para el carrito {}: stock insuficiente de {}", cartId, line.getKey());
+                return false;
+            }
+        }
+        reservations.put(cartId, new Reservation(Map.copyOf(quantities), clock.millis() + ttl.toMillis()));
+        return true;
+    }
+
+    @Override
+    public synchronized Set<String> commit(String cartId, Map<String, Integer> quantities) {
+        reservations.remove(cartId);
+        Map<String, Integer> available = getAvailableStock(quantities.keySet());
+        Set<String> shortages = new HashSet<>();
+        quantities.forEach((productId, quantity) -> {
+            Integer free = available.get(productId);
+            if (free == null) {
+                return;
+            }
+            if (free < quantity) {
+                shortages.add(productId);
+                return;
+            }
+            stock.computeIfPresent(productId, (id, s) -> s - quantity);
+        });
+        return shortages;
+    }
+
+    @Override
+    public synchronized void release(String cartId) {
+        reservations.remove(cartId);
+    }
+
+    @Override
+    public synchronized void releaseAll(Collection<String> cartIds) {
+        reservations.keySet().removeAll(cartIds);
+    }
+
+    @Override
+    public synchronized Map<String, Integer> getAvailableStock(Collection<String> productIds) {
+        loadMissing(productIds);
+        long now = clock.millis();
+        reservations.values().removeIf(reservation -> reservation.getExpiresAt() <= now);
+
+        Map<String, Integer> available = new HashMap<>();
+        for (String productId : productIds) {
+            Integer onHand = stock.get(productId);
+            if (onHand == null) {
+                continue;
+            }
+            int held = reservations.values().stream()
+                    .mapToInt(reservation -> reservation.getQuantities().getOrDefault(productId, 0))
+                    .sum();
+            available.put(productId, onHand - held);
+        }
+        return available;
+    }
+
+    @Override
+    public synchronized void setStock(String productId, int stock) {
+        this.stock.put(productId, stock);
+    }
+
+    private void loadMissing(Collection<String> productIds) {
+        List<String> missing = productIds.stream().filter(id -> !stock.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            productRepository.findStockByIdIn(missing)
+                    .forEach(product -> stock.putIfAbsent(product.getId(), product.getStock()));
+        }
+    }
+
+    /**
+     * Reserva de un carrito: cantidad retenida por ID de producto e instante de
+     * caducidad en milisegundos.
+     */
+    @Data
+    @AllArgsConstructor
+    private static class Reservation {
+        private Map<String, Integer> quantities;
+        private long expiresAt;
+    }
+}
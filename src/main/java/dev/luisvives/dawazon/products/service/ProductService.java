@@ -1,15 +1,19 @@
 package dev.luisvives.dawazon.products.service;
 
 import dev.luisvives.dawazon.common.service.Service;
+import dev.luisvives.dawazon.products.dto.CommentDto;
 import dev.luisvives.dawazon.products.dto.GenericProductResponseDto;
 import dev.luisvives.dawazon.products.dto.PostProductRequestDto;
 import dev.luisvives.dawazon.products.models.Comment;
 import dev.luisvives.dawazon.products.models.Product;
+import dev.luisvives.dawazon.products.repository.ProductRepository.ProductListing;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -34,6 +38,21 @@ import java.util.Optional;
  */
 public interface ProductService extends Service<GenericProductResponseDto, String, PostProductRequestDto> {
 
+    /**
+     * Obtiene una página con los datos de listado de los productos que cumplen
+     * los filtros opcionales, sin cargar las entidades.
+     *
+     * @param name      Filtro opcional por nombre del producto.
+     * @param category  Filtro opcional por categoría.
+     * @param idCreator Filtro opcional por creador.
+     * @param pageable  Información de paginación y ordenación.
+     * @return Página de productos que cumplen los filtros.
+     */
+    Page<ProductListing> findListing(Optional<String> name,
+            Optional<String> category,
+            Optional<Long> idCreator,
+            Pageable pageable);
+
     /**
      * Obtiene una página de productos aplicando filtros opcionales.
      *
@@ -66,6 +85,15 @@ public interface ProductService extends Service<GenericProductResponseDto, Strin
 
     List<String> getAllCategorias();
 
+    /**
+     * Obtiene una página de los comentarios de un producto, ordenados por fecha.
+     *
+     * @param productId ID del producto.
+     * @param pageable  Página y tamaño.
+     * @return Página de comentarios.
+     */
+    Page<CommentDto> getComments(String productId, Pageable pageable);
+
     /**
      * Agrega un comentario a un producto.
      *
@@ -81,4 +109,13 @@ public interface ProductService extends Service<GenericProductResponseDto, Strin
      * @return ID del usuario creador del producto.
      */
     Long getUserProductId(String id);
+
+    /**
+     * Obtiene el stock disponible de varios productos, descontando las reservas
+     * de los pagos en curso.
+     *
+     * @param ids IDs de los productos.
+     * @return Stock disponible por ID de producto.
+     */
+    Map<String, Integer> getAvailableStock(Collection<String> ids);
 }
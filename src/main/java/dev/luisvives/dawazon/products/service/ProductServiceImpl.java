@@ -7,12 +7,14 @@ import dev.luisvives.dawazon.products.dto.CommentDto;
 import dev.luisvives.dawazon.products.dto.GenericProductResponseDto;
 import dev.luisvives.dawazon.products.dto.PostProductRequestDto;
 import dev.luisvives.dawazon.products.mapper.ProductMapper;
-import dev.luisvives.dawazon.products.models.Category;
 import dev.luisvives.dawazon.products.models.Comment;
+import dev.luisvives.dawazon.products.models.PriceDrop;
 import dev.luisvives.dawazon.products.models.Product;
-import dev.luisvives.dawazon.products.repository.CategoryRepository;
+import dev.luisvives.dawazon.products.repository.CommentRepository;
+import dev.luisvives.dawazon.products.repository.PriceDropRepository;
 import dev.luisvives.dawazon.products.repository.ProductRepository;
-import dev.luisvives.dawazon.users.repository.UserRepository;
+import dev.luisvives.dawazon.products.repository.ProductRepository.ProductListing;
+import dev.luisvives.dawazon.users.service.UserNameResolver;
 import jakarta.transaction.Transactional;
 import lombok.val;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,16 +22,18 @@ import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.web.multipart.MultipartFile;
 import dev.luisvives.dawazon.products.exception.ProductException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
  * Implementación del servicio de productos (Producto).
@@ -60,24 +64,50 @@ public class ProductServiceImpl implements ProductService {
 
     private final Logger log = Logger.getLogger(ProductServiceImpl.class.getName());
 
+    /**
+     * Comentarios que se incluyen en el detalle de un producto; el resto se pide
+     * por páginas con {@link #getComments(String, Pageable)}.
+     */
+    public static final int COMMENTS_PAGE_SIZE = 10;
+
     /**
      * Repositorio de productos para operaciones CRUD.
      */
     private final ProductRepository repository;
 
     /**
-     * Repositorio de categorías para validaciones de integridad referencial.
+     * Registro en memoria de categorías para validaciones de integridad
+     * referencial.
+     */
+    private final CategoryRegistry categoryRegistry;
+    /**
+     * Repositorio de comentarios de productos.
+     */
+    private final CommentRepository commentRepository;
+    /**
+     * Bajadas de precio pendientes de avisar a quienes tienen el producto en
+     * favoritos.
      */
-    private final CategoryRepository categoryRepository;
+    private final PriceDropRepository priceDrops;
     /**
-     * Repositorio de categorías para validaciones de integridad referencial.
+     * Resuelve los nombres de los autores de los comentarios.
      */
-    private final UserRepository userRepository;
+    private final UserNameResolver userNames;
     /**
      * Servicio de almacenamiento para manejar imágenes.
      */
     private final StorageService storageService;
 
+    /**
+     * Reservas temporales de stock, de las que se lee el stock disponible.
+     */
+    private final StockReservationService reservations;
+
+    /**
+     * Subcontadores de stock de los productos calientes.
+     */
+    private final ProductStockShardService shards;
+
     /**
      * Mapper de Jackson para serializar objetos a JSON.
      */
@@ -88,21 +118,34 @@ public class ProductServiceImpl implements ProductService {
      * Constructor que inyecta dependencias necesarias.
      *
      * @param repository         Repositorio de productos.
-     * @param categoryRepository Repositorio de categorías.
+     * @param categoryRegistry   Registro en memoria de categorías.
      * @param storageService     Servicio de almacenamiento de imágenes.
+     * @param userNames          Resolución de nombres de usuario.
+     * @param reservations       Reservas temporales de stock.
+     * @param shards             Subcontadores de stock de productos calientes.
+     * @param commentRepository  Repositorio de comentarios.
+     * @param priceDrops         Bajadas de precio pendientes de avisar.
      */
     @Autowired
     public ProductServiceImpl(ProductRepository repository,
-            CategoryRepository categoryRepository,
+            CategoryRegistry categoryRegistry,
             StorageService storageService,
             ProductMapper mapper,
-            UserRepository userRepository) {
+            UserNameResolver userNames,
+            StockReservationService reservations,
+            ProductStockShardService shards,
+            CommentRepository commentRepository,
+            PriceDropRepository priceDrops) {
         this.repository = repository;
-        this.categoryRepository = categoryRepository;
+        this.categoryRegistry = categoryRegistry;
         this.storageService = storageService;
         this.jacksonMapper = new ObjectMapper();
         this.mapper = mapper;
-        this.userRepository = userRepository;
+        this.userNames = userNames;
+        this.reservations = reservations;
+        this.shards = shards;
+        this.commentRepository = commentRepository;
+        this.priceDrops = priceDrops;
     }
 
     /**
@@ -141,6 +184,33 @@ public class ProductServiceImpl implements ProductService {
         return repository.findAll(criterio, pageable);
     }
 
+    /**
+     * Busca los datos de listado de los productos con los mismos filtros que
+     * {@link #findAll(Optional, Optional, Optional, Pageable)}.
+     * <p>
+     * Es la lectura que usan el catálogo y los listados del vendedor: una sola
+     * consulta con la categoría unida y la primera imagen, sin imágenes ni
+     * comentarios.
+     * </p>
+     *
+     * @param name      Filtro opcional por nombre.
+     * @param category  Filtro opcional por categoría.
+     * @param idCreator Filtro opcional por creador.
+     * @param pageable  Paginación y ordenación.
+     * @return Página de productos que cumplen los filtros.
+     */
+    @Override
+    public Page<ProductListing> findListing(Optional<String> name,
+            Optional<String> category,
+            Optional<Long> idCreator,
+            Pageable pageable) {
+        return repository.findListing(
+                name.map(String::toLowerCase).orElse(""),
+                category.orElse(null),
+                idCreator.orElse(null),
+                pageable);
+    }
+
     /**
      * Recupera un producto por su ID.
      * <p>
@@ -161,9 +231,9 @@ public class ProductServiceImpl implements ProductService {
                     log.warning("SERVICE: No se encontró Producto con id: " + id);
                     return new ProductException.NotFoundException("No se encontró Producto con id: " + id);
                 });
-        val commentsDto = mapearComentarios(productoFound);
+        val firstPage = getComments(id, PageRequest.of(0, COMMENTS_PAGE_SIZE));
 
-        return mapper.modelToGenericResponseDTO(productoFound, commentsDto);
+        return mapper.modelToGenericResponseDTO(productoFound, firstPage);
     }
 
     public Long getUserProductId(String id) {
@@ -194,7 +264,7 @@ public class ProductServiceImpl implements ProductService {
     public GenericProductResponseDto save(PostProductRequestDto productoDto) {
         log.info("SERVICE: Guardando Producto");
 
-        var existingCategory = categoryRepository.findByNameIgnoreCase(productoDto.getCategory());
+        var existingCategory = categoryRegistry.findByName(productoDto.getCategory());
         if (existingCategory.isEmpty()) {
             log.warning("SERVICE: Se intentó crear un Producto de una categoría inexistente");
             throw new ProductException.ValidationException("La categoría " + productoDto.getCategory() + " no existe.");
@@ -205,12 +275,15 @@ public class ProductServiceImpl implements ProductService {
         Product savedProducto = repository.save(productoModel);
 
         log.info("SERVICE: Producto con id " + savedProducto.getId() + " creado correctamente");
-        val commentsDto = mapearComentarios(savedProducto);
-        return mapper.modelToGenericResponseDTO(savedProducto, commentsDto);
+        return mapper.modelToGenericResponseDTO(savedProducto, List.of());
     }
 
     /**
      * Actualiza completamente un producto existente.
+     * <p>
+     * Si el precio baja, deja registrada la bajada en la misma transacción para
+     * avisar después, por lotes, a quienes tienen el producto en favoritos.
+     * </p>
      *
      * @param id          ID del producto a actualizar.
      * @param productoDto DTO con los datos nuevos.
@@ -230,12 +303,14 @@ public class ProductServiceImpl implements ProductService {
                     return new ProductException.NotFoundException("SERVICE: No se encontró producto con id: " + id);
                 });
 
-        var existingCategory = categoryRepository.findByNameIgnoreCase(productoDto.getCategory());
+        var existingCategory = categoryRegistry.findByName(productoDto.getCategory());
         if (existingCategory.isEmpty()) {
             log.warning("SERVICE: Intento de actualizar un Producto con categoría inexistente");
             throw new ProductException.ValidationException("La categoría " + productoDto.getCategory() + " no existe.");
         }
 
+        Double oldPrice = foundProducto.getPrice();
+
         // Modificar el producto existente directamente para preservar la version de Hibernate
         foundProducto.setName(productoDto.getName());
         foundProducto.setDescription(productoDto.getDescription());
@@ -247,21 +322,46 @@ public class ProductServiceImpl implements ProductService {
         // No modificamos id, createdAt ni version  Hibernate los maneja
 
         Product updatedProductos = repository.save(foundProducto);
+        shards.reset(updatedProductos.getId(), updatedProductos.getStock());
+        reservations.setStock(updatedProductos.getId(), updatedProductos.getStock());
+        if (oldPrice != null && productoDto.getPrice() != null && productoDto.getPrice() < oldPrice) {
+            priceDrops.save(PriceDrop.builder()
+                    .productId(updatedProductos.getId())
+                    .productName(updatedProductos.getName())
+                    .oldPrice(oldPrice)
+                    .newPrice(productoDto.getPrice())
+                    .build());
+        }
 
         log.info("SERVICE: Producto con id " + updatedProductos.getId() + " actualizado correctamente");
-        val commentsDto = mapearComentarios(updatedProductos);
-        return mapper.modelToGenericResponseDTO(updatedProductos, commentsDto);
+        return mapper.modelToGenericResponseDTO(updatedProductos, List.of());
     }
 
     @Override
     public List<String> getAllCategorias() {
-        return categoryRepository.findAll().stream().map(Category::getName).collect(Collectors.toList());
+        return categoryRegistry.getNames();
     }
 
-    private List<CommentDto> mapearComentarios(Product producto) {
-        return producto.getComments().stream().map((it) -> {
-            return mapper.commentToCommentDto(it, userRepository.findById(it.getUserId()).get().getUsername());
-        }).toList();
+    /**
+     * Obtiene una página de los comentarios de un producto, del más antiguo al
+     * más reciente.
+     * <p>
+     * El orden de {@code pageable} se ignora: siempre se ordena por fecha e ID
+     * para que las páginas no se solapen aunque haya comentarios con la misma
+     * fecha.
+     * </p>
+     *
+     * @param productId ID del producto.
+     * @param pageable  Página y tamaño.
+     * @return Página de comentarios con el nombre de su autor.
+     */
+    @Override
+    public Page<CommentDto> getComments(String productId, Pageable pageable) {
+        Pageable ordered = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), CommentRepository.ORDER);
+        Page<Comment> comments = commentRepository.findByProductId(productId, ordered);
+        // Una sola consulta para todos los autores que no estén ya en caché
+        Map<Long, String> names = userNames.resolve(comments.map(Comment::getUserId).getContent());
+        return comments.map(it -> mapper.commentToCommentDto(it, names.get(it.getUserId())));
     }
 
     /**
@@ -281,7 +381,22 @@ public class ProductServiceImpl implements ProductService {
             log.warning("SERVICE: No se encontró Producto con id: " + id);
             throw new ProductException.NotFoundException("SERVICE: No se encontró Producto con id: " + id);
         }
+        shards.disable(id);
         repository.deleteByIdLogical(id);
+        reservations.setStock(id, 0);
+    }
+
+    /**
+     * Obtiene el stock disponible de varios productos, descontando las reservas
+     * de los pagos en curso.
+     *
+     * @param ids IDs de los productos.
+     * @return Stock disponible por ID de producto.
+     * @see StockReservationService#getAvailableStock(Collection)
+     */
+    @Override
+    public Map<String, Integer> getAvailableStock(Collection<String> ids) {
+        return reservations.getAvailableStock(ids);
     }
 
     /**
@@ -307,8 +422,7 @@ public class ProductServiceImpl implements ProductService {
         // Si no hay archivos válidos, no hacer nada y retornar el producto sin cambios
         if (validImages.isEmpty()) {
             log.info("SERVICE: No se subieron imágenes nuevas, manteniendo las existentes");
-            val commentsDto = mapearComentarios(foundProducto);
-            return mapper.modelToGenericResponseDTO(foundProducto, commentsDto);
+            return mapper.modelToGenericResponseDTO(foundProducto, List.of());
         }
 
         // Si hay imágenes válidas, eliminar las antiguas del almacenamiento
@@ -323,31 +437,42 @@ public class ProductServiceImpl implements ProductService {
         foundProducto.setImages(imageStored);
 
         var updatedProducto = repository.save(foundProducto);
-        val commentsDto = mapearComentarios(updatedProducto);
-        return mapper.modelToGenericResponseDTO(updatedProducto, commentsDto);
+        return mapper.modelToGenericResponseDTO(updatedProducto, List.of());
     }
 
     public List<Product> findByCreatedAtBetween(LocalDateTime ultimaEjecucion, LocalDateTime ahora) {
         return repository.findAllBycreatedAtBetween(ultimaEjecucion, ahora);
     }
 
+    /**
+     * Agrega un comentario a un producto.
+     * <p>
+     * Solo se inserta la fila del comentario: el producto no se carga ni se
+     * guarda, así que no cambia su versión y no hace fallar por bloqueo
+     * optimista a una compra que lo esté actualizando a la vez. Solo se invalida
+     * la entrada de caché del detalle de este producto, que incluye la primera
+     * página y el total de comentarios.
+     * </p>
+     *
+     * @param productId ID del producto.
+     * @param comment   Comentario a agregar.
+     * @throws ProductException.NotFoundException si no existe el producto.
+     */
     @Override
     @CacheEvict(key = "#productId")
     public void addComment(String productId, Comment comment) {
         log.info("SERVICE: Agregando comentario al producto con ID: " + productId);
 
-        // Obtener el producto
-        Product product = repository.findById(productId)
-                .orElseThrow(() -> {
-                    log.warning("SERVICE: Producto no encontrado con ID: " + productId);
-                    return new ProductException.NotFoundException("Producto no encontrado con ID: " + productId);
-                });
-
-        // Agregar el comentario
-        product.getComments().add(comment);
+        // Comprobar que el producto existe sin cargarlo
+        if (!repository.existsById(productId)) {
+            log.warning("SERVICE: Producto no encontrado con ID: " + productId);
+            throw new ProductException.NotFoundException("Producto no encontrado con ID: " + productId);
+        }
 
-        // Guardar el producto actualizado
-        repository.save(product);
+        // Un solo INSERT en la tabla de comentarios
+        comment.setId(null);
+        comment.setProductId(productId);
+        commentRepository.save(comment);
 
         log.info("SERVICE: Comentario agregado exitosamente al producto: " + productId);
     }
@@ -0,0 +1,62 @@
+package dev.luisvives.dawazon.products.service;
+
+import java.util.List;
+
+/**
+ * Servicio del modo "producto caliente": reparte el stock de un producto entre
+ * varios subcontadores para que las compras concurrentes no se bloqueen sobre
+ * la misma fila.
+ *
+ * @see dev.luisvives.dawazon.products.models.ProductStockShard
+ */
+public interface ProductStockShardService {
+    /**
+     * Activa (o cambia) el número de subcontadores de un producto y reparte su
+     * stock entre ellos.
+     *
+     * @param productId ID del producto
+     * @param shards    Número de subcontadores (al menos 1)
+     */
+    void enable(String productId, int shards);
+
+    /**
+     * Desactiva los subcontadores de un producto y devuelve su stock a la fila
+     * del producto.
+     *
+     * @param productId ID del producto
+     */
+    void disable(String productId);
+
+    /**
+     * Comprueba si un producto tiene subcontadores.
+     *
+     * @param productId ID del producto
+     * @return {@code true} si está en modo caliente
+     */
+    boolean isSharded(String productId);
+
+    /**
+     * Sustituye el stock de un producto con subcontadores, repartiéndolo de
+     * nuevo entre ellos.
+     *
+     * @param productId ID del producto
+     * @param stock     Nuevo stock total
+     */
+    void reset(String productId, int stock);
+
+    /**
+     * Consolida los subcontadores de un producto: guarda su suma en
+     * {@code Product.stock} y los reequilibra.
+     *
+     * @param productId ID del producto
+     * @return Stock total consolidado
+     */
+    int fold(String productId);
+
+    /**
+     * Obtiene los productos con subcontadores.
+     *
+     * @return IDs de los productos calientes
+     */
+    List<String> findShardedProductIds();
+}
@@ -0,0 +1,174 @@
+package dev.luisvives.dawazon.products.service;
+
+import dev.luisvives.dawazon.products.exception.ProductException;
+import dev.luisvives.dawazon.products.models.Product;
+import dev.luisvives.dawazon.products.models.ProductStockShard;
+import dev.luisvives.dawazon.products.repository.ProductRepository;
+import dev.luisvives.dawazon.products.repository.ProductStockShardRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementación del modo "producto caliente".
+ * <p>
+ * Mientras un producto tiene subcontadores, las compras descuentan de ellos
+ * (ver {@link dev.luisvives.dawazon.products.repository.ProductStockRepository})
+ * y {@code Product.stock} solo se actualiza al consolidar. Todas las operaciones
+ * que reparten el stock bloquean antes los subcontadores del producto.
+ * </p>
+ */
+@Service
+@Slf4j
+public class ProductStockShardServiceImpl implements ProductStockShardService {
+    /**
+     * Repositorio de productos.
+     */
+    private final ProductRepository productRepository;
+
+    /**
+     * Repositorio de subcontadores.
+     */
+    private final ProductStockShardRepository shardRepository;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param productRepository Repositorio de productos
+     * @param shardRepository   Repositorio de subcontadores
+     */
+    @Autowired
+    public ProductStockShardServiceImpl(ProductRepository productRepository,
+            ProductStockShardRepository shardRepository) {
+        this.productRepository = productRepository;
+        this.shardRepository = shardRepository;
+    }
+
+    /**
+     * Activa (o cambia) el número de subcontadores de un producto.
+     *
+     * @param productId ID del producto
+     * @param shards    Número de subcontadores (al menos 1)
+     * @throws ProductException.NotFoundException   Si el producto no existe
+     * @throws ProductException.ValidationException Si el número no es válido
+     */
+    @Override
+    @Transactional
+    public void enable(String productId, int shards) {
+        if (shards < 1) {
+            throw new ProductException.ValidationException("El número de subcontadores debe ser al menos 1");
+        }
+        Product product = productRepository.findById(productId)
+                .filter(it -> !it.isDeleted())
+                .orElseThrow(() -> new ProductException.NotFoundException("No se encontró producto con id: " + productId));
+        List<ProductStockShard> current = shardRepository.lockByProductId(productId);
+        int stock = current.isEmpty()
+                ? product.getStock()
+                : current.stream().mapToInt(ProductStockShard::getStock).sum();
+
+        shardRepository.deleteAll(current);
+        shardRepository.flush();
+        shardRepository.saveAll(split(productId, stock, shards));
+        productRepository.updateStock(productId, stock);
+        log.info("Producto {} en modo caliente con {} subcontadores ({} unidades)", productId, shards, stock);
+    }
+
+    /**
+     * Desactiva los subcontadores de un producto.
+     *
+     * @param productId ID del producto
+     */
+    @Override
+    @Transactional
+    public void disable(String productId) {
+        List<ProductStockShard> current = shardRepository.lockByProductId(productId);
+        if (current.isEmpty()) {
+            return;
+        }
+        int stock = current.stream().mapToInt(ProductStockShard::getStock).sum();
+        productRepository.updateStock(productId, stock);
+        shardRepository.deleteByProductId(productId);
+        log.info("Producto {} fuera del modo caliente ({} unidades)", productId, stock);
+    }
+
+    @Override
+    public boolean isSharded(String productId) {
+        return shardRepository.existsByProductId(productId);
+    }
+
+    /**
+     * Sustituye el stock de un producto con subcontadores.
+     *
+     * @param productId ID del producto
+     * @param stock     Nuevo stock total
+     */
+    @Override
+    @Transactional
+    public void reset(String productId, int stock) {
+        List<ProductStockShard> current = shardRepository.lockByProductId(productId);
+        if (current.isEmpty()) {
+            return;
+        }
+        redistribute(current, stock);
+        productRepository.updateStock(productId, stock);
+    }
+
+    /**
+     * Consolida los subcontadores de un producto.
+     *
+     * @param productId ID del producto
+     * @return Stock total consolidado
+     */
+    @Override
+    @Transactional
+    public int fold(String productId) {
+        List<ProductStockShard> current = shardRepository.lockByProductId(productId);
+        int stock = current.stream().mapToInt(ProductStockShard::getStock).sum();
+        if (!current.isEmpty()) {
+            redistribute(current, stock);
+            productRepository.updateStock(productId, stock);
+        }
+        return stock;
+    }
+
+    @Override
+    public List<String> findShardedProductIds() {
+        return shardRepository.findShardedProductIds();
+    }
+
+    /**
+     * Reparte un stock entre los subcontadores existentes; los primeros reciben
+     * el resto de la división.
+     */
+    private void redistribute(List<ProductStockShard> shards, int stock) {
+        List<ProductStockShard> balanced = split(shards.get(0).getProductId(), stock, shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).setStock(balanced.get(i).getStock());
+        }
+        shardRepository.saveAll(shards);
+    }
+
+    /**
+     * Crea N subcontadores con el stock repartido de forma equilibrada.
+     *
+     * @param productId ID del producto
+     * @param stock     Stock total
+     * @param shards    Número de subcontadores
+     * @return Subcontadores
+     */
+    static List<ProductStockShard> split(String productId, int stock, int shards) {
+        List<ProductStockShard> result = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            result.add(ProductStockShard.builder()
+                    .productId(productId)
+                    .shardIndex(i)
+                    .stock(stock / shards + (i < stock % shards ? 1 : 0))
+                    .build());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,389 @@
+package dev.luisvives.dawazon.products.service;
+
+import dev.luisvives.dawazon.products.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Implementación de {@link StockReservationService} sobre Redis.
+ * <p>
+ * Cada operación sobre un producto es un script Lua que recibe en
+ * {@code KEYS} todas las claves que toca, y todas ellas llevan el ID del
+ * producto como etiqueta ({@code {productId}}), así que caen en el mismo slot y
+ * los scripts funcionan también con Redis Cluster. Se usan las claves:
+ * </p>
+ * <ul>
+ * <li>{@code stock:{productId}:onhand}: stock conocido del producto.</li>
+ * <li>{@code stock:{productId}:holds}: hash con la cantidad retenida por cada
+ * carrito.</li>
+ * <li>{@code stock:{productId}:expiry}: conjunto ordenado con la caducidad de
+ * cada retención; las caducadas se eliminan al leer el producto.</li>
+ * <li>{@code stock:reservation:{cartId}}: hash con las líneas reservadas del
+ * carrito, que caduca a la vez que la reserva.</li>
+ * </ul>
+ * <p>
+ * Una reserva de varios productos retiene uno a uno y, si alguno no tiene
+ * stock, deshace las retenciones ya hechas. Mientras tanto otra reserva puede
+ * ver esas retenciones y rechazarse, pero nunca se reserva más stock del que
+ * hay.
+ * </p>
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "stock.reservations.store", havingValue = "redis", matchIfMissing = true)
+public class RedisStockReservationService implements StockReservationService {
+    /**
+     * Resultado de {@link #HOLD} cuando se retiene el stock.
+     */
+    static final String OK = "OK";
+
+    /**
+     * Resultado de {@link #HOLD} cuando no se conoce el stock del producto.
+     */
+    static final String MISSING = "MISSING";
+
+    /**
+     * Resultado de {@link #COMMIT} cuando el carrito ya no tenía retención (por
+     * ejemplo, porque caducó) pero había stock libre y se ha descontado.
+     */
+    static final String UNHELD = "UNHELD";
+
+    /**
+     * Resultado de {@link #HOLD} y {@link #COMMIT} cuando no hay stock libre
+     * suficiente.
+     */
+    static final String SHORT = "SHORT";
+
+    /**
+     * Funciones comunes a los scripts. {@code held} elimina las retenciones
+     * caducadas y suma las activas.
+     */
+    private static final String FUNCTIONS = """
+            local function held(holds, expiry, now)
+              local expired = redis.call('ZRANGEBYSCORE', expiry, '-inf', now)
+              for _, cart in ipairs(expired) do
+                redis.call('HDEL', holds, cart)
+              end
+              if #expired > 0 then
+                redis.call('ZREMRANGEBYSCORE', expiry, '-inf', now)
+              end
+              local total = 0
+              for _, quantity in ipairs(redis.call('HVALS', holds)) do
+                total = total + tonumber(quantity)
+              end
+              return total
+            end
+            """;
+
+    /**
+     * KEYS: stock conocido, retenciones y caducidades del producto. ARGV:
+     * carrito, ahora, caducidad y cantidad. Sustituye la retención del carrito
+     * y devuelve {@code OK}, {@code MISSING} o {@code SHORT}.
+     */
+    private static final RedisScript<String> HOLD = new DefaultRedisScript<>(FUNCTIONS + """
+            local onHand = redis.call('GET', KEYS[1])
+            if not onHand then
+              return 'MISSING'
+            end
+            redis.call('HDEL', KEYS[2], ARGV[1])
+            redis.call('ZREM', KEYS[3], ARGV[1])
+            if tonumber(onHand) - held(KEYS[2], KEYS[3], ARGV[2]) < tonumber(ARGV[4]) then
+              return 'SHORT'
+            end
+            redis.call('HSET', KEYS[2], ARGV[1], ARGV[4])
+            redis.call('ZADD', KEYS[3], ARGV[3], ARGV[1])
+            return 'OK'
+            """, String.class);
+
+    /**
+     * KEYS: stock conocido, retenciones y caducidades del producto. ARGV:
+     * carrito, cantidad comprada y ahora. Libera la retención y descuenta la
+     * cantidad si cabe en el stock que no retienen otros carritos. Devuelve
+     * {@code OK}, {@code UNHELD} si la retención del carrito ya no estaba
+     * activa, o {@code SHORT} si no cabe; en ese caso no descuenta nada, para
+     * no dejar el stock en negativo ni comerse las retenciones de otros.
+     */
+    private static final RedisScript<String> COMMIT = new DefaultRedisScript<>(FUNCTIONS + """
+            local hold = redis.call('HGET', KEYS[2], ARGV[1])
+            local expiresAt = redis.call('ZSCORE', KEYS[3], ARGV[1])
+            redis.call('HDEL', KEYS[2], ARGV[1])
+            redis.call('ZREM', KEYS[3], ARGV[1])
+            local active = hold and expiresAt and tonumber(expiresAt) > tonumber(ARGV[3])
+            local onHand = redis.call('GET', KEYS[1])
+            if onHand then
+              if tonumber(onHand) - held(KEYS[2], KEYS[3], ARGV[3]) < tonumber(ARGV[2]) then
+                return 'SHORT'
+              end
+              redis.call('DECRBY', KEYS[1], ARGV[2])
+            end
+            if active then
+              return 'OK'
+            end
+            return 'UNHELD'
+            """, String.class);
+
+    /**
+     * KEYS: retenciones y caducidades del producto. ARGV: carrito.
+     */
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>("""
+            redis.call('HDEL', KEYS[1], ARGV[1])
+            redis.call('ZREM', KEYS[2], ARGV[1])
+            return 1
+            """, Long.class);
+
+    /**
+     * KEYS: stock conocido, retenciones y caducidades del producto. ARGV: ahora.
+     * Devuelve el stock disponible, o {@code nil} si no se conoce.
+     */
+    private static final RedisScript<Long> AVAILABLE = new DefaultRedisScript<>(FUNCTIONS + """
+            local onHand = redis.call('GET', KEYS[1])
+            if not onHand then
+              return false
+            end
+            return tonumber(onHand) - held(KEYS[2], KEYS[3], ARGV[1])
+            """, Long.class);
+
+    /**
+     * Template de Redis.
+     */
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * Repositorio de productos, solo para cargar el stock de productos nuevos.
+     */
+    private final ProductRepository productRepository;
+
+    /**
+     * Duración de las reservas.
+     */
+    private final Duration ttl;
+
+    /**
+     * Reloj para calcular las caducidades.
+     */
+    private final Clock clock;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param redisTemplate     Template de Redis
+     * @param productRepository Repositorio de productos
+     * @param ttl               Duración de las reservas
+     */
+    @Autowired
+    public RedisStockReservationService(StringRedisTemplate redisTemplate, ProductRepository productRepository,
+            @Value("${stock.reservations.ttl:5m}") Duration ttl) {
+        this(redisTemplate, productRepository, ttl, Clock.systemUTC());
+    }
+
+    RedisStockReservationService(StringRedisTemplate redisTemplate, ProductRepository productRepository,
+            Duration ttl, Clock clock) {
+        this.redisTemplate = redisTemplate;
+        this.productRepository = productRepository;
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean reserve(String cartId, Map<String, Integer> quantities) {
+        String reservation = reservationKey(cartId);
+        for (Object productId : redisTemplate.opsForHash().keys(reservation)) {
+            if (!quantities.containsKey(productId.toString())) {
+                releaseHold(productId.toString(), cartId);
+            }
+        }
+
+        long now = clock.millis();
+        long expiresAt = now + ttl.toMillis();
+        List<String> held = new ArrayList<>();
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            String result = hold(line.getKey(), cartId, now, expiresAt, line.getValue());
+            if (MISSING.equals(result)) {
+                loadMissing(List.of(line.getKey()));
+                result = hold(line.getKey(), cartId, now, expiresAt, line.getValue());
+            }
+            if (!OK.equals(result)) {
+                log.info("Reserva rechazada para el carrito {}: {} {}", cartId, result, line.getKey());
+                held.forEach(productId -> releaseHold(productId, cartId));
+                redisTemplate.delete(reservation);
+                return false;
+            }
+            held.add(line.getKey());
+        }
+
+        redisTemplate.delete(reservation);
+        if (!quantities.isEmpty()) {
+            Map<String, String> lines = new HashMap<>();
+            quantities.forEach((productId, quantity) -> lines.put(productId, String.valueOf(quantity)));
+            redisTemplate.opsForHash().putAll(reservation, lines);
+            redisTemplate.expireAt(reservation, Instant.ofEpochMilli(expiresAt));
+        }
+        return true;
+    }
+
+    @Override
+    public Set<String> commit(String cartId, Map<String, Integer> quantities) {
+        String reservation = reservationKey(cartId);
+        Set<String> productIds = new HashSet<>(quantities.keySet());
+        redisTemplate.opsForHash().keys(reservation).forEach(productId -> productIds.add(productId.toString()));
+        String now = String.valueOf(clock.millis());
+        Set<String> shortages = new HashSet<>();
+        for (String productId : productIds) {
+            int quantity = quantities.getOrDefault(productId, 0);
+            String result = redisTemplate.execute(COMMIT, productKeys(productId), cartId,
+                    String.valueOf(quantity), now);
+            if (SHORT.equals(result)) {
+                shortages.add(productId);
+            } else if (UNHELD.equals(result) && quantity > 0) {
+                log.info("Compra del carrito {} confirmada sin retención de {}, había stock libre", cartId, productId);
+            }
+        }
+        redisTemplate.delete(reservation);
+        return shortages;
+    }
+
+    @Override
+    public void release(String cartId) {
+        String reservation = reservationKey(cartId);
+        redisTemplate.opsForHash().keys(reservation).forEach(productId -> releaseHold(productId.toString(), cartId));
+        redisTemplate.delete(reservation);
+    }
+
+    /**
+     * Libera las reservas de varios carritos en dos idas y vueltas a Redis, sean
+     * cuantos sean: una tubería lee los productos reservados por cada carrito y
+     * otra libera todas las retenciones y borra las reservas. Cada retención se
+     * libera con su propio script, porque las de productos distintos están en
+     * slots distintos.
+     */
+    @Override
+    public void releaseAll(Collection<String> cartIds) {
+        if (cartIds.isEmpty()) {
+            return;
+        }
+        List<String> carts = List.copyOf(cartIds);
+        List<Object> reserved = pipelined(operations -> carts.forEach(cartId ->
+                operations.opsForHash().keys(reservationKey(cartId))));
+        pipelined(operations -> {
+            for (int i = 0; i < carts.size(); i++) {
+                String cartId = carts.get(i);
+                if (reserved.get(i) instanceof Collection<?> productIds) {
+                    productIds.forEach(productId -> operations.execute(RELEASE,
+                            List.of(holdsKey(productId.toString()), expiryKey(productId.toString())), cartId));
+                }
+                operations.delete(reservationKey(cartId));
+            }
+        });
+    }
+
+    @Override
+    public Map<String, Integer> getAvailableStock(Collection<String> productIds) {
+        Map<String, Integer> available = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String productId : productIds) {
+            Long value = runAvailable(productId);
+            if (value == null) {
+                missing.add(productId);
+            } else {
+                available.put(productId, value.intValue());
+            }
+        }
+        if (!missing.isEmpty()) {
+            loadMissing(missing);
+            for (String productId : missing) {
+                Long value = runAvailable(productId);
+                if (value != null) {
+                    available.put(productId, value.intValue());
+                }
+            }
+        }
+        return available;
+    }
+
+    @Override
+    public void setStock(String productId, int stock) {
+        redisTemplate.opsForValue().set(onHandKey(productId), String.valueOf(stock));
+    }
+
+    private String hold(String productId, String cartId, long now, long expiresAt, int quantity) {
+        return redisTemplate.execute(HOLD, productKeys(productId), cartId, String.valueOf(now),
+                String.valueOf(expiresAt), String.valueOf(quantity));
+    }
+
+    private void releaseHold(String productId, String cartId) {
+        redisTemplate.execute(RELEASE, List.of(holdsKey(productId), expiryKey(productId)), cartId);
+    }
+
+    /**
+     * Ejecuta en una tubería los comandos que se envían a {@code operations} y
+     * devuelve sus resultados en orden.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object> pipelined(Consumer<RedisOperations<String, String>> commands) {
+        return redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                commands.accept((RedisOperations<String, String>) operations);
+                return null;
+            }
+        });
+    }
+
+    private Long runAvailable(String productId) {
+        return redisTemplate.execute(AVAILABLE, productKeys(productId), String.valueOf(clock.millis()));
+    }
+
+    /**
+     * Carga en Redis el stock de productos que aún no se conocen. No sobrescribe
+     * valores que otra instancia haya cargado entretanto.
+     */
+    private void loadMissing(List<String> productIds) {
+        log.debug("Cargando stock de la base de datos para {}", productIds);
+        productRepository.findStockByIdIn(productIds).forEach(product -> redisTemplate.opsForValue()
+                .setIfAbsent(onHandKey(product.getId()), String.valueOf(product.getStock())));
+    }
+
+    /**
+     * @return Claves de stock conocido, retenciones y caducidades del producto,
+     *         en el orden que esperan los scripts.
+     */
+    static List<String> productKeys(String productId) {
+        return List.of(onHandKey(productId), holdsKey(productId), expiryKey(productId));
+    }
+
+    static String onHandKey(String productId) {
+        return "stock:{" + productId + "}:onhand";
+    }
+
+    static String holdsKey(String productId) {
+        return "stock:{" + productId + "}:holds";
+    }
+
+    static String expiryKey(String productId) {
+        return "stock:{" + productId + "}:expiry";
+    }
+
+    static String reservationKey(String cartId) {
+        return "stock:reservation:{" + cartId + "}";
+    }
+}
@@ -0,0 +1,81 @@
+package dev.luisvives.dawazon.products.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Servicio de reservas temporales de stock.
+ * <p>
+ * Durante el pago el stock del carrito queda retenido durante un tiempo
+ * limitado en lugar de restarse de la base de datos. El stock disponible de un
+ * producto es su stock menos las retenciones activas; las retenciones caducadas
+ * dejan de contar sin necesidad de devolver nada.
+ * </p>
+ */
+public interface StockReservationService {
+    /**
+     * Retiene el stock de un carrito. Si el carrito ya tenía una reserva, se
+     * sustituye.
+     * <p>
+     * La reserva es de todo o nada: si algún producto no tiene stock disponible
+     * suficiente no se retiene ninguno.
+     * </p>
+     *
+     * @param cartId     ID del carrito
+     * @param quantities Cantidad a retener por ID de producto
+     * @return {@code true} si se ha reservado todo el carrito
+     */
+    boolean reserve(String cartId, Map<String, Integer> quantities);
+
+    /**
+     * Confirma la compra de un carrito: libera su reserva y descuenta las
+     * cantidades del stock conocido.
+     * <p>
+     * Si la retención del carrito ya no existe (caducó durante el pago) la
+     * cantidad se descuenta igualmente cuando hay stock libre. Si no lo hay, no
+     * se descuenta nada de ese producto, para no dejar el stock en negativo, y
+     * se devuelve para que la venta se pueda compensar.
+     * </p>
+     *
+     * @param cartId     ID del carrito
+     * @param quantities Cantidad comprada por ID de producto
+     * @return IDs de los productos comprados sin stock libre suficiente
+     */
+    Set<String> commit(String cartId, Map<String, Integer> quantities);
+
+    /**
+     * Libera la reserva de un carrito sin modificar el stock.
+     *
+     * @param cartId ID del carrito
+     */
+    void release(String cartId);
+
+    /**
+     * Libera de una vez las reservas de varios carritos sin modificar el stock.
+     *
+     * @param cartIds IDs de los carritos
+     */
+    void releaseAll(Collection<String> cartIds);
+
+    /**
+     * Obtiene el stock disponible (stock menos retenciones activas).
+     * <p>
+     * Los productos que aún no se conocen se cargan una única vez de la base de
+     * datos; los que no existen o están eliminados no aparecen en el resultado.
+     * </p>
+     *
+     * @param productIds IDs de los productos
+     * @return Stock disponible por ID de producto
+     */
+    Map<String, Integer> getAvailableStock(Collection<String> productIds);
+
+    /**
+     * Sustituye el stock conocido de un producto tras modificarlo en la base de
+     * datos.
+     *
+     * @param productId ID del producto
+     * @param stock     Nuevo stock
+     */
+    void setStock(String productId, int stock);
+}
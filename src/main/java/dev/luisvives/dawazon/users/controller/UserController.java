@@ -10,6 +10,7 @@ import dev.luisvives.dawazon.cart.models.Address;
 import dev.luisvives.dawazon.cart.models.Client;
 import dev.luisvives.dawazon.cart.models.Status;
 import dev.luisvives.dawazon.cart.service.CartServiceImpl;
+import dev.luisvives.dawazon.common.controller.RequestViewContext;
 import dev.luisvives.dawazon.products.dto.PostProductRequestDto;
 import dev.luisvives.dawazon.products.mapper.ProductMapper;
 import dev.luisvives.dawazon.products.models.Product;
@@ -22,8 +23,6 @@ import dev.luisvives.dawazon.users.models.User;
 import dev.luisvives.dawazon.users.service.AuthService;
 import dev.luisvives.dawazon.users.service.FavService;
 import jakarta.validation.Valid;
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpSession;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.bson.types.ObjectId;
@@ -248,7 +247,7 @@ public class UserController {
         // Creamos cómo va a ser la paginación
         Pageable pageable = PageRequest.of(page, size, sort);
         val products = mapper.pageToDTO(
-                productService.findAll(Optional.empty(), Optional.empty(), Optional.of(id), pageable), sortBy,
+                productService.findListing(Optional.empty(), Optional.empty(), Optional.of(id), pageable), sortBy,
                 direction);
         model.addAttribute("productos", products);
         return "web/productos/lista";
@@ -466,47 +465,30 @@ public class UserController {
     /**
      * Añade un producto al carrito del usuario (solo USER).
      *
-     * @param model   Modelo de Spring MVC
-     * @param id      ID del producto
-     * @param request Request HTTP para actualizar sesión
+     * @param model Modelo de Spring MVC
+     * @param id    ID del producto
      * @return Redirección a la página del producto
      */
     @PreAuthorize("hasRole('USER')")
     @GetMapping("/carrito/add/{id}")
-    public String addToCart(Model model, @PathVariable String id, HttpServletRequest request) {
-        val userId = (Long) model.getAttribute("currentUserId");
-        val cart = (Cart) model.getAttribute("cart");
-        val ultimateCart = cartService.addProduct(new ObjectId(cart.getId()), id);
-
-        // Actualizar la sesión con el carrito modificado
-        HttpSession session = request.getSession();
-        session.setAttribute("cart", ultimateCart);
-        session.setAttribute("carrito", ultimateCart);
-
-        model.addAttribute("carrito", ultimateCart);
+    public String addToCart(Model model, @PathVariable String id) {
+        val summary = ((RequestViewContext) model.getAttribute("view")).getCartSummary();
+        cartService.addProduct(new ObjectId(summary.getCartId()), id);
         return "redirect:/products/" + id;
     }
 
     /**
      * Elimina un producto del carrito del usuario (solo USER).
      *
-     * @param model   Modelo de Spring MVC
-     * @param id      ID del producto
-     * @param request Request HTTP para actualizar sesión
+     * @param model Modelo de Spring MVC
+     * @param id    ID del producto
      * @return Redirección a la página del producto
      */
     @PreAuthorize("hasRole('USER')")
     @GetMapping("/carrito/remove/{id}")
-    public String removeToCart(Model model, @PathVariable String id, HttpServletRequest request) {
-        val cart = (Cart) model.getAttribute("cart");
-        val ultimateCart = cartService.removeProduct(new ObjectId(cart.getId()), id);
-
-        // Actualizar la sesión con el carrito modificado
-        HttpSession session = request.getSession();
-        session.setAttribute("cart", ultimateCart);
-        session.setAttribute("carrito", ultimateCart);
-
-        model.addAttribute("carrito", ultimateCart);
+    public String removeToCart(Model model, @PathVariable String id) {
+        val summary = ((RequestViewContext) model.getAttribute("view")).getCartSummary();
+        cartService.removeProduct(new ObjectId(summary.getCartId()), id);
         return "redirect:/products/" + id;
     }
 
@@ -519,7 +501,7 @@ public class UserController {
     @PreAuthorize("hasRole('USER')")
     @GetMapping("/cart")
     public String getCart(Model model) {
-        Cart cart = (Cart) model.getAttribute("cart");
+        Cart cart = loadCart(model);
 
         // Si el carrito tiene productos, buscar los detalles
         if (cart != null && !cart.getCartLines().isEmpty()) {
@@ -584,7 +566,6 @@ public class UserController {
             @RequestParam String productId,
             @RequestParam Integer quantity,
             RedirectAttributes redirectAttributes,
-            HttpSession session,
             Model model) {
 
         // Validar cantidad mínima
@@ -601,10 +582,7 @@ public class UserController {
                     .quantity(quantity)
                     .build();
 
-            Cart updatedCart = cartService.updateStockWithValidation(dto);
-
-            // Actualizamos el carrito en la sesión para que los cambios se reflejen
-            session.setAttribute("cart", updatedCart);
+            cartService.updateStockWithValidation(dto);
 
         } catch (CartException.InsufficientStockException e) {
             redirectAttributes.addFlashAttribute("error", e.getMessage());
@@ -1037,8 +1015,7 @@ public class UserController {
     @PreAuthorize("hasRole('USER')")
     @GetMapping("/cart/checkout")
     public String checkout(Model model, RedirectAttributes redirectAttributes) {
-        val user = (User) model.getAttribute("currentUser");
-        val cart = (Cart) model.getAttribute("cart");
+        val cart = loadCart(model);
 
         // Validar que el carrito tenga productos y total válido
         if (cart == null || cart.getCartLines().isEmpty() || cart.getTotal() <= 0) {
@@ -1059,7 +1036,7 @@ public class UserController {
             model.addAttribute("productMap", productMap);
         }
 
-        // El usuario y carrito ya están en el modelo gracias al GlobalModelAttributes
+        // El usuario ya está en el modelo gracias al GlobalModelAttributes
         // La plantilla se encargará de pre-rellenar los campos si user.client existe
         return "web/cart/checkout";
     }
@@ -1097,7 +1074,7 @@ public class UserController {
         log.info("funcion de pago");
         val userId = (Long) model.getAttribute("currentUserId");
         val user = authService.findById(userId);
-        val cart = (Cart) model.getAttribute("cart");
+        val cart = loadCart(model);
         log.info("user " + user + " cart " + cart);
         if (cart.getTotal() <= 0) {
             return "redirect:/";
@@ -1131,16 +1108,15 @@ public class UserController {
     @GetMapping({ "/cart/checkout/success/" })
     public String checkoutSuccess(
             Model model,
-            RedirectAttributes redirectAttributes,
-            HttpSession session) {
+            RedirectAttributes redirectAttributes) {
 
         try {
             val user = (User) model.getAttribute("currentUser");
-            val cart = (Cart) model.getAttribute("cart");
+            val cart = loadCart(model);
 
             log.info("Procesando pago exitoso - Usuario: {}", user.getId());
 
-            if (cart.isCheckoutExpired()) {
+            if (cartService.isCheckoutExpired(cart)) {
                 log.warn("Checkout expirado ({} minutos) - Carrito: {}",
                         cart.getMinutesSinceCheckoutStarted(), cart.getId());
                 redirectAttributes.addFlashAttribute("errorMessage",
@@ -1156,19 +1132,12 @@ public class UserController {
             }
 
             // Marcar el carrito como comprado (save ya resetea los flags de checkout y crea
-            // nuevo carrito)
+            // nuevo carrito, que pasa a ser el resumen de la sesión)
             Cart purchasedCart = cartService.save(cart);
 
             log.info("Pedido completado - ID: {} - Total: {}€",
                     purchasedCart.getId(), purchasedCart.getTotal());
 
-            // Obtener el nuevo carrito vacío que fue creado por save()
-            Cart newCart = cartService.getCartByUserId(user.getId());
-
-            // Actualizar la sesión con el nuevo carrito vacío
-            session.setAttribute("cart", newCart);
-            session.setAttribute("carrito", newCart);
-
             // Enviar email de confirmación de forma asíncrona con el carrito comprado
             cartService.sendConfirmationEmailAsync(purchasedCart);
 
@@ -1199,7 +1168,8 @@ public class UserController {
     /**
      * Procesa cancelación de checkout desde Stripe (solo USER).
      * <p>
-     * Restaura el stock de los productos y mantiene el carrito del usuario.
+     * Libera la reserva de stock de los productos y mantiene el carrito del
+     * usuario.
      * </p>
      *
 
@@ -1215,18 +1185,18 @@ public class UserController {
 
         try {
             val user = (User) model.getAttribute("currentUser");
-            val cart = (Cart) model.getAttribute("cart");
+            val summary = ((RequestViewContext) model.getAttribute("view")).getCartSummary();
 
             log.warn("Pago cancelado por usuario: {}", user.getId());
 
-            cartService.restoreStock(new ObjectId(cart.getId()));
+            cartService.releaseReservation(new ObjectId(summary.getCartId()));
 
             redirectAttributes.addFlashAttribute("warningMessage",
                     "Pago cancelado.  Tu carrito sigue disponible.");
             redirectAttributes.addFlashAttribute("infoMessage",
                     "Los productos han sido devueltos al stock.");
 
-            log.info("Stock restaurado para carrito: {}", cart.getId());
+            log.info("Reserva liberada para carrito: {}", summary.getCartId());
 
             return "redirect:/auth/me/cart";
 
@@ -1238,4 +1208,21 @@ public class UserController {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Carga el carrito completo del usuario actual y lo añade al modelo.
+     * <p>
+     * La sesión solo guarda un resumen del carrito, así que las páginas que
+     * muestran sus líneas lo leen aquí.
+     * </p>
+     *
+     * @param model Modelo de Spring MVC
+     * @return Carrito del usuario
+     */
+    private Cart loadCart(Model model) {
+        val userId = (Long) model.getAttribute("currentUserId");
+        val cart = cartService.getCartByUserId(userId);
+        model.addAttribute("carrito", cart);
+        model.addAttribute("cart", cart);
+        return cart;
+    }
+}
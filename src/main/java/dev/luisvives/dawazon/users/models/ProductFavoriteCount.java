@@ -0,0 +1,40 @@
+package dev.luisvives.dawazon.users.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Número de usuarios que tienen un producto en favoritos.
+ * <p>
+ * Se mantiene al añadir y quitar favoritos, en la misma transacción, para no
+ * tener que contar las filas de {@link UserFavorite} de un producto.
+ * </p>
+ *
+ * @see dev.luisvives.dawazon.users.repository.ProductFavoriteCountRepository
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "product_favorite_count")
+public class ProductFavoriteCount {
+    /**
+     * ID del producto.
+     */
+    @Id
+    @Column(name = "product_id")
+    private String productId;
+
+    /**
+     * Usuarios que lo tienen en favoritos.
+     */
+    @Column(nullable = false)
+    private Long favorites;
+}
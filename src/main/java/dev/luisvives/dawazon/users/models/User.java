@@ -34,7 +34,6 @@ import java.util.stream.Collectors;
  * <li><b>telefono</b> (String): Teléfono del usuario</li>
  * <li><b>roles</b> (List&lt;Role&gt;): Lista de roles asignados</li>
  * <li><b>avatar</b> (String): Nombre del archivo de imagen de perfil</li>
- * <li><b>favs</b> (List&lt;String&gt;): IDs de productos favoritos</li>
  * <li><b>createdAt</b> (LocalDateTime): Fecha de creación</li>
  * <li><b>updatedAt</b> (LocalDateTime): Fecha de última actualización</li>
  * <li><b>isDeleted</b> (boolean): Marca de borrado lógico</li>
@@ -89,10 +88,6 @@ public class User implements UserDetails {
     @Column(nullable = false)
     @Builder.Default
     private String avatar = IMAGE_DEFAULT;
-    @Column()
-    @ElementCollection(fetch = FetchType.EAGER) // Pocos datos, tipo eager para ir más rápido
-    @Enumerated(EnumType.STRING) // Guardar el nombre del enum en lugar de el "índice" del valor
-    private List<String> favs;
     @Column(nullable = false)
     @CreatedDate
     @Builder.Default
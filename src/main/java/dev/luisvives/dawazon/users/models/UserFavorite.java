@@ -0,0 +1,67 @@
+package dev.luisvives.dawazon.users.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Producto favorito de un usuario.
+ * <p>
+ * Cada fila es un par (usuario, producto) único, de modo que los favoritos de
+ * un usuario forman un conjunto que se modifica fila a fila sin cargar el
+ * {@link User}. El ID, creciente, da el orden en que se añadieron. El índice
+ * por producto permite recorrer, por páginas, los usuarios que tienen un
+ * producto en favoritos.
+ * </p>
+ *
+ * @see dev.luisvives.dawazon.users.repository.UserFavoriteRepository
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "user_favorites", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_user_favorites_user_product", columnNames = { "user_id", "product_id" })
+}, indexes = {
+        @Index(name = "idx_user_favorites_user_id", columnList = "user_id, id"),
+        @Index(name = "idx_user_favorites_product_id", columnList = "product_id, id")
+})
+public class UserFavorite {
+    /**
+     * Identificador del favorito.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * ID del usuario.
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /**
+     * ID del producto.
+     */
+    @Column(name = "product_id", nullable = false)
+    private String productId;
+
+    /**
+     * Fecha en que se añadió a favoritos.
+     */
+    @Column(nullable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
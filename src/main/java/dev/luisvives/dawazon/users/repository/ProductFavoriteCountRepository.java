@@ -0,0 +1,58 @@
+package dev.luisvives.dawazon.users.repository;
+
+import dev.luisvives.dawazon.users.models.ProductFavoriteCount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repositorio de los contadores de favoritos por producto.
+ *
+ * @see ProductFavoriteCount
+ */
+@Repository
+public interface ProductFavoriteCountRepository extends JpaRepository<ProductFavoriteCount, String> {
+    /**
+     * Suma uno al contador de un producto, creándolo si no existía.
+     *
+     * @param productId ID del producto.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO product_favorite_count (product_id, favorites) VALUES (:productId, 1) "
+            + "ON CONFLICT (product_id) DO UPDATE SET favorites = product_favorite_count.favorites + 1",
+            nativeQuery = true)
+    void increment(String productId);
+
+    /**
+     * Resta uno al contador de un producto.
+     *
+     * @param productId ID del producto.
+     */
+    @Modifying
+    @Query("UPDATE ProductFavoriteCount c SET c.favorites = c.favorites - 1 "
+            + "WHERE c.productId = :productId AND c.favorites > 0")
+    void decrement(String productId);
+
+    /**
+     * Obtiene el número de usuarios que tienen un producto en favoritos.
+     *
+     * @param productId ID del producto.
+     * @return Número de usuarios, vacío si nadie lo ha tenido nunca.
+     */
+    @Query("SELECT c.favorites FROM ProductFavoriteCount c WHERE c.productId = :productId")
+    Optional<Long> findFavorites(String productId);
+
+    /**
+     * Recalcula todos los contadores a partir de los favoritos guardados.
+     *
+     * @return Número de productos con contador.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO product_favorite_count (product_id, favorites) "
+            + "SELECT product_id, COUNT(*) FROM user_favorites GROUP BY product_id "
+            + "ON CONFLICT (product_id) DO UPDATE SET favorites = EXCLUDED.favorites", nativeQuery = true)
+    int rebuild();
+}
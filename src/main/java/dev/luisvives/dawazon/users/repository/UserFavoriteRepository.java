@@ -0,0 +1,161 @@
+package dev.luisvives.dawazon.users.repository;
+
+import dev.luisvives.dawazon.users.models.UserFavorite;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repositorio de los productos favoritos de los usuarios.
+ * <p>
+ * Añadir y quitar un favorito es una sola sentencia y no carga el usuario.
+ * </p>
+ *
+ * @see UserFavorite
+ */
+@Repository
+public interface UserFavoriteRepository extends JpaRepository<UserFavorite, Long> {
+    /**
+     * Añade un producto a los favoritos de un usuario si no estaba ya.
+     *
+     * @param userId    ID del usuario.
+     * @param productId ID del producto.
+     * @return 1 si se ha añadido, 0 si ya estaba.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_favorites (user_id, product_id, created_at) VALUES (:userId, :productId, now()) "
+            + "ON CONFLICT (user_id, product_id) DO NOTHING", nativeQuery = true)
+    int addIfAbsent(Long userId, String productId);
+
+    /**
+     * Quita un producto de los favoritos de un usuario.
+     *
+     * @param userId    ID del usuario.
+     * @param productId ID del producto.
+     * @return 1 si se ha quitado, 0 si no estaba.
+     */
+    @Modifying
+    @Query("DELETE FROM UserFavorite f WHERE f.userId = :userId AND f.productId = :productId")
+    int remove(Long userId, String productId);
+
+    /**
+     * Indica si un producto está en los favoritos de un usuario.
+     *
+     * @param userId    ID del usuario.
+     * @param productId ID del producto.
+     * @return true si está en favoritos.
+     */
+    boolean existsByUserIdAndProductId(Long userId, String productId);
+
+    /**
+     * Obtiene una página de los IDs de productos favoritos de un usuario, en el
+     * orden en que los añadió.
+     * <p>
+     * El orden de {@code pageable} no se usa; debe pedirse sin ordenación.
+     * </p>
+     *
+     * @param userId   ID del usuario.
+     * @param pageable Página y tamaño.
+     * @return IDs de productos de la página y total de favoritos.
+     */
+    @Query(value = "SELECT f.productId FROM UserFavorite f WHERE f.userId = :userId ORDER BY f.id",
+            countQuery = "SELECT COUNT(f) FROM UserFavorite f WHERE f.userId = :userId")
+    Page<String> findProductIdsByUserId(Long userId, Pageable pageable);
+
+    /**
+     * Obtiene el siguiente lote de usuarios activos que tienen un producto en
+     * favoritos, a partir de un favorito dado y en orden de ID.
+     * <p>
+     * Recorre el índice por producto desde {@code afterId}, de modo que cada
+     * lote cuesta lo mismo sea cual sea su posición. Solo se usa el tamaño de
+     * {@code pageable}; debe pedirse la página 0.
+     * </p>
+     *
+     * @param productId ID del producto.
+     * @param afterId   ID del último favorito del lote anterior (0 para empezar).
+     * @param pageable  Tamaño del lote.
+     * @return Usuarios del lote.
+     */
+    @Query("SELECT f.id AS favoriteId, u.email AS email, u.userName AS userName "
+            + "FROM UserFavorite f JOIN User u ON u.id = f.userId "
+            + "WHERE f.productId = :productId AND f.id > :afterId AND u.isDeleted = false ORDER BY f.id")
+    List<Follower> findFollowers(String productId, Long afterId, Pageable pageable);
+
+    /**
+     * Indica si todavía existe la tabla de favoritos anterior
+     * ({@code user_favs}, lista de IDs dentro del usuario).
+     *
+     * @return true si existe.
+     */
+    @Query(value = "SELECT to_regclass('user_favs') IS NOT NULL", nativeQuery = true)
+    boolean legacyFavoritesExist();
+
+    /**
+     * Indica si la tabla de favoritos anterior tiene la columna de posición
+     * {@code fav_order}, que solo existe si llegó a arrancar la versión que la
+     * añadió.
+     *
+     * @return true si la tiene.
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = current_schema() "
+            + "AND table_name = 'user_favs' AND column_name = 'fav_order')", nativeQuery = true)
+    boolean legacyFavoritesOrdered();
+
+    /**
+     * Copia los favoritos de la tabla anterior manteniendo su orden
+     * ({@code fav_order}).
+     *
+     * @return Número de favoritos copiados.
+     * @see #legacyFavoritesOrdered()
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_favorites (user_id, product_id, created_at) "
+            + "SELECT user_id, favs, now() FROM user_favs WHERE favs IS NOT NULL ORDER BY user_id, fav_order "
+            + "ON CONFLICT (user_id, product_id) DO NOTHING", nativeQuery = true)
+    int copyLegacyFavorites();
+
+    /**
+     * Copia los favoritos de la tabla anterior cuando no tiene
+     * {@code fav_order}, en el orden físico de las filas, que es en el que se
+     * insertó la lista.
+     *
+     * @return Número de favoritos copiados.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_favorites (user_id, product_id, created_at) "
+            + "SELECT user_id, favs, now() FROM user_favs WHERE favs IS NOT NULL ORDER BY user_id, ctid "
+            + "ON CONFLICT (user_id, product_id) DO NOTHING", nativeQuery = true)
+    int copyUnorderedLegacyFavorites();
+
+    /**
+     * Elimina la tabla de favoritos anterior una vez copiada.
+     */
+    @Modifying
+    @Query(value = "DROP TABLE user_favs", nativeQuery = true)
+    void dropLegacyFavorites();
+
+    /**
+     * Usuario que tiene un producto en favoritos.
+     */
+    interface Follower {
+        /**
+         * @return ID del favorito, que sirve de cursor para el lote siguiente.
+         */
+        Long getFavoriteId();
+
+        /**
+         * @return Email del usuario.
+         */
+        String getEmail();
+
+        /**
+         * @return Nombre del usuario.
+         */
+        String getUserName();
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -88,4 +89,29 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @return Página de usuarios.
      */
     Page<User> findAll(Specification<User> criterio, Pageable pageable);
+
+    /**
+     * Obtiene en una sola consulta el ID y el nombre de varios usuarios, sin
+     * cargar la entidad completa (roles, favoritos, cliente).
+     *
+     * @param ids IDs de los usuarios.
+     * @return ID y nombre de los usuarios que existen.
+     */
+    @Query("SELECT u.id AS id, u.userName AS userName FROM User u WHERE u.id IN :ids")
+    List<UserNameView> findUserNamesByIdIn(Collection<Long> ids);
+
+    /**
+     * ID y nombre de un usuario.
+     */
+    interface UserNameView {
+        /**
+         * @return ID del usuario.
+         */
+        Long getId();
+
+        /**
+         * @return Nombre del usuario.
+         */
+        String getUserName();
+    }
 }
@@ -46,6 +46,7 @@ import static dev.luisvives.dawazon.users.models.User.IMAGE_DEFAULT;
 public class AuthServiceImpl implements AuthService {
     private final UserRepository userRepository;
     private final StorageService storage;
+    private final UserNameResolver userNames;
     BCryptPasswordEncoder passwordEncoder;
 
     /**
@@ -55,15 +56,18 @@ public class AuthServiceImpl implements AuthService {
      * @param passwordEncoder Codificador de contraseñas BCrypt.
      * @param userRepository  Repositorio de usuarios.
      * @param storage         Servicio de almacenamiento de archivos.
+     * @param userNames       Caché de nombres de usuario.
      */
     @Autowired
     public AuthServiceImpl(UserRepository repositorio,
             BCryptPasswordEncoder passwordEncoder,
             UserRepository userRepository,
-            FileSystemStorageService storage) {
+            FileSystemStorageService storage,
+            UserNameResolver userNames) {
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
         this.storage = storage;
+        this.userNames = userNames;
     }
 
     /**
@@ -177,6 +181,7 @@ public class AuthServiceImpl implements AuthService {
 
             log.info("[AuthService.updateCurrentUser] Guardando usuario...");
             User savedUser = userRepository.save(user);
+            userNames.evict(savedUser.getId());
             log.info("[AuthService.updateCurrentUser] Usuario guardado con éxito: ID={}, Username={}",
                     savedUser.getId(), savedUser.getUsername());
 
@@ -269,6 +274,7 @@ public class AuthServiceImpl implements AuthService {
 
             log.info("[AuthService.updateAdminCurrentUser] Guardando usuario...");
             User savedUser = userRepository.save(user);
+            userNames.evict(savedUser.getId());
             log.info("[AuthService.updateAdminCurrentUser] Usuario guardado con éxito: ID={}, Username={}",
                     savedUser.getId(), savedUser.getUsername());
 
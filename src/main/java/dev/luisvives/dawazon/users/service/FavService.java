@@ -1,6 +1,6 @@
 package dev.luisvives.dawazon.users.service;
 
-import dev.luisvives.dawazon.products.models.Product;
+import dev.luisvives.dawazon.products.repository.ProductRepository.ProductListing;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -24,6 +24,23 @@ public interface FavService {
      */
     public void removeFav(String productId, Long userId);
 
+    /**
+     * Indica si un producto está en los favoritos de un usuario.
+     *
+     * @param productId ID del producto.
+     * @param userId    ID del usuario.
+     * @return true si está en favoritos.
+     */
+    public boolean isFav(String productId, Long userId);
+
+    /**
+     * Obtiene el número de usuarios que tienen un producto en favoritos.
+     *
+     * @param productId ID del producto.
+     * @return Número de usuarios.
+     */
+    public long getFavCount(String productId);
+
     /**
      * Obtiene los productos favoritos de un usuario paginados.
      *
@@ -31,5 +48,5 @@ public interface FavService {
      * @param pageable Configuración de paginación.
      * @return Página de productos favoritos.
      */
-    public Page<Product> getFavs(Long userId, Pageable pageable);
+    public Page<ProductListing> getFavs(Long userId, Pageable pageable);
 }
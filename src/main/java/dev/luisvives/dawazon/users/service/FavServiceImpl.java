@@ -1,17 +1,25 @@
 package dev.luisvives.dawazon.users.service;
 
-import dev.luisvives.dawazon.products.models.Product;
 import dev.luisvives.dawazon.products.repository.ProductRepository;
+import dev.luisvives.dawazon.products.repository.ProductRepository.ProductListing;
 import dev.luisvives.dawazon.users.exceptions.UserException;
+import dev.luisvives.dawazon.users.repository.ProductFavoriteCountRepository;
+import dev.luisvives.dawazon.users.repository.UserFavoriteRepository;
 import dev.luisvives.dawazon.users.repository.UserRepository;
 import lombok.extern.slf4j.Slf4j;
-import lombok.val;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -25,85 +33,149 @@ import java.util.Objects;
 public class FavServiceImpl implements FavService {
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
+    private final UserFavoriteRepository favoriteRepository;
+    private final ProductFavoriteCountRepository countRepository;
 
     /**
      * Constructor con inyección de dependencias.
      *
-     * @param userRepository    Repositorio de usuarios.
-     * @param productRepository Repositorio de productos.
+     * @param userRepository     Repositorio de usuarios.
+     * @param productRepository  Repositorio de productos.
+     * @param favoriteRepository Repositorio de favoritos.
+     * @param countRepository    Repositorio de contadores de favoritos por producto.
      */
     @Autowired
-    public FavServiceImpl(UserRepository userRepository, ProductRepository productRepository) {
+    public FavServiceImpl(UserRepository userRepository, ProductRepository productRepository,
+            UserFavoriteRepository favoriteRepository, ProductFavoriteCountRepository countRepository) {
         this.userRepository = userRepository;
         this.productRepository = productRepository;
+        this.favoriteRepository = favoriteRepository;
+        this.countRepository = countRepository;
     }
 
     /**
      * Añade un producto a los favoritos de un usuario.
      * <p>
-     * Verifica que el usuario existe y que el producto no esté ya en favoritos.
+     * Es un único {@code INSERT ... ON CONFLICT DO NOTHING}: no carga el usuario
+     * ni sus favoritos, y dos peticiones simultáneas no pueden duplicarlo. Si se
+     * añade, suma uno al contador del producto en la misma transacción.
      * </p>
      *
      * @param productId ID del producto.
      * @param userId    ID del usuario.
-     * @throws UserException.UserNotFoundException          Si el usuario no existe.
      * @throws UserException.UserHasThatFavProductException Si el producto ya está en favoritos
      */
     @Override
+    @Transactional
     public void addFav(String productId, Long userId) {
-        val user = userRepository.findById(userId)
-                .orElseThrow(() -> new UserException.UserNotFoundException("no encontrado usuario con id" + userId));
-        if (user.getFavs().contains(productId)) {
+        if (favoriteRepository.addIfAbsent(userId, productId) == 0) {
             throw new UserException.UserHasThatFavProductException("ya tienes en favoritos a ese producto");
         }
-        user.getFavs().add(productId);
-        userRepository.save(user);
+        countRepository.increment(productId);
     }
 
     /**
      * Elimina un producto de los favoritos de un usuario.
      * <p>
-     * Verifica que el usuario existe y que el producto esté en favoritos antes de
-     * eliminarlo.
+     * Es un único {@code DELETE}: no carga el usuario ni sus favoritos. Si se
+     * quita, resta uno al contador del producto en la misma transacción.
      * </p>
      *
      * @param productId ID del producto.
      * @param userId    ID del usuario.
-     * @throws UserException.UserNotFoundException          Si el usuario no existe.
      * @throws UserException.UserHasThatFavProductException Si el producto no estaba en favoritos.
      */
     @Override
+    @Transactional
     public void removeFav(String productId, Long userId) {
-        val user = userRepository.findById(userId)
-                .orElseThrow(() -> new UserException.UserNotFoundException("no encontrado usuario con id" + userId));
-        if (!user.getFavs().contains(productId)) {
+        if (favoriteRepository.remove(userId, productId) == 0) {
             throw new UserException.UserHasThatFavProductException("no tenias en favoritos a ese producto");
         }
-        user.getFavs().remove(productId);
-        userRepository.save(user);
+        countRepository.decrement(productId);
+    }
+
+    /**
+     * Indica si un producto está en los favoritos de un usuario.
+     *
+     * @param productId ID del producto.
+     * @param userId    ID del usuario.
+     * @return true si está en favoritos.
+     */
+    @Override
+    public boolean isFav(String productId, Long userId) {
+        return favoriteRepository.existsByUserIdAndProductId(userId, productId);
+    }
+
+    /**
+     * Obtiene el número de usuarios que tienen un producto en favoritos.
+     * <p>
+     * Se lee del contador del producto, sin contar sus favoritos.
+     * </p>
+     *
+     * @param productId ID del producto.
+     * @return Número de usuarios.
+     */
+    @Override
+    public long getFavCount(String productId) {
+        return countRepository.findFavorites(productId).orElse(0L);
     }
 
     /**
      * Obtiene los productos favoritos de un usuario de forma paginada.
      * <p>
-     * Recupera todos los productos favoritos del usuario y filtra los que no
-     * existen.
+     * La página de IDs se lee de la base de datos en el orden en que el usuario
+     * añadió los favoritos, y sus productos se cargan juntos con una sola
+     * consulta. La ordenación de {@code pageable} no se usa. Los favoritos cuyo
+     * producto ya no existe no aparecen.
      * </p>
      *
      * @param userId   ID del usuario.
      * @param pageable Configuración de paginación.
-     * @return Página de productos favoritos.
+     * @return Página de productos favoritos con el total de favoritos.
      * @throws UserException.UserNotFoundException Si el usuario no existe.
      */
     @Override
-    public Page<Product> getFavs(Long userId, Pageable pageable) {
-        val user = userRepository.findById(userId)
-                .orElseThrow(() -> new UserException.UserNotFoundException("no encontrado usuario con id" + userId));
-        val products = user.getFavs().stream()
-                .map(it -> productRepository.findById(it).orElse(null))
+    public Page<ProductListing> getFavs(Long userId, Pageable pageable) {
+        if (!userRepository.existsById(userId)) {
+            throw new UserException.UserNotFoundException("no encontrado usuario con id" + userId);
+        }
+        Page<String> favIds = favoriteRepository.findProductIdsByUserId(userId,
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
+        if (favIds.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, favIds.getTotalElements());
+        }
+        Map<String, ProductListing> byId = new HashMap<>();
+        for (ProductListing product : productRepository.findListingByIdIn(favIds.getContent())) {
+            byId.put(product.getId(), product);
+        }
+        List<ProductListing> products = favIds.getContent().stream()
+                .map(byId::get)
                 .filter(Objects::nonNull)
                 .toList();
+        return new PageImpl<>(products, pageable, favIds.getTotalElements());
+    }
 
-        return new PageImpl<>(products, pageable, products.size());
+    /**
+     * Pasa los favoritos de la tabla anterior ({@code user_favs}, una lista de
+     * IDs dentro del usuario) a {@code user_favorites}, en el mismo orden, y
+     * elimina la tabla anterior. La tabla puede venir sin {@code fav_order} si
+     * se actualiza directamente desde antes de que existiera. Si aún no hay contadores por producto, los
+     * calcula a partir de los favoritos. Solo hace algo la primera vez que
+     * arranca cada versión.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void migrateLegacyFavorites() {
+        if (favoriteRepository.legacyFavoritesExist()) {
+            int copied = favoriteRepository.legacyFavoritesOrdered()
+                    ? favoriteRepository.copyLegacyFavorites()
+                    : favoriteRepository.copyUnorderedLegacyFavorites();
+            favoriteRepository.dropLegacyFavorites();
+            log.info("Migrados {} favoritos a user_favorites", copied);
+        }
+        if (countRepository.count() == 0) {
+            int products = countRepository.rebuild();
+            log.info("Calculados los contadores de favoritos de {} productos", products);
+        }
     }
 }
@@ -0,0 +1,120 @@
+package dev.luisvives.dawazon.users.service;
+
+import dev.luisvives.dawazon.common.email.PriceDropEmailService;
+import dev.luisvives.dawazon.products.models.PriceDrop;
+import dev.luisvives.dawazon.products.repository.PriceDropRepository;
+import dev.luisvives.dawazon.users.repository.UserFavoriteRepository;
+import dev.luisvives.dawazon.users.repository.UserFavoriteRepository.Follower;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Avisa por lotes a los usuarios que tienen en favoritos un producto cuyo
+ * precio ha bajado.
+ * <p>
+ * Cada lote lee, por el índice de favoritos por producto, los siguientes
+ * {@code batchSize} usuarios a partir del cursor de la bajada y lo reserva
+ * guardando el nuevo cursor antes de enviar ningún aviso. El guardado comprueba
+ * la versión de la bajada, así que si otra réplica ya ha reservado ese lote
+ * falla y no se envía nada. En memoria solo hay un lote, tenga el producto los
+ * seguidores que tenga, y ninguna transacción queda abierta mientras se envían
+ * los correos. Si se interrumpe tras reservar, los avisos que faltaran de ese
+ * lote se pierden: cada usuario recibe el aviso como mucho una vez.
+ * </p>
+ */
+@Component
+@Slf4j
+public class PriceDropFanOut {
+    /**
+     * Repositorio de favoritos.
+     */
+    private final UserFavoriteRepository favoriteRepository;
+
+    /**
+     * Repositorio de bajadas de precio.
+     */
+    private final PriceDropRepository priceDropRepository;
+
+    /**
+     * Servicio de avisos de bajada de precio.
+     */
+    private final PriceDropEmailService emailService;
+
+    /**
+     * Usuarios avisados por lote.
+     */
+    private final int batchSize;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param favoriteRepository  Repositorio de favoritos.
+     * @param priceDropRepository Repositorio de bajadas de precio.
+     * @param emailService        Servicio de avisos de bajada de precio.
+     * @param batchSize           Usuarios avisados por lote.
+     */
+    @Autowired
+    public PriceDropFanOut(UserFavoriteRepository favoriteRepository, PriceDropRepository priceDropRepository,
+            PriceDropEmailService emailService,
+            @Value("${favorites.price-drop.batch-size:500}") int batchSize) {
+        this.favoriteRepository = favoriteRepository;
+        this.priceDropRepository = priceDropRepository;
+        this.emailService = emailService;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Obtiene la bajada de precio pendiente más antigua.
+     *
+     * @return Bajada pendiente, o vacío si no hay ninguna.
+     */
+    public Optional<PriceDrop> findNextPending() {
+        return priceDropRepository.findFirstByFinishedAtIsNullOrderById();
+    }
+
+    /**
+     * Reserva el siguiente lote de usuarios de una bajada guardando el cursor
+     * y, si la reserva sale bien, les envía el aviso. Si otra réplica ha
+     * modificado la bajada desde que se leyó, no envía nada; la bajada recibida
+     * queda desfasada y hay que volver a leerla.
+     *
+     * @param drop Bajada de precio.
+     * @return true si se ha reservado el lote y puede quedar algún usuario por
+     *         avisar.
+     */
+    public boolean notifyNextBatch(PriceDrop drop) {
+        List<Follower> followers = favoriteRepository.findFollowers(drop.getProductId(), drop.getLastFavoriteId(),
+                PageRequest.of(0, batchSize));
+        if (!followers.isEmpty()) {
+            drop.setLastFavoriteId(followers.get(followers.size() - 1).getFavoriteId());
+            drop.setNotified(drop.getNotified() + followers.size());
+        }
+        boolean more = followers.size() == batchSize;
+        if (!more) {
+            drop.setFinishedAt(LocalDateTime.now());
+        }
+        try {
+            drop.setVersion(priceDropRepository.saveAndFlush(drop).getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            log.info("Otra réplica ya ha reservado el lote de la bajada de precio del producto {}",
+                    drop.getProductId());
+            return false;
+        }
+        for (Follower follower : followers) {
+            emailService.enviarBajadaPrecio(drop, follower.getEmail(), follower.getUserName());
+        }
+        if (!more) {
+            log.info("Bajada de precio del producto {} avisada a {} usuarios", drop.getProductId(),
+                    drop.getNotified());
+        }
+        return more;
+    }
+}
@@ -0,0 +1,161 @@
+package dev.luisvives.dawazon.users.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.luisvives.dawazon.common.cache.TwoLevelCacheManager;
+import dev.luisvives.dawazon.users.repository.UserRepository;
+import dev.luisvives.dawazon.users.repository.UserRepository.UserNameView;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Resuelve nombres de usuario a partir de sus IDs, por ejemplo para los autores
+ * de los comentarios de un producto.
+ * <p>
+ * Los IDs que no están en la caché se cargan todos juntos con una sola consulta
+ * que solo lee el ID y el nombre. La caché guarda como mucho
+ * {@code users.names.cache-size} nombres durante {@code users.names.cache-ttl}.
+ * </p>
+ * <p>
+ * Al quitar un usuario de la caché se avisa al resto de réplicas por el canal
+ * {@link TwoLevelCacheManager#CHANNEL}, con el mismo formato que las cachés de
+ * dos niveles y la caché {@link #CACHE_NAME}. Si se pierde un aviso, el nombre
+ * caduca igualmente.
+ * </p>
+ */
+@Component
+@Slf4j
+public class UserNameResolver implements MessageListener {
+    /**
+     * Nombre de la caché en los avisos de eliminación.
+     */
+    static final String CACHE_NAME = "users.names";
+
+    /**
+     * Separador de los campos del aviso: réplica, caché y clave.
+     */
+    private static final String SEPARATOR = "\n";
+
+    /**
+     * Repositorio de usuarios.
+     */
+    private final UserRepository userRepository;
+
+    /**
+     * Template de Redis para publicar los avisos.
+     */
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * Nombres por ID de usuario.
+     */
+    private final Cache<Long, String> names;
+
+    /**
+     * ID de esta réplica, para no aplicar sus propios avisos.
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param userRepository Repositorio de usuarios
+     * @param redisTemplate  Template de Redis para publicar los avisos
+     * @param maxSize        Máximo de nombres en caché
+     * @param ttl            Tiempo que se conserva cada nombre
+     */
+    @Autowired
+    public UserNameResolver(UserRepository userRepository, StringRedisTemplate redisTemplate,
+            @Value("${users.names.cache-size:1000}") int maxSize,
+            @Value("${users.names.cache-ttl:10m}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.redisTemplate = redisTemplate;
+        this.names = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Obtiene los nombres de varios usuarios.
+     *
+     * @param userIds IDs de los usuarios (puede haber repetidos y nulos)
+     * @return Nombre por ID; los usuarios que no existen no aparecen
+     */
+    public Map<Long, String> resolve(Collection<Long> userIds) {
+        Map<Long, String> resolved = new HashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long userId : userIds) {
+            if (userId == null || resolved.containsKey(userId)) {
+                continue;
+            }
+            String name = names.getIfPresent(userId);
+            if (name != null) {
+                resolved.put(userId, name);
+            } else {
+                missing.add(userId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return resolved;
+        }
+        Map<Long, String> loaded = new HashMap<>();
+        for (UserNameView user : userRepository.findUserNamesByIdIn(missing)) {
+            loaded.put(user.getId(), user.getUserName());
+        }
+        names.putAll(loaded);
+        resolved.putAll(loaded);
+        return resolved;
+    }
+
+    /**
+     * Quita un usuario de la caché de todas las réplicas, por ejemplo al
+     * cambiar su nombre. Si Redis no está disponible, lo registra y sigue: las
+     * demás réplicas verán el nombre nuevo al caducar el suyo.
+     *
+     * @param userId ID del usuario
+     */
+    public void evict(Long userId) {
+        names.invalidate(userId);
+        try {
+            redisTemplate.convertAndSend(TwoLevelCacheManager.CHANNEL,
+                    instanceId + SEPARATOR + CACHE_NAME + SEPARATOR + userId);
+        } catch (RuntimeException e) {
+            log.warn("No se pudo publicar la eliminación del nombre del usuario {}: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Aplica un aviso de eliminación de otra réplica. Se ignoran los avisos de
+     * otras cachés.
+     *
+     * @param message Aviso: réplica, caché y clave.
+     * @param pattern Patrón del canal (no se usa).
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(SEPARATOR, 3);
+        if (parts.length < 3 || instanceId.equals(parts[0]) || !CACHE_NAME.equals(parts[1])) {
+            return;
+        }
+        try {
+            names.invalidate(Long.valueOf(parts[2]));
+        } catch (NumberFormatException e) {
+            log.warn("Aviso de eliminación con un ID de usuario no válido: {}", parts[2]);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package dev.luisvives.dawazon.cart.mapper;
 import dev.luisvives.dawazon.cart.dto.SaleLineDto;
 import dev.luisvives.dawazon.cart.models.*;
 import dev.luisvives.dawazon.products.models.Product;
+import dev.luisvives.dawazon.products.repository.ProductRepository;
 import dev.luisvives.dawazon.users.models.User;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
@@ -263,4 +264,67 @@ class CartMapperTest {
 
         assertThat(result.getManagerId()).isEqualTo(PRODUCT_CREATOR_ID);
     }
+
+    @Test
+    @DisplayName("Debe construir la línea de venta desnormalizada")
+    void testCartLineToSaleLineMapping() {
+        ProductRepository.ProductCreator creator = new ProductRepository.ProductCreator() {
+            @Override
+            public String getId() {
+                return PRODUCT_ID;
+            }
+
+            @Override
+            public String getName() {
+                return PRODUCT_NAME;
+            }
+
+            @Override
+            public Long getCreatorId() {
+                return PRODUCT_CREATOR_ID;
+            }
+        };
+
+        SaleLine result = cartMapper.cartLineToSaleLine(cart, cartLine, creator, MANAGER_USERNAME);
+
+        assertThat(result.getId()).isEqualTo(SaleLine.key(cart.getId(), PRODUCT_ID));
+        assertThat(result.getSaleId()).isEqualTo(cart.getId());
+        assertThat(result.getProductName()).isEqualTo(PRODUCT_NAME);
+        assertThat(result.getQuantity()).isEqualTo(QUANTITY);
+        assertThat(result.getTotalPrice()).isEqualTo(TOTAL_PRICE);
+        assertThat(result.getManagerId()).isEqualTo(PRODUCT_CREATOR_ID);
+        assertThat(result.getManagerName()).isEqualTo(MANAGER_USERNAME);
+        assertThat(result.getClient()).isEqualTo(client);
+        assertThat(result.getUserId()).isEqualTo(USER_ID);
+        assertThat(result.getCreatedAt()).isEqualTo(cart.getCreatedAt());
+    }
+
+    @Test
+    @DisplayName("Debe convertir la línea de venta desnormalizada a DTO")
+    void testSaleLineToSaleLineDtoMapping() {
+        SaleLine line = SaleLine.builder()
+                .id(SaleLine.key(cart.getId(), PRODUCT_ID))
+                .saleId(cart.getId())
+                .productId(PRODUCT_ID)
+                .productName(PRODUCT_NAME)
+                .quantity(QUANTITY)
+                .totalPrice(TOTAL_PRICE)
+                .status(Status.ENVIADO)
+                .managerId(PRODUCT_CREATOR_ID)
+                .managerName(MANAGER_USERNAME)
+                .client(client)
+                .userId(USER_ID)
+                .createdAt(cart.getCreatedAt())
+                .build();
+
+        SaleLineDto result = cartMapper.saleLineToSaleLineDto(line);
+
+        assertThat(result.getSaleId()).isEqualTo(cart.getId());
+        assertThat(result.getProductId()).isEqualTo(PRODUCT_ID);
+        assertThat(result.getProductName()).isEqualTo(PRODUCT_NAME);
+        assertThat(result.getStatus()).isEqualTo(Status.ENVIADO);
+        assertThat(result.getManagerName()).isEqualTo(MANAGER_USERNAME);
+        assertThat(result.getUserId()).isEqualTo(USER_ID);
+        assertThat(result.getCreatedAt()).isEqualTo(cart.getCreatedAt());
+    }
 }
@@ -112,99 +112,39 @@ class CartRepositoryTest extends BaseMongoRepositoryTest {
     }
 
     @Test
-    void addCartLinewhenCartExistsaddsNewLineSuccessfully() {
-        Long userId = 6L;
-        ObjectId cartId = new ObjectId();
-        Cart cart = createSampleCartWithId(cartId, userId, false);
-        cart.setCartLines(new ArrayList<>());
-        Cart savedCart = cartRepository.save(cart);
-        int initialSize = savedCart.getCartLines().size();
-
-        CartLine newLine = createCartLine("PROD-NEW", 5, 100.0, Status.EN_CARRITO);
-        long modifiedCount = cartRepository.addCartLine(cartId, newLine);
-
-        assertThat(modifiedCount).isEqualTo(1);
-
-        Cart updatedCart = cartRepository.findById(cartId).orElseThrow();
-        assertThat(updatedCart.getCartLines()).hasSize(initialSize + 1);
-        assertThat(updatedCart.getCartLines())
-                .anyMatch(line -> line.getProductId().equals("PROD-NEW") && line.getQuantity() == 5);
-    }
-
-    @Test
-    void addCartLinetoEmptyCartaddsFirstLine() {
-        Long userId = 7L;
-        ObjectId cartId = new ObjectId();
-        Cart cart = createCartWithEmptyLinesWithId(cartId, userId);
-        cartRepository.save(cart);
-
-        CartLine firstLine = createCartLine("PROD-001", 1, 50.0, Status.EN_CARRITO);
-        long modifiedCount = cartRepository.addCartLine(cartId, firstLine);
-
-        assertThat(modifiedCount).isEqualTo(1);
-
-        Cart updatedCart = cartRepository.findById(cartId).orElseThrow();
-        assertThat(updatedCart.getCartLines()).hasSize(1);
-        assertThat(updatedCart.getCartLines().get(0).getProductId()).isEqualTo("PROD-001");
-    }
-
-    @Test
-    void addCartLinewhenCartNotFoundreturnsZeroModified() {
-        ObjectId nonExistentId = new ObjectId();
-        CartLine newLine = createCartLine("PROD-999", 1, 10.0, Status.EN_CARRITO);
-
-        long modifiedCount = cartRepository.addCartLine(nonExistentId, newLine);
-
-        assertThat(modifiedCount).isZero();
-    }
-
-    @Test
-    void removeCartLinewhenLineExistsremovesLineSuccessfully() {
-        Long userId = 8L;
-        ObjectId cartId = new ObjectId();
-        CartLine lineToRemove = createCartLine("PROD-REMOVE", 2, 75.0, Status.EN_CARRITO);
-        Cart cart = createSampleCartWithId(cartId, userId, false);
-        cart.setCartLines(new ArrayList<>(List.of(lineToRemove)));
-        cartRepository.save(cart);
-
-        long modifiedCount = cartRepository.removeCartLine(cartId, lineToRemove);
-
-        assertThat(modifiedCount).isEqualTo(1);
-
-        Cart updatedCart = cartRepository.findById(cartId).orElseThrow();
-        assertThat(updatedCart.getCartLines()).isEmpty();
-    }
-
-    @Test
-    void removeCartLinewhenLineNotFoundreturnsZeroModified() {
-        Long userId = 9L;
-        ObjectId cartId = new ObjectId();
-        Cart cart = createSampleCartWithId(cartId, userId, false);
-        cartRepository.save(cart);
-
-        CartLine nonExistentLine = createCartLine("PROD-NONEXISTENT", 1, 10.0, Status.EN_CARRITO);
-        long modifiedCount = cartRepository.removeCartLine(cartId, nonExistentLine);
-
-        assertThat(modifiedCount).isZero();
-    }
-
-    @Test
-    void removeCartLinefromCartWithMultipleLinesremovesOnlySpecifiedLine() {
-        Long userId = 10L;
-        ObjectId cartId = new ObjectId();
-        CartLine lineToKeep = createCartLine("PROD-KEEP", 3, 30.0, Status.EN_CARRITO);
-        CartLine lineToRemove = createCartLine("PROD-REMOVE", 1, 20.0, Status.EN_CARRITO);
-        Cart cart = createSampleCartWithId(cartId, userId, false);
-        cart.setCartLines(new ArrayList<>(List.of(lineToKeep, lineToRemove)));
-        cartRepository.save(cart);
-
-        long modifiedCount = cartRepository.removeCartLine(cartId, lineToRemove);
-
-        assertThat(modifiedCount).isEqualTo(1);
-
-        Cart updatedCart = cartRepository.findById(cartId).orElseThrow();
-        assertThat(updatedCart.getCartLines()).hasSize(1);
-        assertThat(updatedCart.getCartLines().get(0).getProductId()).isEqualTo("PROD-KEEP");
+    void compactDuplicateLinesmergesRepeatedProductsOnlyInOpenCarts() {
+        ObjectId openId = new ObjectId();
+        Cart open = createSampleCartWithId(openId, 26L, false);
+        open.setCartLines(new ArrayList<>(List.of(
+                createCartLine("PROD-1", 1, 10.0, Status.EN_CARRITO),
+                createCartLine("PROD-2", 1, 5.0, Status.EN_CARRITO),
+                createCartLine("PROD-1", 2, 20.0, Status.EN_CARRITO))));
+        open.setTotalItems(3);
+        open.setTotal(35.0);
+        cartRepository.save(open);
+        ObjectId purchasedId = new ObjectId();
+        Cart purchased = createSampleCartWithId(purchasedId, 26L, true);
+        purchased.setCartLines(new ArrayList<>(List.of(
+                createCartLine("PROD-1", 1, 10.0, Status.PREPARADO),
+                createCartLine("PROD-1", 1, 10.0, Status.PREPARADO))));
+        cartRepository.save(purchased);
+
+        assertThat(cartRepository.findCartIdsWithDuplicateLines()).containsExactly(openId);
+        assertThat(cartRepository.compactDuplicateLines()).isEqualTo(1);
+        assertThat(cartRepository.compactDuplicateLines()).isZero();
+        assertThat(cartRepository.findCartIdsWithDuplicateLines()).isEmpty();
+
+        Cart compacted = cartRepository.findById(openId).orElseThrow();
+        assertThat(compacted.getCartLines()).hasSize(2);
+        CartLine merged = compacted.getCartLines().stream()
+                .filter(l -> l.getProductId().equals("PROD-1"))
+                .findFirst()
+                .orElseThrow();
+        assertThat(merged.getQuantity()).isEqualTo(3);
+        assertThat(merged.getTotalPrice()).isEqualTo(30.0);
+        assertThat(compacted.getTotalItems()).isEqualTo(2);
+        assertThat(compacted.getTotal()).isEqualTo(35.0);
+        assertThat(cartRepository.findById(purchasedId).orElseThrow().getCartLines()).hasSize(2);
     }
 
     @Test
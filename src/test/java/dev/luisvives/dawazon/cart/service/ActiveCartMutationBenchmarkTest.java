@@ -0,0 +1,188 @@
+package dev.luisvives.dawazon.cart.service;
+
+import dev.luisvives.dawazon.BaseMongoRepositoryTest;
+import dev.luisvives.dawazon.TestContainersConfig;
+import dev.luisvives.dawazon.cart.models.Cart;
+import dev.luisvives.dawazon.cart.models.CartLine;
+import dev.luisvives.dawazon.cart.models.Status;
+import dev.luisvives.dawazon.cart.repository.CartRepository;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Compara las modificaciones de carrito por segundo de la versión anterior
+ * ({@code $push} + {@code findById} + {@code save} completo) con
+ * {@link ActiveCartStore#update}, que es el camino que siguen ahora
+ * {@code addProduct}, {@code removeProduct} y {@code updateStock}. Cada carrito
+ * lo modifican {@link #THREADS_PER_CART} hilos a la vez y al final se comprueba
+ * que los totales cuadran con las líneas. Se lanza con
+ * {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class ActiveCartMutationBenchmarkTest extends BaseMongoRepositoryTest {
+
+    private static final int CARTS = 8;
+    private static final int THREADS_PER_CART = 2;
+    private static final int MUTATIONS_PER_THREAD = 200;
+    private static final double PRICE = 9.99;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private LettuceConnectionFactory factory;
+    private StringRedisTemplate redisTemplate;
+
+    @BeforeEach
+    void setUp() {
+        GenericContainer<?> redis = TestContainersConfig.getInstance().getRedisContainer();
+        factory = new LettuceConnectionFactory(redis.getHost(), redis.getFirstMappedPort());
+        factory.afterPropertiesSet();
+        factory.start();
+        redisTemplate = new StringRedisTemplate(factory);
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void cleanup() {
+        cartRepository.deleteAll();
+        factory.destroy();
+    }
+
+    @Test
+    void compareMutationsPerSecond() throws Exception {
+        List<Cart> carts = carts();
+        long threeRoundTrips = run(carts, cart -> {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(new ObjectId(cart.getId()))),
+                    new Update().push("cartLines", line("PROD-" + new ObjectId())), Cart.class);
+            Cart found = cartRepository.findById(new ObjectId(cart.getId())).orElseThrow();
+            found.setOrderLines(found.getCartLines());
+            cartRepository.save(found);
+        });
+
+        ActiveCartStore memory = new InMemoryActiveCartStore(mongoTemplate.getConverter());
+        List<Cart> memoryCarts = carts();
+        long inMemory = run(memoryCarts, cart -> update(memory, cart));
+        assertNoLostUpdates(memory, memoryCarts);
+
+        ActiveCartStore redis = new RedisActiveCartStore(redisTemplate, mongoTemplate.getConverter(),
+                Duration.ofMinutes(5));
+        List<Cart> redisCarts = carts();
+        long onRedis = run(redisCarts, cart -> update(redis, cart));
+        assertNoLostUpdates(redis, redisCarts);
+        redisCarts.forEach(cart -> {
+            redis.detach(cart.getId());
+            redisTemplate.delete(RedisActiveCartStore.userKey(cart.getUserId()));
+        });
+
+        System.out.printf("[benchmark] push + findById + save: %d modificaciones/s%n", threeRoundTrips);
+        System.out.printf("[benchmark] almacén en memoria:     %d modificaciones/s%n", inMemory);
+        System.out.printf("[benchmark] almacén en Redis:       %d modificaciones/s%n", onRedis);
+    }
+
+    /**
+     * Añade una unidad al carrito a través del almacén, cargándolo la primera
+     * vez como hace {@code CartServiceImpl}.
+     */
+    private static void update(ActiveCartStore store, Cart cart) {
+        if (store.update(cart.getId(), it -> it.addLine(line("PROD-1"))) == null) {
+            store.putIfAbsent(cart);
+            store.update(cart.getId(), it -> it.addLine(line("PROD-1")));
+        }
+    }
+
+    /**
+     * Comprueba que cada carrito tiene todas las unidades añadidas y que el
+     * total cuadra con ellas.
+     */
+    private static void assertNoLostUpdates(ActiveCartStore store, List<Cart> carts) {
+        int units = THREADS_PER_CART * MUTATIONS_PER_THREAD;
+        for (Cart cart : carts) {
+            Cart stored = store.find(cart.getId()).orElseThrow();
+            assertThat(stored.getCartLines()).singleElement()
+                    .extracting(CartLine::getQuantity).isEqualTo(units);
+            assertThat(stored.getTotal()).isCloseTo(units * PRICE, within(0.001));
+        }
+    }
+
+    /**
+     * Lanza {@link #THREADS_PER_CART} hilos por carrito y devuelve las
+     * modificaciones por segundo.
+     */
+    private long run(List<Cart> carts, Mutation mutation) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CARTS * THREADS_PER_CART);
+        long start = System.nanoTime();
+        List<Future<?>> workers = new ArrayList<>();
+        for (Cart cart : carts) {
+            for (int t = 0; t < THREADS_PER_CART; t++) {
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < MUTATIONS_PER_THREAD; i++) {
+                        mutation.apply(cart);
+                    }
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        pool.shutdown();
+        return (long) CARTS * THREADS_PER_CART * MUTATIONS_PER_THREAD * 1000L / elapsedMs;
+    }
+
+    /**
+     * Carritos vacíos recién guardados en MongoDB.
+     */
+    private List<Cart> carts() {
+        cartRepository.deleteAll();
+        List<Cart> carts = new ArrayList<>();
+        for (int i = 0; i < CARTS; i++) {
+            carts.add(cartRepository.save(Cart.builder()
+                    .userId((long) i)
+                    .cartLines(new ArrayList<>())
+                    .totalItems(0)
+                    .total(0.0)
+                    .build()));
+        }
+        return carts;
+    }
+
+    private static CartLine line(String productId) {
+        return CartLine.builder()
+                .productId(productId)
+                .quantity(1)
+                .productPrice(PRICE)
+                .status(Status.EN_CARRITO)
+                .totalPrice(PRICE)
+                .build();
+    }
+
+    @FunctionalInterface
+    private interface Mutation {
+        void apply(Cart cart) throws Exception;
+    }
+}
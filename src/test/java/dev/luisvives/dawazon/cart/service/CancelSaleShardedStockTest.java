@@ -0,0 +1,133 @@
+package dev.luisvives.dawazon.cart.service;
+
+import dev.luisvives.dawazon.BaseRepositoryTest;
+import dev.luisvives.dawazon.cart.mapper.CartMapper;
+import dev.luisvives.dawazon.cart.models.Cart;
+import dev.luisvives.dawazon.cart.models.CartLine;
+import dev.luisvives.dawazon.cart.models.Status;
+import dev.luisvives.dawazon.cart.repository.CartRepository;
+import dev.luisvives.dawazon.common.email.OrderEmailService;
+import dev.luisvives.dawazon.products.models.Category;
+import dev.luisvives.dawazon.products.models.Product;
+import dev.luisvives.dawazon.products.models.ProductStockShard;
+import dev.luisvives.dawazon.products.repository.CategoryRepository;
+import dev.luisvives.dawazon.products.repository.ProductRepository;
+import dev.luisvives.dawazon.products.repository.ProductStockShardRepository;
+import dev.luisvives.dawazon.products.service.ProductStockShardServiceImpl;
+import dev.luisvives.dawazon.products.service.StockReservationService;
+import dev.luisvives.dawazon.stripe.service.StripeService;
+import dev.luisvives.dawazon.users.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cancelación de una venta de un producto con subcontadores contra la base de
+ * datos real: el stock devuelto tiene que sobrevivir a la consolidación.
+ */
+class CancelSaleShardedStockTest extends BaseRepositoryTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductStockShardRepository shardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final CartRepository cartRepository = mock(CartRepository.class);
+    private final StockReservationService reservations = mock(StockReservationService.class);
+
+    private CartServiceImpl cartService;
+    private ProductStockShardServiceImpl shardService;
+
+    @BeforeEach
+    void setUp() {
+        cartService = new CartServiceImpl(productRepository, cartRepository, mock(UserRepository.class),
+                mock(StripeService.class), mock(MongoTemplate.class), mock(CartMapper.class),
+                mock(OrderEmailService.class), mock(EarningsLedgerService.class),
+                mock(SaleLineProjectionService.class), reservations, mock(CheckoutExpiryQueue.class),
+                mock(ActiveCartStore.class), mock(CartSummarySession.class));
+        shardService = new ProductStockShardServiceImpl(productRepository, shardRepository);
+    }
+
+    @Test
+    void cancelSalewhenProductShardedkeepsRestoredUnitsAfterFold() {
+        // 10 unidades repartidas en 4 subcontadores, de las que se vendieron 3
+        String productId = createShardedProduct(7, 4);
+        ObjectId cartId = new ObjectId();
+        Cart cart = Cart.builder()
+                .id(cartId)
+                .userId(2L)
+                .purchased(false)
+                .cartLines(new ArrayList<>(List.of(CartLine.builder()
+                        .productId(productId)
+                        .quantity(3)
+                        .status(Status.PREPARADO)
+                        .build())))
+                .build();
+        when(cartRepository.findById(cartId)).thenReturn(Optional.of(cart));
+        entityManager.flush();
+        entityManager.clear();
+
+        cartService.cancelSale(cartId.toHexString(), productId, 1L, true);
+        verify(reservations).setStock(productId, 10);
+
+        entityManager.flush();
+        entityManager.clear();
+        assertThat(shardService.fold(productId)).isEqualTo(10);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(productRepository.findStockByIdIn(List.of(productId)).get(0).getStock()).isEqualTo(10);
+        assertThat(jdbcTemplate.queryForObject("SELECT stock FROM product WHERE id = ?", Integer.class, productId))
+                .isEqualTo(10);
+    }
+
+    private String createShardedProduct(int stock, int shards) {
+        Category category = new Category();
+        category.setName("Subcontadores");
+        category.setCreatedAt(LocalDateTime.now());
+        category.setUpdatedAt(LocalDateTime.now());
+        category = categoryRepository.save(category);
+
+        Product product = productRepository.save(Product.builder()
+                .name("Oferta flash")
+                .price(9.99)
+                .stock(stock)
+                .description("Producto caliente")
+                .creatorId(1L)
+                .category(category)
+                .images(new ArrayList<>())
+                .build());
+        for (int i = 0; i < shards; i++) {
+            shardRepository.save(ProductStockShard.builder()
+                    .productId(product.getId())
+                    .shardIndex(i)
+                    .stock(stock / shards + (i < stock % shards ? 1 : 0))
+                    .build());
+        }
+        return product.getId();
+    }
+}
@@ -0,0 +1,74 @@
+package dev.luisvives.dawazon.cart.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CheckoutExpiryQueueTest {
+
+    private CheckoutExpiryQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new CheckoutExpiryQueue(Duration.ofMinutes(5));
+    }
+
+    @Test
+    void awaitExpiredwhenDeadlinesPassedreturnsAllDueCarts() throws InterruptedException {
+        LocalDateTime overdue = LocalDateTime.now().minusMinutes(6);
+        queue.schedule("cart-1", overdue);
+        queue.schedule("cart-2", overdue.plusSeconds(1));
+
+        assertThat(queue.awaitExpired(10)).containsExactly("cart-1", "cart-2");
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    void awaitExpiredwhenCancelledskipsCart() throws InterruptedException {
+        LocalDateTime overdue = LocalDateTime.now().minusMinutes(6);
+        queue.schedule("cart-1", overdue);
+        queue.schedule("cart-2", overdue);
+        queue.cancel("cart-1");
+
+        assertThat(queue.awaitExpired(10)).containsExactly("cart-2");
+    }
+
+    @Test
+    void awaitExpiredwhenRescheduledonlyHonoursLatestDeadline() throws InterruptedException {
+        queue.schedule("cart-1", LocalDateTime.now().minusMinutes(6));
+        queue.schedule("cart-1", LocalDateTime.now());
+        queue.schedule("cart-2", LocalDateTime.now().minusMinutes(6));
+
+        assertThat(queue.awaitExpired(10)).containsExactly("cart-2");
+        assertThat(queue.size()).isEqualTo(1);
+    }
+
+    @Test
+    void awaitExpiredwaitsUntilDeadline() throws InterruptedException {
+        CheckoutExpiryQueue shortQueue = new CheckoutExpiryQueue(Duration.ofMillis(200));
+        shortQueue.schedule("cart-1", LocalDateTime.now());
+
+        long start = System.nanoTime();
+        List<String> expired = shortQueue.awaitExpired(10);
+        long waitedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(expired).containsExactly("cart-1");
+        assertThat(waitedMs).isBetween(100L, 1000L);
+    }
+
+    @Test
+    void awaitExpiredlimitsBatchSize() throws InterruptedException {
+        LocalDateTime overdue = LocalDateTime.now().minusMinutes(6);
+        queue.schedule("cart-1", overdue);
+        queue.schedule("cart-2", overdue.plusSeconds(1));
+        queue.schedule("cart-3", overdue.plusSeconds(2));
+
+        assertThat(queue.awaitExpired(2)).containsExactly("cart-1", "cart-2");
+        assertThat(queue.awaitExpired(2)).containsExactly("cart-3");
+    }
+}
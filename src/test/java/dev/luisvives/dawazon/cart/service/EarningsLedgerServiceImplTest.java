@@ -0,0 +1,241 @@
+package dev.luisvives.dawazon.cart.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import dev.luisvives.dawazon.cart.models.Cart;
+import dev.luisvives.dawazon.cart.models.CartLine;
+import dev.luisvives.dawazon.cart.models.EarningsLedger;
+import dev.luisvives.dawazon.cart.models.Status;
+import dev.luisvives.dawazon.products.repository.ProductRepository;
+import org.assertj.core.groups.Tuple;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EarningsLedgerServiceImplTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @InjectMocks
+    private EarningsLedgerServiceImpl earningsLedgerService;
+
+    @Test
+    void getGlobalTotalwhenLedgerExistsreturnsTotal() {
+        when(mongoTemplate.findById(EarningsLedger.GLOBAL_ID, EarningsLedger.class))
+                .thenReturn(EarningsLedger.builder().id(EarningsLedger.GLOBAL_ID).total(250.0).build());
+
+        assertThat(earningsLedgerService.getGlobalTotal()).isEqualTo(250.0);
+    }
+
+    @Test
+    void getManagerTotalwhenNoLedgerreturnsZero() {
+        when(mongoTemplate.findById(EarningsLedger.managerKey(7L), EarningsLedger.class)).thenReturn(null);
+
+        assertThat(earningsLedgerService.getManagerTotal(7L)).isEqualTo(0.0);
+    }
+
+    @Test
+    void recordPurchasewhenLinesFromTwoManagersincrementsGlobalAndEachManager() {
+        Cart cart = Cart.builder()
+                .userId(1L)
+                .cartLines(List.of(
+                        CartLine.builder().productId("P1").status(Status.PREPARADO).totalPrice(100.0).build(),
+                        CartLine.builder().productId("P2").status(Status.PREPARADO).totalPrice(50.0).build(),
+                        CartLine.builder().productId("P3").status(Status.CANCELADO).totalPrice(999.0).build()))
+                .build();
+
+        when(productRepository.findCreatorsByIdIn(anyCollection()))
+                .thenReturn(List.of(creator("P1", 10L), creator("P2", 20L)));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EarningsLedger.class))
+                .thenReturn(bulkOperations);
+
+        earningsLedgerService.recordPurchase(cart);
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(3)).upsert(any(Query.class), updates.capture());
+        verify(bulkOperations).execute();
+        List<Object> increments = updates.getAllValues().stream()
+                .map(update -> ((Document) update.getUpdateObject().get("$inc")).get("total"))
+                .toList();
+        assertThat(increments).containsExactlyInAnyOrder(150.0, 100.0, 50.0);
+        verify(productRepository).findCreatorsByIdIn(anyCollection());
+    }
+
+    @Test
+    void recordPurchasewhenAllLinesCanceleddoesNothing() {
+        Cart cart = Cart.builder()
+                .userId(1L)
+                .cartLines(List.of(
+                        CartLine.builder().productId("P1").status(Status.CANCELADO).totalPrice(100.0).build()))
+                .build();
+
+        earningsLedgerService.recordPurchase(cart);
+
+        verifyNoInteractions(mongoTemplate, productRepository);
+    }
+
+    @Test
+    void adjustwhenCalledupsertsGlobalAndManager() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EarningsLedger.class))
+                .thenReturn(bulkOperations);
+
+        earningsLedgerService.adjust(10L, -25.0);
+
+        verify(bulkOperations, times(2)).upsert(any(Query.class), any(Update.class));
+        verify(bulkOperations).execute();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rebuildwhenSalesExistsetsTotalsInsertsNewManagersAndRemovesStaleOnes() {
+        when(mongoTemplate.find(any(Query.class), eq(EarningsLedger.class))).thenReturn(List.of(
+                ledger(EarningsLedger.GLOBAL_ID, 5L),
+                ledger(EarningsLedger.managerKey(10L), 2L),
+                ledger(EarningsLedger.managerKey(30L), 1L)));
+        stubSales();
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EarningsLedger.class))
+                .thenReturn(bulkOperations);
+        BulkWriteResult result = result(2, 1);
+        when(bulkOperations.execute()).thenReturn(result);
+
+        earningsLedgerService.rebuild();
+
+        ArgumentCaptor<Query> filters = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).updateOne(filters.capture(), updates.capture());
+        assertThat(filters.getAllValues())
+                .extracting(query -> query.getQueryObject().get("version"))
+                .containsExactlyInAnyOrder(5L, 2L);
+        assertThat(updates.getAllValues())
+                .extracting(update -> ((Document) update.getUpdateObject().get("$set")).get("total"))
+                .containsExactlyInAnyOrder(180.0, 150.0);
+
+        ArgumentCaptor<List<EarningsLedger>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(bulkOperations).insert(inserted.capture());
+        assertThat(inserted.getValue())
+                .extracting(EarningsLedger::getId, EarningsLedger::getTotal)
+                .containsExactly(Tuple.tuple(EarningsLedger.managerKey(20L), 30.0));
+
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(bulkOperations).remove(removed.capture());
+        assertThat(removed.getValue().getQueryObject().get("_id")).isEqualTo(EarningsLedger.managerKey(30L));
+        verify(bulkOperations, never()).remove(argThat((Query query) -> query.getQueryObject().isEmpty()));
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), eq(Cart.class), eq(Document.class));
+    }
+
+    @Test
+    void rebuildwhenLedgerIncrementedMeanwhiledoesNotOverwriteItAndRetries() {
+        when(mongoTemplate.find(any(Query.class), eq(EarningsLedger.class))).thenReturn(List.of(
+                ledger(EarningsLedger.GLOBAL_ID, 5L),
+                ledger(EarningsLedger.managerKey(10L), 2L),
+                ledger(EarningsLedger.managerKey(20L), 3L)));
+        stubSales();
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EarningsLedger.class))
+                .thenReturn(bulkOperations);
+        BulkWriteResult conflict = result(2, 0);
+        BulkWriteResult clean = result(3, 0);
+        when(bulkOperations.execute()).thenReturn(conflict, clean);
+
+        earningsLedgerService.rebuild();
+
+        verify(mongoTemplate, times(2)).aggregate(any(Aggregation.class), eq(Cart.class), eq(Document.class));
+        verify(bulkOperations, times(6)).updateOne(any(Query.class), any(Update.class));
+    }
+
+    @Test
+    void rebuildIfEmptywhenLedgerExistsdoesNotRebuild() {
+        when(mongoTemplate.exists(any(Query.class), eq(EarningsLedger.class))).thenReturn(true);
+
+        earningsLedgerService.rebuildIfEmpty();
+
+        verify(mongoTemplate, never()).aggregate(any(Aggregation.class), eq(Cart.class), eq(Document.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rebuildIfEmptywhenNoSalesinsertsEmptyGlobalLedger() {
+        when(mongoTemplate.exists(any(Query.class), eq(EarningsLedger.class))).thenReturn(false);
+        when(mongoTemplate.find(any(Query.class), eq(EarningsLedger.class))).thenReturn(List.of());
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Cart.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(new ArrayList<>(), new Document()));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EarningsLedger.class))
+                .thenReturn(bulkOperations);
+
+        earningsLedgerService.rebuildIfEmpty();
+
+        ArgumentCaptor<List<EarningsLedger>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(productRepository, never()).findCreatorsByIdIn(anyCollection());
+        verify(bulkOperations).insert(inserted.capture());
+        verify(bulkOperations).execute();
+        assertThat(inserted.getValue())
+                .extracting(EarningsLedger::getId, EarningsLedger::getTotal, EarningsLedger::getVersion)
+                .containsExactly(Tuple.tuple(EarningsLedger.GLOBAL_ID, 0.0, 1L));
+    }
+
+    private void stubSales() {
+        AggregationResults<Document> results = new AggregationResults<>(List.of(
+                new Document("_id", "P1").append("total", 100.0),
+                new Document("_id", "P2").append("total", 50.0),
+                new Document("_id", "P3").append("total", 30.0)), new Document());
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Cart.class), eq(Document.class)))
+                .thenReturn(results);
+        when(productRepository.findCreatorsByIdIn(anyCollection()))
+                .thenReturn(List.of(creator("P1", 10L), creator("P2", 10L), creator("P3", 20L)));
+    }
+
+    private EarningsLedger ledger(String id, Long version) {
+        return EarningsLedger.builder().id(id).version(version).build();
+    }
+
+    private BulkWriteResult result(int matched, int deleted) {
+        BulkWriteResult result = mock(BulkWriteResult.class);
+        lenient().when(result.getMatchedCount()).thenReturn(matched);
+        lenient().when(result.getDeletedCount()).thenReturn(deleted);
+        return result;
+    }
+
+    private ProductRepository.ProductCreator creator(String productId, Long creatorId) {
+        return new ProductRepository.ProductCreator() {
+            @Override
+            public String getId() {
+                return productId;
+            }
+
+            @Override
+            public String getName() {
+                return "Producto " + productId;
+            }
+
+            @Override
+            public Long getCreatorId() {
+                return creatorId;
+            }
+        };
+    }
+}
@@ -0,0 +1,120 @@
+package dev.luisvives.dawazon.cart.service;
+
+import dev.luisvives.dawazon.cart.models.Cart;
+import dev.luisvives.dawazon.cart.models.CartLine;
+import dev.luisvives.dawazon.cart.models.Status;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryActiveCartStoreTest {
+
+    private InMemoryActiveCartStore store;
+    private Cart cart;
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryActiveCartStore(converter());
+        cart = Cart.builder()
+                .id(new ObjectId())
+                .userId(1L)
+                .cartLines(new ArrayList<>())
+                .totalItems(0)
+                .total(0.0)
+                .build();
+    }
+
+    @Test
+    void putIfAbsentwhenAlreadyStoredkeepsStoredVersion() {
+        store.putIfAbsent(cart);
+        store.update(cart.getId(), it -> it.addLine(line("P1", 1, 10.0)));
+
+        Cart kept = store.putIfAbsent(cart);
+
+        assertThat(kept.getCartLines()).hasSize(1);
+        assertThat(store.findCartId(1L)).contains(cart.getId());
+    }
+
+    @Test
+    void updatewhenNotStoredreturnsNull() {
+        assertThat(store.update(cart.getId(), it -> it.addLine(line("P1", 1, 10.0)))).isNull();
+        assertThat(store.drainDirty(10)).isEmpty();
+    }
+
+    @Test
+    void updatereturnsCopiesThatDoNotChangeTheStore() {
+        store.putIfAbsent(cart);
+        Cart updated = store.update(cart.getId(), it -> it.addLine(line("P1", 1, 10.0)));
+
+        updated.getCartLines().clear();
+
+        assertThat(store.find(cart.getId()).orElseThrow().getCartLines()).hasSize(1);
+    }
+
+    @Test
+    void drainDirtywhenUpdatedSeveralTimesreturnsLatestVersionOnce() {
+        store.putIfAbsent(cart);
+        store.update(cart.getId(), it -> it.addLine(line("P1", 1, 10.0)));
+        store.update(cart.getId(), it -> it.addLine(line("P1", 1, 10.0)));
+
+        List<Cart> drained = store.drainDirty(10);
+
+        assertThat(drained).hasSize(1);
+        assertThat(drained.get(0).getCartLines().get(0).getQuantity()).isEqualTo(2);
+        assertThat(drained.get(0).getTotal()).isEqualTo(20.0);
+        assertThat(store.drainDirty(10)).isEmpty();
+    }
+
+    @Test
+    void detachwhenDirtyreturnsLatestVersionAndForgetsCart() {
+        store.putIfAbsent(cart);
+        store.update(cart.getId(), it -> it.addLine(line("P1", 1, 10.0)));
+
+        assertThat(store.detach(cart.getId())).map(Cart::getTotal).contains(10.0);
+        assertThat(store.find(cart.getId())).isEmpty();
+        assertThat(store.findCartId(1L)).isEmpty();
+        assertThat(store.drainDirty(10)).isEmpty();
+    }
+
+    @Test
+    void detachwhenCleanreturnsEmpty() {
+        store.putIfAbsent(cart);
+
+        assertThat(store.detach(cart.getId())).isEmpty();
+        assertThat(store.find(cart.getId())).isEmpty();
+    }
+
+    private static CartLine line(String productId, int quantity, double price) {
+        return CartLine.builder()
+                .productId(productId)
+                .quantity(quantity)
+                .productPrice(price)
+                .totalPrice(quantity * price)
+                .status(Status.EN_CARRITO)
+                .build();
+    }
+
+    /**
+     * Conversor de MongoDB sin base de datos, con las mismas conversiones que
+     * usa la aplicación.
+     */
+    static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
@@ -0,0 +1,171 @@
+package dev.luisvives.dawazon.cart.service;
+
+import dev.luisvives.dawazon.TestContainersConfig;
+import dev.luisvives.dawazon.cart.models.Cart;
+import dev.luisvives.dawazon.cart.models.CartLine;
+import dev.luisvives.dawazon.cart.models.Status;
+import io.lettuce.core.cluster.SlotHash;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Almacén de carritos activos contra el Redis del contenedor de tests, con
+ * dos instancias que comparten los datos.
+ */
+class RedisActiveCartStoreTest {
+
+    private LettuceConnectionFactory factory;
+    private StringRedisTemplate template;
+    private RedisActiveCartStore store;
+    private RedisActiveCartStore otherInstance;
+    private Cart cart;
+
+    @BeforeEach
+    void setUp() {
+        GenericContainer<?> redis = TestContainersConfig.getInstance().getRedisContainer();
+        factory = new LettuceConnectionFactory(redis.getHost(), redis.getFirstMappedPort());
+        factory.afterPropertiesSet();
+        factory.start();
+        template = new StringRedisTemplate(factory);
+        template.afterPropertiesSet();
+        store = new RedisActiveCartStore(template, InMemoryActiveCartStoreTest.converter(), Duration.ofMinutes(5));
+        otherInstance = new RedisActiveCartStore(template, InMemoryActiveCartStoreTest.converter(),
+                Duration.ofMinutes(5));
+        template.delete(dirtyKeys());
+        cart = Cart.builder()
+                .id(new ObjectId())
+                .userId(1L)
+                .cartLines(new ArrayList<>())
+                .totalItems(0)
+                .total(0.0)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        template.delete(dirtyKeys());
+        template.delete(List.of(RedisActiveCartStore.cartKey(cart.getId()),
+                RedisActiveCartStore.userKey(cart.getUserId())));
+        factory.destroy();
+    }
+
+    @Test
+    void putIfAbsentroundTripsCartThroughJson() {
+        cart.addLine(line("P1", 2, 10.0));
+
+        store.putIfAbsent(cart);
+        Cart found = otherInstance.find(cart.getId()).orElseThrow();
+
+        assertThat(found.getId()).isEqualTo(cart.getId());
+        assertThat(found.getCartLines().get(0).getStatus()).isEqualTo(Status.EN_CARRITO);
+        assertThat(found.getTotal()).isEqualTo(20.0);
+        assertThat(otherInstance.findCartId(1L)).contains(cart.getId());
+    }
+
+    @Test
+    void updatewhenConcurrentFromTwoInstanceskeepsEveryChange() throws Exception {
+        store.putIfAbsent(cart);
+        int adds = 40;
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < adds; i++) {
+            RedisActiveCartStore instance = i % 2 == 0 ? store : otherInstance;
+            workers.add(pool.submit(() -> instance.update(cart.getId(), it -> it.addLine(line("P1", 1, 1.0)))));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        pool.shutdown();
+
+        Cart updated = store.find(cart.getId()).orElseThrow();
+        assertThat(updated.getCartLines().get(0).getQuantity()).isEqualTo(adds);
+        assertThat(store.drainDirty(10)).hasSize(1);
+        assertThat(otherInstance.drainDirty(10)).isEmpty();
+    }
+
+    @Test
+    void detachwhenDirtyreturnsLatestVersionOnlyOnce() {
+        store.putIfAbsent(cart);
+        store.update(cart.getId(), it -> it.addLine(line("P1", 1, 10.0)));
+
+        assertThat(otherInstance.detach(cart.getId())).map(Cart::getTotal).contains(10.0);
+        assertThat(store.detach(cart.getId())).isEmpty();
+        assertThat(store.find(cart.getId())).isEmpty();
+        assertThat(store.update(cart.getId(), it -> it.removeLine("P1"))).isNull();
+    }
+
+    @Test
+    void cartKeysharesClusterSlotWithItsDirtySet() {
+        for (int i = 0; i < 100; i++) {
+            String cartId = new ObjectId().toHexString();
+
+            assertThat(SlotHash.getSlot(RedisActiveCartStore.cartKey(cartId)))
+                    .isEqualTo(SlotHash.getSlot(RedisActiveCartStore.dirtyKey(cartId)));
+        }
+    }
+
+    @Test
+    void drainDirtywhenCartsInSeveralShardsdrainsEveryCartUpToMax() {
+        List<Cart> carts = new ArrayList<>();
+        Set<Integer> shards = new HashSet<>();
+        for (long userId = 100; carts.size() < 6; userId++) {
+            ObjectId cartId = new ObjectId();
+            if (!shards.add(RedisActiveCartStore.shard(cartId.toHexString()))) {
+                continue;
+            }
+            Cart other = Cart.builder()
+                    .id(cartId)
+                    .userId(userId)
+                    .cartLines(new ArrayList<>())
+                    .totalItems(0)
+                    .total(0.0)
+                    .build();
+            store.putIfAbsent(other);
+            store.update(other.getId(), it -> it.addLine(line("P1", 1, 1.0)));
+            carts.add(other);
+        }
+        List<Cart> drained = new ArrayList<>(store.drainDirty(4));
+        assertThat(drained).hasSize(4);
+        drained.addAll(otherInstance.drainDirty(10));
+
+        assertThat(drained).extracting(Cart::getId)
+                .containsExactlyInAnyOrderElementsOf(carts.stream().map(Cart::getId).toList());
+        carts.forEach(it -> template.delete(List.of(RedisActiveCartStore.cartKey(it.getId()),
+                RedisActiveCartStore.userKey(it.getUserId()))));
+    }
+
+    private static List<String> dirtyKeys() {
+        List<String> keys = new ArrayList<>();
+        for (int shard = 0; shard < RedisActiveCartStore.SHARDS; shard++) {
+            keys.add(RedisActiveCartStore.shardDirtyKey(shard));
+        }
+        return keys;
+    }
+
+    private static CartLine line(String productId, int quantity, double price) {
+        return CartLine.builder()
+                .productId(productId)
+                .quantity(quantity)
+                .productPrice(price)
+                .totalPrice(quantity * price)
+                .status(Status.EN_CARRITO)
+                .build();
+    }
+}
@@ -0,0 +1,216 @@
+package dev.luisvives.dawazon.cart.service;
+
+import dev.luisvives.dawazon.cart.mapper.CartMapper;
+import dev.luisvives.dawazon.cart.models.Cart;
+import dev.luisvives.dawazon.cart.models.CartLine;
+import dev.luisvives.dawazon.cart.models.Client;
+import dev.luisvives.dawazon.cart.models.SaleLine;
+import dev.luisvives.dawazon.cart.models.Status;
+import dev.luisvives.dawazon.cart.repository.SaleLineRepository;
+import dev.luisvives.dawazon.products.repository.ProductRepository;
+import dev.luisvives.dawazon.users.models.User;
+import dev.luisvives.dawazon.users.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SaleLineProjectionServiceImplTest {
+
+    @Mock
+    private SaleLineRepository saleLineRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    private SaleLineProjectionServiceImpl projectionService;
+
+    private Cart cart;
+
+    @BeforeEach
+    void setUp() {
+        projectionService = new SaleLineProjectionServiceImpl(saleLineRepository, productRepository,
+                userRepository, mongoTemplate, new CartMapper());
+        cart = Cart.builder()
+                .userId(1L)
+                .purchased(true)
+                .client(Client.builder().name("Cliente").build())
+                .cartLines(List.of(
+                        CartLine.builder().productId("P1").quantity(1).productPrice(10.0).totalPrice(10.0)
+                                .status(Status.PREPARADO).build(),
+                        CartLine.builder().productId("P2").quantity(2).productPrice(5.0).totalPrice(10.0)
+                                .status(Status.PREPARADO).build()))
+                .build();
+    }
+
+    @Test
+    void projectwhenCartPurchasedwritesOneSnapshotPerLine() {
+        when(productRepository.findCreatorsByIdIn(anyCollection()))
+                .thenReturn(List.of(creator("P1", 10L), creator("P2", 20L)));
+        when(userRepository.findAllById(anyCollection()))
+                .thenReturn(List.of(User.builder().id(10L).userName("ana").build(),
+                        User.builder().id(20L).userName("luis").build()));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SaleLine.class)).thenReturn(bulkOperations);
+
+        projectionService.project(cart);
+
+        ArgumentCaptor<Object> lines = ArgumentCaptor.forClass(Object.class);
+        verify(bulkOperations, times(2)).replaceOne(any(Query.class), lines.capture(),
+                any(FindAndReplaceOptions.class));
+        verify(bulkOperations).execute();
+        assertThat(lines.getAllValues())
+                .extracting(line -> ((SaleLine) line).getId(), line -> ((SaleLine) line).getManagerName())
+                .containsExactlyInAnyOrder(
+                        org.assertj.core.groups.Tuple.tuple(SaleLine.key(cart.getId(), "P1"), "ana"),
+                        org.assertj.core.groups.Tuple.tuple(SaleLine.key(cart.getId(), "P2"), "luis"));
+    }
+
+    @Test
+    void projectwhenPurchasedCartHasRepeatedProductwritesOneLineWithSummedQuantityAndTotal() {
+        cart.setCartLines(List.of(
+                CartLine.builder().productId("P1").quantity(1).productPrice(10.0).totalPrice(10.0)
+                        .status(Status.PREPARADO).build(),
+                CartLine.builder().productId("P2").quantity(2).productPrice(5.0).totalPrice(10.0)
+                        .status(Status.PREPARADO).build(),
+                CartLine.builder().productId("P1").quantity(2).productPrice(10.0).totalPrice(20.0)
+                        .status(Status.PREPARADO).build()));
+        when(productRepository.findCreatorsByIdIn(anyCollection()))
+                .thenReturn(List.of(creator("P1", 10L), creator("P2", 20L)));
+        when(userRepository.findAllById(anyCollection()))
+                .thenReturn(List.of(User.builder().id(10L).userName("ana").build(),
+                        User.builder().id(20L).userName("luis").build()));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SaleLine.class)).thenReturn(bulkOperations);
+
+        projectionService.project(cart);
+
+        ArgumentCaptor<Object> lines = ArgumentCaptor.forClass(Object.class);
+        verify(bulkOperations, times(2)).replaceOne(any(Query.class), lines.capture(),
+                any(FindAndReplaceOptions.class));
+        assertThat(lines.getAllValues())
+                .extracting(line -> ((SaleLine) line).getProductId(), line -> ((SaleLine) line).getQuantity(),
+                        line -> ((SaleLine) line).getTotalPrice())
+                .containsExactly(
+                        org.assertj.core.groups.Tuple.tuple("P1", 3, 30.0),
+                        org.assertj.core.groups.Tuple.tuple("P2", 2, 10.0));
+        assertThat(cart.getCartLines()).hasSize(3);
+    }
+
+    @Test
+    void projectwhenProductMissingskipsThatLine() {
+        when(productRepository.findCreatorsByIdIn(anyCollection())).thenReturn(List.of(creator("P1", 10L)));
+        when(userRepository.findAllById(anyCollection()))
+                .thenReturn(List.of(User.builder().id(10L).userName("ana").build()));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SaleLine.class)).thenReturn(bulkOperations);
+
+        projectionService.project(cart);
+
+        verify(bulkOperations, times(1)).replaceOne(any(Query.class), any(), any(FindAndReplaceOptions.class));
+        verify(bulkOperations).execute();
+    }
+
+    @Test
+    void updateStatuswhenLineExistsreturnsUpdatedLine() {
+        SaleLine updated = SaleLine.builder().id("c:P1").managerId(10L).status(Status.ENVIADO).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(SaleLine.class))).thenReturn(updated);
+
+        Optional<SaleLine> result = projectionService.updateStatus("c", "P1", Status.ENVIADO);
+
+        assertThat(result).contains(updated);
+    }
+
+    @Test
+    void updateStatuswhenLineMissingreturnsEmpty() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(SaleLine.class))).thenReturn(null);
+
+        assertThat(projectionService.updateStatus("c", "P1", Status.ENVIADO)).isEmpty();
+    }
+
+    @Test
+    void findAllwhenManagerPresentqueriesByManagerSortedByDate() {
+        Pageable requested = PageRequest.of(1, 5, Sort.by("id"));
+        Pageable expected = PageRequest.of(1, 5, Sort.by(Sort.Direction.DESC, "createdAt", "id"));
+        Page<SaleLine> page = new PageImpl<>(List.of(), expected, 0);
+        when(saleLineRepository.findAllByManagerId(10L, expected)).thenReturn(page);
+
+        assertThat(projectionService.findAll(Optional.of(10L), requested)).isSameAs(page);
+        verify(saleLineRepository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void findAllwhenNoManagerqueriesAllLines() {
+        Pageable expected = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "createdAt", "id"));
+        Page<SaleLine> page = new PageImpl<>(List.of(), expected, 0);
+        when(saleLineRepository.findAll(expected)).thenReturn(page);
+
+        assertThat(projectionService.findAll(Optional.empty(), PageRequest.of(0, 10))).isSameAs(page);
+    }
+
+    @Test
+    void rebuildwhenPurchasedCartsExistprojectsThem() {
+        when(mongoTemplate.stream(any(Query.class), eq(Cart.class))).thenReturn(Stream.of(cart));
+        when(productRepository.findCreatorsByIdIn(anyCollection()))
+                .thenReturn(List.of(creator("P1", 10L), creator("P2", 10L)));
+        when(userRepository.findAllById(anyCollection()))
+                .thenReturn(List.of(User.builder().id(10L).userName("ana").build()));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SaleLine.class)).thenReturn(bulkOperations);
+
+        projectionService.rebuild();
+
+        verify(bulkOperations, times(2)).replaceOne(any(Query.class), any(), any(FindAndReplaceOptions.class));
+        verify(bulkOperations).execute();
+    }
+
+    private ProductRepository.ProductCreator creator(String productId, Long creatorId) {
+        return new ProductRepository.ProductCreator() {
+            @Override
+            public String getId() {
+                return productId;
+            }
+
+            @Override
+            public String getName() {
+                return "Producto " + productId;
+            }
+
+            @Override
+            public Long getCreatorId() {
+                return creatorId;
+            }
+        };
+    }
+}
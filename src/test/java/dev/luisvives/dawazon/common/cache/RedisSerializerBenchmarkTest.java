@@ -0,0 +1,72 @@
+package dev.luisvives.dawazon.common.cache;
+
+import dev.luisvives.dawazon.products.dto.GenericProductResponseDto;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compara tamaño y tiempo de escritura y lectura de un producto cacheado (con
+ * su primera página de comentarios y sus imágenes) con el serializador JSON
+ * anterior y con {@link VersionedRedisSerializer} en cada formato. Cada medida
+ * va precedida de {@link #WARMUP} iteraciones de calentamiento. Se lanza con
+ * {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class RedisSerializerBenchmarkTest {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 100_000;
+
+    /**
+     * Evita que el JIT descarte el trabajo medido.
+     */
+    private long sink;
+
+    @Test
+    void compareSerializers() {
+        GenericProductResponseDto product = VersionedRedisSerializerTest.product();
+        Map<String, RedisSerializer<Object>> serializers = new LinkedHashMap<>();
+        serializers.put("json (anterior)", new GenericJackson2JsonRedisSerializer());
+        for (VersionedRedisSerializer.Format format : VersionedRedisSerializer.Format.values()) {
+            serializers.put(format.name().toLowerCase(), new VersionedRedisSerializer(format));
+        }
+
+        int jsonSize = 0;
+        for (Map.Entry<String, RedisSerializer<Object>> entry : serializers.entrySet()) {
+            RedisSerializer<Object> serializer = entry.getValue();
+            byte[] bytes = serializer.serialize(product);
+            assertThat(serializer.deserialize(bytes)).isEqualTo(product);
+            if (jsonSize == 0) {
+                jsonSize = bytes.length;
+            }
+
+            long encodeNs = time(() -> sink += serializer.serialize(product).length);
+            long decodeNs = time(() -> sink += serializer.deserialize(bytes).hashCode());
+
+            System.out.printf("[benchmark] %-16s %5d bytes (%3d%%), escritura %5d ns, lectura %5d ns%n",
+                    entry.getKey(), bytes.length, bytes.length * 100 / jsonSize, encodeNs, decodeNs);
+        }
+        assertThat(sink).isNotZero();
+    }
+
+    /**
+     * @return Tiempo medio por operación en nanosegundos.
+     */
+    private static long time(Runnable operation) {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+}
@@ -0,0 +1,79 @@
+package dev.luisvives.dawazon.common.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TwoLevelCacheManagerTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private ConcurrentMapCacheManager remote;
+    private TwoLevelCacheManager manager;
+
+    @BeforeEach
+    void setUp() {
+        remote = new ConcurrentMapCacheManager();
+        manager = new TwoLevelCacheManager(remote, redisTemplate, new SimpleMeterRegistry(), Set.of("productos"),
+                100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void getCachewhenNotLocalreturnsRemoteCache() {
+        assertThat(manager.getCache("usuarios")).isSameAs(remote.getCache("usuarios"));
+        assertThat(manager.getCache("productos")).isInstanceOf(TwoLevelCache.class);
+        assertThat(manager.getCache("productos")).isSameAs(manager.getCache("productos"));
+    }
+
+    @Test
+    void evictpublishesMessageThatOtherNodesApply() {
+        TwoLevelCacheManager otherNode = new TwoLevelCacheManager(remote, redisTemplate, new SimpleMeterRegistry(),
+                Set.of("productos"), 100, Duration.ofMinutes(1));
+        otherNode.getCache("productos").put("PROD-1", "producto");
+        remote.getCache("productos").put("PROD-1", "producto actualizado");
+
+        manager.getCache("productos").evict("PROD-1");
+
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(TwoLevelCacheManager.CHANNEL), message.capture());
+        // El borrado en Redis ya lo ha hecho la réplica que publica
+        remote.getCache("productos").put("PROD-1", "producto actualizado");
+        otherNode.onMessage(message(message.getValue()), null);
+        assertThat(otherNode.getCache("productos").get("PROD-1").get()).isEqualTo("producto actualizado");
+    }
+
+    @Test
+    void onMessagewhenOwnMessageignoresIt() {
+        manager.getCache("productos").put("PROD-1", "producto");
+        manager.getCache("productos").clear();
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(TwoLevelCacheManager.CHANNEL), message.capture());
+        manager.getCache("productos").put("PROD-1", "producto");
+
+        manager.onMessage(message(message.getValue()), null);
+
+        assertThat(manager.getCache("productos").get("PROD-1").get()).isEqualTo("producto");
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(TwoLevelCacheManager.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
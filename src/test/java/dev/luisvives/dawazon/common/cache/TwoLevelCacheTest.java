@@ -0,0 +1,131 @@
+package dev.luisvives.dawazon.common.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwoLevelCacheTest {
+
+    private ConcurrentMapCache remote;
+    private SimpleMeterRegistry registry;
+    private List<String> evictions;
+    private TwoLevelCache cache;
+
+    @BeforeEach
+    void setUp() {
+        remote = new ConcurrentMapCache("productos");
+        registry = new SimpleMeterRegistry();
+        evictions = new ArrayList<>();
+        cache = new TwoLevelCache(Caffeine.newBuilder().maximumSize(100).build(), remote,
+                (name, key) -> evictions.add(name + ":" + key), registry);
+    }
+
+    @Test
+    void getwhenOnlyInRemotecopiesToLocalAndCountsEachLevel() {
+        remote.put("PROD-1", "producto");
+
+        assertThat(cache.get("PROD-1").get()).isEqualTo("producto");
+        remote.evict("PROD-1");
+        assertThat(cache.get("PROD-1").get()).isEqualTo("producto");
+
+        assertThat(count("l1", "miss")).isEqualTo(1);
+        assertThat(count("l2", "hit")).isEqualTo(1);
+        assertThat(count("l1", "hit")).isEqualTo(1);
+    }
+
+    @Test
+    void getwhenInNeitherLevelreturnsNullAndCountsMisses() {
+        assertThat(cache.get("PROD-1")).isNull();
+
+        assertThat(count("l1", "miss")).isEqualTo(1);
+        assertThat(count("l2", "miss")).isEqualTo(1);
+    }
+
+    @Test
+    void putwritesBothLevels() {
+        cache.put("PROD-1", "producto");
+
+        assertThat(remote.get("PROD-1").get()).isEqualTo("producto");
+        assertThat(cache.get("PROD-1").get()).isEqualTo("producto");
+        assertThat(count("l1", "hit")).isEqualTo(1);
+        assertThat(evictions).isEmpty();
+    }
+
+    @Test
+    void evictremovesBothLevelsAndNotifiesOtherNodes() {
+        cache.put("PROD-1", "producto");
+
+        cache.evict("PROD-1");
+
+        assertThat(remote.get("PROD-1")).isNull();
+        assertThat(cache.get("PROD-1")).isNull();
+        assertThat(evictions).containsExactly("productos:PROD-1");
+    }
+
+    @Test
+    void evictLocalkeepsRemoteEntry() {
+        cache.put("PROD-1", "producto");
+        remote.put("PROD-1", "producto actualizado");
+
+        cache.evictLocal("PROD-1");
+
+        assertThat(cache.get("PROD-1").get()).isEqualTo("producto actualizado");
+        assertThat(evictions).isEmpty();
+    }
+
+    @Test
+    void clearemptiesBothLevelsAndNotifiesOtherNodes() {
+        cache.put("PROD-1", "producto");
+
+        cache.clear();
+
+        assertThat(cache.get("PROD-1")).isNull();
+        assertThat(evictions).containsExactly("productos:null");
+    }
+
+    @Test
+    void getWithLoaderwhenMissingloadsOnceAndCachesInBothLevels() {
+        List<String> loads = new ArrayList<>();
+
+        cache.get("PROD-1", () -> {
+            loads.add("PROD-1");
+            return "producto";
+        });
+        Object cached = cache.get("PROD-1", () -> {
+            loads.add("PROD-1");
+            return "otro";
+        });
+
+        assertThat(cached).isEqualTo("producto");
+        assertThat(loads).hasSize(1);
+        assertThat(remote.get("PROD-1").get()).isEqualTo("producto");
+    }
+
+    @Test
+    void getwhenNullValueCachedreturnsWrapperWithNull() {
+        Cache nullable = new TwoLevelCache(Caffeine.newBuilder().maximumSize(100).build(),
+                new ConcurrentMapCache("productos", true), (name, key) -> { }, registry);
+
+        nullable.put("PROD-1", null);
+
+        assertThat(nullable.get("PROD-1")).isNotNull();
+        assertThat(nullable.get("PROD-1").get()).isNull();
+    }
+
+    private double count(String level, String result) {
+        return registry.get("cache.level.gets")
+                .tag("cache", "productos")
+                .tag("level", level)
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+}
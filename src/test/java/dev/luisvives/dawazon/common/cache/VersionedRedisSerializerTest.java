@@ -0,0 +1,155 @@
+package dev.luisvives.dawazon.common.cache;
+
+import dev.luisvives.dawazon.products.dto.CommentDto;
+import dev.luisvives.dawazon.products.dto.GenericProductResponseDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VersionedRedisSerializerTest {
+
+    @ParameterizedTest
+    @EnumSource(VersionedRedisSerializer.Format.class)
+    void serializeAndDeserializeroundTripsProduct(VersionedRedisSerializer.Format format) {
+        VersionedRedisSerializer serializer = new VersionedRedisSerializer(format);
+        GenericProductResponseDto product = product();
+
+        Object read = serializer.deserialize(serializer.serialize(product));
+
+        assertThat(read).isEqualTo(product);
+    }
+
+    @ParameterizedTest
+    @EnumSource(VersionedRedisSerializer.Format.class)
+    void deserializereadsEveryFormatWhateverTheWriteFormat(VersionedRedisSerializer.Format format) {
+        byte[] written = new VersionedRedisSerializer(format).serialize(product());
+
+        for (VersionedRedisSerializer.Format reader : VersionedRedisSerializer.Format.values()) {
+            assertThat(new VersionedRedisSerializer(reader).deserialize(written)).isEqualTo(product());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(VersionedRedisSerializer.Format.class)
+    void serializeAndDeserializeroundTripsNullValue(VersionedRedisSerializer.Format format) {
+        VersionedRedisSerializer serializer = new VersionedRedisSerializer(format);
+
+        Object read = serializer.deserialize(serializer.serialize(NullValue.INSTANCE));
+
+        assertThat(read).isSameAs(NullValue.INSTANCE);
+    }
+
+    /**
+     * JSON se queda como {@link GenericJackson2JsonRedisSerializer}, que no
+     * guarda el tipo de los escalares (un Long pequeño se lee como Integer).
+     */
+    @ParameterizedTest
+    @EnumSource(value = VersionedRedisSerializer.Format.class, names = { "SMILE", "CBOR" })
+    void serializeAndDeserializeroundTripsScalars(VersionedRedisSerializer.Format format) {
+        VersionedRedisSerializer serializer = new VersionedRedisSerializer(format);
+
+        for (Object value : List.of("PROD-123", 42L, 7, 129.99, true,
+                new ArrayList<>(List.of("a", "b")))) {
+            assertThat(serializer.deserialize(serializer.serialize(value)))
+                    .isEqualTo(value)
+                    .hasSameClassAs(value);
+        }
+    }
+
+    @Test
+    void deserializereadsValuesWrittenByPreviousJsonSerializer() {
+        byte[] legacy = new GenericJackson2JsonRedisSerializer().serialize(product());
+
+        Object read = new VersionedRedisSerializer(VersionedRedisSerializer.Format.SMILE).deserialize(legacy);
+
+        assertThat(read).isEqualTo(product());
+    }
+
+    @Test
+    void serializewhenJsonwritesSameBytesAsPreviousSerializer() {
+        GenericProductResponseDto product = product();
+
+        assertThat(new VersionedRedisSerializer(VersionedRedisSerializer.Format.JSON).serialize(product))
+                .isEqualTo(new GenericJackson2JsonRedisSerializer().serialize(product));
+    }
+
+    @Test
+    void serializewhenSmileisSmallerThanJson() {
+        GenericProductResponseDto product = product();
+
+        int smile = new VersionedRedisSerializer(VersionedRedisSerializer.Format.SMILE).serialize(product).length;
+        int json = new VersionedRedisSerializer(VersionedRedisSerializer.Format.JSON).serialize(product).length;
+
+        assertThat(smile).isLessThan(json);
+    }
+
+    @Test
+    void deserializewhenUnknownHeaderreturnsNull() {
+        byte[] future = { 9, 1, 2, 3 };
+
+        assertThat(new VersionedRedisSerializer(VersionedRedisSerializer.Format.SMILE).deserialize(future)).isNull();
+    }
+
+    @Test
+    void deserializewhenCorruptreturnsNull() {
+        byte[] corrupt = "{\"@class\":\"dev.luisvives.NoExiste\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(new VersionedRedisSerializer(VersionedRedisSerializer.Format.JSON).deserialize(corrupt)).isNull();
+        assertThat(new VersionedRedisSerializer(VersionedRedisSerializer.Format.CBOR)
+                .deserialize(new byte[] { 2, (byte) 0xFF })).isNull();
+    }
+
+    @Test
+    void deserializewhenEmptyreturnsNull() {
+        VersionedRedisSerializer serializer = new VersionedRedisSerializer(VersionedRedisSerializer.Format.CBOR);
+
+        assertThat(serializer.deserialize(null)).isNull();
+        assertThat(serializer.deserialize(new byte[0])).isNull();
+    }
+
+    @Test
+    void formatOfignoresCase() {
+        assertThat(VersionedRedisSerializer.Format.of(" Smile ")).isEqualTo(VersionedRedisSerializer.Format.SMILE);
+        assertThatThrownBy(() -> VersionedRedisSerializer.Format.of("xml"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Producto como lo cachea {@code ProductServiceImpl.getById}: primera página
+     * de comentarios y URLs de imágenes, en listas de {@code Stream.toList()}.
+     */
+    static GenericProductResponseDto product() {
+        List<CommentDto> comments = IntStream.range(0, 10)
+                .mapToObj(i -> CommentDto.builder()
+                        .userName("usuario" + i)
+                        .comment("Muy buen producto, llegó a tiempo y funciona como se describe. Comentario " + i)
+                        .recommended(i % 3 != 0)
+                        .verified(i % 2 == 0)
+                        .build())
+                .toList();
+        return GenericProductResponseDto.builder()
+                .id("PROD-123")
+                .name("Auriculares inalámbricos con cancelación de ruido")
+                .price(129.99)
+                .stock(42)
+                .category("Electrónica")
+                .description("Auriculares de diadema con cancelación activa de ruido, 30 horas de batería "
+                        + "y carga rápida por USB-C.")
+                .comments(comments)
+                .commentCount(137)
+                .image(IntStream.rangeClosed(1, 3)
+                        .mapToObj(i -> "http://localhost:8080/storage/productos/PROD-123-" + i + ".webp")
+                        .toList())
+                .build();
+    }
+}
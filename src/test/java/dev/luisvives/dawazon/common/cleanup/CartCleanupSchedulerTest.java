@@ -1,6 +1,7 @@
 package dev.luisvives.dawazon.common.cleanup;
 
 import dev.luisvives.dawazon.cart.service.CartServiceImpl;
+import dev.luisvives.dawazon.common.leader.LeaderElection;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -18,18 +19,22 @@ class CartCleanupSchedulerTest {
     @Mock
     private CartServiceImpl cartService;
 
+    @Mock
+    private LeaderElection leaderElection;
+
     @InjectMocks
     private CartCleanupScheduler cartCleanupScheduler;
 
     @BeforeEach
     void setUp() {
+        lenient().when(leaderElection.isLeader()).thenReturn(true);
     }
 
     @Test
     void constructorWhenCartServiceProvidedCreatesScheduler() {
         CartServiceImpl mockService = mock(CartServiceImpl.class);
 
-        CartCleanupScheduler scheduler = new CartCleanupScheduler(mockService);
+        CartCleanupScheduler scheduler = new CartCleanupScheduler(mockService, mock(LeaderElection.class));
 
         assertThat(scheduler).isNotNull();
     }
@@ -72,4 +77,13 @@ class CartCleanupSchedulerTest {
         verify(cartService).cleanupExpiredCheckouts();
         verifyNoMoreInteractions(cartService);
     }
+
+    @Test
+    void cleanupExpiredCheckoutsAlternativeWhenNotLeaderSkipsCycle() {
+        when(leaderElection.isLeader()).thenReturn(false);
+
+        cartCleanupScheduler.cleanupExpiredCheckoutsAlternative();
+
+        verifyNoInteractions(cartService);
+    }
 }
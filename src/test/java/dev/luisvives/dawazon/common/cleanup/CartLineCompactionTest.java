@@ -0,0 +1,83 @@
+package dev.luisvives.dawazon.common.cleanup;
+
+import dev.luisvives.dawazon.cart.service.CartServiceImpl;
+import dev.luisvives.dawazon.common.leader.LeaderElection;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartLineCompactionTest {
+
+    @Mock
+    private CartServiceImpl cartService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private LeaderElection leaderElection;
+
+    @InjectMocks
+    private CartLineCompaction compaction;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(leaderElection.isLeader()).thenReturn(true);
+    }
+
+    @Test
+    void compactwhenNotLeaderdoesNothing() {
+        when(leaderElection.isLeader()).thenReturn(false);
+
+        compaction.compact();
+
+        verifyNoInteractions(cartService, mongoTemplate);
+    }
+
+    @Test
+    void compactwhenPendingcompactsOnceAndRecordsMarker() {
+        when(mongoTemplate.exists(any(Query.class), eq(CartLineCompaction.MIGRATIONS))).thenReturn(false);
+        when(cartService.compactDuplicateLines()).thenReturn(3L);
+
+        compaction.compact();
+        compaction.compact();
+
+        verify(cartService, times(1)).compactDuplicateLines();
+        verify(mongoTemplate).save(argThat((Document marker) ->
+                CartLineCompaction.MARKER_ID.equals(marker.get("_id"))), eq(CartLineCompaction.MIGRATIONS));
+        verify(mongoTemplate, times(1)).exists(any(Query.class), eq(CartLineCompaction.MIGRATIONS));
+    }
+
+    @Test
+    void compactwhenMarkerExistsskipsCompaction() {
+        when(mongoTemplate.exists(any(Query.class), eq(CartLineCompaction.MIGRATIONS))).thenReturn(true);
+
+        compaction.compact();
+        compaction.compact();
+
+        verify(cartService, never()).compactDuplicateLines();
+        verify(mongoTemplate, times(1)).exists(any(Query.class), eq(CartLineCompaction.MIGRATIONS));
+    }
+
+    @Test
+    void compactwhenCompactionFailsretriesOnNextRun() {
+        when(mongoTemplate.exists(any(Query.class), eq(CartLineCompaction.MIGRATIONS))).thenReturn(false);
+        when(cartService.compactDuplicateLines()).thenThrow(new RuntimeException("Mongo caído")).thenReturn(1L);
+
+        assertThatThrownBy(compaction::compact).isInstanceOf(RuntimeException.class);
+        compaction.compact();
+
+        verify(cartService, times(2)).compactDuplicateLines();
+        verify(mongoTemplate, times(1)).save(any(Document.class), eq(CartLineCompaction.MIGRATIONS));
+    }
+}
@@ -0,0 +1,68 @@
+package dev.luisvives.dawazon.common.cleanup;
+
+import dev.luisvives.dawazon.cart.service.CartServiceImpl;
+import dev.luisvives.dawazon.cart.service.CheckoutExpiryQueue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CheckoutExpiryWorkerTest {
+
+    @Mock
+    private CartServiceImpl cartService;
+
+    @Mock
+    private CheckoutExpiryQueue expiryQueue;
+
+    @InjectMocks
+    private CheckoutExpiryWorker worker;
+
+    @AfterEach
+    void tearDown() {
+        worker.stop();
+        Thread.interrupted();
+    }
+
+    @Test
+    void runwhenCartsExpirereleasesThemUntilInterrupted() throws InterruptedException {
+        when(expiryQueue.awaitExpired(anyInt()))
+                .thenReturn(List.of("cart-1", "cart-2"))
+                .thenReturn(List.of())
+                .thenThrow(new InterruptedException());
+
+        worker.run();
+
+        verify(cartService, times(1)).releaseExpiredCheckouts(List.of("cart-1", "cart-2"));
+        verify(expiryQueue, times(3)).awaitExpired(anyInt());
+    }
+
+    @Test
+    void runwhenReleaseFailskeepsWaiting() throws InterruptedException {
+        when(expiryQueue.awaitExpired(anyInt()))
+                .thenReturn(List.of("cart-1"))
+                .thenThrow(new InterruptedException());
+        doThrow(new RuntimeException("Mongo caído")).when(cartService).releaseExpiredCheckouts(List.of("cart-1"));
+
+        worker.run();
+
+        verify(expiryQueue, times(2)).awaitExpired(anyInt());
+    }
+
+    @Test
+    void startrebuildsQueueFromPendingCheckouts() throws InterruptedException {
+        lenient().when(expiryQueue.awaitExpired(anyInt())).thenThrow(new InterruptedException());
+
+        worker.start();
+
+        verify(cartService).schedulePendingCheckouts();
+    }
+}
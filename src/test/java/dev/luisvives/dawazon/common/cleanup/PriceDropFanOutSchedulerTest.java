@@ -0,0 +1,73 @@
+package dev.luisvives.dawazon.common.cleanup;
+
+import dev.luisvives.dawazon.common.leader.LeaderElection;
+import dev.luisvives.dawazon.products.models.PriceDrop;
+import dev.luisvives.dawazon.users.service.PriceDropFanOut;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PriceDropFanOutSchedulerTest {
+
+    @Mock
+    private PriceDropFanOut fanOut;
+
+    @Mock
+    private LeaderElection leaderElection;
+
+    @InjectMocks
+    private PriceDropFanOutScheduler scheduler;
+
+    private final PriceDrop drop = PriceDrop.builder().id(1L).productId("PROD-1").build();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(leaderElection.isLeader()).thenReturn(true);
+    }
+
+    @Test
+    void fanOutwhenNotLeaderdoesNothing() {
+        when(leaderElection.isLeader()).thenReturn(false);
+
+        scheduler.fanOut();
+
+        verifyNoInteractions(fanOut);
+    }
+
+    @Test
+    void fanOutsendsOneBatchPerRunwhenMoreFollowersRemain() {
+        when(fanOut.findNextPending()).thenReturn(Optional.of(drop));
+        when(fanOut.notifyNextBatch(drop)).thenReturn(true);
+
+        scheduler.fanOut();
+
+        verify(fanOut, times(1)).notifyNextBatch(drop);
+    }
+
+    @Test
+    void fanOutwhenNothingPendingsendsNothing() {
+        when(fanOut.findNextPending()).thenReturn(Optional.empty());
+
+        scheduler.fanOut();
+
+        verify(fanOut, never()).notifyNextBatch(any());
+    }
+
+    @Test
+    void fanOutwhenBatchFailskeepsRunning() {
+        when(fanOut.findNextPending()).thenReturn(Optional.of(drop));
+        when(fanOut.notifyNextBatch(drop)).thenThrow(new RuntimeException("Postgres caído"));
+
+        scheduler.fanOut();
+
+        verify(fanOut).notifyNextBatch(drop);
+    }
+}
@@ -0,0 +1,160 @@
+package dev.luisvives.dawazon.common.controller;
+
+import dev.luisvives.dawazon.cart.dto.CartSummary;
+import dev.luisvives.dawazon.cart.repository.CartRepository;
+import dev.luisvives.dawazon.cart.service.CartService;
+import dev.luisvives.dawazon.cart.service.CartSummarySession;
+import dev.luisvives.dawazon.products.service.ProductService;
+import dev.luisvives.dawazon.users.models.Role;
+import dev.luisvives.dawazon.users.models.User;
+import dev.luisvives.dawazon.users.service.FavService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compara el coste por petición de los atributos globales de las vistas antes
+ * (todos calculados en cada petición, con una expresión regular por llamada) y
+ * después ({@link RequestViewContext}, calculados al usarlos y una sola vez).
+ * Cada consulta a servicios cuenta como un acceso a base de datos. Se lanza con
+ * {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class RequestViewContextBenchmarkTest {
+
+    private static final int REQUESTS = 200_000;
+    private static final String PRODUCT_PAGE = "/products/PROD-123";
+    private static final String ORDERS_PAGE = "/auth/me/pedidos";
+
+    private final AtomicLong queries = new AtomicLong();
+
+    private ProductService productService;
+    private CartService cartService;
+    private CartRepository cartRepository;
+    private CartSummarySession cartSummarySession;
+    private FavService favService;
+
+    @BeforeEach
+    void setUp() {
+        productService = mock(ProductService.class);
+        cartService = mock(CartService.class);
+        cartRepository = mock(CartRepository.class);
+        cartSummarySession = mock(CartSummarySession.class);
+        favService = mock(FavService.class);
+        CartSummary summary = new CartSummary("cart-1", 2, new String[] { "PROD-1", "PROD-123" }, 0);
+        when(productService.getAllCategorias()).thenAnswer(inv -> {
+            queries.incrementAndGet();
+            return List.of("Libros", "Juegos", "Hogar");
+        });
+        when(productService.getUserProductId(any())).thenAnswer(inv -> {
+            queries.incrementAndGet();
+            return 1L;
+        });
+        when(favService.isFav(any(), anyLong())).thenAnswer(inv -> {
+            queries.incrementAndGet();
+            return false;
+        });
+        when(cartSummarySession.get()).thenReturn(Optional.of(summary));
+
+        User manager = User.builder().id(1L).userName("manager").roles(List.of(Role.MANAGER, Role.USER)).build();
+        SecurityContextHolder.getContext()
+                .setAuthentication(new UsernamePasswordAuthenticationToken(manager, null, manager.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void comparePerRequestOverhead() {
+        for (String page : List.of(PRODUCT_PAGE, ORDERS_PAGE)) {
+            boolean productPage = page.equals(PRODUCT_PAGE);
+            run(() -> eagerAttributes(page));
+            run(() -> lazyAttributes(page, productPage));
+
+            queries.set(0);
+            long eagerNs = run(() -> eagerAttributes(page));
+            long eagerQueries = queries.getAndSet(0);
+            long lazyNs = run(() -> lazyAttributes(page, productPage));
+            long lazyQueries = queries.getAndSet(0);
+
+            System.out.printf("[benchmark] %s antes:   %d ns/petición, %.1f consultas/petición%n",
+                    page, eagerNs, (double) eagerQueries / REQUESTS);
+            System.out.printf("[benchmark] %s después: %d ns/petición, %.1f consultas/petición%n",
+                    page, lazyNs, (double) lazyQueries / REQUESTS);
+        }
+    }
+
+    /**
+     * Versión anterior: todos los atributos se calculan en cada petición y cada
+     * uno vuelve a extraer el ID de producto de la ruta.
+     */
+    private Object eagerAttributes(String uri) {
+        Object categorias = productService.getAllCategorias();
+        CartSummary summary = cartSummarySession.get().orElseThrow();
+        int itemCount = cartSummarySession.get().orElseThrow().getItemCount();
+        boolean hasItems = cartSummarySession.get().orElseThrow().getItemCount() > 0;
+        String items = Integer.toString(cartSummarySession.get().orElseThrow().getItemCount());
+
+        String cartProduct = extractWithRegex(uri);
+        boolean isCart = cartProduct != null && cartSummarySession.get().orElseThrow().contains(cartProduct);
+        boolean isFav = extractWithRegex(uri) != null;
+        String mineProduct = extractWithRegex(uri);
+        boolean isMine = mineProduct != null && Long.valueOf(1L).equals(productService.getUserProductId(mineProduct));
+        return List.of(categorias, summary, itemCount, hasItems, items, isCart, isFav, isMine);
+    }
+
+    /**
+     * Versión nueva: las plantillas solo piden lo que muestran. La barra de
+     * navegación usa categorías y contador; la ficha de producto, además, los
+     * indicadores del producto.
+     */
+    private Object lazyAttributes(String uri, boolean productPage) {
+        RequestViewContext view = new RequestViewContext(productService, cartService, cartRepository,
+                cartSummarySession, favService, new MockHttpServletRequest("GET", uri));
+        Object navbar = List.of(view.getCategorias(), view.getCartItemCount());
+        if (!productPage) {
+            return navbar;
+        }
+        return List.of(navbar, view.isCart(), view.isFav(), view.isMine());
+    }
+
+    private static String extractWithRegex(String path) {
+        if (path.matches(".*/products/(?!save$)[a-zA-Z0-9\\-_]+$")) {
+            String[] parts = path.split("/");
+            return parts[parts.length - 1];
+        }
+        if (path.matches(".*/auth/me/products/(edit|delete)/[a-zA-Z0-9\\-_]+$")) {
+            String[] parts = path.split("/");
+            return parts[parts.length - 1];
+        }
+        return null;
+    }
+
+    private long run(RequestHandler handler) {
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            handler.handle();
+        }
+        return (System.nanoTime() - start) / REQUESTS;
+    }
+
+    @FunctionalInterface
+    private interface RequestHandler {
+        Object handle();
+    }
+}
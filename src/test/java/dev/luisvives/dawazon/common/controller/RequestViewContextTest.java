@@ -0,0 +1,175 @@
+package dev.luisvives.dawazon.common.controller;
+
+import dev.luisvives.dawazon.cart.dto.CartSummary;
+import dev.luisvives.dawazon.cart.repository.CartRepository;
+import dev.luisvives.dawazon.cart.service.CartService;
+import dev.luisvives.dawazon.cart.service.CartSummarySession;
+import dev.luisvives.dawazon.products.service.ProductService;
+import dev.luisvives.dawazon.users.models.Role;
+import dev.luisvives.dawazon.users.models.User;
+import dev.luisvives.dawazon.users.service.FavService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RequestViewContextTest {
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private CartService cartService;
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private CartSummarySession cartSummarySession;
+
+    @Mock
+    private FavService favService;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void getCategoriaswhenCalledTwicequeriesOnce() {
+        when(productService.getAllCategorias()).thenReturn(List.of("Libros", "Juegos"));
+        RequestViewContext view = context("/");
+
+        view.getCategorias();
+
+        assertThat(view.getCategorias()).containsExactly("Libros", "Juegos");
+        verify(productService, times(1)).getAllCategorias();
+    }
+
+    @Test
+    void newContextwhenNothingIsReadqueriesNothing() {
+        login(user(1L, Role.MANAGER));
+
+        context("/products/PROD-1");
+
+        verifyNoInteractions(productService, cartService, cartRepository, cartSummarySession, favService);
+    }
+
+    @Test
+    void getProductIdwhenProductRoutesextractsId() {
+        assertThat(context("/products/PROD-1").getProductId()).isEqualTo("PROD-1");
+        assertThat(context("/auth/me/products/edit/PROD_2").getProductId()).isEqualTo("PROD_2");
+        assertThat(context("/auth/me/products/delete/PROD-3").getProductId()).isEqualTo("PROD-3");
+        assertThat(context("/products/save").getProductId()).isNull();
+        assertThat(context("/auth/me/cart").getProductId()).isNull();
+    }
+
+    @Test
+    void isCartwhenProductInSessionSummaryreturnsTrueWithoutLoadingCart() {
+        login(user(1L, Role.USER));
+        when(cartSummarySession.get())
+                .thenReturn(Optional.of(new CartSummary("cart-1", 2, new String[] { "PROD-1", "PROD-9" }, 0)));
+        RequestViewContext view = context("/products/PROD-9");
+
+        assertThat(view.isCart()).isTrue();
+        assertThat(view.getCartItemCount()).isEqualTo(2);
+        verify(cartSummarySession, times(1)).get();
+        verify(cartService, never()).getCartByUserId(anyLong());
+    }
+
+    @Test
+    void isMinewhenManagerOwnsProductqueriesOwnerOnce() {
+        login(user(7L, Role.MANAGER));
+        when(productService.getUserProductId("PROD-1")).thenReturn(7L);
+        RequestViewContext view = context("/products/PROD-1");
+
+        assertThat(view.isMine()).isTrue();
+        assertThat(view.isMine()).isTrue();
+        verify(productService, times(1)).getUserProductId("PROD-1");
+    }
+
+    @Test
+    void isMinewhenNotManagerdoesNotQueryOwner() {
+        login(user(7L, Role.USER));
+
+        assertThat(context("/products/PROD-1").isMine()).isFalse();
+        verify(productService, never()).getUserProductId(any());
+    }
+
+    @Test
+    void isFavwhenCalledTwicequeriesFavoritesOnce() {
+        login(user(3L, Role.USER));
+        when(favService.isFav("PROD-1", 3L)).thenReturn(true);
+        RequestViewContext view = context("/products/PROD-1");
+
+        assertThat(view.isFav()).isTrue();
+        assertThat(view.isFav()).isTrue();
+        verify(favService, times(1)).isFav("PROD-1", 3L);
+    }
+
+    @Test
+    void isFavwhenAnonymousdoesNotQueryFavorites() {
+        assertThat(context("/products/PROD-1").isFav()).isFalse();
+        verifyNoInteractions(favService);
+    }
+
+    @Test
+    void getFavCountwhenProductRoutereadsCounterOnce() {
+        when(favService.getFavCount("PROD-1")).thenReturn(12L);
+        RequestViewContext view = context("/products/PROD-1");
+
+        assertThat(view.getFavCount()).isEqualTo(12L);
+        assertThat(view.getFavCount()).isEqualTo(12L);
+        verify(favService, times(1)).getFavCount("PROD-1");
+    }
+
+    @Test
+    void getFavCountwhenNotProductRoutereturnsZero() {
+        assertThat(context("/auth/me/cart").getFavCount()).isZero();
+        verifyNoInteractions(favService);
+    }
+
+    @Test
+    void getCartSummarywhenAnonymousreturnsNull() {
+        RequestViewContext view = context("/");
+
+        assertThat(view.getCartSummary()).isNull();
+        assertThat(view.getCartItemCount()).isZero();
+        verifyNoInteractions(cartSummarySession);
+    }
+
+    private RequestViewContext context(String uri) {
+        return new RequestViewContext(productService, cartService, cartRepository, cartSummarySession, favService,
+                new MockHttpServletRequest("GET", uri));
+    }
+
+    private static User user(Long id, Role role) {
+        return User.builder()
+                .id(id)
+                .userName("user" + id)
+                .roles(List.of(role))
+                .build();
+    }
+
+    private static void login(User user) {
+        SecurityContextHolder.getContext()
+                .setAuthentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+}
@@ -0,0 +1,116 @@
+package dev.luisvives.dawazon.common.indexes;
+
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class MongoIndexManagerTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private IndexOperations indexOperations;
+
+    @Mock
+    private MongoCollection<Document> collection;
+
+    @Mock
+    private FindIterable<Document> findIterable;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.indexOps(any(Class.class))).thenReturn(indexOperations);
+        when(mongoTemplate.getCollectionName(any())).thenReturn("cart");
+        when(mongoTemplate.getCollection("cart")).thenReturn(collection);
+        when(collection.find(any(Document.class))).thenReturn(findIterable);
+        when(findIterable.sort(any())).thenReturn(findIterable);
+    }
+
+    @Test
+    void ensureIndexeswhenCalledcreatesEveryManagedIndex() {
+        new MongoIndexManager(mongoTemplate, false).ensureIndexes();
+
+        verify(indexOperations, times(MongoIndexManager.managedIndexes().size()))
+                .ensureIndex(any(IndexDefinition.class));
+    }
+
+    @Test
+    void verifyHotQuerieswhenAllUseIndexesreturnsEmpty() {
+        when(findIterable.explain(ExplainVerbosity.QUERY_PLANNER)).thenReturn(explain("IXSCAN"));
+
+        List<String> result = new MongoIndexManager(mongoTemplate, true).verifyHotQueries();
+
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void verifyHotQuerieswhenCollectionScanAndNotFailingreturnsQueryNames() {
+        when(findIterable.explain(ExplainVerbosity.QUERY_PLANNER)).thenReturn(explain("COLLSCAN"));
+
+        List<String> result = new MongoIndexManager(mongoTemplate, false).verifyHotQueries();
+
+        assertThat(result).hasSize(MongoIndexManager.hotQueries().size());
+    }
+
+    @Test
+    void verifyHotQuerieswhenCollectionScanAndFailingthrowsIllegalStateException() {
+        when(findIterable.explain(ExplainVerbosity.QUERY_PLANNER)).thenReturn(explain("COLLSCAN"));
+
+        assertThatThrownBy(() -> new MongoIndexManager(mongoTemplate, true).verifyHotQueries())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("cart.cleanupExpiredCheckouts");
+    }
+
+    @Test
+    void onApplicationReadywhenMongoUnavailabledoesNotFail() {
+        when(indexOperations.ensureIndex(any(IndexDefinition.class)))
+                .thenThrow(new DataAccessResourceFailureException("sin conexión"));
+
+        new MongoIndexManager(mongoTemplate, true).onApplicationReady();
+
+        verify(mongoTemplate, never()).getCollection(any());
+    }
+
+    @Test
+    void usesCollectionScanwhenNestedStagesdetectsCollectionScan() {
+        Document nested = new Document("stage", "SORT")
+                .append("inputStage", new Document("stage", "FETCH")
+                        .append("inputStage", new Document("stage", "COLLSCAN")));
+        Document or = new Document("stage", "OR")
+                .append("inputStages", List.of(new Document("stage", "IXSCAN"), new Document("stage", "COLLSCAN")));
+        Document indexed = new Document("stage", "FETCH")
+                .append("inputStage", new Document("stage", "IXSCAN"));
+
+        assertThat(MongoIndexManager.usesCollectionScan(nested)).isTrue();
+        assertThat(MongoIndexManager.usesCollectionScan(or)).isTrue();
+        assertThat(MongoIndexManager.usesCollectionScan(indexed)).isFalse();
+        assertThat(MongoIndexManager.usesCollectionScan(null)).isFalse();
+    }
+
+    private Document explain(String stage) {
+        return new Document("queryPlanner", new Document("winningPlan",
+                new Document("stage", "FETCH").append("inputStage", new Document("stage", stage))));
+    }
+}
@@ -0,0 +1,121 @@
+package dev.luisvives.dawazon.common.leader;
+
+import dev.luisvives.dawazon.TestContainersConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Varias réplicas compitiendo por el liderazgo contra el Redis del contenedor
+ * de tests.
+ */
+class RedisLeaderElectionTest {
+
+    private static final Duration LEASE = Duration.ofMillis(1000);
+
+    private final List<LettuceConnectionFactory> factories = new ArrayList<>();
+    private List<RedisLeaderElection> nodes;
+
+    @BeforeEach
+    void setUp() {
+        nodes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            nodes.add(new RedisLeaderElection(newTemplate(), LEASE, Clock.systemUTC(), "node-" + i));
+        }
+        newTemplate().delete(RedisLeaderElection.LEADER_KEY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        newTemplate().delete(RedisLeaderElection.LEADER_KEY);
+        factories.forEach(LettuceConnectionFactory::destroy);
+    }
+
+    @Test
+    void heartbeatwhenSeveralNodesonlyOneIsLeader() {
+        for (int round = 0; round < 5; round++) {
+            nodes.forEach(RedisLeaderElection::heartbeat);
+
+            assertThat(nodes.stream().filter(RedisLeaderElection::isLeader)).hasSize(1);
+        }
+    }
+
+    @Test
+    void heartbeatwhenLeaderRenewskeepsLeadership() throws InterruptedException {
+        nodes.forEach(RedisLeaderElection::heartbeat);
+        RedisLeaderElection leader = currentLeader(nodes);
+
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(LEASE.toMillis() / 3);
+            nodes.forEach(RedisLeaderElection::heartbeat);
+        }
+
+        assertThat(currentLeader(nodes)).isSameAs(leader);
+    }
+
+    @Test
+    void heartbeatwhenLeaderStopsotherNodeTakesOverWithinOneLease() throws InterruptedException {
+        nodes.forEach(RedisLeaderElection::heartbeat);
+        RedisLeaderElection crashed = currentLeader(nodes);
+        List<RedisLeaderElection> survivors = new ArrayList<>(nodes);
+        survivors.remove(crashed);
+
+        long crashedAt = System.currentTimeMillis();
+        RedisLeaderElection successor = null;
+        while (successor == null && System.currentTimeMillis() - crashedAt < 3 * LEASE.toMillis()) {
+            Thread.sleep(100);
+            survivors.forEach(RedisLeaderElection::heartbeat);
+            successor = survivors.stream().filter(RedisLeaderElection::isLeader).findFirst().orElse(null);
+        }
+        long failoverMs = System.currentTimeMillis() - crashedAt;
+
+        assertThat(successor).isNotNull();
+        assertThat(failoverMs).isLessThanOrEqualTo(LEASE.toMillis() + 500);
+        assertThat(crashed.isLeader()).isFalse();
+        assertThat(survivors.stream().filter(RedisLeaderElection::isLeader)).hasSize(1);
+    }
+
+    @Test
+    void releasewhenLeaderStopsGracefullyotherNodeTakesOverImmediately() {
+        nodes.forEach(RedisLeaderElection::heartbeat);
+        RedisLeaderElection leader = currentLeader(nodes);
+        List<RedisLeaderElection> others = new ArrayList<>(nodes);
+        others.remove(leader);
+
+        leader.release();
+        others.forEach(RedisLeaderElection::heartbeat);
+
+        assertThat(leader.isLeader()).isFalse();
+        assertThat(others.stream().filter(RedisLeaderElection::isLeader)).hasSize(1);
+    }
+
+    private static RedisLeaderElection currentLeader(List<RedisLeaderElection> nodes) {
+        List<RedisLeaderElection> leaders = nodes.stream().filter(RedisLeaderElection::isLeader).toList();
+        assertThat(leaders).hasSize(1);
+        return leaders.get(0);
+    }
+
+    /**
+     * Cada réplica usa su propia conexión, como si fuera otro proceso.
+     */
+    private StringRedisTemplate newTemplate() {
+        GenericContainer<?> redis = TestContainersConfig.getInstance().getRedisContainer();
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(redis.getHost(), redis.getFirstMappedPort());
+        factory.afterPropertiesSet();
+        factory.start();
+        factories.add(factory);
+        StringRedisTemplate template = new StringRedisTemplate(factory);
+        template.afterPropertiesSet();
+        return template;
+    }
+}
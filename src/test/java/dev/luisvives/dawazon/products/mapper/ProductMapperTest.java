@@ -76,7 +76,6 @@ class ProductMapperTest {
                 .creatorId(1L)
                 .images(List.of("image1.jpg", "image2.jpg"))
                 .category(testCategory)
-                .comments(new ArrayList<>(List.of(testComment)))
                 .build();
     }
 
@@ -162,7 +161,6 @@ class ProductMapperTest {
         assertThat(result.getDescription()).isEqualTo("Wireless mouse");
         assertThat(result.getCreatorId()).isEqualTo(2L);
         assertThat(result.getImages()).isEmpty();
-        assertThat(result.getComments()).isEmpty();
         assertThat(result.getCategory()).isNull();
     }
 
@@ -249,7 +247,7 @@ class ProductMapperTest {
     }
 
     @Test
-    void postPutDTOToModelverifiesImagesAndCommentsAreInitializedAsEmptyLists() {
+    void postPutDTOToModelverifiesImagesAreInitializedAsEmptyList() {
         PostProductRequestDto dto = PostProductRequestDto.builder()
                 .id("PROD-003")
                 .name("Keyboard")
@@ -264,7 +262,32 @@ class ProductMapperTest {
 
         assertThat(result.getImages()).isNotNull();
         assertThat(result.getImages()).isEmpty();
-        assertThat(result.getComments()).isNotNull();
-        assertThat(result.getComments()).isEmpty();
+    }
+
+    @Test
+    void modelToGenericResponseDTOwhenFirstPageOfCommentsincludesPageAndTotal() {
+        when(storageService.getUrl(anyString())).thenReturn("http://example.com/image.jpg");
+
+        CommentDto comment = CommentDto.builder().comment("Comment 1").userName("User1").build();
+        Page<CommentDto> firstPage = new PageImpl<>(List.of(comment), PageRequest.of(0, 1), 42);
+
+        GenericProductResponseDto result = productMapper.modelToGenericResponseDTO(testProduct, firstPage);
+
+        assertThat(result.getComments()).containsExactly(comment);
+        assertThat(result.getCommentCount()).isEqualTo(42);
+    }
+
+    @Test
+    void commentPageToDTOwhenMiddlePagekeepsPaginationMetadata() {
+        CommentDto comment = CommentDto.builder().comment("Comment 11").userName("User1").build();
+        Page<CommentDto> page = new PageImpl<>(List.of(comment), PageRequest.of(1, 10), 25);
+
+        PageResponseDTO<CommentDto> result = productMapper.commentPageToDTO(page);
+
+        assertThat(result.getContent()).containsExactly(comment);
+        assertThat(result.getPageNumber()).isEqualTo(1);
+        assertThat(result.getTotalElements()).isEqualTo(25);
+        assertThat(result.isLast()).isFalse();
+        assertThat(result.getSortBy()).isEqualTo("createdAt");
     }
 }
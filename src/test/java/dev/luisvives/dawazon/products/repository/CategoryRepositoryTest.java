@@ -173,6 +173,29 @@ class CategoryRepositoryTest extends BaseRepositoryTest {
         assertThat(updated.get().getName()).isEqualTo("NewName");
     }
 
+    @Test
+    void getVersionwhenNoCategoriesreturnsZeroCount() {
+        CategoryRepository.CategoryVersion version = categoryRepository.getVersion();
+
+        assertThat(version.getCount()).isZero();
+        assertThat(version.getLastUpdate()).isNull();
+    }
+
+    @Test
+    void getVersionwhenCategoryUpdatedchangesLastUpdate() {
+        Category category = createAndSaveCategory("Toys");
+        CategoryRepository.CategoryVersion before = categoryRepository.getVersion();
+
+        category.setName("Games");
+        category.setUpdatedAt(category.getUpdatedAt().plusMinutes(1));
+        categoryRepository.save(category);
+        CategoryRepository.CategoryVersion after = categoryRepository.getVersion();
+
+        assertThat(before.getCount()).isEqualTo(1);
+        assertThat(after.getCount()).isEqualTo(1);
+        assertThat(after.getLastUpdate()).isAfter(before.getLastUpdate());
+    }
+
 
     private Category createAndSaveCategory(String name) {
         Category category = new Category();
@@ -0,0 +1,110 @@
+package dev.luisvives.dawazon.products.repository;
+
+import dev.luisvives.dawazon.BaseRepositoryTest;
+import dev.luisvives.dawazon.products.models.Comment;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class CommentRepositoryTest extends BaseRepositoryTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        commentRepository.deleteAll();
+    }
+
+    @Test
+    void findByProductIdwhenSeveralPagesreturnsPageAndTotal() {
+        for (int i = 0; i < 25; i++) {
+            save("PROD-1", "Comentario " + i, CREATED_AT.plusMinutes(i));
+        }
+        save("PROD-2", "Otro producto", CREATED_AT);
+
+        Page<Comment> page = commentRepository.findByProductId("PROD-1", PageRequest.of(1, 10, CommentRepository.ORDER));
+
+        assertThat(page.getTotalElements()).isEqualTo(25);
+        assertThat(page.getContent()).extracting(Comment::getContent)
+                .containsExactly("Comentario 10", "Comentario 11", "Comentario 12", "Comentario 13",
+                        "Comentario 14", "Comentario 15", "Comentario 16", "Comentario 17",
+                        "Comentario 18", "Comentario 19");
+    }
+
+    @Test
+    void findByProductIdwhenSameCreatedAtpagesDoNotOverlap() {
+        for (int i = 0; i < 7; i++) {
+            save("PROD-1", "Comentario " + i, CREATED_AT);
+        }
+
+        List<Long> seen = new ArrayList<>();
+        for (int page = 0; page < 3; page++) {
+            commentRepository.findByProductId("PROD-1", PageRequest.of(page, 3, CommentRepository.ORDER))
+                    .forEach(comment -> seen.add(comment.getId()));
+        }
+
+        assertThat(seen).hasSize(7).doesNotHaveDuplicates().isSorted();
+    }
+
+    @Test
+    void findByProductIdwhenNoCommentsreturnsEmptyPage() {
+        Page<Comment> page = commentRepository.findByProductId("PROD-1", PageRequest.of(0, 10, CommentRepository.ORDER));
+
+        assertThat(page.getContent()).isEmpty();
+        assertThat(page.getTotalElements()).isZero();
+    }
+
+    @Test
+    void savewhenProductHasManyCommentsrunsSingleInsert() {
+        for (int i = 0; i < 100; i++) {
+            save("PROD-1", "Comentario " + i, CREATED_AT.plusMinutes(i));
+        }
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = statistics();
+
+        save("PROD-1", "Comentario nuevo", CREATED_AT.plusDays(1));
+        entityManager.flush();
+
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+        assertThat(statistics.getEntityUpdateCount()).isZero();
+        assertThat(statistics.getEntityDeleteCount()).isZero();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    private void save(String productId, String content, LocalDateTime createdAt) {
+        commentRepository.save(Comment.builder()
+                .productId(productId)
+                .userId(1L)
+                .content(content)
+                .verified(false)
+                .recommended(true)
+                .createdAt(createdAt)
+                .build());
+    }
+}
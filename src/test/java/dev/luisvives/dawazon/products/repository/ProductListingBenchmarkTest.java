@@ -0,0 +1,132 @@
+package dev.luisvives.dawazon.products.repository;
+
+import dev.luisvives.dawazon.BaseRepositoryTest;
+import dev.luisvives.dawazon.products.models.Product;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compara la lectura de una página del catálogo con entidades completas
+ * ({@code findAll} con especificaciones, imágenes y categoría EAGER) y con la
+ * proyección de listado ({@link ProductRepository#findListing}).
+ * <p>
+ * El catálogo tiene {@link #PRODUCTS} productos con 3 imágenes y
+ * {@link #COMMENTS_PER_PRODUCT} comentarios cada uno, cargados con SQL para no
+ * tardar en prepararlo. Se lanza con {@code ./gradlew benchmark}.
+ * </p>
+ */
+@Tag("benchmark")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ProductListingBenchmarkTest extends BaseRepositoryTest {
+
+    private static final int PRODUCTS = 100_000;
+    private static final int COMMENTS_PER_PRODUCT = 20;
+    private static final int PAGE_SIZE = 9;
+    private static final int PAGES = 200;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        truncate();
+        jdbcTemplate.update("INSERT INTO category (id, name, created_at, updated_at) "
+                + "SELECT 'CAT-' || g, 'Categoria ' || g, now(), now() FROM generate_series(1, 10) g");
+        jdbcTemplate.update("INSERT INTO product (id, name, price, stock, description, creator_id, category_id, "
+                + "is_deleted, created_at, updated_at, version) "
+                + "SELECT 'PROD-' || g, 'Producto ' || g, (g % 500) + 0.99, g % 100, 'Descripción del producto ' || g, "
+                + "(g % 50) + 1, 'CAT-' || ((g % 10) + 1), false, now(), now(), 0 "
+                + "FROM generate_series(1, ?) g", PRODUCTS);
+        jdbcTemplate.update("INSERT INTO product_images (product_id, images) "
+                + "SELECT 'PROD-' || g, (1700000000000 + i) || '_imagen' || i || '.jpg' "
+                + "FROM generate_series(1, ?) g, generate_series(1, 3) i", PRODUCTS);
+        jdbcTemplate.update("INSERT INTO product_comments (product_id, user_id, content, verified, recommended, created_at) "
+                + "SELECT 'PROD-' || g, (c % 50) + 1, 'Comentario ' || c || ' del producto ' || g, c % 2 = 0, c % 3 <> 0, now() "
+                + "FROM generate_series(1, ?) g, generate_series(1, ?) c", PRODUCTS, COMMENTS_PER_PRODUCT);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @AfterEach
+    void tearDown() {
+        truncate();
+    }
+
+    @Test
+    void compareCatalogPage() {
+        Specification<Product> active = (root, query, cb) -> cb.isFalse(root.get("isDeleted"));
+
+        Function<Pageable, Object> entities = pageable -> {
+            Page<Product> page = productRepository.findAll(active, pageable);
+            // Lo que usa la rejilla: primera imagen y nombre de la categoría
+            return page.map(p -> p.getName() + p.getCategory().getName()
+                    + (p.getImages().isEmpty() ? "" : p.getImages().get(0))).getContent();
+        };
+        Function<Pageable, Object> listing = pageable -> productRepository.findListing("", null, null, pageable)
+                .map(p -> p.getName() + p.getCategory() + p.getImage()).getContent();
+
+        run(entities);
+        run(listing);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        long entitiesNs = run(entities);
+        long entitiesStatements = statistics.getPrepareStatementCount();
+        statistics.clear();
+        long listingNs = run(listing);
+        long listingStatements = statistics.getPrepareStatementCount();
+
+        System.out.printf("[benchmark] entidades:  %d µs/página, %.1f consultas/página%n",
+                entitiesNs / 1000, (double) entitiesStatements / PAGES);
+        System.out.printf("[benchmark] proyección: %d µs/página, %.1f consultas/página%n",
+                listingNs / 1000, (double) listingStatements / PAGES);
+        assertThat(listingStatements).isEqualTo(2L * PAGES);
+    }
+
+    /**
+     * Lee {@link #PAGES} páginas al azar ordenadas por precio, como el catálogo.
+     *
+     * @return Tiempo medio por página en nanosegundos.
+     */
+    private long run(Function<Pageable, Object> reader) {
+        Random random = new Random(42);
+        int lastPage = PRODUCTS / PAGE_SIZE;
+        long start = System.nanoTime();
+        for (int i = 0; i < PAGES; i++) {
+            Pageable pageable = PageRequest.of(random.nextInt(lastPage), PAGE_SIZE, Sort.by("price", "id"));
+            assertThat((List<?>) reader.apply(pageable)).hasSize(PAGE_SIZE);
+        }
+        return (System.nanoTime() - start) / PAGES;
+    }
+
+    private void truncate() {
+        jdbcTemplate.execute("TRUNCATE product_comments, product_images, product_stock_shard, product, category CASCADE");
+    }
+}
@@ -3,6 +3,7 @@ package dev.luisvives.dawazon.products.repository;
 import dev.luisvives.dawazon.BaseRepositoryTest;
 import dev.luisvives.dawazon.products.models.Category;
 import dev.luisvives.dawazon.products.models.Product;
+import dev.luisvives.dawazon.products.models.ProductStockShard;
 import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,12 +11,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -28,6 +32,9 @@ class ProductRepositoryTest extends BaseRepositoryTest {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private ProductStockShardRepository shardRepository;
+
     @Autowired
     private EntityManager entityManager;
 
@@ -150,6 +157,112 @@ class ProductRepositoryTest extends BaseRepositoryTest {
         assertThat(stillDeleted.isDeleted()).isTrue();
     }
 
+    @Test
+    void decrementStockwhenSufficientStockupdatesEveryProduct() {
+        Product first = createAndSaveProduct("Product1", 10.0, 10, 1L);
+        Product second = createAndSaveProduct("Product2", 20.0, 4, 1L);
+        productRepository.flush();
+
+        List<String> rejected = productRepository.decrementStock(
+                new TreeMap<>(Map.of(first.getId(), 3, second.getId(), 4)));
+        entityManager.clear();
+
+        assertThat(rejected).isEmpty();
+        assertThat(productRepository.findById(first.getId()).orElseThrow().getStock()).isEqualTo(7);
+        assertThat(productRepository.findById(second.getId()).orElseThrow().getStock()).isZero();
+    }
+
+    @Test
+    void decrementStockwhenInsufficientStockreturnsRejectedProduct() {
+        Product enough = createAndSaveProduct("Product1", 10.0, 10, 1L);
+        Product scarce = createAndSaveProduct("Product2", 20.0, 1, 1L);
+        productRepository.flush();
+
+        List<String> rejected = productRepository.decrementStock(
+                new TreeMap<>(Map.of(enough.getId(), 2, scarce.getId(), 5)));
+        entityManager.clear();
+
+        assertThat(rejected).containsExactly(scarce.getId());
+        assertThat(productRepository.findById(scarce.getId()).orElseThrow().getStock()).isEqualTo(1);
+    }
+
+    @Test
+    void decrementStockwhenProductDeletedreturnsRejectedProduct() {
+        Product product = createAndSaveProduct("Product", 100.0, 10, 1L);
+        productRepository.deleteByIdLogical(product.getId());
+        productRepository.flush();
+        entityManager.clear();
+
+        List<String> rejected = productRepository.decrementStock(new TreeMap<>(Map.of(product.getId(), 1)));
+
+        assertThat(rejected).containsExactly(product.getId());
+    }
+
+    @Test
+    void decrementStockwhenProductShardedtakesFromOneShard() {
+        Product product = createAndSaveProduct("Product", 10.0, 20, 1L);
+        saveShards(product.getId(), 10, 10);
+
+        List<String> rejected = productRepository.decrementStock(new TreeMap<>(Map.of(product.getId(), 3)));
+        entityManager.clear();
+
+        assertThat(rejected).isEmpty();
+        assertThat(shardRepository.findAll()).extracting(ProductStockShard::getStock)
+                .containsExactlyInAnyOrder(7, 10);
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(20);
+    }
+
+    @Test
+    void decrementStockwhenNoSingleShardIsEnoughspreadsAcrossShards() {
+        Product product = createAndSaveProduct("Product", 10.0, 6, 1L);
+        saveShards(product.getId(), 3, 3);
+
+        List<String> rejected = productRepository.decrementStock(new TreeMap<>(Map.of(product.getId(), 5)));
+        entityManager.clear();
+
+        assertThat(rejected).isEmpty();
+        assertThat(shardRepository.findAll()).extracting(ProductStockShard::getStock).containsExactlyInAnyOrder(0, 1);
+    }
+
+    @Test
+    void decrementStockwhenShardsRunOutreturnsRejectedProduct() {
+        Product product = createAndSaveProduct("Product", 10.0, 4, 1L);
+        saveShards(product.getId(), 2, 2);
+
+        List<String> rejected = productRepository.decrementStock(new TreeMap<>(Map.of(product.getId(), 5)));
+        entityManager.clear();
+
+        assertThat(rejected).containsExactly(product.getId());
+        assertThat(shardRepository.findAll()).extracting(ProductStockShard::getStock).containsExactly(2, 2);
+    }
+
+    @Test
+    void findStockByIdInwhenProductShardedreturnsShardSum() {
+        Product product = createAndSaveProduct("Product", 10.0, 20, 1L);
+        saveShards(product.getId(), 4, 5);
+
+        List<ProductRepository.ProductStock> stocks = productRepository.findStockByIdIn(List.of(product.getId()));
+
+        assertThat(stocks).hasSize(1);
+        assertThat(stocks.get(0).getStock()).isEqualTo(9);
+    }
+
+    @Test
+    void findStockByIdInwhenSomeDeletedreturnsOnlyActiveProducts() {
+        Product active = createAndSaveProduct("Product1", 10.0, 6, 1L);
+        Product deleted = createAndSaveProduct("Product2", 20.0, 4, 1L);
+        productRepository.deleteByIdLogical(deleted.getId());
+        productRepository.flush();
+        entityManager.clear();
+
+        List<ProductRepository.ProductStock> stocks = productRepository
+                .findStockByIdIn(List.of(active.getId(), deleted.getId(), "missing"));
+
+        assertThat(stocks).hasSize(1);
+        assertThat(stocks.get(0).getId()).isEqualTo(active.getId());
+        assertThat(stocks.get(0).getStock()).isEqualTo(6);
+    }
+
     @Test
     void findAllByCreatorIdwhenProductsExistreturnsPagedProducts() {
         Long creatorId = 1L;
@@ -283,6 +396,56 @@ class ProductRepositoryTest extends BaseRepositoryTest {
     }
 
 
+    @Test
+    void findListingwhenFilteredreturnsActiveMatchingProductsWithFirstImage() {
+        Product laptop = productRepository.save(createProductBuilder("Gaming Laptop", 999.99, 10, 1L)
+                .images(new ArrayList<>(List.of("2000_side.jpg", "1000_front.jpg"))).build());
+        createAndSaveProduct("Laptop Bag", 49.99, 5, 2L);
+        createAndSaveProduct("Mouse", 29.99, 50, 1L);
+        Product deleted = createAndSaveProduct("Old Laptop", 199.99, 1, 1L);
+        productRepository.deleteByIdLogical(deleted.getId());
+        entityManager.flush();
+        entityManager.clear();
+
+        Page<ProductRepository.ProductListing> page = productRepository.findListing("laptop", "Electronics", 1L,
+                PageRequest.of(0, 10));
+
+        assertThat(page.getTotalElements()).isEqualTo(1);
+        ProductRepository.ProductListing listing = page.getContent().get(0);
+        assertThat(listing.getId()).isEqualTo(laptop.getId());
+        assertThat(listing.getName()).isEqualTo("Gaming Laptop");
+        assertThat(listing.getPrice()).isEqualTo(999.99);
+        assertThat(listing.getStock()).isEqualTo(10);
+        assertThat(listing.getCategory()).isEqualTo("Electronics");
+        assertThat(listing.getImage()).isEqualTo("1000_front.jpg");
+    }
+
+    @Test
+    void findListingwhenNoFiltersreturnsSortedPage() {
+        createAndSaveProduct("B", 20.0, 1, 1L);
+        createAndSaveProduct("A", 10.0, 1, 1L);
+        createAndSaveProduct("C", 30.0, 1, 2L);
+
+        Page<ProductRepository.ProductListing> page = productRepository.findListing("", null, null,
+                PageRequest.of(0, 2, Sort.by("price").descending()));
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).extracting(ProductRepository.ProductListing::getName).containsExactly("C", "B");
+        assertThat(page.getContent().get(0).getImage()).isNull();
+    }
+
+    @Test
+    void findListingByIdInreturnsOnlyRequestedProducts() {
+        Product mouse = createAndSaveProduct("Mouse", 29.99, 50, 1L);
+        createAndSaveProduct("Keyboard", 79.99, 25, 1L);
+
+        Page<ProductRepository.ProductListing> page = productRepository.findListingByIdIn(
+                List.of(mouse.getId(), "NON_EXISTENT"), PageRequest.of(0, 10));
+
+        assertThat(page.getContent()).extracting(ProductRepository.ProductListing::getId)
+                .containsExactly(mouse.getId());
+    }
+
     private Product.ProductBuilder createProductBuilder(String name, double price, int stock, Long creatorId) {
         return Product.builder()
                 .name(name)
@@ -291,8 +454,7 @@ class ProductRepositoryTest extends BaseRepositoryTest {
                 .description("Description for " + name)
                 .creatorId(creatorId)
                 .category(testCategory)
-                .images(new ArrayList<>())
-                .comments(new ArrayList<>());
+                .images(new ArrayList<>());
     }
 
 
@@ -300,4 +462,13 @@ class ProductRepositoryTest extends BaseRepositoryTest {
         Product product = createProductBuilder(name, price, stock, creatorId).build();
         return productRepository.save(product);
     }
+
+    private void saveShards(String productId, int... stocks) {
+        for (int i = 0; i < stocks.length; i++) {
+            shardRepository.save(ProductStockShard.builder()
+                    .productId(productId).shardIndex(i).stock(stocks[i]).build());
+        }
+        productRepository.flush();
+        entityManager.clear();
+    }
 }
@@ -0,0 +1,138 @@
+package dev.luisvives.dawazon.products.repository;
+
+import dev.luisvives.dawazon.BaseRepositoryTest;
+import dev.luisvives.dawazon.products.models.Category;
+import dev.luisvives.dawazon.products.models.Product;
+import dev.luisvives.dawazon.products.models.ProductStockShard;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mide cuántas confirmaciones de compra por segundo admite un producto caliente
+ * según su número de subcontadores (0 = fila de producto sin repartir).
+ * <p>
+ * Los subcontadores solo intervienen al confirmar la compra tras el pago, en
+ * el descuento de {@link ProductStockRepository#decrementStock} que hace
+ * {@code CartServiceImpl.save}. El checkout no toca la base de datos: retiene
+ * el stock en el almacén de reservas, así que su rendimiento no depende del
+ * número de subcontadores y aquí no se mide.
+ * </p>
+ * <p>
+ * Cada confirmación mantiene su transacción abierta unos milisegundos tras el
+ * descuento, como hace el resto de {@code save}, para que se note la espera por
+ * el bloqueo de fila. Se lanza con {@code ./gradlew benchmark}.
+ * </p>
+ */
+@Tag("benchmark")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductStockShardBenchmarkTest extends BaseRepositoryTest {
+
+    private static final int THREADS = 32;
+    private static final int PURCHASES = 2000;
+    private static final int STOCK = 1500;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductStockShardRepository shardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        shardRepository.deleteAll();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @ParameterizedTest(name = "{0} subcontadores")
+    @ValueSource(ints = { 0, 1, 4, 16 })
+    void decrementStockonPurchaseCommitunderContentionneverOversells(int shards) throws Exception {
+        String productId = createHotProduct(shards);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger next = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            workers.add(pool.submit(() -> {
+                while (next.getAndIncrement() < PURCHASES) {
+                    tx.executeWithoutResult(status -> {
+                        if (productRepository.decrementStock(new TreeMap<>(Map.of(productId, 1))).isEmpty()) {
+                            sold.incrementAndGet();
+                        }
+                        jdbcTemplate.execute("SELECT pg_sleep(0.002)");
+                    });
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        pool.shutdown();
+
+        int remaining = productRepository.findStockByIdIn(List.of(productId)).get(0).getStock();
+        System.out.printf("[benchmark] %2d subcontadores: %d confirmaciones de compra en %d ms (%d/s)%n",
+                shards, PURCHASES, elapsedMs, PURCHASES * 1000L / elapsedMs);
+
+        assertThat(sold.get()).isEqualTo(STOCK);
+        assertThat(remaining).isZero();
+    }
+
+    private String createHotProduct(int shards) {
+        Category category = new Category();
+        category.setName("Benchmark");
+        category.setCreatedAt(LocalDateTime.now());
+        category.setUpdatedAt(LocalDateTime.now());
+        category = categoryRepository.save(category);
+
+        Product product = productRepository.save(Product.builder()
+                .name("Oferta flash")
+                .price(9.99)
+                .stock(STOCK)
+                .description("Producto caliente")
+                .creatorId(1L)
+                .category(category)
+                .images(new ArrayList<>())
+                .build());
+        for (int i = 0; i < shards; i++) {
+            shardRepository.save(ProductStockShard.builder()
+                    .productId(product.getId())
+                    .shardIndex(i)
+                    .stock(STOCK / shards + (i < STOCK % shards ? 1 : 0))
+                    .build());
+        }
+        return product.getId();
+    }
+}
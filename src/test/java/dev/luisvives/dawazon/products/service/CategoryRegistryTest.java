@@ -0,0 +1,106 @@
+package dev.luisvives.dawazon.products.service;
+
+import dev.luisvives.dawazon.products.models.Category;
+import dev.luisvives.dawazon.products.repository.CategoryRepository;
+import dev.luisvives.dawazon.products.repository.CategoryRepository.CategoryVersion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CategoryRegistryTest {
+
+    private static final LocalDateTime LOADED_AT = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @InjectMocks
+    private CategoryRegistry registry;
+
+    @Test
+    void getNameswhenCalledRepeatedlyloadsOnce() {
+        when(categoryRepository.getVersion()).thenReturn(version(2, LOADED_AT));
+        when(categoryRepository.findAll()).thenReturn(List.of(category("Libros"), category("Juegos")));
+
+        registry.getNames();
+        registry.findByName("libros");
+
+        assertThat(registry.getNames()).containsExactly("Libros", "Juegos");
+        verify(categoryRepository, times(1)).findAll();
+    }
+
+    @Test
+    void findByNamewhenDifferentCasereturnsCategory() {
+        when(categoryRepository.getVersion()).thenReturn(version(1, LOADED_AT));
+        when(categoryRepository.findAll()).thenReturn(List.of(category("Electronics")));
+
+        assertThat(registry.findByName("ELECTRONICS")).map(Category::getName).contains("Electronics");
+        assertThat(registry.findByName("Books")).isEmpty();
+        assertThat(registry.findByName(null)).isEmpty();
+    }
+
+    @Test
+    void refreshIfChangedwhenVersionUnchangeddoesNotReload() {
+        when(categoryRepository.getVersion()).thenReturn(version(1, LOADED_AT));
+        when(categoryRepository.findAll()).thenReturn(List.of(category("Libros")));
+        registry.getNames();
+
+        registry.refreshIfChanged();
+
+        verify(categoryRepository, times(1)).findAll();
+    }
+
+    @Test
+    void refreshIfChangedwhenVersionChangedswapsSnapshot() {
+        when(categoryRepository.getVersion()).thenReturn(version(1, LOADED_AT), version(2, LOADED_AT.plusMinutes(1)));
+        when(categoryRepository.findAll()).thenReturn(List.of(category("Libros")),
+                List.of(category("Libros"), category("Juegos")));
+        registry.getNames();
+
+        registry.refreshIfChanged();
+
+        assertThat(registry.getNames()).containsExactly("Libros", "Juegos");
+        assertThat(registry.findByName("juegos")).isPresent();
+    }
+
+    @Test
+    void refreshIfChangedwhenNotLoadedYetdoesNothing() {
+        registry.refreshIfChanged();
+
+        verify(categoryRepository, never()).getVersion();
+        verify(categoryRepository, never()).findAll();
+    }
+
+    private static Category category(String name) {
+        Category category = new Category();
+        category.setId("cat-" + name);
+        category.setName(name);
+        return category;
+    }
+
+    private static CategoryVersion version(long count, LocalDateTime lastUpdate) {
+        return new CategoryVersion() {
+            @Override
+            public long getCount() {
+                return count;
+            }
+
+            @Override
+            public LocalDateTime getLastUpdate() {
+                return lastUpdate;
+            }
+        };
+    }
+}
@@ -0,0 +1,153 @@
+package dev.luisvives.dawazon.products.service;
+
+import dev.luisvives.dawazon.products.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class InMemoryStockReservationServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private Clock clock;
+
+    private InMemoryStockReservationService reservations;
+
+    @BeforeEach
+    void setUp() {
+        when(clock.millis()).thenReturn(0L);
+        when(productRepository.findStockByIdIn(anyCollection())).thenReturn(List.of(stock("P1", 5), stock("P2", 2)));
+        reservations = new InMemoryStockReservationService(productRepository, Duration.ofMinutes(5), clock);
+    }
+
+    @Test
+    void getAvailableStockwhenProductUnknownloadsItOnce() {
+        assertThat(reservations.getAvailableStock(List.of("P1"))).containsEntry("P1", 5);
+        assertThat(reservations.getAvailableStock(List.of("P1"))).containsEntry("P1", 5);
+
+        verify(productRepository, times(1)).findStockByIdIn(anyCollection());
+    }
+
+    @Test
+    void getAvailableStockwhenProductMissingomitsIt() {
+        when(productRepository.findStockByIdIn(anyCollection())).thenReturn(List.of());
+
+        assertThat(reservations.getAvailableStock(List.of("NOPE"))).isEmpty();
+    }
+
+    @Test
+    void reservewhenStockAvailableholdsItUntilExpiry() {
+        assertThat(reservations.reserve("cart-1", Map.of("P1", 3))).isTrue();
+
+        assertThat(reservations.getAvailableStock(List.of("P1"))).containsEntry("P1", 2);
+
+        when(clock.millis()).thenReturn(Duration.ofMinutes(5).toMillis());
+        assertThat(reservations.getAvailableStock(List.of("P1"))).containsEntry("P1", 5);
+    }
+
+    @Test
+    void reservewhenAnyLineShortreservesNothing() {
+        assertThat(reservations.reserve("cart-1", Map.of("P1", 1, "P2", 3))).isFalse();
+
+        assertThat(reservations.getAvailableStock(List.of("P1", "P2")))
+                .containsEntry("P1", 5)
+                .containsEntry("P2", 2);
+    }
+
+    @Test
+    void reservewhenOtherCartsHoldStockrejectsOverbooking() {
+        assertThat(reservations.reserve("cart-1", Map.of("P2", 2))).isTrue();
+
+        assertThat(reservations.reserve("cart-2", Map.of("P2", 1))).isFalse();
+    }
+
+    @Test
+    void reservewhenCartAlreadyReservedreplacesPreviousReservation() {
+        reservations.reserve("cart-1", Map.of("P1", 4));
+
+        assertThat(reservations.reserve("cart-1", Map.of("P1", 5))).isTrue();
+        assertThat(reservations.getAvailableStock(List.of("P1"))).containsEntry("P1", 0);
+    }
+
+    @Test
+    void releasewhenReservedreturnsStockToAvailable() {
+        reservations.reserve("cart-1", Map.of("P1", 3));
+
+        reservations.release("cart-1");
+
+        assertThat(reservations.getAvailableStock(List.of("P1"))).containsEntry("P1", 5);
+    }
+
+    @Test
+    void releaseAllwhenSeveralReservedreturnsTheirStock() {
+        reservations.reserve("cart-1", Map.of("P1", 2));
+        reservations.reserve("cart-2", Map.of("P1", 1, "P2", 2));
+        reservations.reserve("cart-3", Map.of("P1", 1));
+
+        reservations.releaseAll(List.of("cart-1", "cart-2"));
+
+        assertThat(reservations.getAvailableStock(List.of("P1", "P2")))
+                .containsEntry("P1", 4)
+                .containsEntry("P2", 2);
+    }
+
+    @Test
+    void commitwhenReserveddecrementsKnownStock() {
+        reservations.reserve("cart-1", Map.of("P1", 3));
+
+        assertThat(reservations.commit("cart-1", Map.of("P1", 3))).isEmpty();
+
+        assertThat(reservations.getAvailableStock(List.of("P1"))).containsEntry("P1", 2);
+    }
+
+    @Test
+    void commitwhenHoldExpiredAndStockHeldByAnotherCartreturnsShortageWithoutGoingNegative() {
+        reservations.reserve("cart-1", Map.of("P1", 3));
+        when(clock.millis()).thenReturn(Duration.ofMinutes(6).toMillis());
+        reservations.reserve("cart-2", Map.of("P1", 4));
+
+        assertThat(reservations.commit("cart-1", Map.of("P1", 3))).containsExactly("P1");
+
+        assertThat(reservations.getAvailableStock(List.of("P1"))).containsEntry("P1", 1);
+    }
+
+    @Test
+    void setStockwhenCalledreplacesKnownStock() {
+        reservations.reserve("cart-1", Map.of("P1", 1));
+
+        reservations.setStock("P1", 10);
+
+        assertThat(reservations.getAvailableStock(List.of("P1"))).containsEntry("P1", 9);
+    }
+
+    private ProductRepository.ProductStock stock(String id, int stock) {
+        return new ProductRepository.ProductStock() {
+            @Override
+            public String getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getStock() {
+                return stock;
+            }
+        };
+    }
+}
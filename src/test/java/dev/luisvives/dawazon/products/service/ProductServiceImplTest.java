@@ -1,17 +1,21 @@
 package dev.luisvives.dawazon.products.service;
 
 import dev.luisvives.dawazon.common.storage.service.StorageService;
+import dev.luisvives.dawazon.products.dto.CommentDto;
 import dev.luisvives.dawazon.products.dto.GenericProductResponseDto;
 import dev.luisvives.dawazon.products.dto.PostProductRequestDto;
 import dev.luisvives.dawazon.products.exception.ProductException;
 import dev.luisvives.dawazon.products.mapper.ProductMapper;
 import dev.luisvives.dawazon.products.models.Category;
 import dev.luisvives.dawazon.products.models.Comment;
+import dev.luisvives.dawazon.products.models.PriceDrop;
 import dev.luisvives.dawazon.products.models.Product;
-import dev.luisvives.dawazon.products.repository.CategoryRepository;
+import dev.luisvives.dawazon.products.repository.CommentRepository;
+import dev.luisvives.dawazon.products.repository.PriceDropRepository;
 import dev.luisvives.dawazon.products.repository.ProductRepository;
+import dev.luisvives.dawazon.products.repository.ProductRepository.ProductListing;
 import dev.luisvives.dawazon.users.models.User;
-import dev.luisvives.dawazon.users.repository.UserRepository;
+import dev.luisvives.dawazon.users.service.UserNameResolver;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -22,12 +26,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -41,7 +47,7 @@ class ProductServiceImplTest {
         private ProductRepository productRepository;
 
         @Mock
-        private CategoryRepository categoryRepository;
+        private CategoryRegistry categoryRegistry;
 
         @Mock
         private StorageService storageService;
@@ -50,7 +56,19 @@ class ProductServiceImplTest {
         private ProductMapper productMapper;
 
         @Mock
-        private UserRepository userRepository;
+        private UserNameResolver userNames;
+
+        @Mock
+        private StockReservationService reservations;
+
+        @Mock
+        private ProductStockShardService shards;
+
+        @Mock
+        private CommentRepository commentRepository;
+
+        @Mock
+        private PriceDropRepository priceDrops;
 
         @InjectMocks
         private ProductServiceImpl productService;
@@ -83,7 +101,6 @@ class ProductServiceImplTest {
                                 .category(testCategory)
                                 .creatorId(1L)
                                 .images(new ArrayList<>(List.of("image1.jpg", "image2.jpg")))
-                                .comments(new ArrayList<>())
                                 .isDeleted(false)
                                 .createdAt(LocalDateTime.now())
                                 .updatedAt(LocalDateTime.now())
@@ -130,6 +147,34 @@ class ProductServiceImplTest {
                 verify(productRepository, times(1)).findAll(any(Specification.class), eq(pageable));
         }
 
+        @Test
+        void findListingdebePasarFiltrosNormalizadosAlRepositorio() {
+                Pageable pageable = PageRequest.of(0, 10);
+                Page<ProductListing> expectedPage = Page.empty(pageable);
+
+                when(productRepository.findListing("laptop", "Electronics", null, pageable)).thenReturn(expectedPage);
+
+                Page<ProductListing> result = productService.findListing(
+                                Optional.of("LapTop"),
+                                Optional.of("Electronics"),
+                                Optional.empty(),
+                                pageable);
+
+                assertSame(expectedPage, result);
+                verify(productRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+        }
+
+        @Test
+        void findListingdebeNoFiltrarCuandoNoHayFiltros() {
+                Pageable pageable = PageRequest.of(0, 10);
+
+                when(productRepository.findListing("", null, 7L, pageable)).thenReturn(Page.empty(pageable));
+
+                productService.findListing(Optional.empty(), Optional.empty(), Optional.of(7L), pageable);
+
+                verify(productRepository, times(1)).findListing("", null, 7L, pageable);
+        }
+
         @Test
         void findAlldebeRetornarPaginaDeProductosCuandoSeFiltrarPorNombre() {
                 Pageable pageable = PageRequest.of(0, 10);
@@ -190,7 +235,9 @@ class ProductServiceImplTest {
         @Test
         void getByIddebeRetornarProductoCuandoExiste() {
                 when(productRepository.findById("test-id-123")).thenReturn(Optional.of(testProduct));
-                when(productMapper.modelToGenericResponseDTO(eq(testProduct), anyList()))
+                when(commentRepository.findByProductId(eq("test-id-123"), any(Pageable.class)))
+                                .thenReturn(Page.empty());
+                when(productMapper.modelToGenericResponseDTO(eq(testProduct), any(Page.class)))
                                 .thenReturn(testResponseDto);
 
                 GenericProductResponseDto result = productService.getById("test-id-123");
@@ -199,7 +246,7 @@ class ProductServiceImplTest {
                 assertEquals("test-id-123", result.getId());
                 assertEquals("Test Product", result.getName());
                 verify(productRepository, times(1)).findById("test-id-123");
-                verify(productMapper, times(1)).modelToGenericResponseDTO(eq(testProduct), anyList());
+                verify(productMapper, times(1)).modelToGenericResponseDTO(eq(testProduct), any(Page.class));
         }
 
         @Test
@@ -240,7 +287,7 @@ class ProductServiceImplTest {
 
         @Test
         void savedebeGuardarProductoCuandoCategoriaExiste() {
-                when(categoryRepository.findByNameIgnoreCase("Electronics"))
+                when(categoryRegistry.findByName("Electronics"))
                                 .thenReturn(Optional.of(testCategory));
                 when(productMapper.postPutDTOToModel(testProductDto)).thenReturn(testProduct);
                 when(productRepository.save(any(Product.class))).thenReturn(testProduct);
@@ -252,14 +299,14 @@ class ProductServiceImplTest {
                 assertNotNull(result);
                 assertEquals("test-id-123", result.getId());
                 assertEquals("Test Product", result.getName());
-                verify(categoryRepository, times(1)).findByNameIgnoreCase("Electronics");
+                verify(categoryRegistry, times(1)).findByName("Electronics");
                 verify(productMapper, times(1)).postPutDTOToModel(testProductDto);
                 verify(productRepository, times(1)).save(any(Product.class));
         }
 
         @Test
         void savedebeLanzarExcepcionCuandoCategoriaNoExiste() {
-                when(categoryRepository.findByNameIgnoreCase("NonExistentCategory"))
+                when(categoryRegistry.findByName("NonExistentCategory"))
                                 .thenReturn(Optional.empty());
 
                 testProductDto.setCategory("NonExistentCategory");
@@ -269,14 +316,14 @@ class ProductServiceImplTest {
                                 () -> productService.save(testProductDto));
 
                 assertTrue(exception.getMessage().contains("NonExistentCategory"));
-                verify(categoryRepository, times(1)).findByNameIgnoreCase("NonExistentCategory");
+                verify(categoryRegistry, times(1)).findByName("NonExistentCategory");
                 verify(productRepository, never()).save(any());
         }
 
         @Test
         void updatedebeActualizarProductoCuandoExisteYCategoriaEsValida() {
                 when(productRepository.findById("test-id-123")).thenReturn(Optional.of(testProduct));
-                when(categoryRepository.findByNameIgnoreCase("Electronics"))
+                when(categoryRegistry.findByName("Electronics"))
                                 .thenReturn(Optional.of(testCategory));
                 when(productRepository.save(any(Product.class))).thenReturn(testProduct);
                 when(productMapper.modelToGenericResponseDTO(eq(testProduct), anyList()))
@@ -286,8 +333,45 @@ class ProductServiceImplTest {
 
                 assertNotNull(result);
                 verify(productRepository, times(1)).findById("test-id-123");
-                verify(categoryRepository, times(1)).findByNameIgnoreCase("Electronics");
+                verify(categoryRegistry, times(1)).findByName("Electronics");
                 verify(productRepository, times(1)).save(any(Product.class));
+                verify(shards, times(1)).reset(testProduct.getId(), testProduct.getStock());
+                verify(reservations, times(1)).setStock(testProduct.getId(), testProduct.getStock());
+                verify(priceDrops, never()).save(any());
+        }
+
+        @Test
+        void updatedebeRegistrarBajadaCuandoElPrecioBaja() {
+                testProductDto.setPrice(79.99);
+                when(productRepository.findById("test-id-123")).thenReturn(Optional.of(testProduct));
+                when(categoryRegistry.findByName("Electronics"))
+                                .thenReturn(Optional.of(testCategory));
+                when(productRepository.save(any(Product.class))).thenReturn(testProduct);
+                when(productMapper.modelToGenericResponseDTO(eq(testProduct), anyList()))
+                                .thenReturn(testResponseDto);
+
+                productService.update("test-id-123", testProductDto);
+
+                verify(priceDrops, times(1)).save(argThat((PriceDrop drop) -> drop.getProductId().equals("test-id-123")
+                                && drop.getOldPrice() == 99.99
+                                && drop.getNewPrice() == 79.99
+                                && drop.getLastFavoriteId() == 0L
+                                && drop.getFinishedAt() == null));
+        }
+
+        @Test
+        void updatenoDebeRegistrarBajadaCuandoElPrecioSube() {
+                testProductDto.setPrice(129.99);
+                when(productRepository.findById("test-id-123")).thenReturn(Optional.of(testProduct));
+                when(categoryRegistry.findByName("Electronics"))
+                                .thenReturn(Optional.of(testCategory));
+                when(productRepository.save(any(Product.class))).thenReturn(testProduct);
+                when(productMapper.modelToGenericResponseDTO(eq(testProduct), anyList()))
+                                .thenReturn(testResponseDto);
+
+                productService.update("test-id-123", testProductDto);
+
+                verify(priceDrops, never()).save(any());
         }
 
         @Test
@@ -306,7 +390,7 @@ class ProductServiceImplTest {
         @Test
         void updatedebeLanzarExcepcionCuandoCategoriaNoExiste() {
                 when(productRepository.findById("test-id-123")).thenReturn(Optional.of(testProduct));
-                when(categoryRepository.findByNameIgnoreCase("NonExistentCategory"))
+                when(categoryRegistry.findByName("NonExistentCategory"))
                                 .thenReturn(Optional.empty());
 
                 testProductDto.setCategory("NonExistentCategory");
@@ -317,20 +401,13 @@ class ProductServiceImplTest {
 
                 assertTrue(exception.getMessage().contains("NonExistentCategory"));
                 verify(productRepository, times(1)).findById("test-id-123");
-                verify(categoryRepository, times(1)).findByNameIgnoreCase("NonExistentCategory");
+                verify(categoryRegistry, times(1)).findByName("NonExistentCategory");
                 verify(productRepository, never()).save(any());
         }
 
         @Test
         void getAllCategoriasdebeRetornarListaDeNombresDeCategorias() {
-                Category cat1 = new Category();
-                cat1.setName("Electronics");
-                Category cat2 = new Category();
-                cat2.setName("Books");
-                Category cat3 = new Category();
-                cat3.setName("Clothing");
-                List<Category> categories = List.of(cat1, cat2, cat3);
-                when(categoryRepository.findAll()).thenReturn(categories);
+                when(categoryRegistry.getNames()).thenReturn(List.of("Electronics", "Books", "Clothing"));
 
                 List<String> result = productService.getAllCategorias();
 
@@ -339,7 +416,7 @@ class ProductServiceImplTest {
                 assertTrue(result.contains("Electronics"));
                 assertTrue(result.contains("Books"));
                 assertTrue(result.contains("Clothing"));
-                verify(categoryRepository, times(1)).findAll();
+                verify(categoryRegistry, times(1)).getNames();
         }
 
         @Test
@@ -350,7 +427,19 @@ class ProductServiceImplTest {
                 assertDoesNotThrow(() -> productService.deleteById("test-id-123"));
 
                 verify(productRepository, times(1)).findById("test-id-123");
+                verify(shards, times(1)).disable("test-id-123");
                 verify(productRepository, times(1)).deleteByIdLogical("test-id-123");
+                verify(reservations, times(1)).setStock("test-id-123", 0);
+        }
+
+        @Test
+        void getAvailableStockdebeDelegarEnLasReservas() {
+                when(reservations.getAvailableStock(List.of("test-id-123"))).thenReturn(Map.of("test-id-123", 4));
+
+                Map<String, Integer> result = productService.getAvailableStock(List.of("test-id-123"));
+
+                assertEquals(4, result.get("test-id-123"));
+                verify(productRepository, never()).findById(any());
         }
 
         @Test
@@ -476,13 +565,14 @@ class ProductServiceImplTest {
                                 .createdAt(LocalDateTime.now())
                                 .build();
 
-                when(productRepository.findById("test-id-123")).thenReturn(Optional.of(testProduct));
-                when(productRepository.save(any(Product.class))).thenReturn(testProduct);
+                when(productRepository.existsById("test-id-123")).thenReturn(true);
 
                 assertDoesNotThrow(() -> productService.addComment("test-id-123", testComment));
 
-                verify(productRepository, times(1)).findById("test-id-123");
-                verify(productRepository, times(1)).save(any(Product.class));
+                assertEquals("test-id-123", testComment.getProductId());
+                verify(commentRepository, times(1)).save(testComment);
+                verify(productRepository, never()).findById(any());
+                verify(productRepository, never()).save(any());
         }
 
         @Test
@@ -495,15 +585,15 @@ class ProductServiceImplTest {
                                 .createdAt(LocalDateTime.now())
                                 .build();
 
-                when(productRepository.findById("non-existent-id")).thenReturn(Optional.empty());
+                when(productRepository.existsById("non-existent-id")).thenReturn(false);
 
                 ProductException.NotFoundException exception = assertThrows(
                                 ProductException.NotFoundException.class,
                                 () -> productService.addComment("non-existent-id", testComment));
 
                 assertTrue(exception.getMessage().contains("non-existent-id"));
-                verify(productRepository, times(1)).findById("non-existent-id");
-                verify(productRepository, never()).save(any());
+                verify(productRepository, times(1)).existsById("non-existent-id");
+                verify(commentRepository, never()).save(any());
         }
 
         @Test
@@ -516,19 +606,40 @@ class ProductServiceImplTest {
                                 .createdAt(LocalDateTime.now())
                                 .build();
 
-                testProduct.getComments().add(testComment);
+                CommentDto testCommentDto = CommentDto.builder()
+                                .comment("Excelente producto")
+                                .userName(testUser.getUsername())
+                                .build();
 
                 when(productRepository.findById("test-id-123")).thenReturn(Optional.of(testProduct));
-                when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-                when(productMapper.modelToGenericResponseDTO(eq(testProduct), anyList()))
+                when(commentRepository.findByProductId(eq("test-id-123"), any(Pageable.class)))
+                                .thenReturn(new PageImpl<>(List.of(testComment), PageRequest.of(0, 10), 25));
+                when(userNames.resolve(List.of(1L))).thenReturn(Map.of(1L, testUser.getUsername()));
+                when(productMapper.commentToCommentDto(testComment, testUser.getUsername()))
+                                .thenReturn(testCommentDto);
+                when(productMapper.modelToGenericResponseDTO(eq(testProduct), any(Page.class)))
                                 .thenReturn(testResponseDto);
 
                 GenericProductResponseDto result = productService.getById("test-id-123");
 
                 assertNotNull(result);
-                verify(productRepository, times(1)).findById("test-id-123");
-                verify(userRepository, times(1)).findById(1L);
-                verify(productMapper, times(1)).modelToGenericResponseDTO(eq(testProduct), anyList());
+                verify(commentRepository, times(1)).findByProductId("test-id-123",
+                                PageRequest.of(0, ProductServiceImpl.COMMENTS_PAGE_SIZE, CommentRepository.ORDER));
+                verify(userNames, times(1)).resolve(List.of(1L));
+                verify(productMapper, times(1)).modelToGenericResponseDTO(eq(testProduct),
+                                argThat((Page<CommentDto> page) -> page.getTotalElements() == 25
+                                                && page.getContent().equals(List.of(testCommentDto))));
+        }
+
+        @Test
+        void getCommentsdebeOrdenarPorFechaEIdIgnorandoElOrdenPedido() {
+                when(commentRepository.findByProductId(eq("test-id-123"), any(Pageable.class)))
+                                .thenReturn(Page.empty());
+
+                productService.getComments("test-id-123", PageRequest.of(2, 5, Sort.by("content")));
+
+                verify(commentRepository, times(1)).findByProductId("test-id-123",
+                                PageRequest.of(2, 5, CommentRepository.ORDER));
         }
 
         @Test
@@ -565,7 +676,6 @@ class ProductServiceImplTest {
                                 .category(testCategory)
                                 .creatorId(1L)
                                 .images(null)
-                                .comments(new ArrayList<>())
                                 .isDeleted(false)
                                 .createdAt(LocalDateTime.now())
                                 .updatedAt(LocalDateTime.now())
@@ -0,0 +1,129 @@
+package dev.luisvives.dawazon.products.service;
+
+import dev.luisvives.dawazon.products.exception.ProductException;
+import dev.luisvives.dawazon.products.models.Product;
+import dev.luisvives.dawazon.products.models.ProductStockShard;
+import dev.luisvives.dawazon.products.repository.ProductRepository;
+import dev.luisvives.dawazon.products.repository.ProductStockShardRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductStockShardServiceImplTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductStockShardRepository shardRepository;
+
+    @InjectMocks
+    private ProductStockShardServiceImpl shardService;
+
+    @Test
+    void splitwhenStockNotDivisiblegivesRemainderToFirstShards() {
+        assertThat(ProductStockShardServiceImpl.split("P1", 10, 4))
+                .extracting(ProductStockShard::getStock)
+                .containsExactly(3, 3, 2, 2);
+    }
+
+    @Test
+    void enablewhenProductColdsplitsItsStock() {
+        when(productRepository.findById("P1")).thenReturn(Optional.of(Product.builder().id("P1").stock(9).build()));
+        when(shardRepository.lockByProductId("P1")).thenReturn(List.of());
+
+        shardService.enable("P1", 3);
+
+        ArgumentCaptor<List<ProductStockShard>> captor = ArgumentCaptor.forClass(List.class);
+        verify(shardRepository).saveAll(captor.capture());
+        assertThat(captor.getValue()).extracting(ProductStockShard::getStock).containsExactly(3, 3, 3);
+        verify(productRepository).updateStock("P1", 9);
+    }
+
+    @Test
+    void enablewhenAlreadyShardedkeepsShardTotal() {
+        List<ProductStockShard> current = shards("P1", 1, 4);
+        when(productRepository.findById("P1")).thenReturn(Optional.of(Product.builder().id("P1").stock(20).build()));
+        when(shardRepository.lockByProductId("P1")).thenReturn(current);
+
+        shardService.enable("P1", 1);
+
+        verify(shardRepository).deleteAll(current);
+        verify(productRepository).updateStock("P1", 5);
+    }
+
+    @Test
+    void enablewhenProductMissingthrowsNotFound() {
+        when(productRepository.findById("NOPE")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> shardService.enable("NOPE", 2))
+                .isInstanceOf(ProductException.NotFoundException.class);
+        verify(shardRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void enablewhenCountNotPositivethrowsValidation() {
+        assertThatThrownBy(() -> shardService.enable("P1", 0))
+                .isInstanceOf(ProductException.ValidationException.class);
+    }
+
+    @Test
+    void foldwritesSumAndRebalancesShards() {
+        List<ProductStockShard> current = shards("P1", 0, 7);
+        when(shardRepository.lockByProductId("P1")).thenReturn(current);
+
+        assertThat(shardService.fold("P1")).isEqualTo(7);
+
+        verify(productRepository).updateStock("P1", 7);
+        assertThat(current).extracting(ProductStockShard::getStock).containsExactly(4, 3);
+    }
+
+    @Test
+    void foldwhenProductColddoesNothing() {
+        when(shardRepository.lockByProductId("P1")).thenReturn(List.of());
+
+        assertThat(shardService.fold("P1")).isZero();
+
+        verify(productRepository, never()).updateStock(anyString(), anyInt());
+    }
+
+    @Test
+    void disablemovesSumToProductAndDeletesShards() {
+        when(shardRepository.lockByProductId("P1")).thenReturn(shards("P1", 2, 2));
+
+        shardService.disable("P1");
+
+        verify(productRepository).updateStock("P1", 4);
+        verify(shardRepository).deleteByProductId("P1");
+    }
+
+    @Test
+    void resetwhenProductColddoesNothing() {
+        when(shardRepository.lockByProductId("P1")).thenReturn(List.of());
+
+        shardService.reset("P1", 50);
+
+        verify(productRepository, never()).updateStock(anyString(), anyInt());
+    }
+
+    private List<ProductStockShard> shards(String productId, int... stocks) {
+        List<ProductStockShard> result = new ArrayList<>();
+        for (int i = 0; i < stocks.length; i++) {
+            result.add(ProductStockShard.builder().productId(productId).shardIndex(i).stock(stocks[i]).build());
+        }
+        return result;
+    }
+}
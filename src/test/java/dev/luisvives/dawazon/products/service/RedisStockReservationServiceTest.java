@@ -0,0 +1,237 @@
+package dev.luisvives.dawazon.products.service;
+
+import dev.luisvives.dawazon.products.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedisStockReservationServiceTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private RedisStockReservationService reservations;
+
+    @BeforeEach
+    void setUp() {
+        reservations = new RedisStockReservationService(redisTemplate, productRepository, Duration.ofMinutes(5),
+                Clock.systemUTC());
+        lenient().when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void productKeyssameHashTagForEveryKey() {
+        assertThat(RedisStockReservationService.productKeys("P1"))
+                .allSatisfy(key -> assertThat(key).contains("{P1}"))
+                .doesNotHaveDuplicates();
+        assertThat(RedisStockReservationService.reservationKey("cart-1")).contains("{cart-1}");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reservewhenScriptAcceptsstoresReservationAndReturnsTrue() {
+        String reservation = RedisStockReservationService.reservationKey("cart-1");
+        when(hashOperations.keys(reservation)).thenReturn(Set.of());
+        when(redisTemplate.execute(any(RedisScript.class), eq(RedisStockReservationService.productKeys("P1")),
+                any(Object[].class))).thenReturn("OK");
+
+        assertThat(reservations.reserve("cart-1", Map.of("P1", 2))).isTrue();
+
+        verify(hashOperations).putAll(reservation, Map.of("P1", "2"));
+        verify(redisTemplate).expireAt(eq(reservation), any(Instant.class));
+        verify(productRepository, never()).findStockByIdIn(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reservewhenProductUnknownloadsStockAndRetries() {
+        when(hashOperations.keys(any())).thenReturn(Set.of());
+        when(redisTemplate.execute(any(RedisScript.class), eq(RedisStockReservationService.productKeys("P1")),
+                any(Object[].class))).thenReturn("MISSING", "OK");
+        when(productRepository.findStockByIdIn(List.of("P1"))).thenReturn(List.of(stock("P1", 7)));
+
+        assertThat(reservations.reserve("cart-1", Map.of("P1", 2))).isTrue();
+
+        verify(valueOperations).setIfAbsent(RedisStockReservationService.onHandKey("P1"), "7");
+        verify(redisTemplate, times(2)).execute(any(RedisScript.class),
+                eq(RedisStockReservationService.productKeys("P1")), any(Object[].class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reservewhenLaterProductShortreleasesEarlierHoldsAndReturnsFalse() {
+        String reservation = RedisStockReservationService.reservationKey("cart-1");
+        when(hashOperations.keys(reservation)).thenReturn(Set.of());
+        when(redisTemplate.execute(any(RedisScript.class), eq(RedisStockReservationService.productKeys("P1")),
+                any(Object[].class))).thenReturn("OK");
+        when(redisTemplate.execute(any(RedisScript.class), eq(RedisStockReservationService.productKeys("P2")),
+                any(Object[].class))).thenReturn("SHORT");
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantities.put("P1", 1);
+        quantities.put("P2", 5);
+
+        assertThat(reservations.reserve("cart-1", quantities)).isFalse();
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of(
+                RedisStockReservationService.holdsKey("P1"), RedisStockReservationService.expiryKey("P1"))),
+                eq("cart-1"));
+        verify(redisTemplate).delete(reservation);
+        verify(hashOperations, never()).putAll(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reservewhenPreviousReservationHadOtherProductsreleasesThem() {
+        when(hashOperations.keys(RedisStockReservationService.reservationKey("cart-1")))
+                .thenReturn(Set.of("P1", "OLD"));
+        when(redisTemplate.execute(any(RedisScript.class), eq(RedisStockReservationService.productKeys("P1")),
+                any(Object[].class))).thenReturn("OK");
+
+        assertThat(reservations.reserve("cart-1", Map.of("P1", 2))).isTrue();
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of(
+                RedisStockReservationService.holdsKey("OLD"), RedisStockReservationService.expiryKey("OLD"))),
+                eq("cart-1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getAvailableStockwhenSomeUnknownloadsThemAndOmitsMissing() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(RedisStockReservationService.productKeys("P1")),
+                any(Object[].class))).thenReturn(3L);
+        when(redisTemplate.execute(any(RedisScript.class), eq(RedisStockReservationService.productKeys("P2")),
+                any(Object[].class))).thenReturn(null, 4L);
+        when(redisTemplate.execute(any(RedisScript.class), eq(RedisStockReservationService.productKeys("P3")),
+                any(Object[].class))).thenReturn(null);
+        when(productRepository.findStockByIdIn(List.of("P2", "P3"))).thenReturn(List.of(stock("P2", 4)));
+
+        Map<String, Integer> result = reservations.getAvailableStock(List.of("P1", "P2", "P3"));
+
+        assertThat(result).containsOnly(Map.entry("P1", 3), Map.entry("P2", 4));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void commitwhenCalleddecrementsEveryBoughtProductAndDropsReservation() {
+        String reservation = RedisStockReservationService.reservationKey("cart-1");
+        when(hashOperations.keys(reservation)).thenReturn(Set.of("P1"));
+
+        when(redisTemplate.execute(any(RedisScript.class), eq(RedisStockReservationService.productKeys("P1")),
+                eq("cart-1"), eq("2"), anyString())).thenReturn(RedisStockReservationService.OK);
+
+        assertThat(reservations.commit("cart-1", Map.of("P1", 2))).isEmpty();
+
+        verify(redisTemplate).delete(reservation);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void commitwhenHoldMissingAndNoFreeStockreturnsShortage() {
+        when(hashOperations.keys(RedisStockReservationService.reservationKey("cart-1"))).thenReturn(Set.of());
+        when(redisTemplate.execute(any(RedisScript.class), eq(RedisStockReservationService.productKeys("P1")),
+                eq("cart-1"), eq("2"), anyString())).thenReturn(RedisStockReservationService.SHORT);
+        when(redisTemplate.execute(any(RedisScript.class), eq(RedisStockReservationService.productKeys("P2")),
+                eq("cart-1"), eq("1"), anyString())).thenReturn(RedisStockReservationService.UNHELD);
+
+        assertThat(reservations.commit("cart-1", Map.of("P1", 2, "P2", 1))).containsExactly("P1");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void releasewhenCalledreleasesEveryReservedProduct() {
+        String reservation = RedisStockReservationService.reservationKey("cart-1");
+        when(hashOperations.keys(reservation)).thenReturn(Set.of("P1"));
+
+        reservations.release("cart-1");
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of(
+                RedisStockReservationService.holdsKey("P1"), RedisStockReservationService.expiryKey("P1"))),
+                eq("cart-1"));
+        verify(redisTemplate).delete(reservation);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void releaseAllwhenCalledreleasesEveryHoldInTwoPipelines() {
+        Deque<List<Object>> results = new ArrayDeque<>(List.of(
+                List.of(Set.of("P1"), Set.of("P1", "P2")),
+                List.of()));
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.<SessionCallback<Object>>getArgument(0).execute(redisTemplate);
+            return results.poll();
+        });
+
+        reservations.releaseAll(List.of("cart-1", "cart-2"));
+
+        verify(redisTemplate, times(2)).executePipelined(any(SessionCallback.class));
+        verify(redisTemplate).execute(any(RedisScript.class), eq(holdKeys("P1")), eq("cart-1"));
+        verify(redisTemplate).execute(any(RedisScript.class), eq(holdKeys("P1")), eq("cart-2"));
+        verify(redisTemplate).execute(any(RedisScript.class), eq(holdKeys("P2")), eq("cart-2"));
+        verify(redisTemplate).delete(RedisStockReservationService.reservationKey("cart-1"));
+        verify(redisTemplate).delete(RedisStockReservationService.reservationKey("cart-2"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void releaseAllwhenEmptydoesNothing() {
+        reservations.releaseAll(List.of());
+
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any(Object[].class));
+        verify(redisTemplate, never()).delete(any(String.class));
+        verify(redisTemplate, never()).executePipelined(any(SessionCallback.class));
+    }
+
+    private List<String> holdKeys(String productId) {
+        return List.of(RedisStockReservationService.holdsKey(productId),
+                RedisStockReservationService.expiryKey(productId));
+    }
+
+    private ProductRepository.ProductStock stock(String id, int stock) {
+        return new ProductRepository.ProductStock() {
+            @Override
+            public String getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getStock() {
+                return stock;
+            }
+        };
+    }
+}
@@ -0,0 +1,148 @@
+package dev.luisvives.dawazon.users.repository;
+
+import dev.luisvives.dawazon.BaseRepositoryTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compara añadir y quitar un favorito a usuarios con {@link #FAVORITES}
+ * favoritos antes (lista de IDs dentro del usuario: se leía la lista entera,
+ * se buscaba el producto y Hibernate borraba y volvía a escribir la colección)
+ * y después ({@link UserFavoriteRepository}, una sola sentencia). La versión
+ * anterior se reproduce con SQL sobre una tabla con la forma de
+ * {@code user_favs}. Se lanza con {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FavoriteWriteBenchmarkTest extends BaseRepositoryTest {
+
+    private static final int USERS = 20;
+    private static final int FAVORITES = 5_000;
+    private static final int OPERATIONS = 200;
+
+    @Autowired
+    private UserFavoriteRepository favoriteRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS user_favs");
+        jdbcTemplate.execute("CREATE TABLE user_favs (user_id bigint, favs varchar(255), fav_order int, "
+                + "PRIMARY KEY (user_id, fav_order))");
+        jdbcTemplate.update("INSERT INTO user_favs (user_id, favs, fav_order) "
+                + "SELECT u, 'PROD-' || f, f FROM generate_series(1, ?) u, generate_series(0, ? - 1) f",
+                USERS, FAVORITES);
+        jdbcTemplate.execute("TRUNCATE user_favorites");
+        jdbcTemplate.update("INSERT INTO user_favorites (user_id, product_id, created_at) "
+                + "SELECT user_id, favs, now() FROM user_favs ORDER BY user_id, fav_order");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS user_favs");
+        jdbcTemplate.execute("TRUNCATE user_favorites");
+    }
+
+    @Test
+    void compareAddAndRemove() {
+        run(this::listAdd, this::listRemove);
+        run(this::setAdd, this::setRemove);
+
+        long listNs = run(this::listAdd, this::listRemove);
+        long setNs = run(this::setAdd, this::setRemove);
+
+        System.out.printf("[benchmark] lista en el usuario: %d µs/operación%n", listNs / 1000);
+        System.out.printf("[benchmark] conjunto por filas:  %d µs/operación%n", setNs / 1000);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_favorites", Long.class))
+                .isEqualTo((long) USERS * FAVORITES);
+    }
+
+    /**
+     * Añade y quita {@link #OPERATIONS} veces un producto nuevo, repartido entre
+     * los usuarios; cada operación en su transacción, como en el servicio.
+     *
+     * @return Tiempo medio por operación en nanosegundos.
+     */
+    private long run(Operation add, Operation remove) {
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            long userId = (i % USERS) + 1;
+            String productId = "PROD-NEW-" + i;
+            transaction.executeWithoutResult(status -> assertThat(add.apply(userId, productId)).isTrue());
+            transaction.executeWithoutResult(status -> assertThat(remove.apply(userId, productId)).isTrue());
+        }
+        return (System.nanoTime() - start) / (2L * OPERATIONS);
+    }
+
+    private boolean listAdd(long userId, String productId) {
+        List<String> favs = loadList(userId);
+        if (favs.contains(productId)) {
+            return false;
+        }
+        favs.add(productId);
+        rewriteList(userId, favs);
+        return true;
+    }
+
+    private boolean listRemove(long userId, String productId) {
+        List<String> favs = loadList(userId);
+        if (!favs.remove(productId)) {
+            return false;
+        }
+        rewriteList(userId, favs);
+        return true;
+    }
+
+    private boolean setAdd(long userId, String productId) {
+        return favoriteRepository.addIfAbsent(userId, productId) == 1;
+    }
+
+    private boolean setRemove(long userId, String productId) {
+        return favoriteRepository.remove(userId, productId) == 1;
+    }
+
+    private List<String> loadList(long userId) {
+        return new ArrayList<>(jdbcTemplate.queryForList(
+                "SELECT favs FROM user_favs WHERE user_id = ? ORDER BY fav_order", String.class, userId));
+    }
+
+    /**
+     * Lo que hace Hibernate al cambiar una colección de valores: borra todas
+     * las filas del usuario y las vuelve a insertar en lote.
+     */
+    private void rewriteList(long userId, List<String> favs) {
+        jdbcTemplate.update("DELETE FROM user_favs WHERE user_id = ?", userId);
+        List<Object[]> rows = new ArrayList<>(favs.size());
+        for (int i = 0; i < favs.size(); i++) {
+            rows.add(new Object[] { userId, favs.get(i), i });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO user_favs (user_id, favs, fav_order) VALUES (?, ?, ?)", rows);
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        boolean apply(long userId, String productId);
+    }
+}
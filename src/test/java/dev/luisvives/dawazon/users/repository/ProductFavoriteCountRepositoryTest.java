@@ -0,0 +1,65 @@
+package dev.luisvives.dawazon.users.repository;
+
+import dev.luisvives.dawazon.BaseRepositoryTest;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductFavoriteCountRepositoryTest extends BaseRepositoryTest {
+
+    @Autowired
+    private ProductFavoriteCountRepository countRepository;
+
+    @Autowired
+    private UserFavoriteRepository favoriteRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        countRepository.deleteAll();
+        favoriteRepository.deleteAll();
+    }
+
+    @Test
+    void incrementAndDecrementkeepCountPerProduct() {
+        countRepository.increment("PROD-1");
+        countRepository.increment("PROD-1");
+        countRepository.increment("PROD-1");
+        countRepository.increment("PROD-2");
+        countRepository.decrement("PROD-1");
+
+        assertThat(countRepository.findFavorites("PROD-1")).contains(2L);
+        assertThat(countRepository.findFavorites("PROD-2")).contains(1L);
+        assertThat(countRepository.findFavorites("PROD-3")).isEmpty();
+    }
+
+    @Test
+    void decrementwhenCountIsZerodoesNotGoNegative() {
+        countRepository.increment("PROD-1");
+        countRepository.decrement("PROD-1");
+        countRepository.decrement("PROD-1");
+
+        assertThat(countRepository.findFavorites("PROD-1")).contains(0L);
+    }
+
+    @Test
+    void rebuildwhenCountersAreStalematchesFavorites() {
+        for (long user = 1; user <= 3; user++) {
+            favoriteRepository.addIfAbsent(user, "PROD-1");
+        }
+        favoriteRepository.addIfAbsent(1L, "PROD-2");
+        countRepository.increment("PROD-2");
+        countRepository.increment("PROD-2");
+
+        assertThat(countRepository.rebuild()).isEqualTo(2);
+        entityManager.clear();
+
+        assertThat(countRepository.findFavorites("PROD-1")).contains(3L);
+        assertThat(countRepository.findFavorites("PROD-2")).contains(1L);
+    }
+}
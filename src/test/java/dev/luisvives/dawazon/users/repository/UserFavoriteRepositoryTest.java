@@ -0,0 +1,252 @@
+package dev.luisvives.dawazon.users.repository;
+
+import dev.luisvives.dawazon.BaseRepositoryTest;
+import dev.luisvives.dawazon.users.models.User;
+import dev.luisvives.dawazon.users.repository.UserFavoriteRepository.Follower;
+import jakarta.persistence.Column;
+import jakarta.persistence.ElementCollection;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.stat.Statistics;
+import org.hibernate.tool.hbm2ddl.SchemaExport;
+import org.hibernate.tool.schema.TargetType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class UserFavoriteRepositoryTest extends BaseRepositoryTest {
+
+    private static final Long USER_ID = 1L;
+
+    @Autowired
+    private UserFavoriteRepository favoriteRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        favoriteRepository.deleteAll();
+    }
+
+    @Test
+    void addIfAbsentwhenAlreadyFavoritereturnsZeroAndKeepsOneRow() {
+        assertThat(favoriteRepository.addIfAbsent(USER_ID, "PROD-1")).isEqualTo(1);
+        assertThat(favoriteRepository.addIfAbsent(USER_ID, "PROD-1")).isZero();
+
+        assertThat(favoriteRepository.count()).isEqualTo(1);
+        assertThat(favoriteRepository.existsByUserIdAndProductId(USER_ID, "PROD-1")).isTrue();
+    }
+
+    @Test
+    void removewhenFavoriteExistsdeletesOnlyThatRow() {
+        favoriteRepository.addIfAbsent(USER_ID, "PROD-1");
+        favoriteRepository.addIfAbsent(USER_ID, "PROD-2");
+        favoriteRepository.addIfAbsent(2L, "PROD-1");
+
+        assertThat(favoriteRepository.remove(USER_ID, "PROD-1")).isEqualTo(1);
+        assertThat(favoriteRepository.remove(USER_ID, "PROD-1")).isZero();
+
+        assertThat(favoriteRepository.existsByUserIdAndProductId(USER_ID, "PROD-1")).isFalse();
+        assertThat(favoriteRepository.existsByUserIdAndProductId(USER_ID, "PROD-2")).isTrue();
+        assertThat(favoriteRepository.existsByUserIdAndProductId(2L, "PROD-1")).isTrue();
+    }
+
+    @Test
+    void findProductIdsByUserIdreturnsPageInInsertionOrder() {
+        List<String> favs = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            favs.add("PROD-" + (100 - i));
+            favoriteRepository.addIfAbsent(USER_ID, favs.get(i));
+        }
+        favoriteRepository.addIfAbsent(2L, "PROD-1");
+
+        Page<String> page = favoriteRepository.findProductIdsByUserId(USER_ID, PageRequest.of(1, 10));
+
+        assertThat(page.getTotalElements()).isEqualTo(25);
+        assertThat(page.getContent()).isEqualTo(favs.subList(10, 20));
+    }
+
+    @Test
+    void addIfAbsentAndRemovewhenUserHasManyFavoritesrunSingleStatement() {
+        for (int i = 0; i < 2_000; i++) {
+            favoriteRepository.addIfAbsent(USER_ID, "PROD-" + i);
+        }
+        entityManager.clear();
+        Statistics statistics = statistics();
+
+        favoriteRepository.addIfAbsent(USER_ID, "PROD-NEW");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        favoriteRepository.remove(USER_ID, "PROD-1000");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void copyLegacyFavoriteswhenOldTableExistskeepsOrderAndDropsIt() {
+        entityManager.createNativeQuery("CREATE TABLE user_favs (user_id bigint, favs varchar(255), fav_order int)")
+                .executeUpdate();
+        entityManager.createNativeQuery("INSERT INTO user_favs VALUES (1, 'PROD-B', 0), (1, 'PROD-A', 1), "
+                + "(1, 'PROD-C', 2), (1, 'PROD-A', 3)").executeUpdate();
+
+        assertThat(favoriteRepository.legacyFavoritesExist()).isTrue();
+        assertThat(favoriteRepository.legacyFavoritesOrdered()).isTrue();
+        assertThat(favoriteRepository.copyLegacyFavorites()).isEqualTo(3);
+        favoriteRepository.dropLegacyFavorites();
+
+        assertThat(favoriteRepository.legacyFavoritesExist()).isFalse();
+        assertThat(favoriteRepository.findProductIdsByUserId(USER_ID, PageRequest.of(0, 10)).getContent())
+                .containsExactly("PROD-B", "PROD-A", "PROD-C");
+    }
+
+    @Test
+    void copyUnorderedLegacyFavoriteswhenOldTableHasNoOrderColumnkeepsRowOrder() {
+        // Esquema de antes de fav_order: se actualiza directamente desde esa versión
+        entityManager.createNativeQuery("CREATE TABLE user_favs (user_id bigint, favs varchar(255))")
+                .executeUpdate();
+        entityManager.createNativeQuery("INSERT INTO user_favs VALUES (1, 'PROD-B'), (1, 'PROD-A'), "
+                + "(1, 'PROD-C'), (1, 'PROD-A')").executeUpdate();
+
+        assertThat(favoriteRepository.legacyFavoritesExist()).isTrue();
+        assertThat(favoriteRepository.legacyFavoritesOrdered()).isFalse();
+        assertThat(favoriteRepository.copyUnorderedLegacyFavorites()).isEqualTo(3);
+        favoriteRepository.dropLegacyFavorites();
+
+        assertThat(favoriteRepository.legacyFavoritesExist()).isFalse();
+        assertThat(favoriteRepository.findProductIdsByUserId(USER_ID, PageRequest.of(0, 10)).getContent())
+                .containsExactly("PROD-B", "PROD-A", "PROD-C");
+    }
+
+    @Test
+    void migrationwhenTableCreatedFromBaselineMappingcopiesFavorites() throws IOException {
+        // Tabla tal y como la crea Hibernate para User.favs antes de user_favorites
+        for (String ddl : baselineFavoritesDdl()) {
+            entityManager.createNativeQuery(ddl).executeUpdate();
+        }
+        entityManager.createNativeQuery("INSERT INTO user_favs (user_id, favs) VALUES (1, 'PROD-B'), "
+                + "(1, 'PROD-A'), (1, 'PROD-C')").executeUpdate();
+
+        assertThat(favoriteRepository.legacyFavoritesExist()).isTrue();
+        assertThat(favoriteRepository.legacyFavoritesOrdered()).isFalse();
+        assertThat(favoriteRepository.copyUnorderedLegacyFavorites()).isEqualTo(3);
+        favoriteRepository.dropLegacyFavorites();
+
+        assertThat(favoriteRepository.legacyFavoritesExist()).isFalse();
+        assertThat(favoriteRepository.findProductIdsByUserId(USER_ID, PageRequest.of(0, 10)).getContent())
+                .containsExactly("PROD-B", "PROD-A", "PROD-C");
+    }
+
+    @Test
+    void findFollowerswhenPagingByCursorreturnsEachActiveUserOnce() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            User user = userRepository.save(User.builder()
+                    .userName("follower" + i)
+                    .email("follower" + i + "@example.com")
+                    .password("password")
+                    .isDeleted(i == 2)
+                    .build());
+            favoriteRepository.addIfAbsent(user.getId(), "PROD-1");
+            favoriteRepository.addIfAbsent(user.getId(), "PROD-2");
+            if (i != 2) {
+                expected.add(user.getEmail());
+            }
+        }
+
+        List<String> seen = new ArrayList<>();
+        Long cursor = 0L;
+        List<Follower> batch;
+        do {
+            batch = favoriteRepository.findFollowers("PROD-1", cursor, PageRequest.of(0, 2));
+            for (Follower follower : batch) {
+                seen.add(follower.getEmail());
+                cursor = follower.getFavoriteId();
+            }
+        } while (batch.size() == 2);
+
+        assertThat(seen).isEqualTo(expected);
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    /**
+     * Genera con Hibernate, y con las mismas estrategias de nombres que Spring
+     * Boot, el {@code CREATE TABLE} de la colección {@code favs} del usuario tal
+     * y como estaba mapeada antes de {@code user_favorites}.
+     * <p>
+     * La entidad se declara dentro del método para que el escaneo de entidades
+     * de los tests no la registre junto a {@link User}.
+     * </p>
+     */
+    private static List<String> baselineFavoritesDdl() throws IOException {
+        @Entity(name = "User")
+        @Table(name = "users")
+        class BaselineUser {
+            @Id
+            private Long id;
+
+            @Column()
+            @ElementCollection(fetch = FetchType.EAGER)
+            private List<String> favs;
+        }
+
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DIALECT, PostgreSQLDialect.class.getName())
+                .applySetting(AvailableSettings.ALLOW_METADATA_ON_BOOT, false)
+                .build();
+        Path script = Files.createTempFile("baseline-favs", ".sql");
+        try {
+            Metadata metadata = new MetadataSources(registry)
+                    .addAnnotatedClass(BaselineUser.class)
+                    .getMetadataBuilder()
+                    .applyImplicitNamingStrategy(new SpringImplicitNamingStrategy())
+                    .applyPhysicalNamingStrategy(new CamelCaseToUnderscoresNamingStrategy())
+                    .build();
+            new SchemaExport()
+                    .setDelimiter(";")
+                    .setOutputFile(script.toString())
+                    .createOnly(EnumSet.of(TargetType.SCRIPT), metadata);
+            return Files.readAllLines(script).stream()
+                    .map(line -> line.replace(";", "").trim())
+                    .filter(line -> line.startsWith("create table") && !line.startsWith("create table users "))
+                    .toList();
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+            Files.deleteIfExists(script);
+        }
+    }
+}
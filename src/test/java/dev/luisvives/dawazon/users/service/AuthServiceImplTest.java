@@ -50,6 +50,9 @@ class AuthServiceImplTest {
     @Mock
     private BCryptPasswordEncoder passwordEncoder;
 
+    @Mock
+    private UserNameResolver userNames;
+
     @InjectMocks
     private AuthServiceImpl authService;
 
@@ -227,6 +230,7 @@ class AuthServiceImplTest {
         assertEquals(userRequestDto.getTelefono(), testUser.getTelefono());
         verify(userRepository).findById(userId);
         verify(userRepository).save(testUser);
+        verify(userNames).evict(testUser.getId());
     }
 
     @Test
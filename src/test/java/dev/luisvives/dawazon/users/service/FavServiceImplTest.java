@@ -2,8 +2,10 @@ package dev.luisvives.dawazon.users.service;
 
 import dev.luisvives.dawazon.products.models.Product;
 import dev.luisvives.dawazon.products.repository.ProductRepository;
+import dev.luisvives.dawazon.products.repository.ProductRepository.ProductListing;
 import dev.luisvives.dawazon.users.exceptions.UserException;
-import dev.luisvives.dawazon.users.models.User;
+import dev.luisvives.dawazon.users.repository.ProductFavoriteCountRepository;
+import dev.luisvives.dawazon.users.repository.UserFavoriteRepository;
 import dev.luisvives.dawazon.users.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,10 +14,10 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,10 +34,15 @@ class FavServiceImplTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private UserFavoriteRepository favoriteRepository;
+
+    @Mock
+    private ProductFavoriteCountRepository countRepository;
+
     @InjectMocks
     private FavServiceImpl favService;
 
-    private User testUser;
     private Product testProduct;
     private String productId;
     private Long userId;
@@ -45,13 +52,6 @@ class FavServiceImplTest {
         userId = 1L;
         productId = "product-123";
 
-        testUser = User.builder()
-                .id(userId)
-                .userName("testUser")
-                .email("test@example.com")
-                .favs(new ArrayList<>())
-                .build();
-
         testProduct = Product.builder()
                 .id(productId)
                 .name("Test Product")
@@ -60,193 +60,183 @@ class FavServiceImplTest {
     }
 
     @Test
-    void addFavaddProductToFavoriteswhenUserExistsAndProductNotInFavorites() {
-        when(userRepository.findById(userId)).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+    void addFavinsertFavoritewhenProductNotInFavorites() {
+        when(favoriteRepository.addIfAbsent(userId, productId)).thenReturn(1);
 
         favService.addFav(productId, userId);
 
-        assertTrue(testUser.getFavs().contains(productId));
-        verify(userRepository).findById(userId);
-        verify(userRepository).save(testUser);
-    }
-
-    @Test
-    void addFavthrowUserNotFoundExceptionwhenUserDoesNotExist() {
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
-
-        assertThrows(UserException.UserNotFoundException.class,
-                () -> favService.addFav(productId, userId));
-
-        verify(userRepository).findById(userId);
+        verify(favoriteRepository).addIfAbsent(userId, productId);
+        verify(countRepository).increment(productId);
+        verify(userRepository, never()).findById(any());
         verify(userRepository, never()).save(any());
     }
 
     @Test
     void addFavthrowUserHasThatFavProductExceptionwhenProductAlreadyInFavorites() {
-        testUser.getFavs().add(productId);
-        when(userRepository.findById(userId)).thenReturn(Optional.of(testUser));
+        when(favoriteRepository.addIfAbsent(userId, productId)).thenReturn(0);
 
         assertThrows(UserException.UserHasThatFavProductException.class,
                 () -> favService.addFav(productId, userId));
 
-        verify(userRepository).findById(userId);
-        verify(userRepository, never()).save(any());
+        verify(countRepository, never()).increment(any());
     }
 
     @Test
-    void removeFaremoveProductFromFavoriteswhenUserExistsAndProductInFavorites() {
-        testUser.getFavs().add(productId);
-        when(userRepository.findById(userId)).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+    void removeFavdeleteFavoritewhenProductInFavorites() {
+        when(favoriteRepository.remove(userId, productId)).thenReturn(1);
 
         favService.removeFav(productId, userId);
 
-        assertFalse(testUser.getFavs().contains(productId));
-        verify(userRepository).findById(userId);
-        verify(userRepository).save(testUser);
-    }
-
-    @Test
-    void removeFavthrowUserNotFoundExceptionwhenUserDoesNotExist() {
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
-
-        assertThrows(UserException.UserNotFoundException.class,
-                () -> favService.removeFav(productId, userId));
-
-        verify(userRepository).findById(userId);
+        verify(favoriteRepository).remove(userId, productId);
+        verify(countRepository).decrement(productId);
+        verify(userRepository, never()).findById(any());
         verify(userRepository, never()).save(any());
     }
 
     @Test
     void removeFavthrowUserHasThatFavProductExceptionwhenProductNotInFavorites() {
-        when(userRepository.findById(userId)).thenReturn(Optional.of(testUser));
+        when(favoriteRepository.remove(userId, productId)).thenReturn(0);
 
         assertThrows(UserException.UserHasThatFavProductException.class,
                 () -> favService.removeFav(productId, userId));
 
-        verify(userRepository).findById(userId);
-        verify(userRepository, never()).save(any());
+        verify(countRepository, never()).decrement(any());
     }
 
     @Test
-    void getFavsreturnPageOfProductswhenUserHasFavoritesAndAllProductsExist() {
-        String product1Id = "product-1";
-        String product2Id = "product-2";
-        testUser.getFavs().add(product1Id);
-        testUser.getFavs().add(product2Id);
+    void isFavreturnRepositoryResult() {
+        when(favoriteRepository.existsByUserIdAndProductId(userId, productId)).thenReturn(true);
 
-        Product product1 = Product.builder().id(product1Id).name("Product 1").build();
-        Product product2 = Product.builder().id(product2Id).name("Product 2").build();
+        assertTrue(favService.isFav(productId, userId));
+    }
 
-        Pageable pageable = PageRequest.of(0, 10);
+    @Test
+    void getFavCountreturnCounterwhenProductHasFavorites() {
+        when(countRepository.findFavorites(productId)).thenReturn(Optional.of(42L));
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(testUser));
-        when(productRepository.findById(product1Id)).thenReturn(Optional.of(product1));
-        when(productRepository.findById(product2Id)).thenReturn(Optional.of(product2));
+        assertEquals(42L, favService.getFavCount(productId));
+        verify(favoriteRepository, never()).findProductIdsByUserId(any(), any());
+    }
 
-        Page<Product> result = favService.getFavs(userId, pageable);
+    @Test
+    void getFavCountreturnZerowhenProductNeverFavorited() {
+        when(countRepository.findFavorites(productId)).thenReturn(Optional.empty());
 
-        assertNotNull(result);
-        assertEquals(2, result.getTotalElements());
-        assertEquals(2, result.getContent().size());
-        assertTrue(result.getContent().contains(product1));
-        assertTrue(result.getContent().contains(product2));
-        verify(userRepository).findById(userId);
-        verify(productRepository).findById(product1Id);
-        verify(productRepository).findById(product2Id);
+        assertEquals(0L, favService.getFavCount(productId));
     }
 
     @Test
-    void getFavsreturnEmptyPagewhenUserHasNoFavorites() {
-        Pageable pageable = PageRequest.of(0, 10);
+    void getFavsreturnPageInFavoriteOrderwhenUserHasFavorites() {
+        ProductListing product1 = listing("product-1");
+        ProductListing product2 = listing("product-2");
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(testUser));
+        Pageable pageable = PageRequest.of(1, 2);
 
-        Page<Product> result = favService.getFavs(userId, pageable);
+        when(userRepository.existsById(userId)).thenReturn(true);
+        when(favoriteRepository.findProductIdsByUserId(userId, PageRequest.of(1, 2)))
+                .thenReturn(new PageImpl<>(List.of("product-2", "product-1"), PageRequest.of(1, 2), 2000));
+        // La consulta por IDs no respeta el orden de los favoritos
+        when(productRepository.findListingByIdIn(List.of("product-2", "product-1")))
+                .thenReturn(List.of(product1, product2));
 
-        assertNotNull(result);
-        assertEquals(0, result.getTotalElements());
-        assertTrue(result.getContent().isEmpty());
-        verify(userRepository).findById(userId);
+        Page<ProductListing> result = favService.getFavs(userId, pageable);
+
+        assertEquals(2000, result.getTotalElements());
+        assertEquals(1000, result.getTotalPages());
+        assertEquals(List.of(product2, product1), result.getContent());
+        verify(userRepository, never()).findById(any());
         verify(productRepository, never()).findById(anyString());
     }
 
     @Test
-    void getFavsfilterOutNonExistentProductswhenSomeProductsDoNotExist() {
-        String product1Id = "product-1";
-        String product2Id = "product-nonexistent";
-        String product3Id = "product-3";
-        testUser.getFavs().add(product1Id);
-        testUser.getFavs().add(product2Id);
-        testUser.getFavs().add(product3Id);
+    void getFavsskipMissingProductswhenSomeProductsDoNotExist() {
+        ProductListing product1 = listing("product-1");
+
+        Pageable pageable = PageRequest.of(0, 10);
+
+        when(userRepository.existsById(userId)).thenReturn(true);
+        when(favoriteRepository.findProductIdsByUserId(userId, pageable))
+                .thenReturn(new PageImpl<>(List.of("product-1", "product-gone"), pageable, 2));
+        when(productRepository.findListingByIdIn(List.of("product-1", "product-gone")))
+                .thenReturn(List.of(product1));
 
-        Product product1 = Product.builder().id(product1Id).name("Product 1").build();
-        Product product3 = Product.builder().id(product3Id).name("Product 3").build();
+        Page<ProductListing> result = favService.getFavs(userId, pageable);
 
+        assertEquals(List.of(product1), result.getContent());
+    }
+
+    @Test
+    void getFavsreturnEmptyPagewhenUserHasNoFavorites() {
         Pageable pageable = PageRequest.of(0, 10);
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(testUser));
-        when(productRepository.findById(product1Id)).thenReturn(Optional.of(product1));
-        when(productRepository.findById(product2Id)).thenReturn(Optional.empty());
-        when(productRepository.findById(product3Id)).thenReturn(Optional.of(product3));
+        when(userRepository.existsById(userId)).thenReturn(true);
+        when(favoriteRepository.findProductIdsByUserId(userId, pageable)).thenReturn(Page.empty(pageable));
 
-        Page<Product> result = favService.getFavs(userId, pageable);
+        Page<ProductListing> result = favService.getFavs(userId, pageable);
 
         assertNotNull(result);
-        assertEquals(2, result.getTotalElements());
-        assertEquals(2, result.getContent().size());
-        assertTrue(result.getContent().contains(product1));
-        assertTrue(result.getContent().contains(product3));
-        assertFalse(result.getContent().stream().anyMatch(p -> p.getId().equals(product2Id)));
-        verify(userRepository).findById(userId);
-        verify(productRepository).findById(product1Id);
-        verify(productRepository).findById(product2Id);
-        verify(productRepository).findById(product3Id);
+        assertEquals(0, result.getTotalElements());
+        assertTrue(result.getContent().isEmpty());
+        verify(productRepository, never()).findListingByIdIn(any());
     }
 
     @Test
     void getFavsthrowUserNotFoundExceptionwhenUserDoesNotExist() {
         Pageable pageable = PageRequest.of(0, 10);
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+        when(userRepository.existsById(userId)).thenReturn(false);
 
         assertThrows(UserException.UserNotFoundException.class,
                 () -> favService.getFavs(userId, pageable));
 
-        verify(userRepository).findById(userId);
-        verify(productRepository, never()).findById(anyString());
+        verify(favoriteRepository, never()).findProductIdsByUserId(any(), any());
+        verify(productRepository, never()).findListingByIdIn(any());
     }
 
     @Test
-    void addFavmaintainMultipleFavoriteswhenAddingSecondProduct() {
-        String existingProductId = "product-existing";
-        testUser.getFavs().add(existingProductId);
+    void migrateLegacyFavoritescopyAndDropwhenLegacyTableExists() {
+        when(favoriteRepository.legacyFavoritesExist()).thenReturn(true);
+        when(favoriteRepository.legacyFavoritesOrdered()).thenReturn(true);
+        when(favoriteRepository.copyLegacyFavorites()).thenReturn(3);
+        when(countRepository.count()).thenReturn(0L);
+
+        favService.migrateLegacyFavorites();
+
+        verify(favoriteRepository).copyLegacyFavorites();
+        verify(favoriteRepository, never()).copyUnorderedLegacyFavorites();
+        verify(favoriteRepository).dropLegacyFavorites();
+        verify(countRepository).rebuild();
+    }
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+    @Test
+    void migrateLegacyFavoritescopyInRowOrderwhenLegacyTableHasNoOrderColumn() {
+        when(favoriteRepository.legacyFavoritesExist()).thenReturn(true);
+        when(favoriteRepository.legacyFavoritesOrdered()).thenReturn(false);
+        when(favoriteRepository.copyUnorderedLegacyFavorites()).thenReturn(3);
+        when(countRepository.count()).thenReturn(10L);
 
-        favService.addFav(productId, userId);
+        favService.migrateLegacyFavorites();
 
-        assertEquals(2, testUser.getFavs().size());
-        assertTrue(testUser.getFavs().contains(existingProductId));
-        assertTrue(testUser.getFavs().contains(productId));
-        verify(userRepository).save(testUser);
+        verify(favoriteRepository).copyUnorderedLegacyFavorites();
+        verify(favoriteRepository, never()).copyLegacyFavorites();
+        verify(favoriteRepository).dropLegacyFavorites();
     }
 
     @Test
-    void removeFavmaintainOtherFavoriteswhenRemovingOneProduct() {
-        String otherProductId = "product-other";
-        testUser.getFavs().add(productId);
-        testUser.getFavs().add(otherProductId);
+    void migrateLegacyFavoritesdoNothingwhenLegacyTableIsGone() {
+        when(favoriteRepository.legacyFavoritesExist()).thenReturn(false);
+        when(countRepository.count()).thenReturn(10L);
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        favService.migrateLegacyFavorites();
 
-        favService.removeFav(productId, userId);
+        verify(favoriteRepository, never()).copyLegacyFavorites();
+        verify(favoriteRepository, never()).copyUnorderedLegacyFavorites();
+        verify(favoriteRepository, never()).dropLegacyFavorites();
+        verify(countRepository, never()).rebuild();
+    }
 
-        assertEquals(1, testUser.getFavs().size());
-        assertTrue(testUser.getFavs().contains(otherProductId));
-        assertFalse(testUser.getFavs().contains(productId));
-        verify(userRepository).save(testUser);
+    private static ProductListing listing(String id) {
+        ProductListing listing = mock(ProductListing.class);
+        when(listing.getId()).thenReturn(id);
+        return listing;
     }
 }
@@ -0,0 +1,133 @@
+package dev.luisvives.dawazon.users.service;
+
+import dev.luisvives.dawazon.BaseRepositoryTest;
+import dev.luisvives.dawazon.common.email.PriceDropEmailService;
+import dev.luisvives.dawazon.products.models.PriceDrop;
+import dev.luisvives.dawazon.products.repository.PriceDropRepository;
+import dev.luisvives.dawazon.users.repository.ProductFavoriteCountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Mide el aviso de una bajada de precio a los {@link #FOLLOWERS} usuarios que
+ * tienen un producto en favoritos, entre {@link #OTHER_FAVORITES} favoritos de
+ * otros productos, y la lectura del número de favoritos con el contador frente
+ * a contarlos. El envío de correos se sustituye por un contador. Se lanza con
+ * {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+@Import(PriceDropFanOut.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "favorites.price-drop.batch-size=" + PriceDropFanOutBenchmarkTest.BATCH_SIZE)
+class PriceDropFanOutBenchmarkTest extends BaseRepositoryTest {
+
+    static final int BATCH_SIZE = 500;
+    private static final int FOLLOWERS = 100_000;
+    private static final int OTHER_FAVORITES = 400_000;
+    private static final int COUNT_READS = 1_000;
+
+    @Autowired
+    private PriceDropFanOut fanOut;
+
+    @Autowired
+    private PriceDropRepository priceDropRepository;
+
+    @Autowired
+    private ProductFavoriteCountRepository countRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private PriceDropEmailService emailService;
+
+    private final AtomicInteger sent = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        truncate();
+        jdbcTemplate.update("INSERT INTO users (user_name, email, password, telefono, avatar, created_at, updated_at, "
+                + "is_deleted) SELECT 'user' || g, 'user' || g || '@example.com', 'password', '', 'default.png', "
+                + "now(), now(), false FROM generate_series(1, ?) g", FOLLOWERS);
+        // Favoritos de otros productos intercalados con los del producto que baja
+        jdbcTemplate.update("INSERT INTO user_favorites (user_id, product_id, created_at) "
+                + "SELECT u.id, CASE WHEN f = 0 THEN 'PROD-HOT' ELSE 'PROD-' || f END, now() "
+                + "FROM users u, generate_series(0, ?) f ORDER BY u.id, f", OTHER_FAVORITES / FOLLOWERS);
+        jdbcTemplate.update("INSERT INTO product_favorite_count (product_id, favorites) "
+                + "SELECT product_id, COUNT(*) FROM user_favorites GROUP BY product_id");
+        jdbcTemplate.execute("ANALYZE");
+        doAnswer(inv -> sent.incrementAndGet()).when(emailService).enviarBajadaPrecio(any(), anyString(), anyString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        truncate();
+    }
+
+    @Test
+    void fanOutHundredThousandFollowers() {
+        PriceDrop drop = priceDropRepository.save(PriceDrop.builder()
+                .productId("PROD-HOT")
+                .productName("Producto popular")
+                .oldPrice(100.0)
+                .newPrice(80.0)
+                .build());
+
+        int batches = 0;
+        long start = System.nanoTime();
+        boolean more = true;
+        while (more) {
+            int before = sent.get();
+            more = fanOut.notifyNextBatch(drop);
+            assertThat(sent.get() - before).isLessThanOrEqualTo(BATCH_SIZE);
+            batches++;
+        }
+        long fanOutNs = System.nanoTime() - start;
+
+        System.out.printf("[benchmark] aviso: %d usuarios en %d lotes, %d ms (%d µs/lote), máx. %d en memoria%n",
+                sent.get(), batches, fanOutNs / 1_000_000, fanOutNs / batches / 1000, BATCH_SIZE);
+        assertThat(sent.get()).isEqualTo(FOLLOWERS);
+        assertThat(priceDropRepository.findById(drop.getId()).orElseThrow().getFinishedAt()).isNotNull();
+
+        long counterNs = time(() -> countRepository.findFavorites("PROD-HOT").orElseThrow());
+        long countNs = time(() -> jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user_favorites WHERE product_id = 'PROD-HOT'", Long.class));
+        System.out.printf("[benchmark] nº de favoritos: contador %d µs, COUNT(*) %d µs%n",
+                counterNs / 1000, countNs / 1000);
+        assertThat(countRepository.findFavorites("PROD-HOT")).contains((long) FOLLOWERS);
+    }
+
+    /**
+     * @return Tiempo medio por lectura en nanosegundos.
+     */
+    private long time(Runnable read) {
+        for (int i = 0; i < COUNT_READS / 10; i++) {
+            read.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < COUNT_READS; i++) {
+            read.run();
+        }
+        return (System.nanoTime() - start) / COUNT_READS;
+    }
+
+    private void truncate() {
+        jdbcTemplate.execute("TRUNCATE price_drop, product_favorite_count, user_favorites, users CASCADE");
+    }
+}
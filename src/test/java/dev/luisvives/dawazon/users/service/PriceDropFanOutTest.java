@@ -0,0 +1,130 @@
+package dev.luisvives.dawazon.users.service;
+
+import dev.luisvives.dawazon.common.email.PriceDropEmailService;
+import dev.luisvives.dawazon.products.models.PriceDrop;
+import dev.luisvives.dawazon.products.repository.PriceDropRepository;
+import dev.luisvives.dawazon.users.repository.UserFavoriteRepository;
+import dev.luisvives.dawazon.users.repository.UserFavoriteRepository.Follower;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PriceDropFanOutTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    @Mock
+    private UserFavoriteRepository favoriteRepository;
+
+    @Mock
+    private PriceDropRepository priceDropRepository;
+
+    @Mock
+    private PriceDropEmailService emailService;
+
+    private PriceDropFanOut fanOut;
+
+    private PriceDrop drop;
+
+    @BeforeEach
+    void setUp() {
+        fanOut = new PriceDropFanOut(favoriteRepository, priceDropRepository, emailService, BATCH_SIZE);
+        drop = PriceDrop.builder()
+                .id(1L)
+                .productId("PROD-1")
+                .productName("Producto")
+                .oldPrice(20.0)
+                .newPrice(15.0)
+                .build();
+    }
+
+    @Test
+    void notifyNextBatchclaimBeforeEmailingFullBatchwhenMoreFollowersMayRemain() {
+        when(favoriteRepository.findFollowers("PROD-1", 0L, PageRequest.of(0, BATCH_SIZE)))
+                .thenReturn(List.of(follower(10L, "a@example.com"), follower(14L, "b@example.com")));
+        when(priceDropRepository.saveAndFlush(drop)).thenReturn(saved(1L));
+
+        boolean more = fanOut.notifyNextBatch(drop);
+
+        assertTrue(more);
+        assertEquals(14L, drop.getLastFavoriteId());
+        assertEquals(2L, drop.getNotified());
+        assertNull(drop.getFinishedAt());
+        assertEquals(1L, drop.getVersion());
+        InOrder order = inOrder(priceDropRepository, emailService);
+        order.verify(priceDropRepository).saveAndFlush(drop);
+        order.verify(emailService).enviarBajadaPrecio(drop, "a@example.com", "a@example.com");
+        order.verify(emailService).enviarBajadaPrecio(drop, "b@example.com", "b@example.com");
+    }
+
+    @Test
+    void notifyNextBatchsendNothingwhenAnotherReplicaClaimedTheBatch() {
+        when(favoriteRepository.findFollowers("PROD-1", 0L, PageRequest.of(0, BATCH_SIZE)))
+                .thenReturn(List.of(follower(10L, "a@example.com"), follower(14L, "b@example.com")));
+        when(priceDropRepository.saveAndFlush(drop))
+                .thenThrow(new ObjectOptimisticLockingFailureException(PriceDrop.class, 1L));
+
+        boolean more = fanOut.notifyNextBatch(drop);
+
+        assertFalse(more);
+        verify(emailService, never()).enviarBajadaPrecio(any(), anyString(), anyString());
+    }
+
+    @Test
+    void notifyNextBatchcontinueFromCursorAndFinishwhenLastBatchIsShort() {
+        drop.setLastFavoriteId(14L);
+        drop.setNotified(2L);
+        when(favoriteRepository.findFollowers("PROD-1", 14L, PageRequest.of(0, BATCH_SIZE)))
+                .thenReturn(List.of(follower(20L, "c@example.com")));
+        when(priceDropRepository.saveAndFlush(drop)).thenReturn(saved(1L));
+
+        boolean more = fanOut.notifyNextBatch(drop);
+
+        assertFalse(more);
+        assertEquals(20L, drop.getLastFavoriteId());
+        assertEquals(3L, drop.getNotified());
+        assertNotNull(drop.getFinishedAt());
+        verify(priceDropRepository).saveAndFlush(drop);
+    }
+
+    @Test
+    void notifyNextBatchfinishWithoutEmailswhenNoFollowersLeft() {
+        drop.setLastFavoriteId(14L);
+        when(favoriteRepository.findFollowers("PROD-1", 14L, PageRequest.of(0, BATCH_SIZE))).thenReturn(List.of());
+        when(priceDropRepository.saveAndFlush(drop)).thenReturn(saved(1L));
+
+        boolean more = fanOut.notifyNextBatch(drop);
+
+        assertFalse(more);
+        assertEquals(14L, drop.getLastFavoriteId());
+        assertNotNull(drop.getFinishedAt());
+        verify(emailService, never()).enviarBajadaPrecio(any(), anyString(), anyString());
+        verify(priceDropRepository).saveAndFlush(drop);
+    }
+
+    private PriceDrop saved(Long version) {
+        return PriceDrop.builder().id(drop.getId()).version(version).build();
+    }
+
+    private static Follower follower(Long favoriteId, String email) {
+        Follower follower = mock(Follower.class);
+        // Solo se lee el ID del último del lote
+        lenient().when(follower.getFavoriteId()).thenReturn(favoriteId);
+        when(follower.getEmail()).thenReturn(email);
+        when(follower.getUserName()).thenReturn(email);
+        return follower;
+    }
+}
@@ -0,0 +1,167 @@
+package dev.luisvives.dawazon.users.service;
+
+import dev.luisvives.dawazon.BaseRepositoryTest;
+import dev.luisvives.dawazon.common.cache.TwoLevelCacheManager;
+import dev.luisvives.dawazon.users.models.User;
+import dev.luisvives.dawazon.users.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Comprueba el número de consultas al resolver los autores de muchos
+ * comentarios: antes era una consulta por comentario.
+ */
+@Import(UserNameResolver.class)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class UserNameResolverTest extends BaseRepositoryTest {
+
+    private static final int AUTHORS = 50;
+    private static final int COMMENTS = 300;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserNameResolver resolver;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockitoBean
+    private StringRedisTemplate redisTemplate;
+
+    private List<Long> authorIds;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        authorIds = new ArrayList<>();
+        for (int i = 0; i < AUTHORS; i++) {
+            User user = userRepository.save(User.builder()
+                    .userName("author" + i)
+                    .email("author" + i + "@example.com")
+                    .password("password")
+                    .build());
+            authorIds.add(user.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void resolvewhenManyCommentsrunsSingleQuery() {
+        List<Long> commentAuthors = commentAuthors();
+        Statistics statistics = statistics();
+
+        Map<Long, String> names = resolver.resolve(commentAuthors);
+
+        assertThat(names).hasSize(AUTHORS);
+        assertThat(names.get(authorIds.get(7))).isEqualTo("author7");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void resolvewhenAlreadyResolvedrunsNoQuery() {
+        List<Long> commentAuthors = commentAuthors();
+        resolver.resolve(commentAuthors);
+        Statistics statistics = statistics();
+
+        Map<Long, String> names = resolver.resolve(commentAuthors);
+
+        assertThat(names).hasSize(AUTHORS);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void resolvewhenUserEvictedreloadsOnlyThatUser() {
+        List<Long> commentAuthors = commentAuthors();
+        resolver.resolve(commentAuthors);
+        Long renamed = authorIds.get(3);
+        User user = userRepository.findById(renamed).orElseThrow();
+        user.setUserName("renamed");
+        userRepository.saveAndFlush(user);
+        resolver.evict(renamed);
+        Statistics statistics = statistics();
+
+        Map<Long, String> names = resolver.resolve(commentAuthors);
+
+        assertThat(names.get(renamed)).isEqualTo("renamed");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void evictpublishesEvictionForOtherReplicas() {
+        resolver.evict(authorIds.get(3));
+
+        verify(redisTemplate).convertAndSend(eq(TwoLevelCacheManager.CHANNEL), argThat((String message) ->
+                message.endsWith("\n" + UserNameResolver.CACHE_NAME + "\n" + authorIds.get(3))));
+    }
+
+    @Test
+    void onMessagewhenOtherReplicaEvictsreloadsOnlyThatUser() {
+        List<Long> commentAuthors = commentAuthors();
+        resolver.resolve(commentAuthors);
+        Long renamed = authorIds.get(3);
+        User user = userRepository.findById(renamed).orElseThrow();
+        user.setUserName("renamed");
+        userRepository.saveAndFlush(user);
+
+        resolver.onMessage(message("otra-replica\n" + UserNameResolver.CACHE_NAME + "\n" + renamed), null);
+        resolver.onMessage(message("otra-replica\nproductos\n" + authorIds.get(4)), null);
+        Statistics statistics = statistics();
+        Map<Long, String> names = resolver.resolve(commentAuthors);
+
+        assertThat(names.get(renamed)).isEqualTo("renamed");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private static Message message(String body) {
+        return new DefaultMessage(TwoLevelCacheManager.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void resolvewhenUserDoesNotExistomitsIt() {
+        Map<Long, String> names = resolver.resolve(List.of(authorIds.get(0), -1L));
+
+        assertThat(names).containsOnlyKeys(authorIds.get(0));
+    }
+
+    /**
+     * Autores de {@link #COMMENTS} comentarios, repartidos entre
+     * {@link #AUTHORS} usuarios.
+     */
+    private List<Long> commentAuthors() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < COMMENTS; i++) {
+            ids.add(authorIds.get(i % AUTHORS));
+        }
+        return ids;
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}